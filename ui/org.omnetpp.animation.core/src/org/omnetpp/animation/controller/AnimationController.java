@@ -11,7 +11,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.map.MultiValueMap;
 import org.eclipse.core.runtime.Assert;
@@ -23,10 +25,8 @@ import org.omnetpp.animation.providers.IAnimationPrimitiveProvider;
 import org.omnetpp.animation.widgets.AnimationCanvas;
 import org.omnetpp.common.engine.BigDecimal;
 import org.omnetpp.common.simulation.SimulationModel;
-import org.omnetpp.common.util.BinarySearchUtils;
-import org.omnetpp.common.util.BinarySearchUtils.BoundKind;
-import org.omnetpp.common.util.BinarySearchUtils.KeyComparator;
 import org.omnetpp.common.util.Pair;
+import org.omnetpp.common.util.SimulationTime;
 import org.omnetpp.common.util.Timer;
 import org.omnetpp.common.util.TimerQueue;
 
@@ -76,32 +76,21 @@ public class AnimationController {
     private AnimationTimer animationTimer;
 
     /**
-     * The list of loaded animation primitives. This may contain more animation
-     * primitives than that is rendered to the canvas. This list is ordered by
-     * begin animation time.
+     * The index of loaded animation primitives. This may contain more animation
+     * primitives than that is rendered to the canvas. The index is ordered by
+     * begin and end animation time, and it is rebuilt whenever new animation
+     * primitives are loaded.
      */
-    private ArrayList<IAnimationPrimitive> beginAnimationTimeOrderedPrimitives;
+    private AnimationPrimitiveIndex animationPrimitiveIndex;
 
     /**
-     * The list of loaded animation primitives. This may contain more animation
-     * primitives than that is rendered to the canvas. This list is ordered by
-     * end animation time.
-     *
-     * In fact the list is ordered by end simulation time and as soon as any
-     * item is required at a given simulation time, then all the primitives at
-     * the very same end simulation time are ordered in place by their end
-     * animation time.
-     */
-    private ArrayList<IAnimationPrimitive> endAnimationTimeOrderedPrimitives;
-
-    /**
-     * The list of currently active animation primitives. These will be called
+     * The set of currently active animation primitives. These will be called
      * to refresh their animation at the current animation position. At any
      * given time it should contain an animation primitive iff the current
      * animation position is between the begin and end animation time of that
-     * primitive.
+     * primitive. The iteration order is the activation order.
      */
-    private ArrayList<IAnimationPrimitive> activeAnimationPrimitives;
+    private Set<IAnimationPrimitive> activeAnimationPrimitives;
 
     /**
      * The simulation environment is responsible for managing modules,
@@ -210,8 +199,8 @@ public class AnimationController {
     // TODO: KLUDGE: isn't this obsolete now that we have the new animation frame concept?
     private Comparator<AnimationPosition> animationPositionComparator = new Comparator<AnimationPosition>() {
         public int compare(AnimationPosition animationPosition1, AnimationPosition animationPosition2) {
-            BigDecimal simulationTime1 = animationPosition1.getSimulationTime();
-            BigDecimal simulationTime2 = animationPosition2.getSimulationTime();
+            SimulationTime simulationTime1 = animationPosition1.getSimulationTimeValue();
+            SimulationTime simulationTime2 = animationPosition2.getSimulationTimeValue();
             if (simulationTime1.less(simulationTime2))
                 return -1;
             else if (simulationTime1.greater(simulationTime2))
@@ -219,9 +208,9 @@ public class AnimationController {
             else {
                 long eventNumber1 = animationPosition1.getEventNumber();
                 long eventNumber2 = animationPosition2.getEventNumber();
-                long eventNumber = animationCoordinateSystem.getLastEventNumberNotAfterSimulationTime(simulationTime1);
-                BigDecimal simulationTime = animationCoordinateSystem.getSimulationTime(eventNumber);
-                boolean sameSimulationTime = simulationTime.equals(simulationTime1);
+                long eventNumber = animationCoordinateSystem.getLastEventNumberNotAfterSimulationTime(animationPosition1.getSimulationTime());
+                SimulationTime simulationTime = SimulationTime.valueOf(animationCoordinateSystem.getSimulationTime(eventNumber));
+                boolean sameSimulationTime = simulationTime != null && simulationTime.equals(simulationTime1);
                 if (sameSimulationTime && eventNumber1 < eventNumber && eventNumber2 >= eventNumber)
                     return -1;
                 else if (sameSimulationTime && eventNumber2 < eventNumber && eventNumber1 >= eventNumber)
@@ -266,9 +255,8 @@ public class AnimationController {
         beginAnimationPosition = new AnimationPosition();
         firstEventAnimationPosition = new AnimationPosition();
         endAnimationPosition = new AnimationPosition();
-        beginAnimationTimeOrderedPrimitives = new ArrayList<IAnimationPrimitive>();
-        endAnimationTimeOrderedPrimitives = new ArrayList<IAnimationPrimitive>();
-        activeAnimationPrimitives = new ArrayList<IAnimationPrimitive>();
+        animationPrimitiveIndex = new AnimationPrimitiveIndex();
+        activeAnimationPrimitives = new LinkedHashSet<IAnimationPrimitive>();
         eventNumberToFrameRelativeEndAnimationTime = new HashMap<Long, Double>();
         for (Timer timer : timerQueue.getTimers())
             if (timer != animationTimer)
@@ -457,8 +445,8 @@ public class AnimationController {
         if (!endAnimationPosition.isCompletelySpecified()) {
             BigDecimal simulationTime = animationCoordinateSystem.getLastSimulationTime();
             loadAnimationPrimitivesForAnimationPosition(new AnimationPosition(animationCoordinateSystem.getLastEventNumber(), simulationTime, null, null));
-            for (int i = endAnimationTimeOrderedPrimitives.size() - 1; i >= 0; i--) {
-                IAnimationPrimitive animationPrimitive = endAnimationTimeOrderedPrimitives.get(i);
+            for (int i = animationPrimitiveIndex.size() - 1; i >= 0; i--) {
+                IAnimationPrimitive animationPrimitive = animationPrimitiveIndex.getEndOrderedPrimitive(i);
                 AnimationPosition endAnimationPosition = animationPrimitive.getEndAnimationPosition();
                 if (endAnimationPosition.getSimulationTime().lessOrEqual(simulationTime) && !endAnimationPosition.getFrameRelativeAnimationTime().isInfinite()) {
                     this.endAnimationPosition = endAnimationPosition;
@@ -471,7 +459,7 @@ public class AnimationController {
 
     public boolean isAtAnimationPosition(AnimationPosition animationPosition) {
         loadAnimationPrimitivesForAnimationPosition(animationPosition);
-        return beginAnimationTimeOrderedPrimitives.size() == 0 || currentAnimationPosition.equals(animationPosition);
+        return animationPrimitiveIndex.size() == 0 || currentAnimationPosition.equals(animationPosition);
     }
 
 	/**
@@ -623,54 +611,9 @@ public class AnimationController {
 	}
 
     private void stepAnimationTowardToSiblingAnimationChange(boolean forward) {
-        final double currentOriginRelativeAnimationTime = currentAnimationPosition.getOriginRelativeAnimationTime();
-        int beginOrderedIndex = (int)BinarySearchUtils.binarySearch(new KeyComparator() {
-            public int compareTo(long index) {
-                return (int)Math.signum(currentOriginRelativeAnimationTime - beginAnimationTimeOrderedPrimitives.get((int)index).getBeginAnimationPosition().getOriginRelativeAnimationTime());
-            }
-        }, beginAnimationTimeOrderedPrimitives.size(), forward ? BoundKind.LOWER_BOUND : BoundKind.UPPER_BOUND);
-        int endOrderedIndex = (int)BinarySearchUtils.binarySearch(new KeyComparator() {
-            public int compareTo(long index) {
-                return (int)Math.signum(currentOriginRelativeAnimationTime - endAnimationTimeOrderedPrimitives.get((int)index).getEndAnimationPosition().getOriginRelativeAnimationTime());
-            }
-        }, endAnimationTimeOrderedPrimitives.size(), forward ? BoundKind.LOWER_BOUND : BoundKind.UPPER_BOUND);
-        if (!forward) {
-            beginOrderedIndex--;
-            endOrderedIndex--;
-        }
-        // find an animation primitive that strictly begins or ends in the past and has the highest begin or end animation position respectively
-        while (true) {
-            boolean beginOrderedIndexValid = beginOrderedIndex >= 0 && beginOrderedIndex < beginAnimationTimeOrderedPrimitives.size();
-            boolean endOrderedIndexValid = endOrderedIndex >= 0 && endOrderedIndex < endAnimationTimeOrderedPrimitives.size();
-            if (!beginOrderedIndexValid && !endOrderedIndexValid)
-                break;
-            AnimationPosition beginAnimationPosition = beginOrderedIndexValid ? beginAnimationTimeOrderedPrimitives.get(beginOrderedIndex).getBeginAnimationPosition() : null;
-            AnimationPosition endAnimationPosition = endOrderedIndexValid ? endAnimationTimeOrderedPrimitives.get(endOrderedIndex).getEndAnimationPosition() : null;
-            if ((beginOrderedIndexValid && !endOrderedIndexValid) ||
-                (beginOrderedIndexValid && endOrderedIndexValid && (forward ? beginAnimationPosition.compareTo(endAnimationPosition) <= 0 : beginAnimationPosition.compareTo(endAnimationPosition) >= 0)))
-            {
-                if (forward ? currentOriginRelativeAnimationTime < beginAnimationPosition.getOriginRelativeAnimationTime() : beginAnimationPosition.getOriginRelativeAnimationTime() < currentOriginRelativeAnimationTime) {
-                    startAnimation(forward, beginAnimationPosition);
-                    return;
-                }
-                if (forward)
-                    beginOrderedIndex++;
-                else
-                    beginOrderedIndex--;
-            }
-            if ((!beginOrderedIndexValid && endOrderedIndexValid) ||
-                (beginOrderedIndexValid && endOrderedIndexValid && (forward ? beginAnimationPosition.compareTo(endAnimationPosition) >= 0 : beginAnimationPosition.compareTo(endAnimationPosition) <= 0)))
-            {
-                if (forward ? currentOriginRelativeAnimationTime < endAnimationPosition.getOriginRelativeAnimationTime() : endAnimationPosition.getOriginRelativeAnimationTime() < currentOriginRelativeAnimationTime) {
-                    startAnimation(forward, endAnimationPosition);
-                    return;
-                }
-                if (forward)
-                    endOrderedIndex++;
-                else
-                    endOrderedIndex--;
-            }
-        }
+        AnimationPosition animationPosition = animationPrimitiveIndex.getSiblingAnimationPosition(currentAnimationPosition.getOriginRelativeAnimationTime(), forward);
+        if (animationPosition != null)
+            startAnimation(forward, animationPosition);
     }
 
     /**
@@ -879,116 +822,12 @@ public class AnimationController {
     /**
      * Updates the animation model according to the current animation position.
      * This will result in a bunch of activate/deactivate calls on the
-     * appropriate animation primitives. The idea is to go through the animation
-     * primitives from the old animation time to the new animation time in both
-     * ordered animation primitive arrays at the same time and call
-     * activate/deactivate in order.
+     * appropriate animation primitives. See AnimationPrimitiveIndex.
      */
 	private void updateAnimationModel() {
-		final double oldAnimationTime = modelAnimationPosition.isCompletelySpecified() ? modelAnimationPosition.getOriginRelativeAnimationTime() : Double.NEGATIVE_INFINITY;
+		double oldAnimationTime = modelAnimationPosition.isCompletelySpecified() ? modelAnimationPosition.getOriginRelativeAnimationTime() : Double.NEGATIVE_INFINITY;
 		double newAnimationTime = currentAnimationPosition.getOriginRelativeAnimationTime();
-		boolean forward = newAnimationTime >= oldAnimationTime;
-		int beginOrderedIndex = (int)BinarySearchUtils.binarySearch(new KeyComparator() {
-            public int compareTo(long index) {
-                return (int)Math.signum(oldAnimationTime - beginAnimationTimeOrderedPrimitives.get((int)index).getBeginAnimationPosition().getOriginRelativeAnimationTime());
-            }
-		}, beginAnimationTimeOrderedPrimitives.size(), forward ? BoundKind.LOWER_BOUND : BoundKind.UPPER_BOUND);
-		int endOrderedIndex = (int)BinarySearchUtils.binarySearch(new KeyComparator() {
-            public int compareTo(long index) {
-                return (int)Math.signum(oldAnimationTime - endAnimationTimeOrderedPrimitives.get((int)index).getEndAnimationPosition().getOriginRelativeAnimationTime());
-            }
-		}, endAnimationTimeOrderedPrimitives.size(), forward ? BoundKind.LOWER_BOUND : BoundKind.UPPER_BOUND);
-		if (!forward) {
-			beginOrderedIndex--;
-			endOrderedIndex--;
-		}
-		double previousBeginAnimationTime = forward ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
-		double previousEndAnimationTime = previousBeginAnimationTime;
-		while (true) {
-			boolean beginOrderedIndexValid = beginOrderedIndex >= 0 && beginOrderedIndex < beginAnimationTimeOrderedPrimitives.size();
-			boolean endOrderedIndexValid = endOrderedIndex >= 0 && endOrderedIndex < endAnimationTimeOrderedPrimitives.size();
-			if (!beginOrderedIndexValid && !endOrderedIndexValid)
-				break;
-			IAnimationPrimitive beginOrderedAnimationPrimitive = beginOrderedIndexValid ? beginAnimationTimeOrderedPrimitives.get(beginOrderedIndex) : null;
-			IAnimationPrimitive endOrderedAnimationPrimitive = endOrderedIndexValid ? endAnimationTimeOrderedPrimitives.get(endOrderedIndex) : null;
-			double beginAnimationTime = beginOrderedIndexValid ? beginOrderedAnimationPrimitive.getBeginAnimationPosition().getOriginRelativeAnimationTime() : -1;
-			double endAnimationTime = endOrderedIndexValid ? endOrderedAnimationPrimitive.getEndAnimationPosition().getOriginRelativeAnimationTime() : -1;
-			// check correct ordering
-			if (debug) {
-				if (beginOrderedIndexValid && (forward ? beginAnimationTime < previousBeginAnimationTime : beginAnimationTime > previousBeginAnimationTime))
-					throw new RuntimeException("Begin ordered animation primitives are not correctly ordered");
-
-				if (endOrderedIndexValid && (forward ? endAnimationTime < previousEndAnimationTime : endAnimationTime > previousEndAnimationTime))
-					throw new RuntimeException("End ordered animation primitives are not correctly ordered");
-			}
-			// NOTE: begin animation position is inclusive with respect to being activated
-			if (forward ? beginAnimationTime > newAnimationTime : beginAnimationTime <= newAnimationTime) {
-				beginOrderedIndex = -1;
-				beginOrderedIndexValid = false;
-				beginOrderedAnimationPrimitive = null;
-			}
-            // NOTE: end animation position is exclusive with respect to being activated
-			if (forward ? endAnimationTime > newAnimationTime : endAnimationTime <= newAnimationTime) {
-				endOrderedIndex = -1;
-				endOrderedIndexValid = false;
-				endOrderedAnimationPrimitive = null;
-			}
-			if (forward) {
-				if (beginOrderedIndexValid && (!endOrderedIndexValid || beginAnimationTime <= endAnimationTime)) {
-					if (!activeAnimationPrimitives.contains(beginOrderedAnimationPrimitive)) {
-					    if (debug)
-					        System.out.println("Forward animation activate: " + beginOrderedAnimationPrimitive);
-						beginOrderedAnimationPrimitive.activate();
-						activeAnimationPrimitives.add(beginOrderedAnimationPrimitive);
-					}
-					beginOrderedIndex++;
-				}
-				// compare using > to allow activations to happen before deactivations having the same time
-				if (endOrderedIndexValid  && (!beginOrderedIndexValid || endAnimationTime < beginAnimationTime)) {
-					if (activeAnimationPrimitives.contains(endOrderedAnimationPrimitive)) {
-					    if (debug)
-					        System.out.println("Forward animation deactivate: " + endOrderedAnimationPrimitive);
-						endOrderedAnimationPrimitive.deactivate();
-						activeAnimationPrimitives.remove(endOrderedAnimationPrimitive);
-					}
-					endOrderedIndex++;
-				}
-			}
-			else {
-				if (endOrderedIndexValid && (!beginOrderedIndexValid || endAnimationTime >= beginAnimationTime)) {
-					if (!activeAnimationPrimitives.contains(endOrderedAnimationPrimitive)) {
-					    if (debug)
-					        System.out.println("Backward animation activate: " + endOrderedAnimationPrimitive);
-						endOrderedAnimationPrimitive.activate();
-						activeAnimationPrimitives.add(endOrderedAnimationPrimitive);
-					}
-					endOrderedIndex--;
-				}
-				// compare using > to allow activations to happen before deactivations having the same time
-				if (beginOrderedIndexValid && (!endOrderedIndexValid || beginAnimationTime > endAnimationTime)) {
-					if (activeAnimationPrimitives.contains(beginOrderedAnimationPrimitive)) {
-					    if (debug)
-					        System.out.println("Backward animation deactivate: " + beginOrderedAnimationPrimitive);
-						beginOrderedAnimationPrimitive.deactivate();
-						activeAnimationPrimitives.remove(beginOrderedAnimationPrimitive);
-					}
-					beginOrderedIndex--;
-				}
-			}
-			previousBeginAnimationTime = beginAnimationTime;
-			previousEndAnimationTime = endAnimationTime;
-		}
-		// check active animation primitives
-//		if (debug) {
-//			for (IAnimationPrimitive animationPrimitive : beginAnimationTimeOrderedPrimitives) {
-//				if ((animationPrimitive.getBeginAnimationPosition().getOriginRelativeAnimationTime() <= getCurrentAnimationTime() &&
-//					 getCurrentAnimationTime() <= animationPrimitive.getEndAnimationPosition().getOriginRelativeAnimationTime()) !=
-//					 activeAnimationPrimitives.contains(animationPrimitive))
-//				{
-//					Assert.isTrue(false, "Animation primitive should be active iff its animation time range includes the current animation position");
-//				}
-//			}
-//		}
+		animationPrimitiveIndex.updateActivePrimitives(activeAnimationPrimitives, oldAnimationTime, newAnimationTime);
 		modelAnimationPosition = currentAnimationPosition;
 	}
 
@@ -1017,10 +856,12 @@ public class AnimationController {
 
 	private void loadAnimationPrimitivesForAnimationPosition(AnimationPosition animationPosition) {
 	    ArrayList<IAnimationPrimitive> animationPrimitives = animationPrimitiveProvider.loadAnimationPrimitivesForAnimationPosition(animationPosition);
-        animationPrimitives.addAll(beginAnimationTimeOrderedPrimitives);
+        // nothing new has been loaded, so the animation times and the index are up to date
+        if (animationPrimitives.isEmpty() && animationPrimitiveIndex.size() != 0)
+            return;
+        animationPrimitives.addAll(animationPrimitiveIndex.getAnimationPrimitives());
         animationCoordinateSystem.setAnimationPositions(calculateAnimationTimes(animationPrimitives));
-        calculateBeginAnimationTimeOrderedPrimitives(animationPrimitives);
-        calculateEndAnimationTimeOrderedPrimitives(animationPrimitives);
+        animationPrimitiveIndex = new AnimationPrimitiveIndex(animationPrimitives);
 	}
 
     /**
@@ -1134,22 +975,6 @@ public class AnimationController {
         }
     }
 
-    private void calculateBeginAnimationTimeOrderedPrimitives(ArrayList<IAnimationPrimitive> animationPrimitives) {
-        beginAnimationTimeOrderedPrimitives = new ArrayList<IAnimationPrimitive>(animationPrimitives);
-        Collections.sort(beginAnimationTimeOrderedPrimitives, new Comparator<IAnimationPrimitive>() {
-            public int compare(IAnimationPrimitive animationPrimitive1, IAnimationPrimitive animationPrimitive2) {
-                double animationTime1 = animationPrimitive1.getBeginAnimationPosition().getOriginRelativeAnimationTime();
-                double animationTime2 = animationPrimitive2.getBeginAnimationPosition().getOriginRelativeAnimationTime();
-                return (int)Math.signum(animationTime1 - animationTime2);
-            }
-        });
-        if (debug) {
-            System.out.println("*** BEGIN ANIMATION TIME ORDERED ANIMATION PRIMITIVES ***");
-            for (IAnimationPrimitive animationPrimitive : beginAnimationTimeOrderedPrimitives)
-                System.out.println(animationPrimitive);
-        }
-    }
-
     private double getAnimationTimeDelta(AnimationPosition previousAnimationPosition, AnimationPosition animationPosition) {
         BigDecimal simulationTime = animationPosition.getSimulationTime();
         BigDecimal previousSimulationTime = previousAnimationPosition.getSimulationTime();
@@ -1171,20 +996,4 @@ public class AnimationController {
                 return frameRelativeAnimationTime + animationTimeDelta;
         }
     }
-
-    private void calculateEndAnimationTimeOrderedPrimitives(ArrayList<IAnimationPrimitive> animationPrimitives) {
-        endAnimationTimeOrderedPrimitives = new ArrayList<IAnimationPrimitive>(animationPrimitives);
-        Collections.sort(endAnimationTimeOrderedPrimitives, new Comparator<IAnimationPrimitive>() {
-            public int compare(IAnimationPrimitive animationPrimitive1, IAnimationPrimitive animationPrimitive2) {
-                double animationTime1 = animationPrimitive1.getEndAnimationPosition().getOriginRelativeAnimationTime();
-                double animationTime2 = animationPrimitive2.getEndAnimationPosition().getOriginRelativeAnimationTime();
-                return (int)Math.signum(animationTime1 - animationTime2);
-            }
-        });
-        if (debug) {
-            System.out.println("*** END ANIMATION TIME ORDERED ANIMATION PRIMITIVES ***");
-            for (IAnimationPrimitive animationPrimitive : endAnimationTimeOrderedPrimitives)
-                System.out.println(animationPrimitive);
-        }
-    }
 }
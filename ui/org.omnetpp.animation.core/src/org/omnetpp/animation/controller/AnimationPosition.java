@@ -9,6 +9,7 @@ package org.omnetpp.animation.controller;
 
 import org.eclipse.core.runtime.Assert;
 import org.omnetpp.common.engine.BigDecimal;
+import org.omnetpp.common.util.SimulationTime;
 import org.omnetpp.common.util.StringUtils;
 
 /**
@@ -133,6 +134,12 @@ public class AnimationPosition implements Comparable<AnimationPosition> {
      */
     protected BigDecimal simulationTime;
 
+    /**
+     * The same as simulationTime, converted lazily, so that comparing and
+     * hashing animation positions does not go through JNI.
+     */
+    private SimulationTime simulationTimeValue;
+
     /**
      * The animation time relative to the beginning of the animation frame. See
      * above for the definition of animation frame. The value must be greater
@@ -190,6 +197,16 @@ public class AnimationPosition implements Comparable<AnimationPosition> {
     public void setSimulationTime(BigDecimal simulationTime) {
         Assert.isTrue(this.simulationTime == null || this.simulationTime.equals(simulationTime));
         this.simulationTime = simulationTime;
+        this.simulationTimeValue = null;
+    }
+
+    /**
+     * Returns the simulation time as a pure Java value, or null if it is not yet set (or Nil).
+     */
+    public SimulationTime getSimulationTimeValue() {
+        if (simulationTimeValue == null && simulationTime != null)
+            simulationTimeValue = SimulationTime.valueOf(simulationTime);
+        return simulationTimeValue;
     }
 
     public Double getFrameRelativeAnimationTime() {
@@ -229,8 +246,8 @@ public class AnimationPosition implements Comparable<AnimationPosition> {
             return 0;
         else if (eventNumber != null && other.eventNumber != null && !eventNumber.equals(other.eventNumber))
             return (int)Math.signum(eventNumber - other.eventNumber);
-        else if (simulationTime != null && other.simulationTime != null && !simulationTime.equals(other.simulationTime))
-            return simulationTime.less(other.simulationTime) ? -1 : 1;
+        else if (simulationTime != null && other.simulationTime != null && !getSimulationTimeValue().equals(other.getSimulationTimeValue()))
+            return getSimulationTimeValue().less(other.getSimulationTimeValue()) ? -1 : 1;
         else if (frameRelativeAnimationTime != null && other.frameRelativeAnimationTime != null)
             // TODO: this was part of the condition here, but I don't know why... should I delete it?
             // && eventNumber.equals(other.eventNumber) && simulationTime.equals(other.simulationTime) && frameRelativeAnimationTime < other.frameRelativeAnimationTime)
@@ -248,7 +265,7 @@ public class AnimationPosition implements Comparable<AnimationPosition> {
         result = prime * result + ((eventNumber == null) ? 0 : eventNumber.hashCode());
         result = prime * result + ((frameRelativeAnimationTime == null) ? 0 : frameRelativeAnimationTime.hashCode());
         result = prime * result + ((originRelativeAnimationTime == null) ? 0 : originRelativeAnimationTime.hashCode());
-        result = prime * result + ((simulationTime == null) ? 0 : simulationTime.hashCode());
+        result = prime * result + ((simulationTime == null) ? 0 : getSimulationTimeValue().hashCode());
         return result;
     }
 
@@ -283,7 +300,7 @@ public class AnimationPosition implements Comparable<AnimationPosition> {
             if (other.simulationTime != null)
                 return false;
         }
-        else if (!simulationTime.equals(other.simulationTime))
+        else if (!getSimulationTimeValue().equals(other.getSimulationTimeValue()))
             return false;
         return true;
     }
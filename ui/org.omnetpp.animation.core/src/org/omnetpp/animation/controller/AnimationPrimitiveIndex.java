@@ -0,0 +1,285 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.animation.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.omnetpp.animation.primitives.IAnimationPrimitive;
+
+/**
+ * <p>
+ * Immutable index of the loaded animation primitives by their origin relative
+ * begin and end animation times. The times are copied into sorted double arrays
+ * when the index is built, so searching does not go through AnimationPosition
+ * and boxed Doubles. An animation primitive is active at animation time t iff
+ * its begin animation time <= t < its end animation time.
+ * </p>
+ * <p>
+ * The index maintains a set of active animation primitives when the animation
+ * time changes. Small steps (i.e. playing the animation) sweep through the
+ * begin and end times between the old and the new animation time, and call
+ * activate/deactivate in order. Long jumps (i.e. seeking) query the animation
+ * primitives active at the new animation time from an interval tree, and only
+ * call activate/deactivate for the difference, which costs O(log n + k)
+ * independently of the length of the jump.
+ * </p>
+ */
+public class AnimationPrimitiveIndex {
+    private final static boolean debug = false;
+
+    /**
+     * The minimum number of begin and end times between the old and the new
+     * animation time for which seeking is used instead of sweeping.
+     */
+    private final static int SEEK_THRESHOLD = 256;
+
+    private IAnimationPrimitive[] beginOrderedPrimitives;
+    private double[] beginTimes;
+    private IAnimationPrimitive[] endOrderedPrimitives;
+    private double[] endTimes;
+
+    /**
+     * Implicit interval tree over beginOrderedPrimitives: a complete binary
+     * tree stored in an array (node i has children 2i and 2i+1), where each
+     * node holds the maximum end time in its subtree. Leaves start at index
+     * numLeaves.
+     */
+    private double[] maxEndTimes;
+    private int numLeaves;
+
+    public AnimationPrimitiveIndex() {
+        this(new ArrayList<IAnimationPrimitive>());
+    }
+
+    /**
+     * The animation times of the primitives must be already calculated.
+     * Primitives with the same time keep their order in the provided list.
+     */
+    public AnimationPrimitiveIndex(List<IAnimationPrimitive> animationPrimitives) {
+        int size = animationPrimitives.size();
+        double[] primitiveBeginTimes = new double[size];
+        double[] primitiveEndTimes = new double[size];
+        for (int i = 0; i < size; i++) {
+            IAnimationPrimitive animationPrimitive = animationPrimitives.get(i);
+            primitiveBeginTimes[i] = animationPrimitive.getBeginAnimationPosition().getOriginRelativeAnimationTime();
+            primitiveEndTimes[i] = animationPrimitive.getEndAnimationPosition().getOriginRelativeAnimationTime();
+        }
+        Integer[] beginOrder = getSortedIndices(primitiveBeginTimes);
+        Integer[] endOrder = getSortedIndices(primitiveEndTimes);
+        beginOrderedPrimitives = new IAnimationPrimitive[size];
+        beginTimes = new double[size];
+        endOrderedPrimitives = new IAnimationPrimitive[size];
+        endTimes = new double[size];
+        for (int i = 0; i < size; i++) {
+            beginOrderedPrimitives[i] = animationPrimitives.get(beginOrder[i]);
+            beginTimes[i] = primitiveBeginTimes[beginOrder[i]];
+            endOrderedPrimitives[i] = animationPrimitives.get(endOrder[i]);
+            endTimes[i] = primitiveEndTimes[endOrder[i]];
+        }
+
+        numLeaves = 1;
+        while (numLeaves < size)
+            numLeaves *= 2;
+        maxEndTimes = new double[2 * numLeaves];
+        Arrays.fill(maxEndTimes, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < size; i++)
+            maxEndTimes[numLeaves + i] = primitiveEndTimes[beginOrder[i]];
+        for (int i = numLeaves - 1; i >= 1; i--)
+            maxEndTimes[i] = Math.max(maxEndTimes[2 * i], maxEndTimes[2 * i + 1]);
+    }
+
+    private static Integer[] getSortedIndices(final double[] times) {
+        Integer[] indices = new Integer[times.length];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i;
+        // NOTE: this is a stable sort
+        Arrays.sort(indices, new Comparator<Integer>() {
+            public int compare(Integer index1, Integer index2) {
+                double time1 = times[index1];
+                double time2 = times[index2];
+                return time1 < time2 ? -1 : time1 > time2 ? 1 : 0;
+            }
+        });
+        return indices;
+    }
+
+    public int size() {
+        return beginOrderedPrimitives.length;
+    }
+
+    /**
+     * Returns the animation primitives ordered by begin animation time.
+     */
+    public List<IAnimationPrimitive> getAnimationPrimitives() {
+        return Collections.unmodifiableList(Arrays.asList(beginOrderedPrimitives));
+    }
+
+    public IAnimationPrimitive getBeginOrderedPrimitive(int index) {
+        return beginOrderedPrimitives[index];
+    }
+
+    public IAnimationPrimitive getEndOrderedPrimitive(int index) {
+        return endOrderedPrimitives[index];
+    }
+
+    /**
+     * Returns the index of the first element that is not less than the given time.
+     */
+    private static int lowerBound(double[] times, double time) {
+        int low = 0, high = times.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first element that is greater than the given time.
+     */
+    private static int upperBound(double[] times, double time) {
+        int low = 0, high = times.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] <= time)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the closest begin or end animation position that is strictly after
+     * (forward) or strictly before (backward) the given animation time, or null
+     * if there is no such position.
+     */
+    public AnimationPosition getSiblingAnimationPosition(double animationTime, boolean forward) {
+        int beginIndex = forward ? upperBound(beginTimes, animationTime) : lowerBound(beginTimes, animationTime) - 1;
+        int endIndex = forward ? upperBound(endTimes, animationTime) : lowerBound(endTimes, animationTime) - 1;
+        boolean beginIndexValid = 0 <= beginIndex && beginIndex < beginTimes.length;
+        boolean endIndexValid = 0 <= endIndex && endIndex < endTimes.length;
+        if (beginIndexValid && (!endIndexValid || (forward ? beginTimes[beginIndex] <= endTimes[endIndex] : beginTimes[beginIndex] >= endTimes[endIndex])))
+            return beginOrderedPrimitives[beginIndex].getBeginAnimationPosition();
+        else if (endIndexValid)
+            return endOrderedPrimitives[endIndex].getEndAnimationPosition();
+        else
+            return null;
+    }
+
+    /**
+     * Returns the animation primitives that are active at the given animation
+     * time, ordered by begin animation time.
+     */
+    public List<IAnimationPrimitive> getActivePrimitives(double animationTime) {
+        List<IAnimationPrimitive> result = new ArrayList<IAnimationPrimitive>();
+        collectActivePrimitives(1, 0, numLeaves, upperBound(beginTimes, animationTime), animationTime, result);
+        return result;
+    }
+
+    private void collectActivePrimitives(int node, int from, int to, int limit, double animationTime, List<IAnimationPrimitive> result) {
+        // only the primitives before limit begin at or before the animation time
+        if (from >= limit || maxEndTimes[node] <= animationTime)
+            return;
+        else if (to - from == 1)
+            result.add(beginOrderedPrimitives[from]);
+        else {
+            int middle = (from + to) / 2;
+            collectActivePrimitives(2 * node, from, middle, limit, animationTime, result);
+            collectActivePrimitives(2 * node + 1, middle, to, limit, animationTime, result);
+        }
+    }
+
+    /**
+     * Updates the set of active animation primitives from the old animation
+     * time to the new animation time. This will result in a bunch of
+     * activate/deactivate calls on the appropriate animation primitives.
+     */
+    public void updateActivePrimitives(Set<IAnimationPrimitive> activePrimitives, double oldAnimationTime, double newAnimationTime) {
+        boolean forward = newAnimationTime >= oldAnimationTime;
+        // NOTE: begin animation time is inclusive and end animation time is exclusive with respect to being active
+        int beginIndex = forward ? lowerBound(beginTimes, oldAnimationTime) : upperBound(beginTimes, oldAnimationTime) - 1;
+        int endIndex = forward ? lowerBound(endTimes, oldAnimationTime) : upperBound(endTimes, oldAnimationTime) - 1;
+        int beginLimit = upperBound(beginTimes, newAnimationTime);
+        int endLimit = upperBound(endTimes, newAnimationTime);
+        int numSteps = forward ? (beginLimit - beginIndex) + (endLimit - endIndex) : (beginIndex + 1 - beginLimit) + (endIndex + 1 - endLimit);
+        if (numSteps > SEEK_THRESHOLD && numSteps > 2 * activePrimitives.size())
+            seekActivePrimitives(activePrimitives, newAnimationTime);
+        else if (forward) {
+            // go through both ordered arrays at the same time, activations happen before deactivations having the same time
+            while (beginIndex < beginLimit || endIndex < endLimit) {
+                if (beginIndex < beginLimit && (endIndex == endLimit || beginTimes[beginIndex] <= endTimes[endIndex]))
+                    activate(activePrimitives, beginOrderedPrimitives[beginIndex++]);
+                else
+                    deactivate(activePrimitives, endOrderedPrimitives[endIndex++]);
+            }
+        }
+        else {
+            while (beginIndex >= beginLimit || endIndex >= endLimit) {
+                if (endIndex >= endLimit && (beginIndex < beginLimit || endTimes[endIndex] >= beginTimes[beginIndex]))
+                    activate(activePrimitives, endOrderedPrimitives[endIndex--]);
+                else
+                    deactivate(activePrimitives, beginOrderedPrimitives[beginIndex--]);
+            }
+        }
+    }
+
+    /**
+     * Deactivates the active animation primitives that are not active at the
+     * new animation time in reverse begin animation time order (as if going
+     * backward), then activates the missing ones in begin animation time order
+     * (as if going forward). Primitives that begin and end between the old and
+     * the new animation time are not touched.
+     */
+    private void seekActivePrimitives(Set<IAnimationPrimitive> activePrimitives, double newAnimationTime) {
+        List<IAnimationPrimitive> newActivePrimitives = getActivePrimitives(newAnimationTime);
+        Set<IAnimationPrimitive> newActivePrimitiveSet = new HashSet<IAnimationPrimitive>(newActivePrimitives);
+        List<IAnimationPrimitive> deactivatedPrimitives = new ArrayList<IAnimationPrimitive>();
+        for (IAnimationPrimitive animationPrimitive : activePrimitives)
+            if (!newActivePrimitiveSet.contains(animationPrimitive))
+                deactivatedPrimitives.add(animationPrimitive);
+        Collections.sort(deactivatedPrimitives, new Comparator<IAnimationPrimitive>() {
+            public int compare(IAnimationPrimitive animationPrimitive1, IAnimationPrimitive animationPrimitive2) {
+                double animationTime1 = animationPrimitive1.getBeginAnimationPosition().getOriginRelativeAnimationTime();
+                double animationTime2 = animationPrimitive2.getBeginAnimationPosition().getOriginRelativeAnimationTime();
+                return animationTime1 < animationTime2 ? 1 : animationTime1 > animationTime2 ? -1 : 0;
+            }
+        });
+        for (IAnimationPrimitive animationPrimitive : deactivatedPrimitives)
+            deactivate(activePrimitives, animationPrimitive);
+        for (IAnimationPrimitive animationPrimitive : newActivePrimitives)
+            activate(activePrimitives, animationPrimitive);
+    }
+
+    private static void activate(Set<IAnimationPrimitive> activePrimitives, IAnimationPrimitive animationPrimitive) {
+        if (!activePrimitives.contains(animationPrimitive)) {
+            if (debug)
+                System.out.println("Animation activate: " + animationPrimitive);
+            animationPrimitive.activate();
+            activePrimitives.add(animationPrimitive);
+        }
+    }
+
+    private static void deactivate(Set<IAnimationPrimitive> activePrimitives, IAnimationPrimitive animationPrimitive) {
+        if (activePrimitives.contains(animationPrimitive)) {
+            if (debug)
+                System.out.println("Animation deactivate: " + animationPrimitive);
+            animationPrimitive.deactivate();
+            activePrimitives.remove(animationPrimitive);
+        }
+    }
+}
@@ -52,9 +52,13 @@ public class VectorFileAnimationPrimitiveProvider implements IAnimationPrimitive
                 for (int i = 0; i < runList.size(); i++) {
                     Run run = runList.get(i);
                     IDList idList = resultFileManager.getVectorsInFileRun(resultFileManager.getFileRun(resultFile, run));
-                    for (int j = 0; j < idList.size(); j++) {
-                        long id = idList.get(j);
-                        XYArray xyArray = VectorFileUtil.getDataOfVector(resultFileManager, id, true);
+                    long[] ids = new long[idList.size()];
+                    for (int j = 0; j < ids.length; j++)
+                        ids[j] = idList.get(j);
+                    XYArray[] xyArrays = VectorFileUtil.getDataOfVectors(resultFileManager, ids, true); // one pass over the file
+                    for (int j = 0; j < ids.length; j++) {
+                        long id = ids[j];
+                        XYArray xyArray = xyArrays[j];
                         String moduleName = resultFileManager.getItem(id).getModuleName();
                         String vectorName = resultFileManager.getItem(id).getName();
                         String name = moduleName + "/" + vectorName;
@@ -39,7 +39,6 @@ import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
-import org.eclipse.swt.graphics.Transform;
 import org.eclipse.swt.widgets.Composite;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.canvas.ITileCache.Tile;
@@ -50,15 +49,37 @@ import org.omnetpp.common.util.GraphicsUtils;
  * A scrollable canvas that supports caching of (part of) the drawing
  * in off-screen image buffers for performance improvement.
  *
+ * Missing tiles are rendered in the background: a paint request renders
+ * as many missing areas as fit into a short time slice, and covers the
+ * rest with a placeholder. The remaining areas are rendered later in
+ * further time slices, and are swapped in as they get finished. Pending
+ * areas that scroll out of the viewport are dropped. Rendering stays on
+ * the UI thread, because neither SWT graphics nor the native models behind
+ * the subclasses can be used from other threads.
+ *
  * @author andras
  */
 @SuppressWarnings("restriction")
 public abstract class CachingCanvas extends LargeScrollableCanvas {
 
+    private static final int RENDERING_TIME_SLICE_MILLIS = 50;
+    private static final int RENDERING_RETRY_DELAY_MILLIS = 250;
+
     private boolean doCaching = true;
     private ITileCache tileCache = new XYTileCache();
     private boolean debug = false;
 
+    // background rendering of missing tiles
+    private boolean backgroundRendering = true;
+    private boolean paintingToImage = false; // true while getImage() is in progress; it must not defer anything
+    private ArrayList<LargeRect> pendingAreas = new ArrayList<LargeRect>(); // virtual coordinates
+    private boolean renderingScheduled = false;
+    private Runnable renderPendingAreasRunnable = new Runnable() {
+        public void run() {
+            renderPendingAreas();
+        }
+    };
+
     /**
      * Constructor.
      */
@@ -101,6 +122,23 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
         clearCanvasCache();
     }
 
+    /**
+     * Returns whether missing tiles are allowed to be rendered in the background.
+     */
+    public boolean getBackgroundRendering() {
+        return backgroundRendering;
+    }
+
+    /**
+     * Turns on/off background rendering of missing tiles. When turned off,
+     * all missing tiles are rendered synchronously during paint.
+     */
+    public void setBackgroundRendering(boolean backgroundRendering) {
+        this.backgroundRendering = backgroundRendering;
+        if (!backgroundRendering)
+            pendingAreas.clear();
+    }
+
     /**
      * Copies the image of the chart to the clipboard.
      * Uses AWT functionality, because SWT does not support ImageTransfer yet.
@@ -177,8 +215,14 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
     public Image getImage(int width, int height) {
         Image image = new Image(getDisplay(), width, height);
         GC gc = new GC(image);
-        paint(gc);
-        gc.dispose();
+        paintingToImage = true;
+        try {
+            paint(gc);
+        }
+        finally {
+            paintingToImage = false;
+            gc.dispose();
+        }
         return image;
     }
 
@@ -221,35 +265,23 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
                 debugDrawTile(graphics, tile.rect, new Color(null,0,255,0));
             }
 
-            // draw missing tiles
+            // draw missing tiles; those that don't fit into the time slice are deferred
+            long startTime = System.currentTimeMillis();
             for (LargeRect lrect : missingAreas) {
                 Rectangle rect = virtualToCanvasRect(lrect);
                 Assert.isTrue(!rect.isEmpty()); // tile cache should not return empty rectangles
 
-                Graphics imageGraphics = null;
-                GC imageGC = null;
-                Transform transform = null;
-                Image image = new Image(getDisplay(), rect.width, rect.height);
-                try {
-                    imageGC = new GC(image);
-                    imageGraphics = createGraphics(imageGC);
-                    imageGraphics.translate(-rect.x, -rect.y);
-                    imageGraphics.setClip(new Rectangle(rect.x, rect.y, rect.width, rect.height));
-                    paintCachableLayer(imageGraphics);
+                if (backgroundRendering && !paintingToImage && System.currentTimeMillis() - startTime > RENDERING_TIME_SLICE_MILLIS) {
+                    paintPlaceholder(graphics, rect);
+                    scheduleRendering(lrect);
                 }
-                finally {
-                    if (imageGraphics != null)
-                        imageGraphics.dispose();
-                    if (transform != null)
-                        transform.dispose();
-                    if (imageGC != null)
-                        imageGC.dispose();
+                else {
+                    // draw the image on the screen, and also add it to the cache
+                    Image image = renderArea(lrect);
+                    graphics.drawImage(image, rect.x, rect.y);
+                    tileCache.add(lrect, image);
+                    debugDrawTile(graphics, lrect, new Color(null,255,0,0));
                 }
-
-                // draw the image on the screen, and also add it to the cache
-                graphics.drawImage(image, rect.x, rect.y);
-                tileCache.add(lrect, image);
-                debugDrawTile(graphics, lrect, new Color(null,255,0,0));
             }
 
             // paint items that we don't want to cache
@@ -258,6 +290,117 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
         }
     }
 
+    /**
+     * Renders the cachable layer of the given area (in virtual coordinates)
+     * into a new image.
+     */
+    private Image renderArea(LargeRect lrect) {
+        Rectangle rect = virtualToCanvasRect(lrect);
+        Image image = new Image(getDisplay(), rect.width, rect.height);
+        GC imageGC = null;
+        try {
+            imageGC = new GC(image);
+            Graphics imageGraphics = createGraphics(imageGC);
+            try {
+                imageGraphics.translate(-rect.x, -rect.y);
+                imageGraphics.setClip(new Rectangle(rect.x, rect.y, rect.width, rect.height));
+                paintCachableLayer(imageGraphics);
+            }
+            finally {
+                imageGraphics.dispose();
+            }
+        }
+        finally {
+            if (imageGC != null)
+                imageGC.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Fills an area whose rendering has been deferred. The default implementation
+     * fills the area with the background color.
+     */
+    protected void paintPlaceholder(Graphics graphics, Rectangle rect) {
+        graphics.setBackgroundColor(getBackground());
+        graphics.fillRectangle(rect);
+    }
+
+    private void scheduleRendering(LargeRect lrect) {
+        if (!pendingAreas.contains(lrect))
+            pendingAreas.add(lrect);
+        if (!renderingScheduled) {
+            renderingScheduled = true;
+            getDisplay().asyncExec(renderPendingAreasRunnable);
+        }
+    }
+
+    /**
+     * Renders deferred areas for one time slice, and redraws them on the screen.
+     * Reschedules itself while there are pending areas left; if the subclass
+     * cannot render at the moment, it retries after a delay.
+     */
+    private void renderPendingAreas() {
+        renderingScheduled = false;
+        if (isDisposed() || pendingAreas.isEmpty())
+            return;
+
+        final LargeRect viewport = canvasToVirtualRect(getViewportRectangle());
+        final ArrayList<Rectangle> damagedRects = new ArrayList<Rectangle>();
+        boolean rendered = runDeferredRendering(new Runnable() {
+            public void run() {
+                long startTime = System.currentTimeMillis();
+                while (!pendingAreas.isEmpty() && System.currentTimeMillis() - startTime <= RENDERING_TIME_SLICE_MILLIS) {
+                    LargeRect lrect = pendingAreas.remove(0);
+                    if (!lrect.intersects(viewport))
+                        continue; // scrolled out of view, cancel it
+
+                    // some tiles of the area might have been rendered in the meantime
+                    ArrayList<Tile> cachedTiles = new ArrayList<Tile>();
+                    ArrayList<LargeRect> missingAreas = new ArrayList<LargeRect>();
+                    tileCache.getTiles(lrect, getVirtualWidth(), getVirtualHeight(), cachedTiles, missingAreas);
+                    for (LargeRect missingArea : missingAreas) {
+                        tileCache.add(missingArea, renderArea(missingArea));
+                        damagedRects.add(virtualToCanvasRect(missingArea));
+                    }
+                }
+            }
+        });
+
+        for (Rectangle rect : damagedRects)
+            redraw(rect.x, rect.y, rect.width, rect.height, false);
+
+        if (!pendingAreas.isEmpty() && !renderingScheduled) {
+            renderingScheduled = true;
+            if (rendered)
+                getDisplay().asyncExec(renderPendingAreasRunnable);
+            else
+                getDisplay().timerExec(RENDERING_RETRY_DELAY_MILLIS, renderPendingAreasRunnable);
+        }
+    }
+
+    /**
+     * Runs the given code that renders deferred areas outside of paint().
+     * Subclasses that need to establish some context for paintCachableLayer()
+     * (the same as they do in paint()) should override this method. Returns
+     * false if the renderer was not run because rendering is not possible at
+     * the moment; the pending areas are then retried later. Subclasses in a state
+     * that they do not leave by themselves (e.g. after an error) should call
+     * cancelDeferredRendering() instead of returning false.
+     */
+    protected boolean runDeferredRendering(Runnable renderer) {
+        renderer.run();
+        return true;
+    }
+
+    /**
+     * Drops the areas waiting to be rendered in the background. Their tiles are
+     * still missing, so they get scheduled again when they are next painted.
+     */
+    protected void cancelDeferredRendering() {
+        pendingAreas.clear();
+    }
+
     /**
      * Paint directly on the graphics
      */
@@ -305,6 +448,7 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
      */
     public void clearCanvasCache() {
         tileCache.clear();
+        pendingAreas.clear();
         if (debug)
             Debug.println("canvas cache cleared");
     }
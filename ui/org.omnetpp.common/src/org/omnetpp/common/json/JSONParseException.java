@@ -0,0 +1,12 @@
+package org.omnetpp.common.json;
+
+/**
+ * Thrown by JSONPullParser on malformed input.
+ */
+public class JSONParseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public JSONParseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,380 @@
+package org.omnetpp.common.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental, pull-style JSON parser that reads directly from a Reader, and
+ * returns the document as a sequence of tokens. This allows large documents
+ * to be decoded into application objects without building an intermediate
+ * tree. Subtrees can still be read as Map/List trees with readValue(); these
+ * are the same as what JSONReader produces.
+ *
+ * Like JSONReader, the parser is lenient about commas and colons.
+ */
+public class JSONPullParser {
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        FIELD_NAME,
+        STRING,
+        NUMBER,
+        TRUE,
+        FALSE,
+        NULL,
+        END_DOCUMENT
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private Reader reader;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long bufferOffset; // input offset of buffer[0], for error messages
+
+    private boolean[] isObject = new boolean[16]; // per nesting level: object or array
+    private boolean[] expectKey = new boolean[16]; // per nesting level: whether next string is a field name
+    private int depth;
+
+    private Token token;
+    private StringBuilder text = new StringBuilder(); // text of the current STRING, FIELD_NAME or NUMBER token
+    private boolean isFloatingPoint;
+    private int numDigits;
+
+    public JSONPullParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    public JSONPullParser(String string) {
+        this(new StringReader(string));
+    }
+
+    /**
+     * Reads a complete document as a Map/List tree, the same way as JSONReader.
+     * Returns null for an empty document.
+     */
+    public static Object read(Reader reader) throws IOException {
+        JSONPullParser parser = new JSONPullParser(reader);
+        return parser.next() == Token.END_DOCUMENT ? null : parser.readValue();
+    }
+
+    /**
+     * Returns the current token.
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * Advances to the next token, and returns it.
+     */
+    public Token next() throws IOException {
+        int c = skipWhitespaceAndSeparators();
+        if (c == -1) {
+            if (depth != 0)
+                throw error("unexpected end of input");
+            return token = Token.END_DOCUMENT;
+        }
+        pos++;
+        switch (c) {
+            case '{':
+                push(true);
+                return token = Token.BEGIN_OBJECT;
+            case '}':
+                pop(true);
+                valueDone();
+                return token = Token.END_OBJECT;
+            case '[':
+                push(false);
+                return token = Token.BEGIN_ARRAY;
+            case ']':
+                pop(false);
+                valueDone();
+                return token = Token.END_ARRAY;
+            case '"':
+                readString();
+                if (depth > 0 && isObject[depth-1] && expectKey[depth-1]) {
+                    expectKey[depth-1] = false;
+                    return token = Token.FIELD_NAME;
+                }
+                valueDone();
+                return token = Token.STRING;
+            case 't':
+                expectLiteral("rue");
+                valueDone();
+                return token = Token.TRUE;
+            case 'f':
+                expectLiteral("alse");
+                valueDone();
+                return token = Token.FALSE;
+            case 'n':
+                expectLiteral("ull");
+                valueDone();
+                return token = Token.NULL;
+            default:
+                if (c != '-' && (c < '0' || c > '9'))
+                    throw error("unexpected character '" + (char)c + "'");
+                pos--;
+                readNumber();
+                valueDone();
+                return token = Token.NUMBER;
+        }
+    }
+
+    /**
+     * Returns the text of the current STRING or FIELD_NAME token, or the
+     * string form of the current NUMBER token; null for the NULL token.
+     */
+    public String getText() {
+        return token == Token.NULL ? null : text.toString();
+    }
+
+    /**
+     * Returns true if the text of the current token equals the given string.
+     * Useful for matching field names without allocating strings.
+     */
+    public boolean textEquals(String string) {
+        return string.contentEquals(text);
+    }
+
+    /**
+     * Returns the value of the current NUMBER token as a long.
+     */
+    public long getLong() {
+        if (isFloatingPoint || numDigits >= 19)
+            return (long) getDouble();
+        long value = 0;
+        int i = 0;
+        boolean negative = text.charAt(0) == '-';
+        if (negative)
+            i++;
+        for (int n = text.length(); i < n; i++)
+            value = value * 10 + (text.charAt(i) - '0');
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the value of the current NUMBER token as an int.
+     */
+    public int getInt() {
+        return (int) getLong();
+    }
+
+    /**
+     * Returns the value of the current NUMBER token as a double.
+     */
+    public double getDouble() {
+        return Double.parseDouble(text.toString());
+    }
+
+    /**
+     * Returns the value of the current NUMBER token as Long, Double, BigInteger
+     * or BigDecimal, the same way as JSONReader.
+     */
+    public Number getNumber() {
+        String s = text.toString();
+        return isFloatingPoint
+            ? (numDigits < 17) ? (Number)Double.valueOf(s) : new BigDecimal(s)
+            : (numDigits < 19) ? (Number)Long.valueOf(getLong()) : new BigInteger(s);
+    }
+
+    /**
+     * Reads the value that starts with the current token as a Map/List tree.
+     * On return, the current token is the last token of the value.
+     */
+    public Object readValue() throws IOException {
+        switch (token) {
+            case BEGIN_OBJECT: {
+                Map<Object, Object> map = new HashMap<Object, Object>();
+                while (next() == Token.FIELD_NAME) {
+                    String key = text.toString();
+                    next();
+                    map.put(key, readValue());
+                }
+                if (token != Token.END_OBJECT)
+                    throw error("field name expected");
+                return map;
+            }
+            case BEGIN_ARRAY: {
+                List<Object> list = new ArrayList<Object>();
+                while (next() != Token.END_ARRAY)
+                    list.add(readValue());
+                return list;
+            }
+            case STRING: return text.toString();
+            case NUMBER: return getNumber();
+            case TRUE: return Boolean.TRUE;
+            case FALSE: return Boolean.FALSE;
+            case NULL: return null;
+            default: throw error("value expected");
+        }
+    }
+
+    /**
+     * Skips the value that starts with the current token. On return, the current
+     * token is the last token of the value.
+     */
+    public void skipValue() throws IOException {
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+            int targetDepth = depth - 1;
+            while (depth > targetDepth)
+                next();
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == isObject.length) {
+            isObject = Arrays.copyOf(isObject, 2*depth);
+            expectKey = Arrays.copyOf(expectKey, 2*depth);
+        }
+        isObject[depth] = object;
+        expectKey[depth] = object;
+        depth++;
+    }
+
+    private void pop(boolean object) {
+        if (depth == 0 || isObject[depth-1] != object)
+            throw error("unexpected '" + (object ? '}' : ']') + "'");
+        depth--;
+    }
+
+    private void valueDone() {
+        if (depth > 0 && isObject[depth-1])
+            expectKey[depth-1] = true;
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        pos = limit = 0;
+        int n;
+        while ((n = reader.read(buffer, 0, buffer.length)) == 0)
+            ;
+        if (n == -1)
+            return false;
+        limit = n;
+        return true;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill())
+            return -1;
+        return buffer[pos];
+    }
+
+    private char readChar() throws IOException {
+        if (pos == limit && !fill())
+            throw error("unexpected end of input");
+        return buffer[pos++];
+    }
+
+    private int skipWhitespaceAndSeparators() throws IOException {
+        while (true) {
+            if (pos == limit && !fill())
+                return -1;
+            char c = buffer[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ',' || c == ':')
+                pos++;
+            else
+                return c;
+        }
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++)
+            if (readChar() != rest.charAt(i))
+                throw error("invalid literal");
+    }
+
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            if (pos == limit && !fill())
+                throw error("unterminated string");
+            int start = pos;
+            while (pos < limit && buffer[pos] != '"' && buffer[pos] != '\\')
+                pos++;
+            text.append(buffer, start, pos - start);
+            if (pos == limit)
+                continue;
+            if (buffer[pos++] == '"')
+                return;
+            char c = readChar();
+            switch (c) {
+                case '"': case '\\': case '/': text.append(c); break;
+                case 'b': text.append('\b'); break;
+                case 'f': text.append('\f'); break;
+                case 'n': text.append('\n'); break;
+                case 'r': text.append('\r'); break;
+                case 't': text.append('\t'); break;
+                case 'u': text.append(readUnicode()); break;
+                default: break; // like JSONReader, ignore invalid escapes
+            }
+        }
+    }
+
+    private char readUnicode() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; ++i) {
+            char c = readChar();
+            if (c >= '0' && c <= '9')
+                value = (value << 4) + c - '0';
+            else if (c >= 'a' && c <= 'f')
+                value = (value << 4) + (c - 'a') + 10;
+            else if (c >= 'A' && c <= 'F')
+                value = (value << 4) + (c - 'A') + 10;
+            else
+                throw error("invalid unicode escape");
+        }
+        return (char) value;
+    }
+
+    private void readNumber() throws IOException {
+        text.setLength(0);
+        isFloatingPoint = false;
+        numDigits = 0;
+        if (peek() == '-')
+            text.append(readChar());
+        numDigits += readDigits();
+        if (peek() == '.') {
+            text.append(readChar());
+            numDigits += readDigits();
+            isFloatingPoint = true;
+        }
+        int c = peek();
+        if (c == 'e' || c == 'E') {
+            text.append(readChar());
+            c = peek();
+            if (c == '+' || c == '-')
+                text.append(readChar());
+            readDigits();
+            isFloatingPoint = true;
+        }
+        if (numDigits == 0)
+            throw error("invalid number");
+    }
+
+    private int readDigits() throws IOException {
+        int count = 0;
+        for (int c = peek(); c >= '0' && c <= '9'; c = peek()) {
+            text.append((char)c);
+            pos++;
+            count++;
+        }
+        return count;
+    }
+
+    private JSONParseException error(String message) {
+        return new JSONParseException("JSON parse error at offset " + (bufferOffset + pos) + ": " + message);
+    }
+}
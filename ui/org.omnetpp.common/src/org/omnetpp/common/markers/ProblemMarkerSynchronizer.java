@@ -116,9 +116,10 @@ public class ProblemMarkerSynchronizer {
      * Include the given file (or other resource) in the synchronization process.
      * This is not needed when you call addMarker() for the file; however if there's
      * no addMarker() for that file, that file will be ignored (existing markers left
-     * untouched) unless you register them with register().
+     * untouched) unless you register them with register(). May be called from
+     * several threads concurrently.
      */
-    public void register(IResource file) {
+    public synchronized void register(IResource file) {
         Assert.isNotNull(file);
         if (!markerTable.containsKey(file))
             markerTable.put(file, new ArrayList<MarkerData>());
@@ -133,9 +134,9 @@ public class ProblemMarkerSynchronizer {
 
     /**
      * Stores data for a marker to be added to the given file (or other resource).
-     * Implies registerFile().
+     * Implies registerFile(). May be called from several threads concurrently.
      */
-    public void addMarker(IResource file, String markerType, Map<String, Object> markerAttrs) {
+    public synchronized void addMarker(IResource file, String markerType, Map<String, Object> markerAttrs) {
         register(file);
 
         HashMap<String, Object> markerAttrsHashMap = markerAttrs.getClass().equals(HashMap.class) ?
@@ -0,0 +1,437 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.common.util;
+
+import org.omnetpp.common.engine.BigDecimal;
+
+/**
+ * Immutable pure Java counterpart of the native BigDecimal (simtime_t in the
+ * IDE): a 64-bit mantissa and a decimal scale exponent in the [-18,0] range,
+ * normalized the same way, so parsing, formatting, arithmetic and comparison
+ * give the same results as the native class without going through JNI. Use
+ * valueOf(BigDecimal) and toBigDecimal() to convert at the boundary of native
+ * APIs. Special values (NaN, +-Infinity) use the scale Integer.MAX_VALUE;
+ * the native Nil value corresponds to null.
+ */
+public final class SimulationTime implements Comparable<SimulationTime> {
+    private static final int MIN_SCALE = -18;
+    private static final int MAX_SCALE = 0;
+    private static final int INT64_MAX_DIGITS = 19;
+    private static final int SPECIAL_SCALE = Integer.MAX_VALUE;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final double[] NEGATIVE_POWERS_OF_TEN = new double[21];
+
+    static {
+        long power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++, power *= 10)
+            POWERS_OF_TEN[i] = power;
+        double negativePower = 1;
+        for (int i = 0; i < NEGATIVE_POWERS_OF_TEN.length; i++, negativePower /= 10.0)
+            NEGATIVE_POWERS_OF_TEN[i] = negativePower;
+    }
+
+    public static final SimulationTime ZERO = new SimulationTime(0, 0);
+    public static final SimulationTime NaN = new SimulationTime(0, SPECIAL_SCALE);
+    public static final SimulationTime POSITIVE_INFINITY = new SimulationTime(1, SPECIAL_SCALE);
+    public static final SimulationTime NEGATIVE_INFINITY = new SimulationTime(-1, SPECIAL_SCALE);
+
+    private final long intVal;  // the value is intVal * 10^scale
+    private final int scale;
+
+    private SimulationTime(long intVal, int scale) {
+        this.intVal = intVal;
+        this.scale = scale;
+    }
+
+    /**
+     * Returns intVal * 10^scale, normalized. Long.MIN_VALUE is not a valid
+     * mantissa (it has no positive counterpart), and is reserved as an
+     * overflow marker in the arithmetic.
+     *
+     * @throws ArithmeticException if the value cannot be represented
+     */
+    public static SimulationTime valueOf(long intVal, int scale) {
+        if (intVal == 0)
+            return ZERO;
+        // underflow
+        if (scale < MIN_SCALE - INT64_MAX_DIGITS)
+            return ZERO;
+        if (scale > MAX_SCALE + INT64_MAX_DIGITS)
+            throw new ArithmeticException("SimulationTime: Scale " + scale + " is too big");
+        // transform scale between MIN_SCALE and MAX_SCALE
+        while (scale < MIN_SCALE) {
+            intVal /= 10;
+            scale++;
+            if (intVal == 0)
+                return ZERO;
+        }
+        while (scale > MAX_SCALE) {
+            if (intVal > Long.MAX_VALUE / 10 || intVal < -(Long.MAX_VALUE / 10))
+                throw new ArithmeticException("SimulationTime: Arithmetic overflow");
+            intVal *= 10;
+            scale--;
+        }
+        // strip trailing zeros
+        while (intVal % 10 == 0 && scale < MAX_SCALE) {
+            intVal /= 10;
+            scale++;
+        }
+        if (intVal == Long.MIN_VALUE)
+            throw new ArithmeticException("SimulationTime: Arithmetic overflow");
+        return new SimulationTime(intVal, scale);
+    }
+
+    /**
+     * Converts a double to simulation time the same way as the native class does.
+     */
+    public static SimulationTime valueOf(double d) {
+        if (Double.isNaN(d))
+            return NaN;
+        else if (d == Double.POSITIVE_INFINITY)
+            return POSITIVE_INFINITY;
+        else if (d == Double.NEGATIVE_INFINITY)
+            return NEGATIVE_INFINITY;
+        else if (Math.abs(d) < Double.MIN_NORMAL)
+            return ZERO; // would underflow anyway
+
+        int sign = 1;
+        if (d < 0.0) {
+            sign = -1;
+            d = -d;
+        }
+        // d = mantissa * 2 ^ exponent, 0.5 <= mantissa < 1 (like frexp())
+        int exponent = Math.getExponent(d) + 1;
+        double mantissa = Math.scalb(d, -exponent);
+        long intVal = (long)Math.scalb(mantissa, 52); // d = intVal * 2 ^ exponent
+        exponent -= 52;
+        while ((intVal & 1) == 0) {
+            intVal >>= 1;
+            exponent++;
+        }
+        int scale;
+        if (exponent < 0) {
+            scale = exponent;
+            for (int i = exponent; i < 0; ++i) {
+                if (intVal <= Long.MAX_VALUE / 5)
+                    intVal *= 5;
+                else {
+                    intVal /= 2;
+                    scale++;
+                }
+            }
+        }
+        else {
+            scale = 0;
+            for (int i = 0; i < exponent; ++i) {
+                if (intVal <= Long.MAX_VALUE / 2)
+                    intVal *= 2;
+                else {
+                    intVal /= 5;
+                    scale++;
+                }
+            }
+        }
+        return valueOf(sign * intVal, scale);
+    }
+
+    /**
+     * Converts a native BigDecimal; returns null for null and for Nil.
+     */
+    public static SimulationTime valueOf(BigDecimal value) {
+        if (value == null)
+            return null;
+        long intVal = value.getIntValue();
+        int scale = value.getScale();
+        if (scale == SPECIAL_SCALE && intVal == Long.MAX_VALUE)
+            return null; // Nil (BigDecimal.isNil() is not exposed to Java)
+        if (intVal == Long.MIN_VALUE)
+            throw new ArithmeticException("SimulationTime: Arithmetic overflow");
+        return scale == SPECIAL_SCALE ? (intVal == 0 ? NaN : intVal > 0 ? POSITIVE_INFINITY : NEGATIVE_INFINITY) : new SimulationTime(intVal, scale);
+    }
+
+    /**
+     * Converts the value to a native BigDecimal, for passing it to native code.
+     */
+    public BigDecimal toBigDecimal() {
+        if (isNaN())
+            return BigDecimal.getNaN();
+        else if (this == POSITIVE_INFINITY)
+            return BigDecimal.getPositiveInfinity();
+        else if (this == NEGATIVE_INFINITY)
+            return BigDecimal.getNegativeInfinity();
+        else
+            return new BigDecimal(intVal, scale);
+    }
+
+    /**
+     * Converts the value to a java.math.BigDecimal. Special values are not allowed.
+     */
+    public java.math.BigDecimal toJavaBigDecimal() {
+        if (isSpecial())
+            throw new ArithmeticException("SimulationTime: Cannot convert " + this + " to java.math.BigDecimal");
+        return java.math.BigDecimal.valueOf(intVal, -scale);
+    }
+
+    /**
+     * Parses the string in the same format as the native class, e.g. "1.5",
+     * "-0.001", "nan", "inf", "-infinity".
+     *
+     * @throws NumberFormatException on syntax errors and overflow
+     */
+    public static SimulationTime parse(String s) {
+        int length = s.length();
+        int p = 0;
+        int sign = 1;
+        // check for slow path
+        if (p == length || !isDigit(s.charAt(p))) {
+            // skip leading spaces
+            while (p < length && Character.isWhitespace(s.charAt(p)))
+                ++p;
+            // optional signs
+            if (p < length && s.charAt(p) == '-') {
+                sign = -1;
+                ++p;
+            }
+            else if (p < length && s.charAt(p) == '+')
+                ++p;
+            // parse special numbers
+            if (p < length && Character.isLetter(s.charAt(p))) {
+                String rest = s.substring(p);
+                if (rest.equalsIgnoreCase("nan"))
+                    return NaN;
+                else if (rest.equalsIgnoreCase("inf") || rest.equalsIgnoreCase("infinity"))
+                    return sign > 0 ? POSITIVE_INFINITY : NEGATIVE_INFINITY;
+                else
+                    throw new NumberFormatException("SimulationTime: Invalid number syntax '" + s + "'");
+            }
+        }
+        if (s.startsWith("1.#", p)) {
+            String rest = s.substring(p + 3);
+            if (rest.equalsIgnoreCase("ind"))
+                return NaN;
+            else if (rest.equalsIgnoreCase("inf"))
+                return sign > 0 ? POSITIVE_INFINITY : NEGATIVE_INFINITY;
+        }
+
+        long intVal = 0;
+        int digits = 0;
+        int scale = 0;
+        // digits before decimal
+        while (p < length && isDigit(s.charAt(p))) {
+            intVal = appendDigit(intVal, s.charAt(p++), s);
+            digits++;
+        }
+        if (digits == 0 && (p == length || s.charAt(p) != '.'))
+            throw new NumberFormatException("SimulationTime: Invalid number syntax '" + s + "'");
+        // digits after decimal
+        if (p < length && s.charAt(p) == '.') {
+            p++;
+            while (p < length && isDigit(s.charAt(p))) {
+                intVal = appendDigit(intVal, s.charAt(p++), s);
+                scale--;
+            }
+        }
+        if (p != length)
+            throw new NumberFormatException("SimulationTime: Invalid number syntax '" + s + "'");
+        try {
+            return valueOf(sign * intVal, scale);
+        }
+        catch (ArithmeticException e) {
+            throw new NumberFormatException(e.getMessage());
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static long appendDigit(long intVal, char digit, String s) {
+        if (intVal > Long.MAX_VALUE / 10)
+            throw new NumberFormatException("SimulationTime: Arithmetic overflow while parsing '" + s + "'");
+        intVal = intVal * 10 + (digit - '0');
+        if (intVal < 0)
+            throw new NumberFormatException("SimulationTime: Arithmetic overflow while parsing '" + s + "'");
+        return intVal;
+    }
+
+    public long getIntValue() {
+        return intVal;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public boolean isSpecial() {
+        return scale == SPECIAL_SCALE;
+    }
+
+    public boolean isNaN() {
+        return scale == SPECIAL_SCALE && intVal == 0;
+    }
+
+    public boolean isInfinite() {
+        return scale == SPECIAL_SCALE && intVal != 0;
+    }
+
+    public int signum() {
+        return Long.signum(intVal);
+    }
+
+    public double doubleValue() {
+        if (isSpecial())
+            return isNaN() ? Double.NaN : intVal > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        return (double)intVal * NEGATIVE_POWERS_OF_TEN[-scale];
+    }
+
+    /**
+     * Exact if the result can be represented, otherwise computed in double
+     * precision (like in the native class).
+     */
+    public SimulationTime add(SimulationTime other) {
+        if (!isSpecial() && !other.isSpecial()) {
+            int minScale = Math.min(scale, other.scale);
+            long xv = scaleUp(intVal, scale - minScale);
+            long yv = scaleUp(other.intVal, other.scale - minScale);
+            if (xv != Long.MIN_VALUE && yv != Long.MIN_VALUE) {
+                long sum = xv + yv;
+                if ((((xv ^ yv) < 0) || ((sum ^ yv) >= 0)) && sum != Long.MIN_VALUE)
+                    return valueOf(sum, minScale);
+            }
+        }
+        return valueOf(doubleValue() + other.doubleValue());
+    }
+
+    /**
+     * Exact if the result can be represented, otherwise computed in double
+     * precision (like in the native class).
+     */
+    public SimulationTime subtract(SimulationTime other) {
+        if (!isSpecial() && !other.isSpecial()) {
+            int minScale = Math.min(scale, other.scale);
+            long xv = scaleUp(intVal, scale - minScale);
+            long yv = scaleUp(other.intVal, other.scale - minScale);
+            if (xv != Long.MIN_VALUE && yv != Long.MIN_VALUE) {
+                long difference = xv - yv;
+                if ((((xv ^ yv) >= 0) || ((difference ^ yv) < 0)) && difference != Long.MIN_VALUE)
+                    return valueOf(difference, minScale);
+            }
+        }
+        return valueOf(doubleValue() - other.doubleValue());
+    }
+
+    /**
+     * Returns value * 10^exponent, or Long.MIN_VALUE on overflow.
+     */
+    private static long scaleUp(long value, int exponent) {
+        if (exponent == 0)
+            return value;
+        else if (exponent >= POWERS_OF_TEN.length)
+            return Long.MIN_VALUE;
+        long multiplier = POWERS_OF_TEN[exponent];
+        long result = value * multiplier;
+        return result / multiplier == value ? result : Long.MIN_VALUE;
+    }
+
+    /**
+     * Comparison compatible with the native operator<. NaN is considered
+     * greater than any other value (including positive infinity) and equal
+     * to itself, like in Double.compareTo().
+     */
+    public int compareTo(SimulationTime other) {
+        if (intVal == other.intVal && scale == other.scale)
+            return 0;
+        else if (isSpecial() || other.isSpecial()) {
+            if (isNaN())
+                return 1;
+            else if (other.isNaN())
+                return -1;
+            else if (isSpecial())
+                return intVal > 0 ? 1 : -1;
+            else
+                return other.intVal > 0 ? -1 : 1;
+        }
+        else if (scale == other.scale)
+            return intVal < other.intVal ? -1 : 1;
+        int sign = Long.signum(intVal);
+        int otherSign = Long.signum(other.intVal);
+        if (sign != otherSign)
+            return sign < otherSign ? -1 : 1;
+        // same sign, different scales: bring both to the smaller scale
+        int minScale = Math.min(scale, other.scale);
+        long v = scaleUp(intVal, scale - minScale);
+        if (v == Long.MIN_VALUE)
+            return sign; // overflow: |this| is larger
+        long otherV = scaleUp(other.intVal, other.scale - minScale);
+        if (otherV == Long.MIN_VALUE)
+            return -sign;
+        return v < otherV ? -1 : v > otherV ? 1 : 0;
+    }
+
+    public boolean less(SimulationTime other) {
+        return !isNaN() && !other.isNaN() && compareTo(other) < 0;
+    }
+
+    public boolean greater(SimulationTime other) {
+        return !isNaN() && !other.isNaN() && compareTo(other) > 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        else if (!(other instanceof SimulationTime))
+            return false;
+        SimulationTime otherTime = (SimulationTime)other;
+        return intVal == otherTime.intVal && scale == otherTime.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int)(intVal ^ (intVal >>> 32)) * 31 + scale;
+    }
+
+    /**
+     * Formats the value in the same format as the native class.
+     */
+    @Override
+    public String toString() {
+        if (isSpecial())
+            return isNaN() ? "NaN" : intVal > 0 ? "+Inf" : "-Inf";
+        if (intVal == 0)
+            return "0";
+        char[] buffer = new char[64];
+        int p = buffer.length;
+        boolean negative = intVal < 0;
+        long value = Math.abs(intVal); // cannot be Long.MIN_VALUE: rejected by valueOf()
+        boolean skipZeros = true;
+        int decimalPlace = scale;
+        do {
+            long rest = value / 10;
+            int digit = (int)(value - 10 * rest);
+            if (skipZeros && (digit != 0 || decimalPlace >= 0))
+                skipZeros = false;
+            if (decimalPlace++ == 0 && p != buffer.length)
+                buffer[--p] = '.';
+            if (!skipZeros)
+                buffer[--p] = (char)('0' + digit);
+            value = rest;
+        } while (value != 0);
+        // add leading zeros, decimal point, etc if needed
+        if (decimalPlace <= 0) {
+            while (decimalPlace++ < 0)
+                buffer[--p] = '0';
+            buffer[--p] = '.';
+            buffer[--p] = '0';
+        }
+        if (negative)
+            buffer[--p] = '-';
+        return new String(buffer, p, buffer.length - p);
+    }
+}
@@ -7,16 +7,19 @@
 
 package org.omnetpp.common.util;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.omnetpp.common.Debug;
 import org.omnetpp.scave.engine.DataflowManager;
 import org.omnetpp.scave.engine.Node;
 import org.omnetpp.scave.engine.NodeType;
 import org.omnetpp.scave.engine.NodeTypeRegistry;
 import org.omnetpp.scave.engine.Port;
-import org.omnetpp.scave.engine.ResultFile;
 import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engine.StringMap;
 import org.omnetpp.scave.engine.VectorFileReaderNode;
+import org.omnetpp.scave.engine.VectorResult;
 import org.omnetpp.scave.engine.XYArray;
 
 
@@ -39,36 +42,65 @@ public class VectorFileUtil {
      * Returns data from an output vector given with its ID.
      */
     public static XYArray getDataOfVector(ResultFileManager resultfileManager, long id, boolean includeEventNumbers) {
-        // we'll build a data-flow network consisting of a source and a sink node, and run it.
-        DataflowManager dataflowManager = new DataflowManager();
+        return getDataOfVectors(resultfileManager, new long[] {id}, includeEventNumbers)[0];
+    }
+
+    /**
+     * Returns data from the output vectors given with their IDs, in the same order.
+     * Vectors are read in a single data-flow network, with one reader node per file,
+     * so each vector file is read only once.
+     */
+    public static XYArray[] getDataOfVectors(ResultFileManager resultfileManager, long[] ids, boolean includeEventNumbers) {
+        XYArray[] result = new XYArray[ids.length];
+        if (ids.length == 0)
+            return result; // note: DataflowManager cannot execute a network without sinks
 
-        // create a reader node for the given vector id
-        ResultFile file = resultfileManager.getVector(id).getFileRun().getFile();
-        StringMap attrs = new StringMap();
-        attrs.set("filename", file.getFileSystemFilePath());
-        VectorFileReaderNode readerNode = VectorFileReaderNode.cast(createNode(dataflowManager, "vectorfilereader", attrs));
-        Port port = readerNode.addVector(resultfileManager.getVector(id));
-
-        // and an array builder as sink
-        StringMap stringMap = new StringMap();
-        if (includeEventNumbers)
-            stringMap.set("collecteventnumbers", "true");
-        Node arrayBuilderNode = createNode(dataflowManager, "arraybuilder", stringMap);
-        dataflowManager.connect(port, arrayBuilderNode.getNodeType().getPort(arrayBuilderNode, "in"));
-
-        // run the data-flow network
-        long startTime = System.currentTimeMillis();
-        XYArray result;
+        // we'll build a data-flow network consisting of a reader node for each file,
+        // and an array builder as sink for each vector, and run it.
+        DataflowManager dataflowManager = new DataflowManager();
         try {
+            Map<String,VectorFileReaderNode> readerNodes = new HashMap<String,VectorFileReaderNode>();
+            Map<Long,Node> arrayBuilderNodes = new HashMap<Long,Node>();
+            for (long id : ids) {
+                if (arrayBuilderNodes.containsKey(id))
+                    continue;
+
+                // create a reader node for the file of the vector, or reuse the one already created
+                VectorResult vector = resultfileManager.getVector(id);
+                String fileName = vector.getFileRun().getFile().getFileSystemFilePath();
+                VectorFileReaderNode readerNode = readerNodes.get(fileName);
+                if (readerNode == null) {
+                    StringMap attrs = new StringMap();
+                    attrs.set("filename", fileName);
+                    readerNode = VectorFileReaderNode.cast(createNode(dataflowManager, "vectorfilereader", attrs));
+                    readerNodes.put(fileName, readerNode);
+                }
+                Port port = readerNode.addVector(vector); // note: connect before adding the next port, as this object becomes invalid
+
+                // and an array builder as sink
+                StringMap stringMap = new StringMap();
+                if (includeEventNumbers)
+                    stringMap.set("collecteventnumbers", "true");
+                Node arrayBuilderNode = createNode(dataflowManager, "arraybuilder", stringMap);
+                dataflowManager.connect(port, arrayBuilderNode.getNodeType().getPort(arrayBuilderNode, "in"));
+                arrayBuilderNodes.put(id, arrayBuilderNode);
+            }
+
+            // run the data-flow network
+            long startTime = System.currentTimeMillis();
             dataflowManager.execute();
-            result = arrayBuilderNode.getArray();
+            Debug.println("data-flow network: "+(System.currentTimeMillis()-startTime)+" ms, " + arrayBuilderNodes.size() + " vectors from " + readerNodes.size() + " files");
+
+            // collect the arrays (getArray() transfers ownership, so call it once per node)
+            Map<Long,XYArray> arrays = new HashMap<Long,XYArray>();
+            for (Map.Entry<Long,Node> entry : arrayBuilderNodes.entrySet())
+                arrays.put(entry.getKey(), entry.getValue().getArray());
+            for (int i = 0; i < ids.length; i++)
+                result[i] = arrays.get(ids[i]);
         }
         finally {
-            dataflowManager.delete(); // close vector file
+            dataflowManager.delete(); // close vector files
         }
-        Debug.println("data-flow network: "+(System.currentTimeMillis()-startTime)+" ms");
-
-        // and return the array
         return result;
     }
 
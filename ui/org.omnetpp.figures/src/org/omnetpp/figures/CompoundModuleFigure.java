@@ -277,6 +277,13 @@ public class CompoundModuleFigure extends LayeredPane implements IAnchorBounds,
         this.unit = unit;
     }
 
+    /**
+     * Sets the NED type of the module; it is used for caching the layout.
+     */
+    public void setNedTypeName(String nedTypeName) {
+        layouter.setNedTypeName(nedTypeName);
+    }
+
     public void changeLayout() {
         newSeed = seed + 1;
         if (newSeed < 0)
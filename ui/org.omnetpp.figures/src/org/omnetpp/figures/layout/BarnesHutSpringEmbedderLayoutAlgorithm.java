@@ -0,0 +1,275 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.figures.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.Assert;
+
+/**
+ * Spring Embedder that computes node repulsion with the Barnes-Hut
+ * approximation, so that an iteration costs O(n log n) instead of O(n^2).
+ * Meant for compound modules with hundreds or thousands of submodules.
+ *
+ * Nodes are put into quadtrees (one per connected component, and one for
+ * all nodes), and the repulsion of a far-away cell is approximated with that
+ * of its total "mass" placed at its center of mass. A cell counts as far if
+ * its size divided by the distance is less than theta; theta=0 gives the same
+ * forces as BasicSpringEmbedderLayoutAlgorithm. Repulsion between nodes of
+ * different components only acts at short distance (see the base class),
+ * so it is computed exactly, by visiting the nearby cells of the quadtree
+ * that contains all nodes.
+ */
+public class BarnesHutSpringEmbedderLayoutAlgorithm extends BasicSpringEmbedderLayoutAlgorithm {
+    // repulsion cutoff distances, the same as in BasicSpringEmbedderLayoutAlgorithm
+    private static final double SAME_COLOR_CUTOFF_SQ = 2000*2000;
+    private static final double OTHER_COLOR_CUTOFF_SQ = 100*100;
+
+    private static final int LEAF_CAPACITY = 4;  // max number of nodes in a leaf, unless at MAX_DEPTH
+    private static final int MAX_DEPTH = 24;  // limits subdivision when many nodes are at the same position
+
+    static class Cell {
+        double x1, y1, size;  // the square area covered by the cell
+        int count;            // number of nodes in the cell
+        double cx, cy;        // center of mass of the nodes
+        Cell[] children;      // 4 quadrants, or null for leaves
+        Node[] nodes;         // leaves only: the nodes in the cell
+    }
+
+    private double theta = 0.8;
+
+    private Node[][] nodesByColor;  // nodes grouped by color, filled in by doColoring()
+
+    private double fx, fy;  // force accumulators for the node being processed
+
+    /**
+     * Constructor
+     */
+    public BarnesHutSpringEmbedderLayoutAlgorithm() {
+    }
+
+    /**
+     * Sets the accuracy of the approximation: a cell of the quadtree is treated as
+     * a single body if its size divided by its distance is less than theta.
+     * Zero means exact calculation; larger values are faster but less accurate.
+     */
+    public void setTheta(double theta) {
+        Assert.isTrue(theta >= 0);
+        this.theta = theta;
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+
+    @Override
+    protected void doColoring() {
+        super.doColoring();
+
+        int numColors = 0;
+        for (Node n : nodes)
+            numColors = Math.max(numColors, n.color + 1);
+        List<List<Node>> groups = new ArrayList<List<Node>>(numColors);
+        for (int i = 0; i < numColors; i++)
+            groups.add(new ArrayList<Node>());
+        for (Node n : nodes)
+            groups.get(n.color).add(n);
+        nodesByColor = new Node[numColors][];
+        for (int i = 0; i < numColors; i++)
+            nodesByColor[i] = groups.get(i).toArray(new Node[0]);
+    }
+
+    @Override
+    protected void addRepulsiveForces() {
+        // a quadtree for each connected component, for the long-range repulsion
+        // within the component (single-node components exert no such force)
+        Cell[] colorTrees = new Cell[nodesByColor.length];
+        for (int i = 0; i < nodesByColor.length; i++)
+            if (nodesByColor[i].length > 1)
+                colorTrees[i] = buildTree(nodesByColor[i]);
+
+        // a quadtree for all nodes, for the short-range repulsion between components
+        Cell tree = nodesByColor.length > 1 ? buildTree(nodes.toArray(new Node[0])) : null;
+
+        for (Node n : nodes)
+        {
+            if (n.fixed)
+                continue;
+
+            fx = 0;
+            fy = 0;
+            if (colorTrees[n.color] != null)
+                addSameColorForces(colorTrees[n.color], n);
+            if (tree != null)
+                addOtherColorForces(tree, n);
+
+            n.dx += repulsiveForce * fx;
+            n.dy += repulsiveForce * fy;
+        }
+    }
+
+    private static Cell buildTree(Node[] nodes) {
+        double x1 = Double.POSITIVE_INFINITY, y1 = Double.POSITIVE_INFINITY;
+        double x2 = Double.NEGATIVE_INFINITY, y2 = Double.NEGATIVE_INFINITY;
+        for (Node n : nodes) {
+            x1 = Math.min(x1, n.x);
+            y1 = Math.min(y1, n.y);
+            x2 = Math.max(x2, n.x);
+            y2 = Math.max(y2, n.y);
+        }
+
+        Cell root = new Cell();
+        root.x1 = x1;
+        root.y1 = y1;
+        root.size = Math.max(x2 - x1, y2 - y1) + 1;
+        for (Node n : nodes)
+            insert(root, n, 0);
+        computeCenterOfMass(root);
+        return root;
+    }
+
+    private static void insert(Cell cell, Node n, int depth) {
+        cell.count++;
+        if (cell.children != null) {
+            insert(cell.children[getQuadrant(cell, n)], n, depth + 1);
+        }
+        else if (cell.count <= LEAF_CAPACITY || depth >= MAX_DEPTH) {
+            if (cell.nodes == null)
+                cell.nodes = new Node[LEAF_CAPACITY];
+            else if (cell.count > cell.nodes.length) {
+                Node[] tmp = new Node[2 * cell.nodes.length];
+                System.arraycopy(cell.nodes, 0, tmp, 0, cell.nodes.length);
+                cell.nodes = tmp;
+            }
+            cell.nodes[cell.count - 1] = n;
+        }
+        else {
+            // split the leaf, and move its nodes into the quadrants
+            double half = cell.size / 2;
+            cell.children = new Cell[4];
+            for (int i = 0; i < 4; i++) {
+                Cell child = new Cell();
+                child.x1 = cell.x1 + ((i & 1) == 0 ? 0 : half);
+                child.y1 = cell.y1 + ((i & 2) == 0 ? 0 : half);
+                child.size = half;
+                cell.children[i] = child;
+            }
+            for (int i = 0; i < cell.count - 1; i++)
+                insert(cell.children[getQuadrant(cell, cell.nodes[i])], cell.nodes[i], depth + 1);
+            cell.nodes = null;
+            insert(cell.children[getQuadrant(cell, n)], n, depth + 1);
+        }
+    }
+
+    private static int getQuadrant(Cell cell, Node n) {
+        double half = cell.size / 2;
+        return (n.x < cell.x1 + half ? 0 : 1) + (n.y < cell.y1 + half ? 0 : 2);
+    }
+
+    private static void computeCenterOfMass(Cell cell) {
+        double sx = 0, sy = 0;
+        if (cell.children == null) {
+            for (int i = 0; i < cell.count; i++) {
+                sx += cell.nodes[i].x;
+                sy += cell.nodes[i].y;
+            }
+        }
+        else {
+            for (Cell child : cell.children) {
+                if (child.count != 0) {
+                    computeCenterOfMass(child);
+                    sx += child.count * child.cx;
+                    sy += child.count * child.cy;
+                }
+            }
+        }
+        cell.cx = sx / cell.count;
+        cell.cy = sy / cell.count;
+    }
+
+    /**
+     * Returns the square of the distance between the node and the area of the cell.
+     */
+    private static double getDistanceSquare(Cell cell, Node n) {
+        double dx = Math.max(0, Math.max(cell.x1 - n.x, n.x - (cell.x1 + cell.size)));
+        double dy = Math.max(0, Math.max(cell.y1 - n.y, n.y - (cell.y1 + cell.size)));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Adds the repulsion of the nodes in the cell, all of the same color as n.
+     */
+    private void addSameColorForces(Cell cell, Node n) {
+        if (cell.children == null) {
+            for (int i = 0; i < cell.count; i++)
+                if (cell.nodes[i] != n)
+                    addForce(n, cell.nodes[i], SAME_COLOR_CUTOFF_SQ);
+            return;
+        }
+
+        double distanceSquare = getDistanceSquare(cell, n);
+        if (distanceSquare > SAME_COLOR_CUTOFF_SQ)
+            return;  // all nodes are too far to repulse
+
+        double vx = n.x - cell.cx;
+        double vy = n.y - cell.cy;
+        double lensq = vx * vx + vy * vy;
+        if (distanceSquare > 0 && lensq > 1.0 && cell.size * cell.size < theta * theta * lensq) {
+            // far enough: treat the cell as a single body
+            fx += cell.count * vx / lensq;
+            fy += cell.count * vy / lensq;
+        }
+        else {
+            for (Cell child : cell.children)
+                if (child.count != 0)
+                    addSameColorForces(child, n);
+        }
+    }
+
+    /**
+     * Adds the repulsion of the nearby nodes in the cell that have a different color than n.
+     */
+    private void addOtherColorForces(Cell cell, Node n) {
+        if (getDistanceSquare(cell, n) > OTHER_COLOR_CUTOFF_SQ)
+            return;
+
+        if (cell.children == null) {
+            for (int i = 0; i < cell.count; i++)
+                if (cell.nodes[i].color != n.color)
+                    addForce(n, cell.nodes[i], OTHER_COLOR_CUTOFF_SQ);
+        }
+        else {
+            for (Cell child : cell.children)
+                if (child.count != 0)
+                    addOtherColorForces(child, n);
+        }
+    }
+
+    /**
+     * Adds the repulsion of n2 on n1, see BasicSpringEmbedderLayoutAlgorithm.addRepulsiveForces().
+     */
+    private void addForce(Node n1, Node n2, double cutoffSquare) {
+        double vx = n1.x - n2.x;
+        double vy = n1.y - n2.y;
+        double lensq = vx * vx + vy * vy;
+        if (lensq > cutoffSquare)  // don't repulse if very far
+        {
+        }
+        else if (lensq <= 1.0)
+        {
+            fx += privRand01();
+            fy += privRand01();
+        }
+        else
+        {
+            fx += vx / lensq;
+            fy += vy / lensq;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Stack;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.draw2d.geometry.PrecisionPoint;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.displaymodel.PointF;
@@ -86,6 +87,8 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
     double repulsiveForce;
     double attractionForce;
 
+    IProgressMonitor progressMonitor;
+
     //#ifdef USE_CONTRACTING_BOX
     //  public:
     //    double boxContractionForce;
@@ -128,6 +131,13 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
         maxIterations = n;
     }
 
+    /**
+     * Set a progress monitor; layouting stops when it gets canceled
+     */
+    public void setProgressMonitor(IProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+    }
+
     public void setSize(double width, double height, double border) {
             setScaleToArea(width, height, border);
     }
@@ -237,11 +247,12 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
         privRand01();
         privRand01();
 
-        // initialize variables (also randomize start positions)
+        // initialize variables (also randomize start positions over the initial area)
+        double[] initialArea = getInitialArea();
         for (Anchor a : anchors)
         {
-            a.x = 100 * privRand01();
-            a.y = 100 * privRand01();
+            a.x = initialArea[0] + initialArea[2] * privRand01();
+            a.y = initialArea[1] + initialArea[3] * privRand01();
             a.dx = a.dy = 0;
         }
         for (Node n : nodes)
@@ -257,8 +268,8 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
             }
             else // movable
             {
-                n.x = width * privRand01();
-                n.y = height * privRand01();
+                n.x = initialArea[0] + initialArea[2] * privRand01();
+                n.y = initialArea[1] + initialArea[3] * privRand01();
             }
             n.dx = n.dy = 0;
         }
@@ -280,8 +291,18 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
             maxx = width - border;
             maxy = height - border;
         }
+        else if (haveFixedNode)
+        {
+            // we assume the top-left corner is (0,0), like the fixed nodes
+            minx = border;
+            miny = border;
+            maxx = width == 0 ? 100000000 : width - border;
+            maxy = height == 0 ? 100000000 : height - border;
+        }
         else
         {
+            // layout on an infinite area, because we can scale/shift the nodes
+            // into the box after layouting
             minx = -100000000;
             miny = -100000000;
             maxx =  100000000;
@@ -292,9 +313,9 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
         doColoring();
 
         // now the real job -- stop if max moved distance is <0.05 at least 20 times in a row
-        // or we spent more time on layouting then the preset timeout
+        // or we spent more time on layouting then the preset timeout, or got canceled
         int i, maxdcounter=0;
-        for (i=1; i<maxIterations && maxdcounter<20 && (System.currentTimeMillis()-startMillis)<TIMEOUT; i++)
+        for (i=1; i<maxIterations && maxdcounter<20 && (System.currentTimeMillis()-startMillis)<TIMEOUT && (progressMonitor==null || !progressMonitor.isCanceled()); i++)
         {
             double maxd = relax();
 
@@ -312,9 +333,12 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
         if (debug)
             Debug.println("layout done: " + nodes.size() + " nodes, " + i + " iterations");
 
-        // scale back if too big -- BUT scale back only non fixed nodes.
-        // fixed nodes do not change position
-        if (sizingMode==SIZINGMODE_SCALE)
+        // if area width or height was specified, we may need to scale back the
+        // positions so that the picture fits into the given area -- BUT we can only
+        // do that if we don't have any fixed (or anchored) nodes, because we don't
+        // want to change explicitly given coordinates (or distances between anchored
+        // nodes). Otherwise just shift the bounding box to (border,border).
+        if (sizingMode==SIZINGMODE_SCALE && !haveFixedNode)
         {
             // calculate bounding box
             double x1, y1, x2, y2;
@@ -323,44 +347,55 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
             y1 = y2 = n0.y;
             for (Node n : nodes)
             {
-                // skip the fixed nodes
-                if (n.fixed) continue;
                 if (n.x-n.sx < x1) x1 = n.x-n.sx;
                 if (n.y-n.sy < y1) y1 = n.y-n.sy;
                 if (n.x+n.sx > x2) x2 = n.x+n.sx;
                 if (n.y+n.sy > y2) y2 = n.y+n.sy;
             }
 
-            double bx = border, by = border;
-            if (!haveAnchoredNode)
+            double xfact = (width == 0 || x1 == x2 || haveAnchoredNode) ? 1.0 : (width-2*border) / (x2-x1);
+            double yfact = (height == 0 || y1 == y2 || haveAnchoredNode) ? 1.0 : (height-2*border) / (y2-y1);
+            if (debug)
+                Debug.println("layout scaled by (" + xfact + ", " + yfact + ")");
+            for (Node n : nodes)
             {
-                // rescale
-                double xfact = (width-2*border) / (x2-x1);
-                double yfact = (height-2*border) / (y2-y1);
-                if (xfact>1) {xfact=1;} // only scale down if needed, but never magnify
-                if (yfact>1) {yfact=1;}
-                if (debug)
-                    Debug.println("layout scaled back by (" + (1/xfact) + ", " + (1/yfact) + ")");
-                for (Node n : nodes)
-                {
-                    // skip the fixed nodes
-                    if (n.fixed) continue;
-                    n.x = bx + (n.x-x1)*xfact;
-                    n.y = by + (n.y-y1)*yfact;
-                }
+                n.x = border + (n.x-x1)*xfact;
+                n.y = border + (n.y-y1)*yfact;
             }
-            else
+        }
+    }
+
+    /**
+     * Returns the area (x, y, width, height) over which the random start positions
+     * of non-fixed nodes are distributed: the given area if there is one, otherwise
+     * an area proportional to the number of nodes, extended to the area occupied by
+     * fixed nodes (which is important for incremental layouting, when existing nodes
+     * are fixed).
+     */
+    protected double[] getInitialArea() {
+        if (width != 0 && height != 0)
+            return new double[] {border, border, width - 2*border, height - 2*border};
+
+        double area = Math.max(60.0 * 60.0 * nodes.size(), 600.0 * 400.0);  // assume 1 node needs 60x60 pixels of space
+        double aspectRatio = 1.5;
+        double areaWidth = Math.sqrt(area)*aspectRatio;
+        double areaHeight = Math.sqrt(area)/aspectRatio;
+        double x1 = 0.25 * Math.min(areaWidth, areaHeight); // leave some space top and left, to reduce nodes getting pushed against the wall
+        double y1 = x1;
+        double x2 = x1 + areaWidth;
+        double y2 = y1 + areaHeight;
+        if (haveFixedNode)
+        {
+            for (Node n : nodes)
             {
-                // don't want to rescale with anchored nodes, just shift bounding box to (bx,by)
-                for (Node n : nodes)
-                {
-                    // skip the fixed nodes
-                    if (n.fixed) continue;
-                    n.x = bx + n.x - x1;
-                    n.y = by + n.y - y1;
-                }
+                if (!n.fixed) continue;
+                x1 = Math.min(x1, n.x);
+                y1 = Math.min(y1, n.y);
+                x2 = Math.max(x2, n.x);
+                y2 = Math.max(y2, n.y);
             }
         }
+        return new double[] {x1, y1, x2 - x1, y2 - y1};
     }
 
     public PointF getNodePosition(int nodeId) {
@@ -451,76 +486,7 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
         }
 
         // nodes repulse each other, update (dx,dy) with this effect
-        //
-        // modification to the original algorithm: only nodes that share the
-        // same color (i.e., are connected) repulse each other -- repulsion between
-        // nodes of *different* colors ceases after a short distance. (This is done
-        // to avoid "blow-up" of non-connected graphs.)
-        //
-        for (Node n1 : nodes)
-        {
-            if (n1.fixed)
-                continue;
-
-            double fx = 0;
-            double fy = 0;
-
-            // TBD performance improvement: use (i=0..N, j=i+1..N) loop unless more than N/2 nodes are fixed
-            for (Node n2 : nodes)
-            {
-                if (n1 == n2)
-                    continue;
-
-                double vx = n1.x - n2.x;
-                double vy = n1.y - n2.y;
-                double lensq = vx * vx + vy * vy;
-                if (n1.color==n2.color)
-                {
-                    // most frequently firing condition first
-                    if (lensq > 2000*2000) // don't repulse if very far
-                    {
-                    }
-                    else if (lensq <= 1.0)
-                    {
-                        fx += privRand01();
-                        fy += privRand01();
-                    }
-                    else
-                    {
-                        fx += vx / lensq;
-                        fy += vy / lensq;
-                    }
-                }
-                else // different colors
-                {
-                    // most frequently firing condition first
-                    if (lensq > 100*100)  // don't repulse if farther than 100
-                    {
-                    }
-                    else if (lensq <= 1.0)
-                    {
-                        fx += privRand01();
-                        fy += privRand01();
-                    }
-                    else
-                    {
-                        fx += vx / lensq;
-                        fy += vy / lensq;
-                    }
-                }
-            }
-
-            // we only  use the direction of (dx,dy) -- node dx,dy is (force * unit vector)
-            //double flensq = fx * fx + fy * fy;
-            //if (flensq > 0)
-            //{
-                //double flen = sqrt(flensq);
-                //n1.dx += repulsiveForce * fx / flen;
-                //n1.dy += repulsiveForce * fy / flen;
-                n1.dx += repulsiveForce * fx;
-                n1.dy += repulsiveForce * fy;
-            //}
-        }
+        addRepulsiveForces();
 
         //    #ifdef USE_CONTRACTING_BOX
         //        // box contraction
@@ -619,8 +585,8 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
             a.x += noiseLevel*(privRand01()-0.5); // add noise to push nodes out of local minimums
             a.y += noiseLevel*(privRand01()-0.5);
 
-            a.x = Math.max(minx, Math.min(maxx, a.y));
-            a.y = Math.max(miny, Math.min(maxy, a.x));
+            a.x = Math.max(minx, Math.min(maxx, a.x));
+            a.y = Math.max(miny, Math.min(maxy, a.y));
 
             // this is used for stopping condition
             if (maxd<a.dx) maxd=a.dx;
@@ -675,6 +641,82 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
         return maxd;
     }
 
+    /**
+     * Updates the (dx,dy) movement vectors of the non-fixed nodes with the
+     * effect of the nodes repulsing each other.
+     */
+    protected void addRepulsiveForces() {
+        // modification to the original algorithm: only nodes that share the
+        // same color (i.e., are connected) repulse each other -- repulsion between
+        // nodes of *different* colors ceases after a short distance. (This is done
+        // to avoid "blow-up" of non-connected graphs.)
+        //
+        for (Node n1 : nodes)
+        {
+            if (n1.fixed)
+                continue;
+
+            double fx = 0;
+            double fy = 0;
+
+            // TBD performance improvement: use (i=0..N, j=i+1..N) loop unless more than N/2 nodes are fixed
+            for (Node n2 : nodes)
+            {
+                if (n1 == n2)
+                    continue;
+
+                double vx = n1.x - n2.x;
+                double vy = n1.y - n2.y;
+                double lensq = vx * vx + vy * vy;
+                if (n1.color==n2.color)
+                {
+                    // most frequently firing condition first
+                    if (lensq > 2000*2000) // don't repulse if very far
+                    {
+                    }
+                    else if (lensq <= 1.0)
+                    {
+                        fx += privRand01();
+                        fy += privRand01();
+                    }
+                    else
+                    {
+                        fx += vx / lensq;
+                        fy += vy / lensq;
+                    }
+                }
+                else // different colors
+                {
+                    // most frequently firing condition first
+                    if (lensq > 100*100)  // don't repulse if farther than 100
+                    {
+                    }
+                    else if (lensq <= 1.0)
+                    {
+                        fx += privRand01();
+                        fy += privRand01();
+                    }
+                    else
+                    {
+                        fx += vx / lensq;
+                        fy += vy / lensq;
+                    }
+                }
+            }
+
+            // we only  use the direction of (dx,dy) -- node dx,dy is (force * unit vector)
+            //double flensq = fx * fx + fy * fy;
+            //if (flensq > 0)
+            //{
+                //double flen = sqrt(flensq);
+                //n1.dx += repulsiveForce * fx / flen;
+                //n1.dy += repulsiveForce * fy / flen;
+                n1.dx += repulsiveForce * fx;
+                n1.dy += repulsiveForce * fy;
+            //}
+        }
+    }
+
     protected void debugPrintState() {
         for (Object key : nodeMap.keySet()) {
             Node n = nodeMap.get(key);
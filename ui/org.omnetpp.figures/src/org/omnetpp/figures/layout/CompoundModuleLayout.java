@@ -13,12 +13,17 @@ import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.AssertionFailedException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.draw2d.AbstractLayout;
 import org.eclipse.draw2d.Connection;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.LayoutManager;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.widgets.Display;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.displaymodel.DimensionF;
 import org.omnetpp.common.displaymodel.PointF;
@@ -37,10 +42,71 @@ public class CompoundModuleLayout extends AbstractLayout {
     private static boolean debug = false;
 
     private static final DimensionF DEFAULT_SIZE = new DimensionF(300.0f, 200.0f);
+    private static final int BARNES_HUT_THRESHOLD = 200; // use the Barnes-Hut layouter from this many submodules
+    private static final int BACKGROUND_LAYOUT_THRESHOLD = 50; // lay out in the background (and cache the result) from this many nodes to place
     protected Map<SubmoduleFigure, Integer> submoduleToId;
     protected int algSeed = 1;
     private CompoundModuleFigure compoundModuleFigure;
     private float scale = Float.NaN;
+    private String nedTypeName;
+
+    // filled in by createAutoLayouter()
+    private String layoutKey; // cache key, computed from the layouter input
+    private int numNodesToLayout; // movable and anchored nodes
+    private PointF[] provisionalPositions; // positions of the fixed nodes; null for the others
+
+    private LayoutJob layoutJob; // the background layout in progress, or null
+
+    /**
+     * Looks up the layout cache file or runs a layouter in the background, stores
+     * the result in the layout cache, and applies it to the figures (unless another
+     * layout was requested meanwhile).
+     */
+    private class LayoutJob extends Job {
+        private ILayoutAlgorithm alg;
+        private String key;
+        private Map<SubmoduleFigure, Integer> nodes;
+
+        public LayoutJob(ILayoutAlgorithm alg, String key, Map<SubmoduleFigure, Integer> nodes) {
+            super("Laying out " + (nedTypeName == null ? "compound module" : nedTypeName));
+            this.alg = alg;
+            this.key = key;
+            this.nodes = nodes;
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            LayoutCache layoutCache = LayoutCache.getInstance();
+            LayoutCache.Layout cachedLayout = layoutCache == null ? null : layoutCache.get(key, nodes.size());
+            if (cachedLayout == null) {
+                // note: the native layouters cannot be interrupted, only their results discarded
+                if (alg instanceof BasicSpringEmbedderLayoutAlgorithm)
+                    ((BasicSpringEmbedderLayoutAlgorithm)alg).setProgressMonitor(monitor);
+                alg.execute();
+                if (monitor.isCanceled())
+                    return Status.CANCEL_STATUS;
+
+                PointF[] positions = new PointF[nodes.size()];
+                for (int i = 0; i < positions.length; i++)
+                    positions[i] = alg.getNodePosition(i);
+                cachedLayout = new LayoutCache.Layout(alg.getSeed(), positions);
+                if (layoutCache != null)
+                    layoutCache.put(key, cachedLayout);
+            }
+            final LayoutCache.Layout layout = cachedLayout;
+
+            Display.getDefault().asyncExec(new Runnable() {
+                public void run() {
+                    if (layoutJob == LayoutJob.this) {
+                        layoutJob = null;
+                        applyLayout(nodes, layout);
+                        compoundModuleFigure.getSubmoduleLayer().revalidate();
+                    }
+                }
+            });
+            return Status.OK_STATUS;
+        }
+    }
 
     /**
      * Constructor.
@@ -58,6 +124,14 @@ public class CompoundModuleLayout extends AbstractLayout {
         this.algSeed = algSeed + 1;
     }
 
+    /**
+     * Set the NED type of the compound module. It is used as part of the key
+     * in the layout cache.
+     */
+    public void setNedTypeName(String nedTypeName) {
+        this.nedTypeName = nedTypeName;
+    }
+
     /**
      * Set the scale for unit-to-pixel translation. This value is not used much,
      * because the layouter operates in model coordinates, not pixels.
@@ -89,6 +163,14 @@ public class CompoundModuleLayout extends AbstractLayout {
             border = height / 2;
         autoLayouter.setSize(width, height, border);
 
+        // describe the layouter input for the cache key
+        int numNodes = compoundModuleFigure.getSubmoduleLayer().getChildren().size();
+        StringBuilder layoutInput = new StringBuilder(64 * numNodes);
+        layoutInput.append(nedTypeName).append(' ').append(autoLayouter.getClass().getName()).append(' ').append(algSeed);
+        layoutInput.append(' ').append(width).append(' ').append(height).append(' ').append(border).append('\n');
+        numNodesToLayout = 0;
+        provisionalPositions = new PointF[numNodes];
+
         // use the current index of the figure as an ID so we will be able to identify
         // the module when we get back it's coordinates from the layouter.
         int nodeIndex = 0;
@@ -110,6 +192,8 @@ public class CompoundModuleLayout extends AbstractLayout {
             if (layoutedLoc != null) {
                 // use cached (previously layouted) coordinates
                 autoLayouter.addFixedNode(nodeIndex, layoutedLoc.x, layoutedLoc.y, shapeSize.width, shapeSize.height);
+                layoutInput.append("F ").append(layoutedLoc.x).append(' ').append(layoutedLoc.y);
+                provisionalPositions[nodeIndex] = layoutedLoc;
             }
             else {
                 // lay out this node, and store the coordinates with setCenterLocation()
@@ -117,15 +201,22 @@ public class CompoundModuleLayout extends AbstractLayout {
                 if (baseLoc != null) {
                     PointF offset = getArrangementOffset(constraint, 80); // handle vector layouts; note: we use fixed spacing NOT shape size, because items in a vector may be of different sizes which would result in strange arrangements
                     autoLayouter.addFixedNode(nodeIndex, baseLoc.x + offset.x, baseLoc.y + offset.y, shapeSize.width, shapeSize.height);
+                    layoutInput.append("F ").append(baseLoc.x + offset.x).append(' ').append(baseLoc.y + offset.y);
+                    provisionalPositions[nodeIndex] = new PointF(baseLoc.x + offset.x, baseLoc.y + offset.y);
                 }
                 else if (constraint.getVectorIdentifier()==null || constraint.getVectorArrangement()==VectorArrangement.none) {
                     autoLayouter.addMovableNode(nodeIndex, shapeSize.width, shapeSize.height);
+                    layoutInput.append("M");
+                    numNodesToLayout++;
                 }
                 else {
                     PointF offset = getArrangementOffset(constraint, 80); // handle vector layouts
                     autoLayouter.addAnchoredNode(nodeIndex, constraint.getVectorIdentifier().toString(), offset.x, offset.y, shapeSize.width, shapeSize.height);
+                    layoutInput.append("A ").append(constraint.getVectorIdentifier()).append(' ').append(offset.x).append(' ').append(offset.y);
+                    numNodesToLayout++;
                 }
             }
+            layoutInput.append(' ').append(shapeSize.width).append(' ').append(shapeSize.height).append(' ').append(node.getName()).append('\n');
             nodeIndex++;
         }
 
@@ -143,20 +234,29 @@ public class CompoundModuleLayout extends AbstractLayout {
 
                 if (srcFig instanceof SubmoduleFigure && targetFig instanceof SubmoduleFigure) {
                     autoLayouter.addEdge(submoduleToId.get(srcFig), submoduleToId.get(targetFig), 0);
+                    layoutInput.append("E ").append(submoduleToId.get(srcFig)).append(' ').append(submoduleToId.get(targetFig)).append('\n');
                 }
                 else if (targetFig instanceof SubmoduleFigure) {   // compound to submodule
                     autoLayouter.addEdgeToBorder(submoduleToId.get(targetFig), 0);
+                    layoutInput.append("B ").append(submoduleToId.get(targetFig)).append('\n');
                 }
                 else if (srcFig instanceof SubmoduleFigure) {  // submodule to compound
                     autoLayouter.addEdgeToBorder(submoduleToId.get(srcFig), 0);
+                    layoutInput.append("B ").append(submoduleToId.get(srcFig)).append('\n');
                 }
                 // we do not care about compound --> compound connections in layouting
             }
         }
+        layoutKey = LayoutCache.computeKey(layoutInput.toString());
         return autoLayouter;
     }
 
     protected ILayoutAlgorithm createLayouterAlgorithm() {
+        // Java implementation with O(n log n) iterations, for large compound modules
+        // (the other layouters spend O(n^2) per iteration, and often run into their timeout)
+        if (compoundModuleFigure.getSubmoduleLayer().getChildren().size() >= BARNES_HUT_THRESHOLD)
+            return new BarnesHutSpringEmbedderLayoutAlgorithm();
+
         // Java implementation:
         // ILayoutAlgorithm layouter = new BasicSpringEmbedderLayoutAlgorithm();
 
@@ -229,6 +329,8 @@ public class CompoundModuleLayout extends AbstractLayout {
 
     /**
      * Implements the algorithm to layout the components of the given container figure.
+     * Large layouts are taken from the layout cache, or computed in the background
+     * while the nodes are shown at provisional positions.
      *
      * @see LayoutManager#layout(IFigure)
      */
@@ -237,26 +339,86 @@ public class CompoundModuleLayout extends AbstractLayout {
 
         long startTime = System.currentTimeMillis();
         if (parent.getChildren().size() != 0) {
-            // create and run the layouter
+            // create the layouter
             ILayoutAlgorithm alg = createAutoLayouter();
-            alg.execute();
-
-            // store back the new seed - otherwise unpinned modules created one-by-one would pop up at the exact same place
-            algSeed = alg.getSeed();
-
-            // get the computed location from the auto-layout algorithm, and write them back
-            for (SubmoduleFigure node : submoduleToId.keySet()) {
-                Integer id = submoduleToId.get(node);
-                PointF loc = alg.getNodePosition(id);
-                ISubmoduleConstraint constraint = getConstraint(node);
-                constraint.setLayoutedLocation(loc);
-                node.setCenterPosition(loc.toPixels(scale));
+
+            if (numNodesToLayout < BACKGROUND_LAYOUT_THRESHOLD) {
+                // small enough to run right away
+                cancelLayoutJob();
+                alg.execute();
+                PointF[] positions = new PointF[submoduleToId.size()];
+                for (int i = 0; i < positions.length; i++)
+                    positions[i] = alg.getNodePosition(i);
+                applyLayout(submoduleToId, new LayoutCache.Layout(alg.getSeed(), positions));
+            }
+            else {
+                LayoutCache layoutCache = LayoutCache.getInstance();
+                LayoutCache.Layout cachedLayout = layoutCache == null ? null : layoutCache.getFromMemory(layoutKey, submoduleToId.size());
+                if (cachedLayout != null) {
+                    cancelLayoutJob();
+                    applyLayout(submoduleToId, cachedLayout);
+                }
+                else {
+                    // look up the cache file or run the layouter in the background, unless already doing so for the same input
+                    if (layoutJob == null || !layoutJob.key.equals(layoutKey)) {
+                        cancelLayoutJob();
+                        layoutJob = new LayoutJob(alg, layoutKey, submoduleToId);
+                        layoutJob.schedule();
+                    }
+                    showProvisionalPositions();
+                }
             }
         }
         if (debug)
             Debug.println("CompoundModuleLayout: " + (System.currentTimeMillis()-startTime) + "ms");
     }
 
+    /**
+     * Stores the computed locations into the constraints, and moves the figures there.
+     */
+    protected void applyLayout(Map<SubmoduleFigure, Integer> nodes, LayoutCache.Layout layout) {
+        // store back the new seed - otherwise unpinned modules created one-by-one would pop up at the exact same place
+        algSeed = layout.seed;
+
+        // write back the locations
+        IFigure nodeParent = compoundModuleFigure.getSubmoduleLayer();
+        for (SubmoduleFigure node : nodes.keySet()) {
+            if (node.getParent() != nodeParent)
+                continue; // removed meanwhile
+            PointF position = layout.positions[nodes.get(node)];
+            PointF loc = new PointF(position.x, position.y); // positions may be shared with the layout cache
+            ISubmoduleConstraint constraint = getConstraint(node);
+            constraint.setLayoutedLocation(loc);
+            node.setCenterPosition(loc.toPixels(scale));
+        }
+    }
+
+    /**
+     * Moves the figures to temporary locations until the background layout
+     * finishes: fixed nodes to their locations, others into a grid. The locations
+     * are not stored into the constraints.
+     */
+    protected void showProvisionalPositions() {
+        int numColumns = (int)Math.ceil(Math.sqrt(numNodesToLayout * 1.5));
+        int spacing = 80;
+        int i = 0;
+        for (SubmoduleFigure node : submoduleToId.keySet()) {
+            PointF loc = provisionalPositions[submoduleToId.get(node)];
+            if (loc == null) {
+                loc = new PointF(spacing * (i % numColumns + 1), spacing * (i / numColumns + 1));
+                i++;
+            }
+            node.setCenterPosition(loc.toPixels(scale));
+        }
+    }
+
+    protected void cancelLayoutJob() {
+        if (layoutJob != null) {
+            layoutJob.cancel();
+            layoutJob = null;
+        }
+    }
+
     /**
      * After calling this, the next layout process will call a full layout process.
      * Pinned nodes will stay, unpinned nodes will move.
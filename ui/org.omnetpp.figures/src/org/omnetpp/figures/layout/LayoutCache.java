@@ -0,0 +1,239 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.figures.layout;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.omnetpp.common.CommonPlugin;
+import org.omnetpp.common.displaymodel.PointF;
+
+/**
+ * Persistent cache of the results of submodule layouting, so that reopening
+ * a large compound module in the graphical editor or in an inspector does not
+ * need to run the layouter again. The key is a hash of everything the result
+ * depends on (see CompoundModuleLayout): the NED type, the seed, the nodes
+ * with their sizes and fixed positions, and the connections. Layouting is
+ * deterministic, so an entry never becomes stale, it can only become unused;
+ * the least recently used entries are deleted when there are too many.
+ *
+ * There is one small file per entry in the given directory (normally in the
+ * plugin state location). Recently used entries are also kept in memory, and
+ * getFromMemory() returns them without file access, e.g. in the UI thread.
+ * May be used from several threads concurrently.
+ */
+public class LayoutCache {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x4E4C4159; // "NLAY"
+    private static final String FILE_EXTENSION = ".layout";
+    private static final int MAX_ENTRIES = 500;
+    private static final int PRUNE_INTERVAL = 20;  // check the number of entries after this many puts
+    private static final int MAX_ENTRIES_IN_MEMORY = 100;
+
+    private static LayoutCache instance;
+
+    /**
+     * The result of a layout: node positions indexed by node ID, and the
+     * seed of the layouter after layouting.
+     */
+    public static class Layout {
+        public final int seed;
+        public final PointF[] positions;
+
+        public Layout(int seed, PointF[] positions) {
+            this.seed = seed;
+            this.positions = positions;
+        }
+    }
+
+    private File directory;
+    private int numPutsSincePrune;
+
+    // recently used entries, in LRU order; also the lock for accessing it
+    private final Map<String,Layout> memoryCache = new LinkedHashMap<String,Layout>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,Layout> eldest) {
+            return size() > MAX_ENTRIES_IN_MEMORY;
+        }
+    };
+
+    /**
+     * Creates a cache that stores its files in the given directory.
+     */
+    public LayoutCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the shared instance, which stores its files in the state location
+     * of the common plugin. Returns null if the plugin is not running (e.g. in
+     * standalone tests).
+     */
+    public static synchronized LayoutCache getInstance() {
+        if (instance == null && CommonPlugin.getDefault() != null)
+            instance = new LayoutCache(CommonPlugin.getDefault().getStateLocation().append("layoutcache").toFile());
+        return instance;
+    }
+
+    /**
+     * Computes a cache key from a textual description of the layouter input.
+     */
+    public static String computeKey(String layoutInput) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(layoutInput.getBytes(UTF8));
+            StringBuilder key = new StringBuilder(2 * digest.length);
+            for (byte b : digest)
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            return key.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // SHA-1 is always available
+        }
+    }
+
+    /**
+     * Like get(), but only looks at the entries kept in memory, so it never
+     * accesses files.
+     */
+    public Layout getFromMemory(String key, int numNodes) {
+        synchronized (memoryCache) {
+            Layout layout = memoryCache.get(key);
+            return layout != null && layout.positions.length == numNodes ? layout : null;
+        }
+    }
+
+    /**
+     * Returns the cached layout with the given key, or null if there is none
+     * or it does not have the expected number of nodes. May read the cache file.
+     */
+    public Layout get(String key, int numNodes) {
+        Layout layout = getFromMemory(key, numNodes);
+        if (layout != null)
+            return layout;
+        layout = read(key, numNodes);
+        if (layout != null) {
+            synchronized (memoryCache) {
+                memoryCache.put(key, layout);
+            }
+        }
+        return layout;
+    }
+
+    protected Layout read(String key, int numNodes) {
+        File file = getCacheFile(key);
+        if (!file.exists())
+            return null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC)
+                    throw new IOException("not a layout cache file");
+                int seed = in.readInt();
+                int n = in.readInt();
+                if (n != numNodes)
+                    return null;
+                PointF[] positions = new PointF[n];
+                for (int i = 0; i < n; i++)
+                    positions[i] = new PointF(in.readFloat(), in.readFloat());
+                file.setLastModified(System.currentTimeMillis()); // for LRU pruning
+                return new Layout(seed, positions);
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            // corrupt entry: layout again
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given layout. Errors are logged, but otherwise ignored.
+     */
+    public void put(String key, Layout layout) {
+        synchronized (memoryCache) {
+            memoryCache.put(key, layout);
+        }
+        try {
+            directory.mkdirs();
+            File file = getCacheFile(key);
+            File tmpFile = File.createTempFile(key, ".tmp", directory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(layout.seed);
+                out.writeInt(layout.positions.length);
+                for (PointF p : layout.positions) {
+                    out.writeFloat(p.x);
+                    out.writeFloat(p.y);
+                }
+            }
+            finally {
+                out.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            CommonPlugin.logError("Cannot save layout to the cache", e);
+        }
+
+        boolean prune;
+        synchronized (this) {
+            prune = ++numPutsSincePrune >= PRUNE_INTERVAL;
+            if (prune)
+                numPutsSincePrune = 0;
+        }
+        if (prune)
+            prune();
+    }
+
+    /**
+     * Deletes the least recently used entries if there are more than MAX_ENTRIES.
+     */
+    protected void prune() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= MAX_ENTRIES)
+            return;
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                return Long.compare(lastModified[i1], lastModified[i2]);
+            }
+        });
+        for (int i = 0; i < files.length - MAX_ENTRIES; i++)
+            files[order[i]].delete();
+    }
+
+    protected File getCacheFile(String key) {
+        return new File(directory, key + FILE_EXTENSION);
+    }
+}
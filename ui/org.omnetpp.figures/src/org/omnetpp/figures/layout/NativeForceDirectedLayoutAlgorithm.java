@@ -7,9 +7,12 @@ import org.omnetpp.layout.engine.ForceDirectedGraphLayouter;
 import org.omnetpp.layout.engine.GraphLayouterEnvironment;
 
 public class NativeForceDirectedLayoutAlgorithm extends ForceDirectedGraphLayouter implements ILayoutAlgorithm {
+    @SuppressWarnings("unused")
+    private GraphLayouterEnvironment environment; // only stored: keeps the proxy from being garbage collected while the native layouter uses it
 
     public NativeForceDirectedLayoutAlgorithm(GraphLayouterEnvironment environment) {
         Assert.isNotNull(environment);
+        this.environment = environment;
         setEnvironment(environment);
     }
 
@@ -14,8 +14,6 @@ namespace omnetpp { namespace scave {
 %ignore IDList::sortByFileAndRun;
 %ignore IDList::sortByRunAndFile;
 %ignore IDList::reverse;
-%ignore IDList::toByteArray;
-%ignore IDList::fromByteArray;
 %ignore IDList::getSubsetByIndeces;
 %ignore IDList::begin;
 %ignore IDList::end;
@@ -5,6 +5,7 @@
 #include "scave/nodetyperegistry.h"
 #include "scave/arraybuilder.h"
 #include "scave/xyarray.h"
+#include <stdexcept>
 %}
 
 // covariant return type warning disabled
@@ -73,6 +74,72 @@ class Node
 
 %ignore XYArray::XYArray;
 
+//
+// Bulk access to the x/y arrays. Copying a whole series into a Java
+// double[] costs a single JNI call, whereas calling getX()/getY() per
+// item would cost one call per data point.
+//
+// The values are collected in a buffer local to the wrapper function, and
+// copied into the Java array in one go. (Unlike pinned array elements, the
+// buffer is also freed when the call throws an exception.)
+%typemap(in) (double *array, int n) (std::vector<double> buffer) {
+    $2 = jenv->GetArrayLength($input);
+    buffer.resize($2);
+    $1 = buffer.data();
+}
+
+%typemap(argout) (double *array, int n) {
+    jenv->SetDoubleArrayRegion($input, 0, $2, (jdouble *)$1);
+}
+
+%typemap(jni)    (double *array, int n) "jdoubleArray"
+%typemap(jtype)  (double *array, int n) "double[]"
+%typemap(jstype) (double *array, int n) "double[]"
+%typemap(javain) (double *array, int n) "$javainput"
+
+%define CHECK_RANGE_EXCEPTION(METHOD)
+%exception METHOD {
+    try {
+        $action
+    } catch (std::out_of_range& e) {
+        SWIG_JavaThrowException(jenv, SWIG_JavaIndexOutOfBoundsException, const_cast<char*>(e.what()));
+        return $null;
+    }
+}
+%enddef
+
+CHECK_RANGE_EXCEPTION(XYArray::copyXValues);
+CHECK_RANGE_EXCEPTION(XYArray::copyYValues);
+
+%extend XYArray {
+    void copyXValues(int start, double *array, int n) {
+        if (start < 0 || n < 0 || start > self->length() - n)
+            throw std::out_of_range("XYArray::copyXValues(): index out of range");
+        for (int i = 0; i < n; i++)
+            array[i] = self->getX(start + i);
+    }
+    void copyYValues(int start, double *array, int n) {
+        if (start < 0 || n < 0 || start > self->length() - n)
+            throw std::out_of_range("XYArray::copyYValues(): index out of range");
+        for (int i = 0; i < n; i++)
+            array[i] = self->getY(start + i);
+    }
+}
+
+%typemap(javacode) XYArray %{
+    public double[] getXValues() {
+        double[] array = new double[length()];
+        copyXValues(0, array);
+        return array;
+    }
+
+    public double[] getYValues() {
+        double[] array = new double[length()];
+        copyYValues(0, array);
+        return array;
+    }
+%}
+
 %ignore NodeTypeRegistry::parseFilterSpec;
 
 } } // namespaces
@@ -36,6 +36,7 @@ import org.omnetpp.inifile.editor.model.ParamResolution;
 import org.omnetpp.inifile.editor.model.ParamResolutionDisabledException;
 import org.omnetpp.inifile.editor.model.ParamResolutionTimeoutException;
 import org.omnetpp.inifile.editor.model.Timeout;
+import org.omnetpp.ned.core.INedResources;
 import org.omnetpp.ned.core.NedResourcesPlugin;
 import org.omnetpp.ned.model.NedElementConstants;
 import org.omnetpp.ned.model.ex.CompoundModuleElementEx;
@@ -145,32 +146,38 @@ s    * before getting presented to the user.
 
         if (entry==CFGID_NETWORK) {
             IProject contextProject = doc.getDocumentFile().getProject();
-            INedTypeResolver nedResources = NedResourcesPlugin.getNedResources().getImmutableCopy();
-            // first
-            List<IContentProposal> p1 = new ArrayList<IContentProposal>();
-            String iniFilePackage = nedResources.getPackageFor(doc.getDocumentFile().getParent());
-            if (StringUtils.isNotEmpty(iniFilePackage)) {
-                for (String networkName : nedResources.getNetworkQNames(contextProject)) {
-                    INedTypeElement network = nedResources.getToplevelNedType(networkName, contextProject).getNedElement();
-                    if ((iniFilePackage+".").equals(network.getNedTypeInfo().getNamePrefix())) {
-                        String docu = NedCommentFormatter.makeTextDocu(network.getComment());
-                        p1.add(new ContentProposal(network.getName(), network.getName()+" - "+iniFilePackage, docu));
+            INedResources nedResources = NedResourcesPlugin.getNedResources();
+            INedTypeResolver nedResolver = nedResources.acquireImmutableCopy();
+            try {
+                // first
+                List<IContentProposal> p1 = new ArrayList<IContentProposal>();
+                String iniFilePackage = nedResolver.getPackageFor(doc.getDocumentFile().getParent());
+                if (StringUtils.isNotEmpty(iniFilePackage)) {
+                    for (String networkName : nedResolver.getNetworkQNames(contextProject)) {
+                        INedTypeElement network = nedResolver.getToplevelNedType(networkName, contextProject).getNedElement();
+                        if ((iniFilePackage+".").equals(network.getNedTypeInfo().getNamePrefix())) {
+                            String docu = NedCommentFormatter.makeTextDocu(network.getComment());
+                            p1.add(new ContentProposal(network.getName(), network.getName()+" - "+iniFilePackage, docu));
+                        }
                     }
+                    sort(p1);
                 }
-                sort(p1);
+                List<IContentProposal> p2 = new ArrayList<IContentProposal>();
+                for (String networkName : nedResolver.getNetworkQNames(contextProject)) {
+                    INedTypeElement network = nedResolver.getToplevelNedType(networkName, contextProject).getNedElement();
+                    String docu = NedCommentFormatter.makeTextDocu(network.getComment());
+                    // TODO make a better presentation ( name - package ) = prefix filtering should be correctly implemented (prefix should match the name ONLY excluding the package)
+//                  String namePrefix = StringUtils.removeEnd(network.getNEDTypeInfo().getNamePrefix(),".");
+//                  String label = StringUtils.join(network.getName(), " - ", namePrefix);
+                    p2.add(new ContentProposal(networkName, networkName, docu));
+                }
+                sort(p2);
+                p.addAll(p1);
+                p.addAll(p2);
             }
-            List<IContentProposal> p2 = new ArrayList<IContentProposal>();
-            for (String networkName : nedResources.getNetworkQNames(contextProject)) {
-                INedTypeElement network = nedResources.getToplevelNedType(networkName, contextProject).getNedElement();
-                String docu = NedCommentFormatter.makeTextDocu(network.getComment());
-                // TODO make a better presentation ( name - package ) = prefix filtering should be correctly implemented (prefix should match the name ONLY excluding the package)
-//              String namePrefix = StringUtils.removeEnd(network.getNEDTypeInfo().getNamePrefix(),".");
-//              String label = StringUtils.join(network.getName(), " - ", namePrefix);
-                p2.add(new ContentProposal(networkName, networkName, docu));
+            finally {
+                nedResources.releaseImmutableCopy(nedResolver);
             }
-            sort(p2);
-            p.addAll(p1);
-            p.addAll(p2);
 
         }
         else if (entry==CFGID_USER_INTERFACE) {
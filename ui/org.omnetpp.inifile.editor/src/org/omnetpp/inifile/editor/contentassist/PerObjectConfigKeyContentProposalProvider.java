@@ -113,12 +113,22 @@ public class PerObjectConfigKeyContentProposalProvider extends ContentProposalPr
     }
 
     protected Set<ObjectKind> getPossibleObjectKinds(String objectNamePattern) {
+        NedResources nedResources = NedResources.getInstance();
+        INedTypeResolver resolver = nedResources.acquireImmutableCopy();
+        try {
+            return getPossibleObjectKinds(objectNamePattern, resolver);
+        }
+        finally {
+            nedResources.releaseImmutableCopy(resolver);
+        }
+    }
+
+    private Set<ObjectKind> getPossibleObjectKinds(String objectNamePattern, INedTypeResolver resolver) {
         Set<ObjectKind> objectKinds = EnumSet.noneOf(ObjectKind.class);
 
         PatternMatcher nameMatcher = new PatternMatcher(objectNamePattern, true, true, true);
         ParamResolution[] paramResolutions = null;
         PropertyResolution[] propertyResolutions = null;
-        INedTypeResolver resolver = NedResources.getInstance().getImmutableCopy();
         Map<String,ISubmoduleOrConnection> modules = null;
         try {
             Timeout timeout = new Timeout(InifileEditor.CONTENTASSIST_TIMEOUT);
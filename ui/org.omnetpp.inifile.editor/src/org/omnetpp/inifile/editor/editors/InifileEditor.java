@@ -285,6 +285,7 @@ public class InifileEditor extends MultiPageEditorPart implements IGotoMarker, I
         if (outlinePage != null)
             outlinePage.setInput(null); //XXX ?
         editorData.getInifileDocument().dispose();
+        editorData.getInifileAnalyzer().dispose();
         super.dispose();
     }
 
@@ -120,7 +120,8 @@ public final class InifileAnalyzer {
     //private boolean paramResolutionDirty = true; // true if the document has changed while paramResolutionJob was running
     private boolean withinValidate = false; // debug only
     private IReadonlyInifileDocument analysisDocCopy; // copy of the ini file belongs to the last analysis
-    private INedTypeResolver analysisNedResolverCopy; // copy of the ned resources belong to the last analysis
+    private INedTypeResolver analysisNedResolverCopy; // copy of the ned resources belong to the last analysis (acquired)
+    private boolean disposed = false;
     private ParamResolutionJob paramResolutionJob;
     private Object paramResolutionLock; // for threads that are waiting for the param resolution job
 
@@ -191,6 +192,21 @@ public final class InifileAnalyzer {
         });
     }
 
+    /**
+     * Releases the NED copy of the last analysis. To be called when the analyzer
+     * is no longer used.
+     */
+    public void dispose() {
+        paramResolutionJob.cancel();
+        synchronized (globalLock) {
+            disposed = true;
+            if (analysisNedResolverCopy != null)
+                NedResourcesPlugin.getNedResources().releaseImmutableCopy(analysisNedResolverCopy);
+            analysisNedResolverCopy = null;
+            analysisDocCopy = null;
+        }
+    }
+
     private void modelChanged() {
         synchronized (globalLock) {
             changed = true;
@@ -412,7 +428,10 @@ public final class InifileAnalyzer {
                     ParamResolutionStatus okStatus = (ParamResolutionStatus)status;
                     INedResources nedResources = NedResourcesPlugin.getNedResources();
                     synchronized (globalLock) {
-                        if (doc.isImmutableCopyUpToDate(okStatus.docCopy) && nedResources.isImmutableCopyUpToDate(okStatus.nedResolverCopy)) {
+                        if (!disposed && doc.isImmutableCopyUpToDate(okStatus.docCopy) && nedResources.isImmutableCopyUpToDate(okStatus.nedResolverCopy)) {
+                            // keep the NED copy acquired by the job while the results refer to it
+                            if (analysisNedResolverCopy != null)
+                                nedResources.releaseImmutableCopy(analysisNedResolverCopy);
                             analysisDocCopy = okStatus.docCopy;
                             analysisNedResolverCopy = okStatus.nedResolverCopy;
                             annotateParamResolutions(okStatus.result);
@@ -420,6 +439,9 @@ public final class InifileAnalyzer {
 
                             fireAnalysisCompletedEvent();
                         }
+                        else {
+                            nedResources.releaseImmutableCopy(okStatus.nedResolverCopy);
+                        }
                     }
                 }
             }
@@ -465,7 +487,7 @@ public final class InifileAnalyzer {
             // store with the section the list of all parameter resolutions (including unassigned params)
             // store with every key the list of parameters it resolves
             SectionData sectionData = ((SectionData)doc.getSectionData(activeSection));
-            sectionData.propertyResolutions = propertyResolutions;
+            sectionData.propertyResolutions = new ArrayList<PropertyResolution>(propertyResolutions); // copy, as entries may be reused by ParamResolutionJob
             for (ParamResolution res : paramResolutions) {
                 sectionData.allParamResolutions.add(res);
 
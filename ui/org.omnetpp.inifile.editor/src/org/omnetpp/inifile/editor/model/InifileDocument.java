@@ -96,6 +96,13 @@ public class InifileDocument implements IInifileDocument {
         String[] sectionChain;
         Set<String> sectionChainConflict; // conflicting sections in the section chain or null
         Object data;
+        private ParamKeyIndex paramKeyIndex; // created on demand; entries must not change afterwards (they don't, sections are recreated on parse)
+
+        synchronized ParamKeyIndex getParamKeyIndex() {
+            if (paramKeyIndex == null)
+                paramKeyIndex = new ParamKeyIndex(entries.keySet());
+            return paramKeyIndex;
+        }
 
         @Override
         protected Section clone() throws CloneNotSupportedException {
@@ -677,6 +684,12 @@ public class InifileDocument implements IInifileDocument {
         return section == null ? null : section.entries.keySet();
     }
 
+    public ParamKeyIndex getParamKeyIndex(String sectionName) {
+        parseIfChanged();
+        Section section = sections.get(sectionName);
+        return section == null ? null : section.getParamKeyIndex();
+    }
+
     public List<String> getMatchingKeys(String sectionName, String regex) {
         parseIfChanged();
         Section section = sections.get(sectionName);
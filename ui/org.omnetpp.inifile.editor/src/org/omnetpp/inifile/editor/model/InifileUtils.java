@@ -146,15 +146,12 @@ public class InifileUtils {
     public static List<SectionKey> lookupParameter(String paramFullPath, boolean hasNedDefault, String[] sectionChain, IReadonlyInifileDocument doc) {
         List<SectionKey> result = new ArrayList<SectionKey>();
         for (String section : sectionChain) {
-            for (String key : doc.getKeys(section)) {
-                ParamUtil.KeyMatcher keyMatcher = ParamUtil.getOrCreateKeyMatcher(key);
-                if (keyMatcher.matcher.matches(paramFullPath)) {
-                    String value = doc.getValue(section, key);
-                    if (hasNedDefault || !value.equals(DEFAULT)) {
-                        result.add(new SectionKey(section, key));
-                        if (keyMatcher.keyEqualsGeneralizedKey)
-                            return result;
-                    }
+            for (ParamUtil.KeyMatcher keyMatcher : doc.getParamKeyIndex(section).getMatchingKeys(paramFullPath)) {
+                String value = doc.getValue(section, keyMatcher.key);
+                if (hasNedDefault || !value.equals(DEFAULT)) {
+                    result.add(new SectionKey(section, keyMatcher.key));
+                    if (keyMatcher.keyEqualsGeneralizedKey)
+                        return result;
                 }
             }
         }
@@ -155,14 +155,15 @@ public class ParamCollector {
         if (doc != null) {
             activeSection = sectionChain[0];
 
-            // TODO: avoid calling lookupParameter twice
             String paramPath = fullPath + "." + paramDeclaration.getName();
             sectionKeys = InifileUtils.lookupParameter(paramPath, false, sectionChain, doc);
 
             for (SectionKey sectionKey : sectionKeys)
                 hasIniTotalAssignment |= ParamUtil.isTotalParamAssignment(sectionKey.key);
 
-            sectionKeys = InifileUtils.lookupParameter(paramPath, hasNedDefaultAssignment, sectionChain, doc);
+            // "=default" entries only count if there is a NED default (otherwise the result is the same)
+            if (hasNedDefaultAssignment)
+                sectionKeys = InifileUtils.lookupParameter(paramPath, true, sectionChain, doc);
         }
 
         // process non default parameter assignments from NED
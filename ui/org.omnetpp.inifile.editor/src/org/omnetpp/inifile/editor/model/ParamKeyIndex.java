@@ -0,0 +1,100 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.inifile.editor.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.omnetpp.ned.core.ParamUtil;
+import org.omnetpp.ned.core.ParamUtil.KeyMatcher;
+
+/**
+ * Index of the keys of an inifile section, for finding the keys that match
+ * a parameter full path without trying every key. Keys are grouped by their
+ * last path component (normally the parameter name) if it contains no
+ * wildcard; a lookup only tries the keys in the group of the parameter name
+ * and the keys with a wildcard in the last component, in their original order.
+ * (This is the same idea as the suffix groups in the simulation kernel's
+ * SectionBasedConfiguration.)
+ *
+ * Immutable, so it can be shared between InifileDocument and its immutable copies.
+ */
+public class ParamKeyIndex {
+    private static final int[] NO_KEYS = new int[0];
+
+    private KeyMatcher[] keyMatchers;  // all keys, in their original order
+    private Map<String,int[]> keysByLastComponent = new HashMap<String, int[]>(); // indices into keyMatchers
+    private int[] wildcardKeys;  // indices of keys whose last component contains wildcards
+
+    public ParamKeyIndex(Collection<String> keys) {
+        keyMatchers = new KeyMatcher[keys.size()];
+        Map<String,List<Integer>> groups = new HashMap<String, List<Integer>>();
+        List<Integer> wildcards = new ArrayList<Integer>();
+        int i = 0;
+        for (String key : keys) {
+            keyMatchers[i] = ParamUtil.getOrCreateKeyMatcher(key);
+            String lastComponent = getLastComponent(key);
+            if (lastComponent == null)
+                wildcards.add(i);
+            else {
+                List<Integer> group = groups.get(lastComponent);
+                if (group == null)
+                    groups.put(lastComponent, group = new ArrayList<Integer>());
+                group.add(i);
+            }
+            i++;
+        }
+        for (Map.Entry<String, List<Integer>> entry : groups.entrySet())
+            keysByLastComponent.put(entry.getKey(), ArrayUtils.toPrimitive(entry.getValue().toArray(new Integer[0])));
+        wildcardKeys = ArrayUtils.toPrimitive(wildcards.toArray(new Integer[0]));
+    }
+
+    /**
+     * Returns the part of the key after the last dot, or null if it contains
+     * characters with a special meaning in patterns. A key with a literal last
+     * component can only match paths whose last component is the same string.
+     */
+    protected static String getLastComponent(String key) {
+        String lastComponent = key.substring(key.lastIndexOf('.') + 1);
+        for (int i = 0; i < lastComponent.length(); i++)
+            if ("*?{}[]\\".indexOf(lastComponent.charAt(i)) != -1)
+                return null;
+        return lastComponent;
+    }
+
+    /**
+     * Returns the matchers of the keys that match the given parameter full path
+     * (or other dotted path), in the order of the keys in the section.
+     */
+    public List<KeyMatcher> getMatchingKeys(String paramFullPath) {
+        int[] group = keysByLastComponent.get(paramFullPath.substring(paramFullPath.lastIndexOf('.') + 1));
+        if (group == null)
+            group = NO_KEYS;
+        if (group.length == 0 && wildcardKeys.length == 0)
+            return Collections.emptyList();
+
+        // merge the two sorted index lists
+        List<KeyMatcher> result = null;
+        int i = 0, j = 0;
+        while (i < group.length || j < wildcardKeys.length) {
+            int index = j == wildcardKeys.length || (i < group.length && group[i] < wildcardKeys[j]) ? group[i++] : wildcardKeys[j++];
+            KeyMatcher keyMatcher = keyMatchers[index];
+            if (keyMatcher.matcher.matches(paramFullPath)) {
+                if (result == null)
+                    result = new ArrayList<KeyMatcher>(2);
+                result.add(keyMatcher);
+            }
+        }
+        return result == null ? Collections.<KeyMatcher>emptyList() : result;
+    }
+}
@@ -1,7 +1,10 @@
 package org.omnetpp.inifile.editor.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -24,6 +27,12 @@ import org.omnetpp.ned.model.interfaces.INedTypeResolver;
  * The actual work is factored out to the ParamCollector class, so
  * they can be called directly too.
  *
+ * Results are remembered per section, and reused as long as the contents of
+ * the section chain and the NED copy are the same. This way, editing a section
+ * only causes the sections whose chain includes it to be resolved again, and
+ * an analysis restarted due to a change does not have to redo the sections it
+ * already completed.
+ *
  * @author tomi
  */
 class ParamResolutionJob extends Job {
@@ -34,6 +43,21 @@ class ParamResolutionJob extends Job {
     private IInifileDocument doc;
     private int retryCount;
 
+    // results of earlier runs, by section name; only accessed from the job
+    private Map<String,MemoizedEntry> memo = new HashMap<String, MemoizedEntry>();
+
+    private static class MemoizedEntry {
+        final INedTypeResolver nedResolver; // the NED copy the entry was computed from
+        final String sectionChainContents;  // see getSectionChainContents()
+        final Entry entry;
+
+        MemoizedEntry(INedTypeResolver nedResolver, String sectionChainContents, Entry entry) {
+            this.nedResolver = nedResolver;
+            this.sectionChainContents = sectionChainContents;
+            this.entry = entry;
+        }
+    }
+
     public ParamResolutionJob(IInifileDocument doc) {
         super("Ini file analysis");
         this.doc = doc;
@@ -63,13 +87,15 @@ class ParamResolutionJob extends Job {
     private IStatus tryRun(IProgressMonitor monitor) {
         final IReadonlyInifileDocument docCopy = doc.getImmutableCopy();
         final INedResources nedResources = NedResourcesPlugin.getNedResources();
-        final INedTypeResolver nedResolver = nedResources.getImmutableCopy();
+        final INedTypeResolver nedResolver = nedResources.acquireImmutableCopy();
 
         List<Entry> entries = new ArrayList<Entry>();
         String[] sections = docCopy.getSectionNames();
         monitor.beginTask("Analyzing " + docCopy.getDocumentFile().getName(), sections.length * 100);
 
         long startTime = System.currentTimeMillis();
+        int numReused = 0;
+        boolean success = false;
 
         class SubMonitor extends SubProgressMonitor {
             public SubMonitor(IProgressMonitor monitor, int ticks) {
@@ -87,11 +113,23 @@ class ParamResolutionJob extends Job {
                 if (monitor.isCanceled() || !doc.isImmutableCopyUpToDate(docCopy) || !nedResources.isImmutableCopyUpToDate(nedResolver))
                     throw new OperationCanceledException();
 
-                monitor.subTask("Resolving module parameters and properties.");
-                Entry entry =
-                    ParamCollector.collectParametersAndProperties(docCopy, nedResolver, activeSection, new SubMonitor(monitor, 100));
-                entries.add(entry);
+                String sectionChainContents = getSectionChainContents(docCopy, activeSection);
+                MemoizedEntry memoized = memo.get(activeSection);
+                if (memoized != null && memoized.nedResolver == nedResolver && memoized.sectionChainContents.equals(sectionChainContents)) {
+                    entries.add(memoized.entry);
+                    monitor.worked(100);
+                    numReused++;
+                }
+                else {
+                    monitor.subTask("Resolving module parameters and properties.");
+                    Entry entry =
+                        ParamCollector.collectParametersAndProperties(docCopy, nedResolver, activeSection, new SubMonitor(monitor, 100));
+                    entries.add(entry);
+                    memo.put(activeSection, new MemoizedEntry(nedResolver, sectionChainContents, entry));
+                }
             }
+            memo.keySet().retainAll(Arrays.asList(sections));
+            success = true;
 
         } catch (OperationCanceledException e) {
             if (monitor.isCanceled()) {
@@ -104,9 +142,25 @@ class ParamResolutionJob extends Job {
             }
         } finally {
             monitor.done();
+            if (!success)
+                nedResources.releaseImmutableCopy(nedResolver); // otherwise the status takes it over
         }
 
-        Debug.println("ParamResolutionJob: completed in "+(System.currentTimeMillis()-startTime)+"ms");
+        Debug.println("ParamResolutionJob: completed in "+(System.currentTimeMillis()-startTime)+"ms, reused the results of "+numReused+" of "+sections.length+" sections");
         return new ParamResolutionStatus(entries, docCopy, nedResolver);
     }
+
+    /**
+     * Returns the sections and entries in the section chain of the given section
+     * as a string; the resolution of a section only depends on these (and on NED).
+     */
+    private static String getSectionChainContents(IReadonlyInifileDocument doc, String section) {
+        StringBuilder result = new StringBuilder();
+        for (String chainSection : doc.getSectionChain(section)) {
+            result.append('[').append(chainSection).append("]\n");
+            for (String key : doc.getKeys(chainSection))
+                result.append(key).append('=').append(doc.getValue(chainSection, key)).append('\n');
+        }
+        return result.toString();
+    }
 }
@@ -21,7 +21,7 @@ public class ParamResolutionStatus extends Status {
     }
 
     public final IReadonlyInifileDocument docCopy;
-    public final INedTypeResolver nedResolverCopy;
+    public final INedTypeResolver nedResolverCopy; // acquired with acquireImmutableCopy(), the receiver of the status must release it
     public final List<Entry> result;
 
     public ParamResolutionStatus(List<Entry> entries, IReadonlyInifileDocument docCopy, INedTypeResolver nedResolverCopy) {
@@ -20,10 +20,12 @@ import org.omnetpp.inifile.editor.editors.InifileSelectionItem;
 import org.omnetpp.inifile.editor.model.IReadonlyInifileDocument;
 import org.omnetpp.inifile.editor.model.InifileAnalyzer;
 import org.omnetpp.inifile.editor.model.InifileUtils;
+import org.omnetpp.ned.core.INedResources;
 import org.omnetpp.ned.core.NedResourcesPlugin;
 import org.omnetpp.ned.model.INedElement;
 import org.omnetpp.ned.model.interfaces.INedModelProvider;
 import org.omnetpp.ned.model.interfaces.INedTypeInfo;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
 import org.omnetpp.ned.model.notification.INedChangeListener;
 import org.omnetpp.ned.model.notification.NedModelEvent;
 import org.omnetpp.ned.model.pojo.ChannelElement;
@@ -44,6 +46,13 @@ import org.omnetpp.ned.model.pojo.SubmoduleElement;
  */
 public abstract class AbstractModuleView extends PinnableView implements IShowInTarget {
     private INedChangeListener nedChangeListener;
+    private INedTypeResolver contentNedResolver; // acquired NED copy the displayed content was built from, or null
+
+    @Override
+    public void dispose() {
+        setContentNedResolver(null);
+        super.dispose();
+    }
 
     @Override
     protected void hookListeners() {
@@ -118,6 +127,7 @@ public abstract class AbstractModuleView extends PinnableView implements IShowIn
                 if (model != null ) {
                     hideMessage();
                     buildContent(model, null, null, null);
+                    setContentNedResolver(null);
                 } else
                     showMessage("No NED element selected.");
             }
@@ -138,14 +148,27 @@ public abstract class AbstractModuleView extends PinnableView implements IShowIn
                     showMessage("Network not specified (no network= setting in ["+sel.getSection()+"] or the sections it extends)");
                     return;
                 }
-                INedTypeInfo networkType = analyzer.resolveNetwork(NedResourcesPlugin.getNedResources().getImmutableCopy(), networkName);
-                if (networkType == null) {
-                    showMessage("No such NED network: "+networkName);
-                    return;
-                }
+                INedResources nedResources = NedResourcesPlugin.getNedResources();
+                INedTypeResolver nedResolver = nedResources.acquireImmutableCopy();
+                boolean contentBuilt = false;
+                try {
+                    INedTypeInfo networkType = analyzer.resolveNetwork(nedResolver, networkName);
+                    if (networkType == null) {
+                        showMessage("No such NED network: "+networkName);
+                        return;
+                    }
 
-                hideMessage();
-                buildContent(networkType.getNedElement(), analyzer, sel.getSection(), sel.getKey());
+                    hideMessage();
+                    buildContent(networkType.getNedElement(), analyzer, sel.getSection(), sel.getKey());
+                    contentBuilt = true;
+                }
+                finally {
+                    // the content refers to the copy (e.g. tree nodes expanded lazily), so keep it until replaced
+                    if (contentBuilt)
+                        setContentNedResolver(nedResolver);
+                    else
+                        nedResources.releaseImmutableCopy(nedResolver);
+                }
             }
         }
         else {
@@ -153,6 +176,16 @@ public abstract class AbstractModuleView extends PinnableView implements IShowIn
         }
     }
 
+    /**
+     * Releases the NED copy of the previous content, and stores the one the
+     * current content was built from (already acquired, may be null).
+     */
+    private void setContentNedResolver(INedTypeResolver nedResolver) {
+        if (contentNedResolver != null)
+            NedResourcesPlugin.getNedResources().releaseImmutableCopy(contentNedResolver);
+        contentNedResolver = nedResolver;
+    }
+
     /**
      * Update view to display content that corresponds to the NED element,
      * with the specified inifile as configuration.
@@ -101,6 +101,11 @@ public interface IOmnetppLaunchConstants {
      */
     public static final String OPP_BATCH_SIZE = OMNETPP_LAUNCH_ID + ".BATCH_SIZE";
 
+    /**
+     * Whether to leave out the runs whose results are up to date during batch execution (boolean)
+     */
+    public static final String OPP_SKIP_UP_TO_DATE_RUNS = OMNETPP_LAUNCH_ID + ".SKIP_UP_TO_DATE_RUNS";
+
     /**
      * Which user interface to use (-u)
      */
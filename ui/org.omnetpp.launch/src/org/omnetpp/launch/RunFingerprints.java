@@ -0,0 +1,321 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.launch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.debug.core.ILaunchConfiguration;
+import org.omnetpp.common.util.FileUtils;
+import org.omnetpp.common.util.StringUtils;
+import org.omnetpp.launch.tabs.OmnetppLaunchUtils;
+
+/**
+ * Fingerprints of the inputs of simulation runs, for skipping the runs whose
+ * results are up to date. The fingerprint of a run covers its expanded
+ * configuration (as printed by '-q runconfig'), the command line, the
+ * simulation executable and shared libraries, and the NED files in the NED
+ * path. Files are represented by their path, size and modification time.
+ *
+ * The fingerprints are passed to the simulation as the value of a parameter
+ * assignment that matches no parameter, so they get recorded among the run
+ * attributes ("param" lines) of the result files. Result files do not record
+ * whether the run completed successfully, so the fingerprint is also written
+ * into a completion marker file next to the scalar file once the run has
+ * finished without error, and the marker is deleted before the run is
+ * started again. A run is up to date if both its scalar file and its
+ * completion marker record the same fingerprint as the current one.
+ */
+public class RunFingerprints {
+    public static final String FINGERPRINT_PARAM_KEY = "**.oppIdeRunFingerprints";
+    private static final int FINGERPRINT_LENGTH = 16; // hex digits
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String[] SHARED_LIB_NAME_FORMATS = {"lib%s.so", "lib%s.dylib", "%s.dll", "lib%s.dll"};
+
+    private String configName;
+    private Map<Integer,String> fingerprints = new HashMap<>(); // by run number
+    private Map<Integer,File> resultDirs = new HashMap<>(); // directory of the scalar file, by run number
+
+    /**
+     * The run attributes read from the beginning of a scalar file.
+     */
+    static class ResultFileHeader {
+        String configName;
+        int runNumber = -1;
+        Map<Integer,String> fingerprints = new HashMap<>();
+    }
+
+    protected RunFingerprints(String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * Computes the fingerprints of the runs matched by the run filter. This involves
+     * running the simulation program to query the expanded configuration of the runs.
+     */
+    public static RunFingerprints compute(ILaunchConfiguration configuration, String runFilter) throws CoreException, InterruptedException {
+        String configName = configuration.getAttribute(IOmnetppLaunchConstants.OPP_CONFIG_NAME, "");
+        RunFingerprints result = new RunFingerprints(configName.isEmpty() ? "General" : configName);
+
+        File workingDir = new File(OmnetppLaunchUtils.getWorkingDirectoryPath(configuration).toString());
+        String inputsDescription = describeInputs(OmnetppLaunchUtils.createCommandLine(configuration, ""), workingDir);
+
+        Map<Integer,String> runConfigs = OmnetppLaunchUtils.queryRunConfigs(configuration, runFilter);
+        for (Map.Entry<Integer,String> entry : runConfigs.entrySet()) {
+            result.fingerprints.put(entry.getKey(), computeHash(inputsDescription + "\n" + entry.getValue()));
+            result.resultDirs.put(entry.getKey(), getResultDir(entry.getValue(), workingDir));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a description of the inputs that are common to all runs: the command
+     * line, and the path, size and modification time of the relevant files.
+     */
+    protected static String describeInputs(String[] commandLine, File workingDir) {
+        StringBuilder description = new StringBuilder();
+        description.append(StringUtils.join(Arrays.asList(commandLine).subList(1, commandLine.length), " ")).append('\n');
+        describeFile(new File(commandLine[0]), description);
+
+        boolean haveNedPath = false;
+        for (int i = 1; i < commandLine.length - 1; i++) {
+            if (commandLine[i].equals("-n")) {
+                haveNedPath = true;
+                for (String nedFolder : commandLine[i+1].split(File.pathSeparator))
+                    describeNedFiles(resolve(workingDir, nedFolder), description);
+            }
+            else if (commandLine[i].equals("-l")) {
+                File lib = resolve(workingDir, commandLine[i+1]);
+                for (String format : SHARED_LIB_NAME_FORMATS)
+                    describeFile(new File(lib.getParentFile(), String.format(format, lib.getName())), description);
+            }
+        }
+        if (!haveNedPath)
+            describeNedFiles(workingDir, description);
+        return description.toString();
+    }
+
+    private static File resolve(File dir, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(dir, path);
+    }
+
+    private static void describeFile(File file, StringBuilder description) {
+        if (file.isFile())
+            description.append(file.getPath()).append(' ').append(file.length()).append(' ').append(file.lastModified()).append('\n');
+    }
+
+    private static void describeNedFiles(File dir, StringBuilder description) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory() && !file.getName().startsWith("."))
+                describeNedFiles(file, description);
+            else if (file.getName().endsWith(".ned"))
+                describeFile(file, description);
+        }
+    }
+
+    protected static String computeHash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(UTF8));
+            StringBuilder hash = new StringBuilder(FINGERPRINT_LENGTH);
+            for (int i = 0; hash.length() < FINGERPRINT_LENGTH; i++)
+                hash.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            return hash.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // SHA-1 is always available
+        }
+    }
+
+    /**
+     * Determines the directory of the scalar file from the configuration of the run.
+     */
+    protected static File getResultDir(String runConfig, File workingDir) {
+        String resultDir = "results";
+        String scalarFile = null;
+        for (String line : runConfig.split("\n")) {
+            String key = StringUtils.substringBefore(line, " = ").trim();
+            String value = StringUtils.removeEnd(StringUtils.removeStart(StringUtils.substringAfter(line, " = ").trim(), "\""), "\"");
+            if (key.equals("result-dir"))
+                resultDir = value;
+            else if (key.equals("output-scalar-file"))
+                scalarFile = value;
+        }
+        return scalarFile != null ? resolve(workingDir, scalarFile).getParentFile() : resolve(workingDir, resultDir);
+    }
+
+    /**
+     * Returns the fingerprint of the given run, or null if it is not known.
+     */
+    public String getFingerprint(int runNumber) {
+        return fingerprints.get(runNumber);
+    }
+
+    /**
+     * Returns the runs among the given ones that have up-to-date results.
+     */
+    public List<Integer> findUpToDateRuns(List<Integer> runNumbers) {
+        Map<File,Map<Integer,String>> recordedFingerprintsByDir = new HashMap<>();
+        List<Integer> result = new ArrayList<>();
+        for (int runNumber : runNumbers) {
+            String fingerprint = fingerprints.get(runNumber);
+            if (fingerprint == null || !fingerprint.equals(readCompletionMarker(runNumber)))
+                continue;
+            File dir = resultDirs.get(runNumber);
+            Map<Integer,String> recordedFingerprints = recordedFingerprintsByDir.get(dir);
+            if (recordedFingerprints == null)
+                recordedFingerprintsByDir.put(dir, recordedFingerprints = readRecordedFingerprints(dir, configName));
+            if (fingerprint.equals(recordedFingerprints.get(runNumber)))
+                result.add(runNumber);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fingerprints recorded in the scalar files of the given
+     * configuration in the given directory, by run number.
+     */
+    public static Map<Integer,String> readRecordedFingerprints(File dir, String configName) {
+        Map<Integer,String> result = new HashMap<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".sca")) {
+                    ResultFileHeader header = readHeader(file);
+                    if (header != null && configName.equals(header.configName) && header.fingerprints.containsKey(header.runNumber))
+                        result.put(header.runNumber, header.fingerprints.get(header.runNumber));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the run attributes at the beginning of a scalar file. Returns null
+     * if the file cannot be read or it is not a text scalar file (e.g. SQLite).
+     */
+    static ResultFileHeader readHeader(File file) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+            try {
+                String line = reader.readLine();
+                if (line == null || !line.startsWith("version "))
+                    return null;
+                ResultFileHeader header = new ResultFileHeader();
+                while ((line = reader.readLine()) != null) {
+                    String[] tokens = line.split(" ", 3);
+                    if (tokens[0].equals("run"))
+                        continue;
+                    if (tokens.length != 3 || !(tokens[0].equals("attr") || tokens[0].equals("itervar") || tokens[0].equals("param") || tokens[0].equals("config")))
+                        break; // end of the run header
+                    String value = StringUtils.removeEnd(StringUtils.removeStart(tokens[2], "\""), "\"");
+                    if (tokens[0].equals("attr") && tokens[1].equals("configname"))
+                        header.configName = value;
+                    else if (tokens[0].equals("attr") && tokens[1].equals("runnumber"))
+                        header.runNumber = Integer.parseInt(value);
+                    else if (tokens[0].equals("param") && tokens[1].equals(FINGERPRINT_PARAM_KEY))
+                        header.fingerprints = parseFingerprintList(value);
+                }
+                return header;
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Map<Integer,String> parseFingerprintList(String value) {
+        Map<Integer,String> result = new HashMap<>();
+        for (String item : value.split(",")) {
+            String runNumber = StringUtils.substringBefore(item, ":");
+            if (!runNumber.isEmpty() && StringUtils.isNumeric(runNumber))
+                result.put(Integer.parseInt(runNumber), StringUtils.substringAfter(item, ":"));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the command-line argument that records the fingerprints of the
+     * given runs in the result files (each process records those of all runs
+     * in its batch, as it has the same command line for all of them).
+     */
+    public String createCommandLineArgument(List<Integer> batch) {
+        List<String> items = new ArrayList<>();
+        for (int runNumber : batch)
+            if (fingerprints.containsKey(runNumber))
+                items.add(runNumber + ":" + fingerprints.get(runNumber));
+        return "--" + FINGERPRINT_PARAM_KEY + "=" + StringUtils.join(items, ",");
+    }
+
+    /**
+     * Returns the file that marks the successful completion of the given run.
+     */
+    protected File getCompletionMarkerFile(int runNumber) {
+        return new File(resultDirs.get(runNumber), "." + configName + "-#" + runNumber + ".completed");
+    }
+
+    /**
+     * Returns the fingerprint recorded in the completion marker of the given
+     * run, or null if there is no marker.
+     */
+    protected String readCompletionMarker(int runNumber) {
+        File file = getCompletionMarkerFile(runNumber);
+        try {
+            return file.isFile() ? FileUtils.readTextFile(file, "UTF-8").trim() : null;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the completion markers of the given runs, so that their results
+     * are not considered up to date while they are being (re)generated, or if
+     * the runs fail.
+     */
+    public void runsStarting(List<Integer> batch) {
+        for (int runNumber : batch)
+            if (fingerprints.containsKey(runNumber))
+                getCompletionMarkerFile(runNumber).delete();
+    }
+
+    /**
+     * Records that the given run finished without error, by writing its
+     * fingerprint into its completion marker.
+     */
+    public void runCompleted(int runNumber) {
+        String fingerprint = fingerprints.get(runNumber);
+        if (fingerprint != null) {
+            try {
+                FileUtils.writeTextFile(getCompletionMarkerFile(runNumber), fingerprint + "\n", "UTF-8");
+            }
+            catch (IOException e) {
+                LaunchPlugin.logError("Cannot write completion marker of run " + runNumber, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.launch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Assert;
+
+/**
+ * Hands out batches of simulation runs to the processes of a batch execution.
+ * The runs are kept in a shared queue which the processes draw from as they
+ * become free, so that a slow run does not hold back the runs assigned to the
+ * same process.
+ *
+ * Runs are queued in the order of decreasing expected duration (longest
+ * first), so that the long runs do not end up at the end, leaving the other
+ * processes idle. Expected durations come from the durations observed earlier
+ * (the map passed in, which is also updated as runs complete); runs without
+ * observations are assumed to take the average time.
+ *
+ * The size of a batch adapts to the expected run durations: a batch should
+ * take several times longer than starting the process so that startup costs
+ * are amortized (but not longer than MAX_BATCH_MILLIS), and it should not
+ * take more than a fraction of the remaining work of one process, so that
+ * processes finish at about the same time. It never contains more runs than
+ * the configured maximum batch size, and it is a single run until some
+ * durations have been observed.
+ *
+ * Thread-safe.
+ */
+public class RunScheduler {
+    public static final long MAX_BATCH_MILLIS = 60000;  // longest desired batch
+    public static final int STARTUP_AMORTIZATION_FACTOR = 10;  // batches should take this many times longer than process startup
+
+    private final int maxBatchSize;
+    private final int numProcesses;
+    private final Map<Integer,Long> runDurations; // observed duration of each run in millis
+    private final Deque<Integer> queue;
+    private long totalObservedMillis;
+    private int numObservedRuns;
+    private long totalStartupMillis;
+    private int numObservedStartups;
+
+    /**
+     * Creates a scheduler for the given runs. runDurations contains the durations
+     * of runs observed in earlier executions, and it is updated with the durations
+     * observed by this scheduler; it should be a concurrent map if it is shared.
+     */
+    public RunScheduler(List<Integer> runNumbers, int maxBatchSize, int numProcesses, Map<Integer,Long> runDurations) {
+        Assert.isTrue(maxBatchSize >= 1 && numProcesses >= 1);
+        this.maxBatchSize = maxBatchSize;
+        this.numProcesses = numProcesses;
+        this.runDurations = runDurations;
+
+        for (Integer runNumber : runNumbers) {
+            Long duration = runDurations.get(runNumber);
+            if (duration != null) {
+                totalObservedMillis += duration;
+                numObservedRuns++;
+            }
+        }
+
+        // longest expected first; stable, so runs without history remain in their original order
+        final long averageMillis = getAverageRunMillis();
+        List<Integer> sortedRunNumbers = new ArrayList<Integer>(runNumbers);
+        Collections.sort(sortedRunNumbers, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer run1, Integer run2) {
+                return Long.compare(getExpectedMillis(run2, averageMillis), getExpectedMillis(run1, averageMillis));
+            }
+        });
+        queue = new ArrayDeque<Integer>(sortedRunNumbers);
+    }
+
+    private long getExpectedMillis(Integer runNumber, long averageMillis) {
+        Long duration = runDurations.get(runNumber);
+        return duration != null ? duration : averageMillis;
+    }
+
+    private long getAverageRunMillis() {
+        return numObservedRuns == 0 ? 0 : totalObservedMillis / numObservedRuns;
+    }
+
+    /**
+     * Returns the number of runs not yet handed out.
+     */
+    public synchronized int getNumRemainingRuns() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the runs to be executed by the next process, or null if there are
+     * no more runs.
+     */
+    public synchronized List<Integer> nextBatch() {
+        if (queue.isEmpty())
+            return null;
+        List<Integer> batch = new ArrayList<Integer>();
+        batch.add(queue.poll());
+        if (numObservedRuns == 0)
+            return batch;
+
+        long averageMillis = getAverageRunMillis();
+        long batchMillis = getExpectedMillis(batch.get(0), averageMillis);
+        long remainingMillis = batchMillis;
+        for (Integer runNumber : queue)
+            remainingMillis += getExpectedMillis(runNumber, averageMillis);
+
+        // at most half of the remaining share of a process, but not so short that
+        // the startup of the process would take a large part of it
+        long startupMillis = numObservedStartups == 0 ? 0 : totalStartupMillis / numObservedStartups;
+        long targetBatchMillis = numObservedStartups == 0 ? MAX_BATCH_MILLIS : Math.min(MAX_BATCH_MILLIS, STARTUP_AMORTIZATION_FACTOR * startupMillis);
+        long maxBatchMillis = Math.min(targetBatchMillis, Math.max(2*startupMillis, remainingMillis / (2*numProcesses)));
+        while (batch.size() < maxBatchSize && !queue.isEmpty() && batchMillis + getExpectedMillis(queue.peek(), averageMillis) <= maxBatchMillis) {
+            batchMillis += getExpectedMillis(queue.peek(), averageMillis);
+            batch.add(queue.poll());
+        }
+        return batch;
+    }
+
+    /**
+     * Records that the given batch was executed successfully in the given
+     * time, which includes the startup time of the process. runMillis contains
+     * the durations of the individual runs where they are known (may be empty);
+     * for the other runs, the rest of the time is divided evenly among them.
+     */
+    public synchronized void batchFinished(List<Integer> batch, long millis, Map<Integer,Long> runMillis) {
+        long knownMillis = 0;
+        int numUnknownRuns = 0;
+        for (Integer runNumber : batch) {
+            Long duration = runMillis.get(runNumber);
+            if (duration != null)
+                knownMillis += duration;
+            else
+                numUnknownRuns++;
+        }
+
+        if (numUnknownRuns == 0) {
+            // the rest is the startup (and shutdown) time of the process
+            totalStartupMillis += Math.max(0, millis - knownMillis);
+            numObservedStartups++;
+        }
+
+        long millisPerUnknownRun = numUnknownRuns == 0 ? 0 : Math.max(0, millis - knownMillis) / numUnknownRuns;
+        for (Integer runNumber : batch) {
+            Long duration = runMillis.get(runNumber);
+            if (duration == null)
+                duration = millisPerUnknownRun;
+            runDurations.put(runNumber, duration);
+            totalObservedMillis += duration;
+            numObservedRuns++;
+        }
+    }
+
+    /**
+     * Drops the runs that have not been handed out yet.
+     */
+    public synchronized void stop() {
+        queue.clear();
+    }
+}
@@ -10,6 +10,10 @@ package org.omnetpp.launch;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -49,9 +53,16 @@ public class SimulationLauncherJob extends Job {
     private String taskName;
     private boolean reportProgress;
     private int port;
+    private String additionalArgs = "";
 
     private StringBuffer errors = new StringBuffer();
 
+    // run durations observed from the process output
+    private Map<Integer,Long> runDurations = new HashMap<>();
+    private Set<Integer> failedRuns = new HashSet<>();
+    private int currentRunNumber = -1;
+    private long currentRunStartTime;
+
     public SimulationLauncherJob(ILaunchConfiguration configuration, ILaunch launch, String runFilter, boolean reportProgress, int port) {
         super("Simulating "+configuration.getName() + (runFilter.contains(",") ? " - Runs " : " - Run ") + runFilter);
         this.configuration = configuration;
@@ -61,6 +72,13 @@ public class SimulationLauncherJob extends Job {
         this.port = port;
     }
 
+    /**
+     * Sets extra command-line arguments for the simulation.
+     */
+    public void setAdditionalArgs(String additionalArgs) {
+        this.additionalArgs = additionalArgs;
+    }
+
     /**
      * We are using the launch object as a group family, so we can cancel all processes associated with
      * the launch.
@@ -82,7 +100,7 @@ public class SimulationLauncherJob extends Job {
         subMonitor.subTask("Initializing...");
 
         try {
-            String additionalArgs = "";
+            String additionalArgs = this.additionalArgs;
             if (runFilter != "")
                 additionalArgs += " -r " + StringUtils.quoteStringIfNeeded(runFilter);
             if (port != -1)
@@ -112,6 +130,7 @@ public class SimulationLauncherJob extends Job {
             // setup a stream monitor on the process output, so we can track the progress
             if (reportProgress && monitor != null)
                 hookProgressTracker(subMonitor, iprocess);
+            hookRunTracker(iprocess);
 
             // poll the state of the monitor and terminate the process if cancel was requested
             while (!iprocess.isTerminated()) {
@@ -127,6 +146,9 @@ public class SimulationLauncherJob extends Job {
             }
 
             subMonitor.done();
+            if (iprocess.getExitValue() != 0)
+                runFailed();
+            runStarted(-1);
 
             if (iprocess.getExitValue() != 0) {
                 // do some error reporting if the process finished with error
@@ -187,6 +209,61 @@ public class SimulationLauncherJob extends Job {
         });
     }
 
+    protected void hookRunTracker(IProcess iprocess) {
+        IStreamsProxy streamsProxy = iprocess.getStreamsProxy();
+        if (streamsProxy == null)
+            return;  // no console
+
+        streamsProxy.getOutputStreamMonitor().addListener(new IStreamListener () {
+            StringBuilder partialLine = new StringBuilder();
+            @Override
+            public void streamAppended(String text, IStreamMonitor streamMonitor) {
+                partialLine.append(text);
+                int endIndex;
+                while ((endIndex = partialLine.indexOf("\n")) != -1) {
+                    String line = StringUtils.stripEnd(partialLine.substring(0, endIndex), "\r");
+                    int runNumber = OmnetppLaunchUtils.getStartedRunNumber(line);
+                    if (runNumber != -1)
+                        runStarted(runNumber);
+                    else if (line.startsWith(ERROR_MARKER))
+                        runFailed();
+                    partialLine.delete(0, endIndex + 1);
+                }
+                if (partialLine.length() > 1000)
+                    partialLine.setLength(0); // not interested in long lines
+            }
+        });
+    }
+
+    protected synchronized void runStarted(int runNumber) {
+        long now = System.currentTimeMillis();
+        if (currentRunNumber != -1)
+            runDurations.put(currentRunNumber, now - currentRunStartTime);
+        currentRunNumber = runNumber;
+        currentRunStartTime = now;
+    }
+
+    protected synchronized void runFailed() {
+        if (currentRunNumber != -1)
+            failedRuns.add(currentRunNumber);
+    }
+
+    /**
+     * Returns the runs that were seen failing in the process output.
+     */
+    public synchronized Set<Integer> getFailedRuns() {
+        return new HashSet<>(failedRuns);
+    }
+
+    /**
+     * Returns the durations (in millis) of the runs completed by the process, as
+     * observed from its output. Runs whose start was not seen in the output
+     * (e.g. because there is no console) are missing from the map.
+     */
+    public synchronized Map<Integer,Long> getRunDurations() {
+        return new HashMap<>(runDurations);
+    }
+
     protected void dumpPostMortemInfo(IProcess iprocess, String commandLine, IPath workingDir) throws CoreException {
         String errorMsg = "\nSimulation terminated with exit code: " + iprocess.getExitValue() + "\n";
         errorMsg += "Working directory: " + workingDir + "\n";
@@ -9,23 +9,23 @@ package org.omnetpp.launch;
 
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.IJobChangeListener;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.JobChangeAdapter;
-import org.eclipse.core.runtime.jobs.JobGroup;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.model.LaunchConfigurationDelegate;
@@ -44,6 +44,9 @@ import org.omnetpp.launch.tabs.OmnetppLaunchUtils;
 public class SimulationRunLaunchDelegate extends LaunchConfigurationDelegate {
     public static final String PREF_SWITCH_TO_SIMULATE_PERSPECTIVE = "org.omnetpp.launch.SwitchToSimulatePerspective";  //TODO add a way to clear this preference!
 
+    // observed run durations (in millis) for the batch scheduler, per launch configuration; kept for the session only
+    private static final Map<String,Map<Integer,Long>> runDurationHistory = new HashMap<>();
+
     public static class JobSimulationProcess extends AbstractSimulationProcess {
         private Job job;
         private IJobChangeListener jobChangeListener;
@@ -109,39 +112,38 @@ public class SimulationRunLaunchDelegate extends LaunchConfigurationDelegate {
                 return; // abandon job
             }
 
+            // leave out the runs whose results are up to date
+            RunFingerprints fingerprints = null;
+            int numUpToDateRuns = 0;
+            if (configuration.getAttribute(IOmnetppLaunchConstants.OPP_SKIP_UP_TO_DATE_RUNS, false)) {
+                try {
+                    fingerprints = RunFingerprints.compute(configuration, runFilter);
+                    List<Integer> upToDateRuns = fingerprints.findUpToDateRuns(runNumbers);
+                    Debug.println("Skipping up-to-date runs: " + upToDateRuns);
+                    runNumbers.removeAll(upToDateRuns);
+                    numUpToDateRuns = upToDateRuns.size();
+                }
+                catch (CoreException e) {
+                    LaunchPlugin.logError("Cannot determine which runs are up to date, executing all runs", e);
+                    fingerprints = null;
+                }
+                catch (InterruptedException e) {
+                    return; // abandon job
+                }
+            }
+
             int numConcurrentProcesses = configuration.getAttribute(IOmnetppLaunchConstants.OPP_NUM_CONCURRENT_PROCESSES, 1);
-            int batchSize = configuration.getAttribute(IOmnetppLaunchConstants.OPP_BATCH_SIZE, 1);
+            int maxBatchSize = configuration.getAttribute(IOmnetppLaunchConstants.OPP_BATCH_SIZE, 1);
             boolean stopOnError = configuration.getAttribute(IOmnetppLaunchConstants.OPP_STOP_BATCH_ON_ERROR, "false").equals("true"); //XXX similar ini setting won't take effect here
 
-            List<List<Integer>> batches = splitIntoBatches(runNumbers, batchSize);
-            Debug.println(batches.toString());
-
-            String[] batchRunFilters = batches.stream().map(batch -> StringUtils.join(batch, ",")).collect(Collectors.toList()).toArray(new String[]{});
+            RunScheduler scheduler = new RunScheduler(runNumbers, maxBatchSize, numConcurrentProcesses, getRunDurationHistory(configuration));
 
-            Job launcherJob = new Job("Batch Execution of " + configuration.getName() + " ("+runNumbers.size()+" runs using " + batchRunFilters.length + " processes) ") {
+            RunFingerprints runFingerprints = fingerprints;
+            String skippedRunsInfo = numUpToDateRuns == 0 ? "" : ", " + numUpToDateRuns + " up-to-date runs skipped";
+            Job launcherJob = new Job("Batch Execution of " + configuration.getName() + " ("+runNumbers.size()+" runs using " + numConcurrentProcesses + " concurrent processes" + skippedRunsInfo + ") ") {
                 @Override
                 protected IStatus run(IProgressMonitor monitor) {
-                    JobGroup jobGroup = new JobGroup("Simulation batch", numConcurrentProcesses, batchRunFilters.length) {
-                        @Override
-                        protected boolean shouldCancel(IStatus lastCompletedJobResult, int numberOfFailedJobs, int numberOfCanceledJobs) {
-                            return numberOfCanceledJobs > 0 || (stopOnError && numberOfFailedJobs > 0);
-                        }
-                    };
-                    for (String batchRunFilter : batchRunFilters) {
-                        Job job1 = new SimulationLauncherJob(configuration, launch, batchRunFilter, reportProgress, portNumber);
-                        job1.setJobGroup(jobGroup);
-                        job1.setPriority(Job.BUILD);
-                        job1.setSystem(false);
-                        job1.schedule();
-                    }
-                    try {
-                        jobGroup.join(0, monitor);
-                    } catch (OperationCanceledException | InterruptedException e) {
-                        Debug.println("Cancelling group");
-                        jobGroup.cancel();
-                        return Status.CANCEL_STATUS;
-                    }
-                    return Status.OK_STATUS;
+                    return executeBatches(configuration, launch, scheduler, runFingerprints, runNumbers.size(), numConcurrentProcesses, stopOnError, reportProgress, portNumber, monitor);
                 }
 
             };
@@ -152,6 +154,114 @@ public class SimulationRunLaunchDelegate extends LaunchConfigurationDelegate {
         }
     }
 
+    /**
+     * Returns the observed run durations for the given launch configuration
+     * (and inifile configuration).
+     */
+    protected static Map<Integer,Long> getRunDurationHistory(ILaunchConfiguration configuration) throws CoreException {
+        String key = configuration.getAttribute(IOmnetppLaunchConstants.ATTR_PROJECT_NAME, "") + "|" + configuration.getName() + "|" +
+                configuration.getAttribute(IOmnetppLaunchConstants.OPP_INI_FILES, "") + "|" + configuration.getAttribute(IOmnetppLaunchConstants.OPP_CONFIG_NAME, "");
+        synchronized (runDurationHistory) {
+            return runDurationHistory.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Executes the runs of the scheduler in at most numConcurrentProcesses simulation
+     * processes at a time. Whenever a process finishes, a new one is started with the
+     * next batch of runs, until all runs have been executed. If fingerprints is not null,
+     * the processes are told to record the fingerprints of the runs in the result files.
+     * Called from the background job.
+     */
+    protected IStatus executeBatches(ILaunchConfiguration configuration, ILaunch launch, RunScheduler scheduler, RunFingerprints fingerprints, int numRuns, int numConcurrentProcesses,
+            boolean stopOnError, boolean reportProgress, int portNumber, IProgressMonitor monitor) {
+        monitor.beginTask("Executing simulation runs", numRuns);
+
+        final Map<Job,List<Integer>> runningJobs = new HashMap<>(); // also the lock for the fields below
+        final Map<Job,Long> startTimes = new ConcurrentHashMap<>();
+        final int[] numFinishedRuns = new int[1];
+        final boolean[] cancelled = new boolean[1];
+
+        IJobChangeListener listener = new JobChangeAdapter() {
+            @Override
+            public void running(IJobChangeEvent event) {
+                startTimes.put(event.getJob(), System.currentTimeMillis());
+            }
+
+            @Override
+            public void done(IJobChangeEvent event) {
+                Job job = event.getJob();
+                IStatus result = event.getResult();
+                Long startTime = startTimes.remove(job);
+                synchronized (runningJobs) {
+                    List<Integer> batch = runningJobs.remove(job);
+                    if (fingerprints != null) {
+                        // if the process failed, only the runs seen finishing without error count as completed
+                        SimulationLauncherJob launcherJob = (SimulationLauncherJob)job;
+                        Set<Integer> failedRuns = launcherJob.getFailedRuns();
+                        Set<Integer> finishedRuns = result.isOK() ? null : launcherJob.getRunDurations().keySet();
+                        for (int runNumber : batch)
+                            if (!failedRuns.contains(runNumber) && (finishedRuns == null || finishedRuns.contains(runNumber)))
+                                fingerprints.runCompleted(runNumber);
+                    }
+                    numFinishedRuns[0] += batch.size();
+                    if (result.isOK() && startTime != null)
+                        scheduler.batchFinished(batch, System.currentTimeMillis() - startTime, ((SimulationLauncherJob)job).getRunDurations());
+                    else if (result.getSeverity() == IStatus.CANCEL || (stopOnError && result.getSeverity() == IStatus.ERROR)) {
+                        cancelled[0] = true;
+                        scheduler.stop();
+                        for (Job otherJob : new ArrayList<>(runningJobs.keySet())) // cancel() may call done() on waiting jobs
+                            otherJob.cancel();
+                    }
+                    runningJobs.notifyAll();
+                }
+            }
+        };
+
+        int numReportedRuns = 0;
+        synchronized (runningJobs) {
+            while (true) {
+                // keep the processes busy
+                List<Integer> batch;
+                while (runningJobs.size() < numConcurrentProcesses && (batch = scheduler.nextBatch()) != null) {
+                    Debug.println("Starting batch: " + batch);
+                    SimulationLauncherJob job = new SimulationLauncherJob(configuration, launch, StringUtils.join(batch, ","), reportProgress, portNumber);
+                    if (fingerprints != null) {
+                        fingerprints.runsStarting(batch);
+                        job.setAdditionalArgs(fingerprints.createCommandLineArgument(batch));
+                    }
+                    job.setPriority(Job.BUILD);
+                    job.setSystem(false);
+                    job.addJobChangeListener(listener);
+                    runningJobs.put(job, batch);
+                    job.schedule();
+                }
+
+                monitor.worked(numFinishedRuns[0] - numReportedRuns);
+                numReportedRuns = numFinishedRuns[0];
+                if (runningJobs.isEmpty())
+                    break;
+
+                boolean interrupted = false;
+                try {
+                    runningJobs.wait(200);
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                if ((monitor.isCanceled() || interrupted) && !cancelled[0]) {
+                    Debug.println("Cancelling batch execution");
+                    cancelled[0] = true;
+                    scheduler.stop();
+                    for (Job job : new ArrayList<>(runningJobs.keySet())) // cancel() may call done() on waiting jobs
+                        job.cancel();
+                }
+            }
+        }
+        monitor.done();
+        return cancelled[0] ? Status.CANCEL_STATUS : Status.OK_STATUS;
+    }
+
     @Override
     public boolean buildForLaunch(ILaunchConfiguration config, String mode, IProgressMonitor monitor) throws CoreException {
         SubMonitor localmonitor = SubMonitor.convert(monitor, "", 1); //$NON-NLS-1$
@@ -175,24 +285,6 @@ public class SimulationRunLaunchDelegate extends LaunchConfigurationDelegate {
         }
     }
 
-    protected List<List<Integer>> splitIntoBatches(List<Integer> runNumbers, int batchSize) {
-        // note: this algorithm prefers creating equal-size batches to strictly sticking to batchSize, e.g. creates 3+3 instead of 4+2
-        List<List<Integer>> result = new ArrayList<>();
-        int numBatches = (runNumbers.size() + batchSize - 1) / batchSize;
-        int cursor = 0; // for drawing from runNumbers[]
-        for (int i = 0; i < numBatches; i++) {
-            List<Integer> batch = new ArrayList<>();
-            int runsInBatch = runNumbers.size() / numBatches;
-            if (i < runNumbers.size() % numBatches)
-                runsInBatch++;
-            for (int j = 0; j < runsInBatch; j++)
-                batch.add(runNumbers.get(cursor++));
-            result.add(batch);
-        }
-        Assert.isTrue(cursor == runNumbers.size());
-        return result;
-    }
-
     @Override
     protected IProject[] getProjectsForProblemSearch(ILaunchConfiguration configuration, String mode) throws CoreException {
         // NOTE: we need to do this twice: here and in launch() which is kind of superfluous
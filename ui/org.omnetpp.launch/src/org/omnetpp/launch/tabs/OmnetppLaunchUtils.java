@@ -17,6 +17,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.ArrayUtils;
@@ -88,6 +90,13 @@ public class OmnetppLaunchUtils {
     private static final int HTTP_PORT_START = 9000;
     private static final int HTTP_PORT_END = 9999;
 
+    // lines printed by Cmdenv at the start of each run, see Cmdenv::doRun()
+    private static final Pattern VERBOSE_RUN_START_PATTERN = Pattern.compile("Preparing for running configuration .*, run #(\\d+)\\.\\.\\.");
+    private static final Pattern RUN_START_PATTERN = Pattern.compile("\\S+ run (\\d+): .*");
+
+    // first line of a run in the output of '-q runconfig', see EnvirBase::printRunInfo()
+    private static final Pattern RUNCONFIG_HEADER_PATTERN = Pattern.compile("Run (\\d+):.*");
+
     /**
      * Reads the ini file and enumerates all config sections. resolves include directives recursively
      */
@@ -844,6 +853,46 @@ public class OmnetppLaunchUtils {
         }
     }
 
+    /**
+     * Runs the simulation with the '-q runconfig' option, and returns the expanded
+     * configuration of each run (the lines printed for the run) by run number.
+     */
+    public static Map<Integer,String> queryRunConfigs(ILaunchConfiguration configuration, String runFilter) throws CoreException, InterruptedException {
+        final String ERROR_PREFIX = "Could not query run configurations by running the simulation program: ";
+        try {
+            String additionalArgs = "";
+            if (configuration.getAttribute(IOmnetppLaunchConstants.OPP_CONFIG_NAME, "").isEmpty())
+                additionalArgs += " -c General";
+            if (!runFilter.isEmpty())
+                additionalArgs += " -r " + StringUtils.quoteStringIfNeeded(runFilter);
+            additionalArgs += " -s -q runconfig";
+            ProcessResult result = getSimulationOutput(configuration, additionalArgs);
+            if (result.exitCode != 0)
+                throw LaunchPlugin.wrapIntoCoreException(ERROR_PREFIX + "\n" + result.stderr.trim() + " (exit code " + result.exitCode + ")", null);
+            Map<Integer,String> runConfigs = new HashMap<>();
+            int runNumber = -1;
+            StringBuilder runConfig = new StringBuilder();
+            for (String line : (result.stdout.trim() + "\n").split("\n")) {
+                Matcher matcher = RUNCONFIG_HEADER_PATTERN.matcher(line);
+                if (matcher.matches()) {
+                    if (runNumber != -1)
+                        runConfigs.put(runNumber, runConfig.toString().trim());
+                    runNumber = Integer.parseInt(matcher.group(1));
+                    runConfig.setLength(0);
+                }
+                else if (runNumber == -1 && !line.isEmpty())
+                    throw LaunchPlugin.wrapIntoCoreException(ERROR_PREFIX + "Unexpected output", null);
+                runConfig.append(line).append('\n');
+            }
+            if (runNumber != -1)
+                runConfigs.put(runNumber, runConfig.toString().trim());
+            return runConfigs;
+        }
+        catch (IOException e) {
+            throw LaunchPlugin.wrapIntoCoreException(ERROR_PREFIX, e);
+        }
+    }
+
     /**
      * Returns a HTML string describing all runs in the scenario, or "" if an error occurred
      */
@@ -988,6 +1037,23 @@ public class OmnetppLaunchUtils {
         return NumberUtils.toInt(pctStr, -1);
     }
 
+    /**
+     * Parses a line of Cmdenv output, and returns the run number if it is the
+     * line that announces the start of a simulation run (in verbose or in
+     * non-verbose mode).
+     * @param line A line of the process output, without the line terminator
+     * @return The run number, or -1 if the line does not announce a run
+     */
+    public static int getStartedRunNumber(String line) {
+        Matcher matcher = VERBOSE_RUN_START_PATTERN.matcher(line);
+        if (!matcher.matches()) {
+            matcher = RUN_START_PATTERN.matcher(line);
+            if (!matcher.matches())
+                return -1;
+        }
+        return NumberUtils.toInt(matcher.group(1), -1);
+    }
+
     /**
      * @param text The process output
      * @return Whether the end of the text indicates that the process is waiting fore user input
@@ -99,6 +99,7 @@ public class OmnetppMainTab extends AbstractLaunchConfigurationTab {
     protected Button fBatchingCheckbox;
     protected Spinner fParallelismSpinner;
     protected Spinner fBatchSizeSpinner;
+    protected Button fSkipUpToDateRunsCheckbox;
     protected Combo fEnvirCombo;
     protected Text fSimTimeLimitText;
     protected Text fCpuTimeLimitText;
@@ -331,10 +332,13 @@ public class OmnetppMainTab extends AbstractLaunchConfigurationTab {
 
             SWTFactory.setIndent(SWTFactory.createLabel(group, "Runs per process:", 1), 20);
             fBatchSizeSpinner = new Spinner(group, SWT.BORDER);
-            fBatchSizeSpinner.setToolTipText("Number of simulation runs to be assigned to a single simulation process (Cmdenv instance)");
+            fBatchSizeSpinner.setToolTipText("Maximum number of simulation runs to be assigned to a single simulation process (Cmdenv instance). Batches are sized automatically based on the observed run times.");
             fBatchSizeSpinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
             fBatchSizeSpinner.setMinimum(1);
             setSpinnerWidthHint(fBatchSizeSpinner);
+
+            fSkipUpToDateRunsCheckbox = SWTFactory.setIndent(SWTFactory.createCheckButton(group, "Skip runs with up-to-date results", null, false, 4), 20);
+            fSkipUpToDateRunsCheckbox.setToolTipText("Do not execute the runs whose result files were produced from the same configuration, NED files and simulation program");
         }
 
         if (isDebugLaunch) {
@@ -478,6 +482,7 @@ public class OmnetppMainTab extends AbstractLaunchConfigurationTab {
                 fBatchingCheckbox.setSelection(config.getAttribute(IOmnetppLaunchConstants.OPP_USE_BATCHING, false));
                 fParallelismSpinner.setSelection(config.getAttribute(IOmnetppLaunchConstants.OPP_NUM_CONCURRENT_PROCESSES, 2));
                 fBatchSizeSpinner.setSelection(config.getAttribute(IOmnetppLaunchConstants.OPP_BATCH_SIZE, 5));
+                fSkipUpToDateRunsCheckbox.setSelection(config.getAttribute(IOmnetppLaunchConstants.OPP_SKIP_UP_TO_DATE_RUNS, false));
             }
 
             if (fDebugOnErrorCheckbox != null)
@@ -540,6 +545,7 @@ public class OmnetppMainTab extends AbstractLaunchConfigurationTab {
             configuration.setAttribute(IOmnetppLaunchConstants.OPP_USE_BATCHING, fBatchingCheckbox.getSelection());
             configuration.setAttribute(IOmnetppLaunchConstants.OPP_NUM_CONCURRENT_PROCESSES, fParallelismSpinner.getSelection());
             configuration.setAttribute(IOmnetppLaunchConstants.OPP_BATCH_SIZE, fBatchSizeSpinner.getSelection());
+            configuration.setAttribute(IOmnetppLaunchConstants.OPP_SKIP_UP_TO_DATE_RUNS, fSkipUpToDateRunsCheckbox.getSelection());
         }
 
         if (fDebugOnErrorCheckbox != null)
@@ -622,6 +628,7 @@ public class OmnetppMainTab extends AbstractLaunchConfigurationTab {
             boolean useBatching = fBatchingCheckbox.getSelection();
             fParallelismSpinner.setEnabled(useBatching);
             fBatchSizeSpinner.setEnabled(useBatching);
+            fSkipUpToDateRunsCheckbox.setEnabled(useBatching);
         }
 
         // update the state of apply and other system buttons
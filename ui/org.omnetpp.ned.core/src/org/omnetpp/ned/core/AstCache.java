@@ -0,0 +1,367 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.ned.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.NedSourceRegion;
+import org.omnetpp.ned.model.ex.NedElementFactoryEx;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
+
+/**
+ * Persistent cache of the element trees of parsed NED and MSG files, so that
+ * unchanged files need not go through the native parser again on IDE startup.
+ * There is one cache file per project in the given directory (normally in the
+ * plugin state location). A cache file is memory-mapped when a tree from that
+ * project is first asked for, and trees are decoded on demand.
+ *
+ * An entry is used only if the size, modification time and content hash of the
+ * file match the ones recorded when the entry was stored. Only trees that were
+ * parsed without errors should be stored, because problem markers are not
+ * cached. Cache files written by a different version of the plugin are ignored.
+ */
+public class AstCache {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x4E415354; // "NAST"
+    private static final String FILE_EXTENSION = ".astcache";
+
+    private static class Entry {
+        long size;
+        long modificationTime;
+        long hash;
+        ByteBuffer data; // encoded tree
+    }
+
+    private static class ProjectCache {
+        Map<String,Entry> entries = new HashMap<String, Entry>(); // key: workspace path of the file
+        boolean dirty;
+    }
+
+    private File directory;
+    private String version;
+    private Map<String,ProjectCache> projectCaches = new HashMap<String, ProjectCache>(); // key: project name
+    private int numHits;
+    private int numMisses;
+
+    /**
+     * Creates a cache that stores its files in the given directory. Cache files
+     * written with a different version string are ignored.
+     */
+    public AstCache(File directory, String version) {
+        this.directory = directory;
+        this.version = version;
+    }
+
+    public synchronized int getNumHits() {
+        return numHits;
+    }
+
+    public synchronized int getNumMisses() {
+        return numMisses;
+    }
+
+    /**
+     * Returns the cached tree of the given file, or null if there is none or
+     * the file has changed since the tree was stored. Pass the NED type resolver
+     * for NED files, and null for MSG files. May be called from several threads
+     * concurrently; decoding is done outside the lock.
+     */
+    public INedElement get(IFile file, INedTypeResolver resolver) {
+        Entry entry;
+        synchronized (this) {
+            entry = getProjectCache(file.getProject().getName()).entries.get(file.getFullPath().toString());
+            if (entry == null)
+                numMisses++;
+        }
+        if (entry == null)
+            return null;
+
+        try {
+            File osFile = file.getLocation().toFile();
+            if (osFile.length() != entry.size || osFile.lastModified() != entry.modificationTime || hashOf(osFile) != entry.hash) {
+                synchronized (this) {
+                    numMisses++;
+                }
+                return null;
+            }
+            INedElement tree = decode(entry.data.duplicate(), resolver);
+            synchronized (this) {
+                numHits++;
+            }
+            return tree;
+        }
+        catch (Exception e) {
+            // corrupt entry or unreadable file: fall back to parsing
+            NedResourcesPlugin.logError("Cannot use cached tree of " + file.getFullPath(), e);
+            remove(file);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the tree of the given file, which should have been parsed without
+     * errors. May be called from several threads concurrently.
+     */
+    public void put(IFile file, INedElement tree) {
+        Entry entry = new Entry();
+        try {
+            File osFile = file.getLocation().toFile();
+            entry.size = osFile.length();
+            entry.modificationTime = osFile.lastModified();
+            entry.hash = hashOf(osFile);
+            entry.data = ByteBuffer.wrap(encode(tree));
+        }
+        catch (IOException e) {
+            remove(file);
+            return;
+        }
+        synchronized (this) {
+            ProjectCache projectCache = getProjectCache(file.getProject().getName());
+            projectCache.entries.put(file.getFullPath().toString(), entry);
+            projectCache.dirty = true;
+        }
+    }
+
+    public synchronized void remove(IFile file) {
+        ProjectCache projectCache = getProjectCache(file.getProject().getName());
+        if (projectCache.entries.remove(file.getFullPath().toString()) != null)
+            projectCache.dirty = true;
+    }
+
+    /**
+     * Writes the cache files of the projects whose entries have changed. Entries
+     * of files that no longer exist in the workspace are dropped.
+     */
+    public synchronized void save() {
+        IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+        for (Map.Entry<String,ProjectCache> e : projectCaches.entrySet()) {
+            ProjectCache projectCache = e.getValue();
+            for (Iterator<String> it = projectCache.entries.keySet().iterator(); it.hasNext(); ) {
+                IPath path = new Path(it.next());
+                if (path.segmentCount() < 2 || !workspaceRoot.getFile(path).exists()) {
+                    it.remove();
+                    projectCache.dirty = true;
+                }
+            }
+            if (projectCache.dirty) {
+                try {
+                    writeCacheFile(getCacheFile(e.getKey()), projectCache);
+                    projectCache.dirty = false;
+                }
+                catch (IOException ex) {
+                    NedResourcesPlugin.logError("Cannot save parsed NED/MSG file cache for project " + e.getKey(), ex);
+                }
+            }
+        }
+    }
+
+    protected File getCacheFile(String projectName) {
+        return new File(directory, projectName + FILE_EXTENSION);
+    }
+
+    protected ProjectCache getProjectCache(String projectName) {
+        ProjectCache projectCache = projectCaches.get(projectName);
+        if (projectCache == null) {
+            projectCache = new ProjectCache();
+            File cacheFile = getCacheFile(projectName);
+            if (cacheFile.exists()) {
+                try {
+                    readCacheFile(cacheFile, projectCache);
+                }
+                catch (Exception e) {
+                    // obsolete or corrupt cache: start from scratch
+                    projectCache.entries.clear();
+                    projectCache.dirty = true;
+                }
+            }
+            projectCaches.put(projectName, projectCache);
+        }
+        return projectCache;
+    }
+
+    // File format: magic, version string, number of entries, then for each entry:
+    // path, size, modification time, hash, length of the encoded tree, encoded tree.
+    // Strings are stored as length + UTF-8 bytes.
+
+    protected void readCacheFile(File cacheFile, ProjectCache projectCache) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(cacheFile, "r");
+        try {
+            ByteBuffer in = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            if (in.getInt() != MAGIC || !version.equals(readString(in)))
+                throw new IOException("obsolete cache file");
+            int numEntries = in.getInt();
+            for (int i = 0; i < numEntries; i++) {
+                String path = readString(in);
+                Entry entry = new Entry();
+                entry.size = in.getLong();
+                entry.modificationTime = in.getLong();
+                entry.hash = in.getLong();
+                int length = in.getInt();
+                ByteBuffer data = in.slice();
+                data.limit(length);
+                entry.data = data;
+                in.position(in.position() + length);
+                projectCache.entries.put(path, entry);
+            }
+        }
+        finally {
+            randomAccessFile.close(); // the mapping stays valid
+        }
+    }
+
+    protected void writeCacheFile(File cacheFile, ProjectCache projectCache) throws IOException {
+        directory.mkdirs();
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+        try {
+            out.writeInt(MAGIC);
+            writeString(out, version);
+            out.writeInt(projectCache.entries.size());
+            byte[] buffer = new byte[0];
+            for (Map.Entry<String,Entry> e : projectCache.entries.entrySet()) {
+                Entry entry = e.getValue();
+                writeString(out, e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.modificationTime);
+                out.writeLong(entry.hash);
+                ByteBuffer data = entry.data.duplicate();
+                data.rewind();
+                int length = data.remaining();
+                if (buffer.length < length)
+                    buffer = new byte[length];
+                data.get(buffer, 0, length);
+                out.writeInt(length);
+                out.write(buffer, 0, length);
+            }
+        }
+        finally {
+            out.close();
+        }
+        // Note: on some platforms this fails while the old file is still mapped; the old contents then
+        // remain in use, which is harmless because entries are validated against the files anyway
+        Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    protected static long hashOf(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(file.toPath()));
+        return crc.getValue();
+    }
+
+    // Tree encoding: string table (count, strings), then the elements in preorder: tag code,
+    // attribute count, attribute string ids, source location string id, source region
+    // (4 ints), child count. String id -1 stands for null.
+
+    protected static byte[] encode(INedElement tree) throws IOException {
+        Map<String,Integer> stringIds = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        ByteArrayOutputStream elementBytes = new ByteArrayOutputStream(4096);
+        DataOutputStream elementOut = new DataOutputStream(elementBytes);
+        encodeElement(tree, elementOut, stringIds, strings);
+        elementOut.flush();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(elementBytes.size() + 4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(strings.size());
+        for (String string : strings)
+            writeString(out, string);
+        elementBytes.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void encodeElement(INedElement element, DataOutputStream out, Map<String,Integer> stringIds, List<String> strings) throws IOException {
+        out.writeShort(element.getTagCode());
+        int numAttributes = element.getNumAttributes();
+        out.writeShort(numAttributes);
+        for (int i = 0; i < numAttributes; i++)
+            out.writeInt(getStringId(element.getAttribute(i), stringIds, strings));
+        out.writeInt(getStringId(element.getSourceLocation(), stringIds, strings));
+        NedSourceRegion region = element.getSourceRegion();
+        out.writeInt(region == null ? 0 : region.getStartLine());
+        out.writeInt(region == null ? 0 : region.getStartColumn());
+        out.writeInt(region == null ? 0 : region.getEndLine());
+        out.writeInt(region == null ? 0 : region.getEndColumn());
+        out.writeInt(element.getNumChildren());
+        for (INedElement child = element.getFirstChild(); child != null; child = child.getNextSibling())
+            encodeElement(child, out, stringIds, strings);
+    }
+
+    protected static INedElement decode(ByteBuffer in, INedTypeResolver resolver) throws IOException {
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = readString(in);
+        return decodeElement(in, strings, null, resolver);
+    }
+
+    private static INedElement decodeElement(ByteBuffer in, String[] strings, INedElement parent, INedTypeResolver resolver) {
+        INedElement element = NedElementFactoryEx.getInstance().createElement(resolver, in.getShort(), parent);
+        int numAttributes = in.getShort();
+        for (int i = 0; i < numAttributes; i++)
+            element.setAttribute(i, getString(in.getInt(), strings));
+        element.setSourceLocation(getString(in.getInt(), strings));
+        int startLine = in.getInt(), startColumn = in.getInt(), endLine = in.getInt(), endColumn = in.getInt();
+        if (startLine != 0)
+            element.setSourceRegion(new NedSourceRegion(startLine, startColumn, endLine, endColumn));
+        int numChildren = in.getInt();
+        for (int i = 0; i < numChildren; i++)
+            decodeElement(in, strings, element, resolver);
+        return element;
+    }
+
+    private static int getStringId(String string, Map<String,Integer> stringIds, List<String> strings) {
+        if (string == null)
+            return -1;
+        Integer id = stringIds.get(string);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(string, id);
+            strings.add(string);
+        }
+        return id;
+    }
+
+    private static String getString(int id, String[] strings) {
+        return id == -1 ? null : strings[id];
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] utf8 = string.getBytes(UTF8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getInt()];
+        in.get(utf8);
+        return new String(utf8, UTF8);
+    }
+}
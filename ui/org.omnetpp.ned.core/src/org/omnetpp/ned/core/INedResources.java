@@ -123,6 +123,20 @@ public interface INedResources extends INedTypeResolver {
      */
     public boolean isImmutableCopyUpToDate(INedTypeResolver copy);
 
+    /**
+     * Like getImmutableCopy(), but the caller promises to call releaseImmutableCopy()
+     * when it no longer uses the copy or anything obtained from it. The unchanged
+     * trees of copies that were only obtained this way, have been released, and are
+     * no longer up to date, are reused in the next copy instead of being duplicated
+     * again, making copying proportional to the changes.
+     */
+    public INedTypeResolver acquireImmutableCopy();
+
+    /**
+     * Releases a copy obtained with acquireImmutableCopy().
+     */
+    public void releaseImmutableCopy(INedTypeResolver copy);
+
     /**
      * Parses the given NED expression, and returns the parse tree. Returns null if the expression
      * contains a syntax error. The default implementation (NedResources) caches the result,
@@ -1,5 +1,8 @@
 package org.omnetpp.ned.core;
 
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
 import org.omnetpp.ned.model.notification.INedChangeListener;
 import org.omnetpp.ned.model.notification.NedMarkerChangeEvent;
@@ -17,14 +20,36 @@ public class ImmutableNedTypeResolver extends NedTypeResolver {
         }
     };
 
+    // usage tracking for NedResources, see acquireImmutableCopy()
+    int numUsers = 0;
+    boolean pinned = false;  // returned from getImmutableCopy(), so we cannot know when it's no longer used
+
     protected ImmutableNedTypeResolver(NedTypeResolver other) {
-        super(other);
+        this(other, null, null);
+    }
+
+    /**
+     * Takes over unchanged trees from the given copy, see NedTypeResolver's constructor.
+     */
+    protected ImmutableNedTypeResolver(NedTypeResolver other, ImmutableNedTypeResolver recycledCopy, Set<IFile> changedFiles) {
+        super(other, prepareForRecycling(recycledCopy), changedFiles);
 
         // add change listeners
         for (NedFileElementEx fileElement : nedElementFiles.keySet())
             fileElement.addNedChangeListener(listener);
     }
 
+    private static ImmutableNedTypeResolver prepareForRecycling(ImmutableNedTypeResolver copy) {
+        if (copy != null)
+            for (NedFileElementEx fileElement : copy.nedElementFiles.keySet())
+                fileElement.removeNedChangeListener(copy.listener);
+        return copy;
+    }
+
+    boolean isRecyclable() {
+        return !pinned && numUsers == 0;
+    }
+
     protected void modelChanged(NedModelEvent event) {
         if (event instanceof NedMarkerChangeEvent)
             return; // that's OK
@@ -133,6 +133,7 @@ public class MsgResources implements IMsgTypeResolver, IResourceChangeListener {
                 }
             }
         }
+        NedResourcesPlugin.getAstCache().save();
     }
 
     public synchronized Set<IFile> getMsgFiles(IProject project) {
@@ -185,6 +186,7 @@ public class MsgResources implements IMsgTypeResolver, IResourceChangeListener {
             MsgFileElementEx element = msgFiles.get(file);
             msgFiles.remove(file);
             msgElementFiles.remove(element);
+            NedResourcesPlugin.getAstCache().remove(file);
 
             // purge cached types
             for (IMsgTypeElement typeElement : element.getTopLevelTypeNodes())
@@ -193,8 +195,16 @@ public class MsgResources implements IMsgTypeResolver, IResourceChangeListener {
     }
 
     private void readMsgFile(IFile file) throws IOException, CoreException {
-        String source = FileUtils.readTextFile(file.getContents(), file.getCharset());
-        MsgFileElementEx element = NedTreeUtil.parseMsgSource(source, new SysoutNedErrorStore(), file.toString());
+        // use the cached tree if the file has not changed since it was stored
+        AstCache astCache = NedResourcesPlugin.getAstCache();
+        MsgFileElementEx element = (MsgFileElementEx)astCache.get(file, null);
+        if (element == null) {
+            String source = FileUtils.readTextFile(file.getContents(), file.getCharset());
+            SysoutNedErrorStore errorStore = new SysoutNedErrorStore();
+            element = NedTreeUtil.parseMsgSource(source, errorStore, file.toString());
+            if (errorStore.getNumProblems() == 0)
+                astCache.put(file, element);
+        }
         msgFiles.put(file, element);
         msgElementFiles.put(element, file);
 
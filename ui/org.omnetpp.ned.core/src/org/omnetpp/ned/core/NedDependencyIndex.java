@@ -0,0 +1,181 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.ned.core;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.omnetpp.common.util.StringUtils;
+import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.ex.NedElementUtilEx;
+import org.omnetpp.ned.model.ex.NedFileElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
+import org.omnetpp.ned.model.interfaces.ISubmoduleOrConnection;
+import org.omnetpp.ned.model.pojo.ExtendsElement;
+import org.omnetpp.ned.model.pojo.ImportElement;
+import org.omnetpp.ned.model.pojo.InterfaceNameElement;
+
+/**
+ * Reverse dependency graph of NED files, used by NedValidationJob to find out
+ * which files need to be revalidated after a change. For each file it records
+ * the types it declares and the type names it refers to (extends, like,
+ * submodule and channel types, imports).
+ *
+ * Types are identified by their simple (unqualified) names, which errs on the
+ * safe side: a reference to "Foo" is considered a dependency on every type
+ * named "Foo" in every package. Not synchronized.
+ */
+public class NedDependencyIndex {
+    private static final String ANY_NAME = "*";  // files with wildcard imports depend on all names
+
+    private static class FileEntry {
+        Set<String> declaredNames = new HashSet<String>();
+        Set<String> extendedNames = new HashSet<String>(); // names after "extends"; changes propagate through these
+        Set<String> usedNames = new HashSet<String>();     // all other references
+    }
+
+    private Map<IFile, FileEntry> files = new HashMap<IFile, FileEntry>();
+    private Map<String, Set<IFile>> declarers = new HashMap<String, Set<IFile>>();
+    private Map<String, Set<IFile>> extenders = new HashMap<String, Set<IFile>>();
+    private Map<String, Set<IFile>> users = new HashMap<String, Set<IFile>>();
+
+    public boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    public void clear() {
+        files.clear();
+        declarers.clear();
+        extenders.clear();
+        users.clear();
+    }
+
+    /**
+     * Returns the simple names of the types (including inner types) declared
+     * in the file, as of the last update().
+     */
+    public Set<String> getDeclaredNames(IFile file) {
+        FileEntry entry = files.get(file);
+        return entry == null ? Collections.<String>emptySet() : entry.declaredNames;
+    }
+
+    /**
+     * Replaces the entry of the given file with one computed from the given tree.
+     * Pass null as tree to remove the file.
+     */
+    public void update(IFile file, NedFileElementEx tree) {
+        FileEntry oldEntry = files.remove(file);
+        if (oldEntry != null) {
+            removeAll(declarers, oldEntry.declaredNames, file);
+            removeAll(extenders, oldEntry.extendedNames, file);
+            removeAll(users, oldEntry.usedNames, file);
+        }
+
+        if (tree != null) {
+            final FileEntry entry = new FileEntry();
+            NedElementUtilEx.visitNedTree(tree, new NedElementUtilEx.INedElementVisitor() {
+                public void visit(INedElement element) {
+                    if (element instanceof INedTypeElement)
+                        add(entry.declaredNames, ((INedTypeElement)element).getName());
+                    else if (element instanceof ExtendsElement)
+                        add(entry.extendedNames, ((ExtendsElement)element).getName());
+                    else if (element instanceof InterfaceNameElement)
+                        add(entry.usedNames, ((InterfaceNameElement)element).getName());
+                    else if (element instanceof ISubmoduleOrConnection) {
+                        add(entry.usedNames, ((ISubmoduleOrConnection)element).getType());
+                        add(entry.usedNames, ((ISubmoduleOrConnection)element).getLikeType());
+                    }
+                    else if (element instanceof ImportElement) {
+                        String importSpec = ((ImportElement)element).getImportSpec();
+                        add(entry.usedNames, importSpec.contains("*") ? ANY_NAME : importSpec);
+                    }
+                }
+
+                private void add(Set<String> names, String typeName) {
+                    if (StringUtils.isNotEmpty(typeName))
+                        names.add(typeName.substring(typeName.lastIndexOf('.') + 1));
+                }
+            });
+            files.put(file, entry);
+            addAll(declarers, entry.declaredNames, file);
+            addAll(extenders, entry.extendedNames, file);
+            addAll(users, entry.usedNames, file);
+        }
+    }
+
+    /**
+     * Returns the files whose validation result may be affected by changes to
+     * types with the given names: files that declare or refer to such types,
+     * transitively through "extends". The result also includes the given
+     * files, if they are still in the index.
+     */
+    public Set<IFile> getAffectedFiles(Set<IFile> changedFiles, Set<String> changedNames) {
+        Set<IFile> result = new HashSet<IFile>();
+        for (IFile file : changedFiles)
+            if (files.containsKey(file))
+                result.add(file);
+
+        // files whose declared types have been added to the changed names
+        Set<IFile> propagatedFiles = new HashSet<IFile>(result);
+
+        Set<String> visitedNames = new HashSet<String>();
+        Deque<String> todo = new ArrayDeque<String>(changedNames);
+        for (IFile file : result)
+            todo.addAll(getDeclaredNames(file));
+        if (!todo.isEmpty())
+            addFiles(result, users.get(ANY_NAME));
+        while (!todo.isEmpty()) {
+            String name = todo.poll();
+            if (!visitedNames.add(name))
+                continue;
+            addFiles(result, declarers.get(name));  // for duplicate type errors
+            addFiles(result, users.get(name));
+            // members of types that extend a changed type change too
+            Set<IFile> extendingFiles = extenders.get(name);
+            if (extendingFiles != null) {
+                for (IFile file : extendingFiles) {
+                    result.add(file);
+                    if (propagatedFiles.add(file))
+                        todo.addAll(getDeclaredNames(file));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addFiles(Set<IFile> result, Set<IFile> files) {
+        if (files != null)
+            result.addAll(files);
+    }
+
+    private static void addAll(Map<String, Set<IFile>> map, Set<String> names, IFile file) {
+        for (String name : names) {
+            Set<IFile> files = map.get(name);
+            if (files == null)
+                map.put(name, files = new HashSet<IFile>());
+            files.add(file);
+        }
+    }
+
+    private static void removeAll(Map<String, Set<IFile>> map, Set<String> names, IFile file) {
+        for (String name : names) {
+            Set<IFile> files = map.get(name);
+            if (files != null) {
+                files.remove(file);
+                if (files.isEmpty())
+                    map.remove(name);
+            }
+        }
+    }
+}
@@ -9,8 +9,16 @@ package org.omnetpp.ned.core;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.internal.events.ResourceDelta;
 import org.eclipse.core.resources.IFile;
@@ -29,6 +37,7 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
@@ -89,6 +98,8 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
 
     // can be used for computations in a background thread without locking NedResources
     private ImmutableNedTypeResolver immutableCopy = null;
+    private ImmutableNedTypeResolver previousImmutableCopy = null; // candidate for recycling, see acquireImmutableCopy()
+    private final Set<IFile> filesChangedSinceImmutableCopy = new HashSet<IFile>();
 
     // caches the result of expression parsing
     private Map<String,INedElement> expressionCache = new HashMap<String, INedElement>();
@@ -98,14 +109,12 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
     private boolean isLoadingInProgress = false;
     private WorkspaceJob readMissingNedFilesJob = null;
 
-    // job that performs NED validation in the background
-    private Job nedValidationJob;
+    // job that performs NED validation in the background; we report file changes to it
+    private NedValidationJob nedValidationJob = new NedValidationJob();
 
     // a delayed job that initiates NED validation when the user idles a little
     private DelayedJob nedValidationStarterJob = new DelayedJob(400) {
         public void run() {
-            if (nedValidationJob == null)
-                nedValidationJob =  new NedValidationJob();
             if (nedValidationJob.getState() == Job.NONE)
                 nedValidationJob.schedule();
         }
@@ -247,18 +256,101 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         //Note: the following is a bad idea, because of undefined startup order: the editor calling us might run sooner than readAllNedFiles()
         //Assert.isTrue(isNEDFile(file), "file is outside the NED source folders, or not a NED file at all");
 
-        if (debug)
-            Debug.println("reading from disk: " + file.toString());
-
         // parse the NED file and put it into the hash table
+        NedFileElementEx tree = parseNedFile(file, markerSync);
+        if (isInExcludedPackage(file, tree))
+            return;
+
+        // store
+        storeNedFileModel(file, tree);
+
+        // if this is a package.ned, expected package names might have changed
+        if (isSourceFolderPackageNedFile(file))
+            rebuildProjectsTable();
+
+        invalidate();
+    }
+
+    /**
+     * Internal: parses the given NED file from the disk, or takes its tree from
+     * the AST cache if the file has not changed since. Does not touch the
+     * NedResources state, so it may be called from worker threads.
+     */
+    protected NedFileElementEx parseNedFile(IFile file, ProblemMarkerSynchronizer markerSync) {
         NedMarkerErrorStore errorStore = new NedMarkerErrorStore(markerSync, NEDSYNTAXPROBLEM_MARKERID);
-        errorStore.setFile(file);
-        NedFileElementEx tree = NedTreeUtil.parseNedFile(file.getLocation().toOSString(), errorStore, file.getFullPath().toString(), this);
+        errorStore.setFile(file);  // also lets stale markers be removed
+
+        AstCache astCache = NedResourcesPlugin.getAstCache();
+        NedFileElementEx tree = (NedFileElementEx)astCache.get(file, this);
+        if (tree != null)
+            return tree;
+
+        if (debug)
+            Debug.println("reading from disk: " + file.toString());
+        tree = NedTreeUtil.parseNedFile(file.getLocation().toOSString(), errorStore, file.getFullPath().toString(), this);
         Assert.isNotNull(tree);
+        if (errorStore.getNumProblems() == 0)  // markers are not cached
+            astCache.put(file, tree);
+        return tree;
+    }
+
+    /**
+     * Internal: parses the given NED files on a thread pool, and returns the trees
+     * in the same order as the files.
+     */
+    protected List<NedFileElementEx> parseNedFiles(List<IFile> files, final ProblemMarkerSynchronizer markerSync) {
+        List<NedFileElementEx> trees = new ArrayList<NedFileElementEx>(files.size());
+        int numThreads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        if (numThreads <= 1) {
+            for (IFile file : files)
+                trees.add(parseNedFile(file, markerSync));
+            return trees;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "NED parser");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<NedFileElementEx>> futures = new ArrayList<Future<NedFileElementEx>>(files.size());
+            for (final IFile file : files) {
+                futures.add(executor.submit(new Callable<NedFileElementEx>() {
+                    public NedFileElementEx call() {
+                        return parseNedFile(file, markerSync);
+                    }
+                }));
+            }
+            for (Future<NedFileElementEx> future : futures)
+                trees.add(future.get());
+            return trees;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationCanceledException();
+        }
+        catch (ExecutionException e) {
+            // rethrow whatever parseNedFile() threw, like the serial code would have
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
 
-        // only store the file if its declared package is not excluded -- that would lead to thrashing, see bug #518
-        // (this can only happen to top package.ned files that *define* their own package, for other files
-        // we won't get invoked in the first place)
+    /**
+     * Internal: returns true if the declared package of the file is excluded. Such files
+     * should not be stored, as that would lead to thrashing, see bug #518. (This can only
+     * happen to top package.ned files that *define* their own package, for other files
+     * we won't get invoked in the first place.)
+     */
+    protected boolean isInExcludedPackage(IFile file, NedFileElementEx tree) {
         String filePackage = tree.getPackage();
         String[] excludedPackages = projects.get(file.getProject()).excludedPackageRoots;
         if (filePackage != null) {
@@ -266,19 +358,11 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
                 if (filePackage.equals(excludedPackage) || filePackage.startsWith(excludedPackage+".")) {
                     if (debug)
                         Debug.println("read " + file.toString() + " but won't store it, because its declared package " + filePackage + " is excluded");
-                    return;
+                    return true;
                 }
             }
         }
-
-        // store
-        storeNedFileModel(file, tree);
-
-        // if this is a package.ned, expected package names might have changed
-        if (isSourceFolderPackageNedFile(file))
-            rebuildProjectsTable();
-
-        invalidate();
+        return false;
     }
 
     /**
@@ -299,6 +383,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
             // unregister
             nedFiles.remove(file);
             nedElementFiles.remove(nedFileElement);
+            NedResourcesPlugin.getAstCache().remove(file);
             invalidate();
 
             // if this was a package.ned, expected package names might have changed
@@ -334,6 +419,18 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         }
     }
 
+    // store the contents of a NED file not yet in the table; unlike storeNedFileModel(),
+    // this leaves calling invalidate() to the caller, so that it can be done once for a batch
+    protected synchronized void addNedFileModel(IFile file, NedFileElementEx tree) {
+        Assert.isTrue(tree.getResolver() == this, "cannot use another resolver than the one that created the element");
+        Assert.isTrue(!nedFiles.containsKey(file), "NED file already loaded");
+
+        nedFiles.put(file, tree);
+        nedElementFiles.put(tree, file);
+        tree.addNedChangeListener(nedModelChangeListener);
+        nedModelChanged(new NedStructuralChangeEvent(tree, tree, NedStructuralChangeEvent.Type.INSERTION, tree, tree));
+    }
+
     /**
      * Rebuild hash tables after NED resource change. Note: some errors such as
      * duplicate names only get detected when this gets run!
@@ -498,25 +595,63 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
      * This should be run on startup and after rebuildProjectsTable();
      * individual file changes are handled by loadNedFile() calls from the
      * workspace listener.
+     *
+     * The files are parsed in parallel, then stored in one batch, followed by
+     * a single rehash.
      */
     public synchronized void readMissingNedFiles() {
         try {
             // disable all ned model notifications until all files have been processed
             nedModelChangeNotificationDisabled = true;
             debugRehashCounter = 0;
+            long startTime = System.currentTimeMillis();
 
-            // read NED files that are not yet loaded
-            final ProblemMarkerSynchronizer sync = new ProblemMarkerSynchronizer();
+            // collect NED files that are not yet loaded
+            final List<IFile> files = new ArrayList<IFile>();
             IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
             workspaceRoot.accept(new IResourceVisitor() {
                 public boolean visit(IResource resource) {
                     if (!nedFiles.containsKey(resource) && isNedFile(resource))
-                        doReadNedFile((IFile)resource, sync);
+                        files.add((IFile)resource);
                     return true;
                 }
             });
+            long parseStartTime = System.currentTimeMillis();
+
+            // parse them
+            ProblemMarkerSynchronizer sync = new ProblemMarkerSynchronizer();
+            List<NedFileElementEx> trees = parseNedFiles(files, sync);
+            long parseEndTime = System.currentTimeMillis();
+
+            // store them
+            boolean packageNedFileRead = false;
+            for (int i = 0; i < files.size(); i++) {
+                IFile file = files.get(i);
+                NedFileElementEx tree = trees.get(i);
+                if (!isInExcludedPackage(file, tree)) {
+                    addNedFileModel(file, tree);
+                    if (isSourceFolderPackageNedFile(file))
+                        packageNedFileRead = true;
+                }
+            }
+            if (!files.isEmpty())
+                invalidate();
+
+            // if we read package.ned files, expected package names might have changed
+            if (packageNedFileRead)
+                rebuildProjectsTable();
+
             sync.runAsWorkspaceJob();
             rehashIfNeeded();
+
+            if (!files.isEmpty()) {
+                AstCache astCache = NedResourcesPlugin.getAstCache();
+                Debug.println("readMissingNedFiles(): read " + files.size() + " NED files in " + (System.currentTimeMillis() - startTime) + "ms " +
+                        "(discovery: " + (parseStartTime - startTime) + "ms, parsing: " + (parseEndTime - parseStartTime) + "ms, " +
+                        "storing and rehash: " + (System.currentTimeMillis() - parseEndTime) + "ms; " +
+                        "AST cache hits/misses so far: " + astCache.getNumHits() + "/" + astCache.getNumMisses() + ")");
+                astCache.save();
+            }
         }
         catch (CoreException e) {
             NedResourcesPlugin.logError("Error during workspace refresh: ",e);
@@ -528,8 +663,34 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
     }
 
     public synchronized INedTypeResolver getImmutableCopy() {
-        if (immutableCopy == null)
-            immutableCopy = new ImmutableNedTypeResolver(this);
+        ImmutableNedTypeResolver copy = getOrCreateImmutableCopy();
+        copy.pinned = true;
+        return copy;
+    }
+
+    public synchronized INedTypeResolver acquireImmutableCopy() {
+        ImmutableNedTypeResolver copy = getOrCreateImmutableCopy();
+        copy.numUsers++;
+        return copy;
+    }
+
+    public synchronized void releaseImmutableCopy(INedTypeResolver copy) {
+        Assert.isTrue(((ImmutableNedTypeResolver)copy).numUsers > 0, "immutable copy released more times than acquired");
+        ((ImmutableNedTypeResolver)copy).numUsers--;
+    }
+
+    protected ImmutableNedTypeResolver getOrCreateImmutableCopy() {
+        if (immutableCopy == null) {
+            long startTime = System.currentTimeMillis();
+            if (previousImmutableCopy != null && previousImmutableCopy.isRecyclable())
+                immutableCopy = new ImmutableNedTypeResolver(this, previousImmutableCopy, filesChangedSinceImmutableCopy);
+            else
+                immutableCopy = new ImmutableNedTypeResolver(this);
+            previousImmutableCopy = null;
+            filesChangedSinceImmutableCopy.clear();
+            if (debug)
+                Debug.println("getImmutableCopy(): created copy in " + (System.currentTimeMillis() - startTime) + "ms");
+        }
         return immutableCopy;
     }
 
@@ -566,8 +727,25 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
      * Respond to model changes
      */
     protected void nedModelChanged(NedModelEvent event) {
-        if (event instanceof NedModelChangeEvent)
-            immutableCopy = null; // invalidate
+        if (event instanceof NedModelChangeEvent) {
+            // invalidate the immutable copy, but remember it, so that its unchanged trees may be reused
+            if (immutableCopy != null)
+                previousImmutableCopy = immutableCopy;
+            immutableCopy = null;
+            INedElement source = ((NedModelChangeEvent)event).getSource();
+            NedFileElementEx fileElement = source == null ? null : source.getContainingNedFileElement();
+            IFile file = fileElement == null ? null : nedElementFiles.get(fileElement);
+            if (file != null)
+                filesChangedSinceImmutableCopy.add(file);
+
+            // tell the validation job what to revalidate
+            if (event instanceof NedFileRemovedEvent)
+                nedValidationJob.fileChanged(((NedFileRemovedEvent)event).getFile());
+            else if (file != null)
+                nedValidationJob.fileChanged(file);
+            else
+                nedValidationJob.invalidateAll();
+        }
 
         if (nedModelChangeNotificationDisabled)
             return;
@@ -36,6 +36,8 @@ public class NedResourcesPlugin extends AbstractUIPlugin {
 
     private NedSourceFoldersEditingManager nedSourceFoldersEditingManager = new NedSourceFoldersEditingManager();
 
+    private AstCache astCache;
+
     /**
      * The constructor.
      */
@@ -59,6 +61,8 @@ public class NedResourcesPlugin extends AbstractUIPlugin {
     public void stop(BundleContext context) throws Exception {
         NedResources.getInstance().dispose();
         MsgResources.getInstance().dispose();
+        if (astCache != null)
+            astCache.save();
 
         plugin = null;
         super.stop(context);
@@ -85,6 +89,16 @@ public class NedResourcesPlugin extends AbstractUIPlugin {
         return MsgResources.getInstance();
     }
 
+    /**
+     * Returns the persistent cache of parsed NED and MSG files.
+     */
+    public static synchronized AstCache getAstCache() {
+        NedResourcesPlugin plugin = getDefault();
+        if (plugin.astCache == null)
+            plugin.astCache = new AstCache(plugin.getStateLocation().append("astcache").toFile(), plugin.getBundle().getVersion().toString());
+        return plugin.astCache;
+    }
+
     /**
      * When more than one property pages edit the ".nedfolders" file, they can
      * communicate via NedSourceFoldersEditingManager, i.e. can edit the same
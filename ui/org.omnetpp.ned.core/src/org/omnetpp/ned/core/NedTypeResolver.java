@@ -30,6 +30,7 @@ import org.omnetpp.ned.model.ex.CompoundModuleElementEx;
 import org.omnetpp.ned.model.ex.NedElementUtilEx;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
 import org.omnetpp.ned.model.ex.PropertyElementEx;
+import org.omnetpp.ned.model.interfaces.IHasResolver;
 import org.omnetpp.ned.model.interfaces.INedTypeElement;
 import org.omnetpp.ned.model.interfaces.INedTypeInfo;
 import org.omnetpp.ned.model.interfaces.INedTypeLookupContext;
@@ -97,18 +98,52 @@ public class NedTypeResolver implements INedTypeResolver {
      * Cloning constructor, for getImmutableCopy()
      */
     protected NedTypeResolver(NedTypeResolver other) {
-        // clone NED file parse trees
-        for (IFile file : other.nedFiles.keySet())
-            nedFiles.put(file, (NedFileElementEx)other.nedFiles.get(file).deepDup(this, true, true));
+        this(other, null, null);
+    }
+
+    /**
+     * Cloning constructor, for getImmutableCopy(). The trees of files not in
+     * changedFiles are taken over from recycledCopy instead of being duplicated.
+     * recycledCopy must be an earlier copy of "other" that is no longer used by
+     * anyone; it is left in an unusable state. Pass null to duplicate all trees.
+     */
+    protected NedTypeResolver(NedTypeResolver other, NedTypeResolver recycledCopy, Set<IFile> changedFiles) {
+        // clone NED file parse trees, or take them over from the recycled copy if unchanged
+        int numRecycled = 0;
+        for (IFile file : other.nedFiles.keySet()) {
+            NedFileElementEx original = other.nedFiles.get(file);
+            NedFileElementEx tree = recycledCopy == null || changedFiles.contains(file) ? null : recycledCopy.nedFiles.get(file);
+            if (tree != null && tree.getOriginal() == original) {  // not replaced by a new tree since
+                recycledCopy.nedFiles.remove(file);
+                moveToThisResolver(tree);
+                numRecycled++;
+            }
+            else {
+                tree = (NedFileElementEx)original.deepDup(this, true, true);
+            }
+            nedFiles.put(file, tree);
+        }
 
         // fill in reverse mapping
         for (Map.Entry<IFile, NedFileElementEx> entry : nedFiles.entrySet())
             nedElementFiles.put(entry.getValue(), entry.getKey());
 
         // clone other fields (note: no need to clone nedTypeLookupCache)
-        builtInDeclarationsFile = (NedFileElementEx) other.builtInDeclarationsFile.deepDup(this, true, true);
+        if (recycledCopy != null) {
+            builtInDeclarationsFile = recycledCopy.builtInDeclarationsFile;
+            moveToThisResolver(builtInDeclarationsFile);
+            recycledCopy.nedFiles.clear();
+            recycledCopy.nedElementFiles.clear();
+            recycledCopy.builtInDeclarationsFile = null;
+        }
+        else {
+            builtInDeclarationsFile = (NedFileElementEx) other.builtInDeclarationsFile.deepDup(this, true, true);
+        }
         lastChangeSerial = other.lastChangeSerial;
 
+        if (debug && recycledCopy != null)
+            Debug.println("NedTypeResolver copy: took over " + numRecycled + " unchanged trees, duplicated " + (nedFiles.size() - numRecycled));
+
         // clone projects table
         for (IProject project : other.projects.keySet()) {
             ProjectData projectData = other.projects.get(project);
@@ -123,6 +158,19 @@ public class NedTypeResolver implements INedTypeResolver {
         internalRehash();
     }
 
+    /**
+     * Makes the elements of a tree taken over from another resolver refer to this
+     * one, and drops the cached type information computed by the old resolver.
+     */
+    protected void moveToThisResolver(INedElement element) {
+        if (element instanceof IHasResolver)
+            ((IHasResolver)element).setResolver(this);
+        if (element instanceof INedTypeElement)
+            ((INedTypeElement)element).getNedTypeInfo().invalidate();
+        for (INedElement child : element)
+            moveToThisResolver(child);
+    }
+
     protected void internalRehash() {
         long startMillis = System.currentTimeMillis();
 
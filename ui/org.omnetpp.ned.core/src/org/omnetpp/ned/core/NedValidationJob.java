@@ -1,5 +1,10 @@
 package org.omnetpp.ned.core;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -13,18 +18,61 @@ import org.omnetpp.ned.model.interfaces.INedTypeResolver;
 
 
 /**
- * Validates all NED files for consistency (no such parameter/gate/module-type, redeclarations,
+ * Validates NED files for consistency (no such parameter/gate/module-type, redeclarations,
  * duplicate types, cycles in the inheritance chain, etc). All consistency problem markers
  * (NEDCONSISTENCYPROBLEM_MARKERID) are managed within this job.
+ *
+ * NedResources reports changed files to this job, and only the changed files and those
+ * that depend on them (according to a NedDependencyIndex) are revalidated. Markers on
+ * other files are left untouched.
  */
 public class NedValidationJob extends Job {
     private boolean validateOpenNedFilesOnly = false; //TODO such preference might be useful for netbooks
     private int retryCount = 0;
 
+    // files changed since the last successful validation; guarded by "this"
+    private Set<IFile> changedFiles = new HashSet<IFile>();
+    private boolean validateAllFiles = true;
+
+    // dependencies among the NED files, as of the last validation
+    private NedDependencyIndex dependencyIndex = new NedDependencyIndex();
+
     public NedValidationJob() {
         super("Checking NED files...");
     }
 
+    /**
+     * Records that the given file has been added, changed or removed.
+     */
+    public synchronized void fileChanged(IFile file) {
+        changedFiles.add(file);
+    }
+
+    /**
+     * Records that anything might have changed (e.g. project dependencies or
+     * package.ned files), so all files need to be validated.
+     */
+    public synchronized void invalidateAll() {
+        validateAllFiles = true;
+        changedFiles.clear();
+    }
+
+    // returns null if all files need to be validated
+    private synchronized Set<IFile> takeChangedFiles() {
+        Set<IFile> result = validateAllFiles ? null : changedFiles;
+        changedFiles = new HashSet<IFile>();
+        validateAllFiles = false;
+        return result;
+    }
+
+    // put back the changes of an unsuccessful validation; null means all files
+    private synchronized void restoreChangedFiles(Set<IFile> files) {
+        if (files == null)
+            invalidateAll();
+        else if (!validateAllFiles)
+            changedFiles.addAll(files);
+    }
+
     @Override
     protected IStatus run(IProgressMonitor monitor) {
         // validate
@@ -46,7 +94,8 @@ public class NedValidationJob extends Job {
     }
 
     /**
-     * Validates an immutable copy of NedResources; stop immediately if the copy becomes obsolete
+     * Validates the changed files and the files depending on them in an immutable copy of
+     * NedResources; stop immediately if the copy becomes obsolete
      */
     protected boolean tryValidate(IProgressMonitor monitor) {
         // Note: no try-catch here -- we let exceptions terminate the job and be logged by the platform
@@ -55,28 +104,90 @@ public class NedValidationJob extends Job {
 
         INedResources nedResources = NedResourcesPlugin.getNedResources();
 
-        int numWorkUnits = 3 + nedResources.getNedFiles().size();
-        monitor.beginTask(getName(), numWorkUnits);
+        // we'll analyze an immutable copy, so that NedResources doesn't need to be locked.
+        // Note: changes must be taken *after* obtaining the copy: changes made in between
+        // would make the copy obsolete, and cause the results to be discarded
+        INedTypeResolver immutableResolver = nedResources.acquireImmutableCopy();
+        Set<IFile> changes = takeChangedFiles();
+        Set<IFile> filesToValidate = null;
+        boolean success = false;
+        try {
+            filesToValidate = determineFilesToValidate(immutableResolver, changes);
+            Debug.println("NED validation job: validating " + filesToValidate.size() + " of " + immutableResolver.getNedFiles().size() + " files");
+
+            monitor.beginTask(getName(), 3 + filesToValidate.size());
+            monitor.worked(1);
+            success = validate(nedResources, immutableResolver, filesToValidate, monitor, startTime);
+            return success;
+        }
+        finally {
+            if (!success) {
+                // files that would have been validated include those that depended on the
+                // state of the changed files before the change, which the index no longer knows
+                restoreChangedFiles(changes == null || filesToValidate == null ? changes : filesToValidate);
+            }
+            nedResources.releaseImmutableCopy(immutableResolver);
+        }
+    }
 
-        // we'll analyze an immutable copy, so that NedResources doesn't need to be locked
-        INedTypeResolver immutableResolver = nedResources.getImmutableCopy();
-        monitor.worked(1);
+    /**
+     * Updates the dependency index, and returns the files to be validated.
+     * changedFiles==null means all files.
+     */
+    protected Set<IFile> determineFilesToValidate(INedTypeResolver resolver, Set<IFile> changedFiles) {
+        Set<IFile> nedFiles = resolver.getNedFiles();
+        if (changedFiles == null || dependencyIndex.isEmpty()) {
+            dependencyIndex.clear();
+            for (IFile file : nedFiles)
+                dependencyIndex.update(file, resolver.getNedFileElement(file));
+            return new HashSet<IFile>(nedFiles);
+        }
 
+        // types declared in the changed files before the change are affected as well
+        Set<String> changedNames = new HashSet<String>();
+        for (IFile file : changedFiles) {
+            changedNames.addAll(dependencyIndex.getDeclaredNames(file));
+            dependencyIndex.update(file, nedFiles.contains(file) ? resolver.getNedFileElement(file) : null);
+        }
+        return dependencyIndex.getAffectedFiles(changedFiles, changedNames);
+    }
+
+    private boolean validate(INedResources nedResources, INedTypeResolver immutableResolver, final Set<IFile> filesToValidate, IProgressMonitor monitor, long startTime) {
         ProblemMarkerSynchronizer markerSync = new ProblemMarkerSynchronizer(INedTypeResolver.NEDCONSISTENCYPROBLEM_MARKERID);
-        NedMarkerErrorStore errorStore = new NedMarkerErrorStore(markerSync);
+        List<NedMarkerErrorStore> errorStores = new ArrayList<NedMarkerErrorStore>();
 
         // clear old consistency error markers from NED trees
-        clearConsistencyProblemSeverities(immutableResolver);
+        clearConsistencyProblemSeverities(immutableResolver, filesToValidate);
+
+        // issue error message for duplicates; only in the files being validated, as
+        // markers on other files are not touched
+        NedMarkerErrorStore duplicatesErrorStore = new NedMarkerErrorStore(markerSync) {
+            private boolean ignore = false;
+
+            @Override
+            public void setFile(IFile file) {
+                ignore = !filesToValidate.contains(file);
+                if (!ignore)
+                    super.setFile(file);
+            }
 
-        // issue error message for duplicates
-        immutableResolver.addErrorsForDuplicates(errorStore);
+            @Override
+            public void add(int severity, INedElement context, int line, String message) {
+                if (!ignore)
+                    super.add(severity, context, line, message);
+            }
+        };
+        immutableResolver.addErrorsForDuplicates(duplicatesErrorStore);
+        errorStores.add(duplicatesErrorStore);
         monitor.worked(1);
 
-        // validate all files
-        for (IFile file : immutableResolver.getNedFiles()) {
+        // validate files
+        for (IFile file : filesToValidate) {
             NedFileElementEx nedFileElement = immutableResolver.getNedFileElement(file);
+            NedMarkerErrorStore errorStore = new NedMarkerErrorStore(markerSync);
             errorStore.setFile(file);
             new NedValidator(immutableResolver, file.getProject(), errorStore).validate(nedFileElement);
+            errorStores.add(errorStore);
             monitor.worked(1);
 
             if (!nedResources.isImmutableCopyUpToDate(immutableResolver)) {
@@ -101,12 +212,14 @@ public class NedValidationJob extends Job {
                 nedResources.fireBeginChangeEvent();
 
                 // clear old consistency error markers from NED trees
-                clearConsistencyProblemSeverities(nedResources);
+                clearConsistencyProblemSeverities(nedResources, filesToValidate);
 
                 // put validation errors
-                for (INedElement element : errorStore.getAffectedElements()) {
-                    INedElement original = element.getOriginal();
-                    original.setConsistencyProblemMaxLocalSeverity(element.getConsistencyProblemMaxLocalSeverity());
+                for (NedMarkerErrorStore errorStore : errorStores) {
+                    for (INedElement element : errorStore.getAffectedElements()) {
+                        INedElement original = element.getOriginal();
+                        original.setConsistencyProblemMaxLocalSeverity(element.getConsistencyProblemMaxLocalSeverity());
+                    }
                 }
 
                 // we need to do the synchronization in a background job, to avoid deadlocks
@@ -123,8 +236,8 @@ public class NedValidationJob extends Job {
         }
     }
 
-    private void clearConsistencyProblemSeverities(INedTypeResolver resolver) {
-        for (IFile file : resolver.getNedFiles())
+    private void clearConsistencyProblemSeverities(INedTypeResolver resolver, Set<IFile> files) {
+        for (IFile file : files)
             resolver.getNedFileElement(file).clearConsistencyProblemMarkerSeverities();
     }
 
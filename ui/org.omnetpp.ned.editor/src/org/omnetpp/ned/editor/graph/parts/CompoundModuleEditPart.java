@@ -198,6 +198,7 @@ public class CompoundModuleEditPart extends ModuleEditPart {
         compoundModuleFigure.setNetwork(compoundModuleModel.isNetwork());
         compoundModuleFigure.setInterface(compoundModuleModel instanceof IInterfaceTypeElement);
         compoundModuleFigure.setInnerType(compoundModuleModel.getEnclosingTypeElement() != null);
+        compoundModuleFigure.getSubmoduleArea().setNedTypeName(compoundModuleModel.getNedTypeInfo().getFullyQualifiedName());
 
         if (Float.isNaN(scale)) {
             // determine initial scale before refreshing submodule area
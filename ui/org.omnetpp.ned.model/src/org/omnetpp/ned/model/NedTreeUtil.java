@@ -112,9 +112,10 @@ public class NedTreeUtil {
      * The passed displayFileName will only be used to fill in the NedFileElement element
      * and source location attributes. Callers should check ErrorStore to determine
      * whether a parse error occurred. All errors produced here will be syntax errors
-     * (see NEDSYNTAXPROBLEM_MARKERID).
+     * (see NEDSYNTAXPROBLEM_MARKERID). May be called from several threads
+     * concurrently, see doParseNedSource().
      */
-    public static synchronized NedFileElementEx parseNedFile(String filesystemFilename, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
+    public static NedFileElementEx parseNedFile(String filesystemFilename, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
         return doParseNedSource(null, filesystemFilename, errors, displayFilename, resolver);
     }
 
@@ -126,49 +127,60 @@ public class NedTreeUtil {
      * whether a parse error occurred. All errors produced here will be syntax errors
      * (see NEDSYNTAXPROBLEM_MARKERID).
      */
-    public static synchronized NedFileElementEx parseNedText(String source, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
+    public static NedFileElementEx parseNedText(String source, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
         return doParseNedSource(source, null, errors, displayFilename, resolver);
     }
 
-    private static synchronized NedFileElementEx doParseNedSource(String source, String filesystemFilename, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
+    /**
+     * The native NED parser keeps its state in global variables, and native tree
+     * nodes update global counters when created or deleted, so everything up to
+     * and including validation, as well as the deletion of the native tree, is
+     * done while holding the NedTreeUtil class lock (the same lock the other
+     * static synchronized methods use). Conversion of the native tree to Java
+     * objects only reads the tree, so that part runs in parallel when several
+     * threads parse files at the same time.
+     */
+    private static NedFileElementEx doParseNedSource(String source, String filesystemFilename, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
         Assert.isTrue(displayFilename != null);
         ASTNode swigTree = null;
         try {
             // Debug.println("Parsing NED file started: " + filesystemFilename);
-            // parse
             ErrorStore swigErrors = new ErrorStore();
-            NedParser np = new NedParser(swigErrors);
-            np.setParseExpressions(false);
-            swigTree = source!=null ? np.parseNedText(source, displayFilename) : np.parseNedFile(filesystemFilename, displayFilename);
-            if (swigTree == null) {
-                // return an empty NedFileElement if parsing totally failed
-                NedFileElementEx fileNode = (NedFileElementEx)NedElementFactoryEx.getInstance().createElement(resolver, NedElementTags.NED_NED_FILE, null);
-                fileNode.setFilename(displayFilename);
-                copyGlobalErrors(swigErrors, fileNode, errors); // piggyback errors which came without context node onto the tree root
-                return fileNode;
-            }
-
-            if (!swigErrors.empty()) {
-                // There were parse errors, and the tree built may not be entirely correct.
-                // Typical problems are "mandatory attribute missing" especially with connections,
-                // due to parse errors before filling in the connection element was completed.
-                // Here we try to check and repair the tree by discarding elements that cause
-                // DTD validation error.
-                NedTools.repairNedAST(swigTree);
+            synchronized (NedTreeUtil.class) {
+                // parse
+                NedParser np = new NedParser(swigErrors);
+                np.setParseExpressions(false);
+                swigTree = source!=null ? np.parseNedText(source, displayFilename) : np.parseNedFile(filesystemFilename, displayFilename);
+                if (swigTree == null) {
+                    // return an empty NedFileElement if parsing totally failed
+                    NedFileElementEx fileNode = (NedFileElementEx)NedElementFactoryEx.getInstance().createElement(resolver, NedElementTags.NED_NED_FILE, null);
+                    fileNode.setFilename(displayFilename);
+                    copyGlobalErrors(swigErrors, fileNode, errors); // piggyback errors which came without context node onto the tree root
+                    return fileNode;
+                }
+
+                if (!swigErrors.empty()) {
+                    // There were parse errors, and the tree built may not be entirely correct.
+                    // Typical problems are "mandatory attribute missing" especially with connections,
+                    // due to parse errors before filling in the connection element was completed.
+                    // Here we try to check and repair the tree by discarding elements that cause
+                    // DTD validation error.
+                    NedTools.repairNedAST(swigTree);
+                }
+
+                // run DTD validation (once again)
+                int numMessages = swigErrors.numMessages();
+                NedDtdValidator dtdvalidator = new NedDtdValidator(swigErrors);
+                dtdvalidator.validate(swigTree);
+                dumpSwigErrors(swigErrors); //XXX remove -- debugging only
+
+                Assert.isTrue(swigErrors.numMessages() == numMessages, "NED tree fails DTD validation, even after repairs");
+
+                // additional syntax-related validation
+                NedSyntaxValidator syntaxValidator = new NedSyntaxValidator(false, swigErrors);
+                syntaxValidator.validate(swigTree);
             }
 
-            // run DTD validation (once again)
-            int numMessages = swigErrors.numMessages();
-            NedDtdValidator dtdvalidator = new NedDtdValidator(swigErrors);
-            dtdvalidator.validate(swigTree);
-            dumpSwigErrors(swigErrors); //XXX remove -- debugging only
-
-            Assert.isTrue(swigErrors.numMessages() == numMessages, "NED tree fails DTD validation, even after repairs");
-
-            // additional syntax-related validation
-            NedSyntaxValidator syntaxValidator = new NedSyntaxValidator(false, swigErrors);
-            syntaxValidator.validate(swigTree);
-
             // convert tree to pure Java objects
             INedElement pojoTree = swig2pojo(swigTree, null, swigErrors, errors, resolver);
             Assert.isTrue(swigErrors.numMessages() == errors.getNumProblems(), "problems lost in translation");
@@ -178,8 +190,11 @@ public class NedTreeUtil {
             return (NedFileElementEx)pojoTree;
         }
         finally {
-            if (swigTree != null)
-                swigTree.delete();
+            if (swigTree != null) {
+                synchronized (NedTreeUtil.class) {
+                    swigTree.delete();
+                }
+            }
 
             // Debug.println("Parsing NED file finished: " + filesystemFilename);
         }
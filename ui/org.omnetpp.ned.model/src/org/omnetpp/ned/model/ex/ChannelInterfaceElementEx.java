@@ -55,6 +55,11 @@ public class ChannelInterfaceElementEx extends ChannelInterfaceElement implement
         return resolver;
     }
 
+    public void setResolver(INedTypeResolver resolver) {
+        Assert.isNotNull(resolver, "This NED element type needs a resolver");
+        this.resolver = resolver;
+    }
+
     public INedTypeInfo getNedTypeInfo() {
         return typeInfo;
     }
@@ -73,6 +73,12 @@ public class CompoundModuleElementEx extends CompoundModuleElement implements IM
         return resolver;
     }
 
+    public void setResolver(INedTypeResolver resolver) {
+        Assert.isNotNull(resolver, "This NED element type needs a resolver");
+        this.resolver = resolver;
+        cacheUpdateSerial = -1;
+    }
+
     @Override
     public String getReadableTagName() {
         if (isNetwork())
@@ -53,6 +53,11 @@ public class NedFileElementEx extends NedFileElement implements IHasProperties,
         return resolver;
     }
 
+    public void setResolver(INedTypeResolver resolver) {
+        Assert.isNotNull(resolver, "This NED element type needs a resolver");
+        this.resolver = resolver;
+    }
+
     /**
      * Returns true if this NED file element has the readonly bit set.
      * Any change within the tree of a read-only NED file element will
@@ -71,6 +71,12 @@ public class SubmoduleElementEx extends SubmoduleElement
         return resolver;
     }
 
+    public void setResolver(INedTypeResolver resolver) {
+        Assert.isNotNull(resolver, "This NED element type needs a resolver");
+        this.resolver = resolver;
+        cachedTypeInfoSerial = -1;
+    }
+
     public String getNameWithIndex() {
         String result = getName();
         if (getVectorSize() != null && !"".equals(getVectorSize()))
@@ -21,4 +21,10 @@ public interface IHasResolver extends INedElement {
      */
     public INedTypeResolver getResolver();
 
+    /**
+     * Moves the element to another resolver. Only meant for resolvers that hand
+     * over element trees to each other, see NedResources.getImmutableCopy().
+     */
+    public void setResolver(INedTypeResolver resolver);
+
 }
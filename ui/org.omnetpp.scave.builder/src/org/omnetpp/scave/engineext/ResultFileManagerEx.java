@@ -7,7 +7,13 @@
 
 package org.omnetpp.scave.engineext;
 
+import java.util.concurrent.Callable;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.omnetpp.common.engine.ILock;
 import org.omnetpp.scave.engine.FileRun;
 import org.omnetpp.scave.engine.FileRunList;
@@ -37,6 +43,10 @@ public class ResultFileManagerEx extends ResultFileManager {
 
     private ListenerList changeListeners = new ListenerList();
     private ListenerList disposeListeners = new ListenerList();
+    private volatile ResultMetadata metadata; // built on demand, dropped on changes
+    private Job metadataJob; // builds the metadata snapshot in the background, see getMetadataIfAvailable()
+
+    private static final long METADATA_BUILD_DELAY_MILLIS = 500; // lets further changes (e.g. loading in batches) arrive first
 
     public void addChangeListener(IResultFilesChangeListener listener) {
         changeListeners.add(listener);
@@ -47,6 +57,7 @@ public class ResultFileManagerEx extends ResultFileManager {
     }
 
     protected void notifyChangeListeners(ResultFileManagerChangeEvent event) {
+        metadata = null; // called with the write lock held
         for (Object listener : changeListeners.getListeners())
             ((IResultFilesChangeListener)listener).resultFileManagerChanged(event);
     }
@@ -68,6 +79,20 @@ public class ResultFileManagerEx extends ResultFileManager {
      *               Writer methods
      *-------------------------------------------*/
     public void dispose() {
+        Job job;
+        synchronized (this) {
+            job = metadataJob;
+        }
+        if (job != null) {
+            // the job must not access the manager after it has been deleted
+            job.cancel();
+            try {
+                job.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         delete();
         notifyDisposeListeners();
     }
@@ -179,6 +204,55 @@ public class ResultFileManagerEx extends ResultFileManager {
      *-------------------------------------------*/
 
 
+    /**
+     * Returns a snapshot of the metadata of all result items. The snapshot is
+     * built on the first call after the contents of the manager changed.
+     */
+    public ResultMetadata getMetadata() {
+        checkNotDeleted();
+        ResultMetadata result = metadata;
+        if (result != null)
+            return result;
+        return callWithReadLock(this, new Callable<ResultMetadata>() {
+            public ResultMetadata call() {
+                // changes need the write lock, so the snapshot cannot get stale before it is stored
+                if (metadata == null)
+                    metadata = new ResultMetadata(ResultFileManagerEx.this);
+                return metadata;
+            }
+        });
+    }
+
+    /**
+     * Returns the metadata snapshot if it is already built, otherwise returns
+     * null and builds the snapshot in a background job. To be used in the UI
+     * thread by code that can fall back to querying the items directly, because
+     * building the snapshot takes time proportional to the number of all items.
+     */
+    public ResultMetadata getMetadataIfAvailable() {
+        checkNotDeleted();
+        ResultMetadata result = metadata;
+        if (result == null)
+            scheduleMetadataJob();
+        return result;
+    }
+
+    private synchronized void scheduleMetadataJob() {
+        if (metadataJob == null) {
+            metadataJob = new Job("Collecting result metadata") {
+                @Override
+                protected IStatus run(IProgressMonitor monitor) {
+                    if (!monitor.isCanceled() && !isDisposed())
+                        getMetadata();
+                    return Status.OK_STATUS;
+                }
+            };
+            metadataJob.setSystem(true);
+        }
+        if (metadataJob.getState() == Job.NONE)
+            metadataJob.schedule(METADATA_BUILD_DELAY_MILLIS);
+    }
+
     public boolean isDisposed() {
         return getCPtr(this) == 0;
     }
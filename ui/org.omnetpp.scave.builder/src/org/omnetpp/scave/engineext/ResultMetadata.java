@@ -0,0 +1,327 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.engineext;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omnetpp.common.util.StringUtils;
+import org.omnetpp.scave.engine.FileRun;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.ResultFile;
+import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.ResultItem;
+import org.omnetpp.scave.engine.ResultItemField;
+import org.omnetpp.scave.engine.Run;
+import org.omnetpp.scave.engine.RunAttribute;
+import org.omnetpp.scave.engine.ScalarResult;
+
+/**
+ * Snapshot of the metadata of all result items in a ResultFileManager, for
+ * grouping, sorting and filtering results without calling into the native
+ * library for every item.
+ *
+ * Metadata is stored in columns. String-valued fields (file, run, module,
+ * name and some run attributes) are stored as int codes into a table of the
+ * distinct values, which is sorted in dictionary order, so comparing codes
+ * is the same as comparing the strings. File and run related fields are
+ * stored per file-run, and items refer to their file-run. Items are identified
+ * by their index in the snapshot, see indexOf().
+ *
+ * Snapshots are immutable; ResultFileManagerEx creates them on demand and
+ * drops them when the contents of the manager change.
+ */
+public class ResultMetadata {
+    /** Field name for the directory of the result file (the other field names come from ResultItemField and RunAttribute) */
+    public static final String DIRECTORY = "directory";
+
+    /** The run attributes stored in the snapshot */
+    public static final String[] RUN_ATTRIBUTES = {
+        RunAttribute.CONFIGNAME, RunAttribute.RUNNUMBER, RunAttribute.EXPERIMENT, RunAttribute.MEASUREMENT, RunAttribute.REPLICATION
+    };
+
+    private final long[] ids;       // sorted
+    private final int[] types;      // SCALAR, VECTOR, etc.
+    private final int[] fileRuns;   // index of the file-run of the items
+    private final double[] values;  // value of scalars, NaN for other items
+    private final Map<String,Column> columns = new HashMap<>();
+
+    /**
+     * A string-valued field: codes into the sorted table of its distinct values.
+     */
+    private static class Column {
+        final boolean perFileRun;  // whether codes are indexed by file-run instead of item
+        int[] codes;
+        String[] strings;
+
+        Column(boolean perFileRun, int size) {
+            this.perFileRun = perFileRun;
+            this.codes = new int[size];
+        }
+    }
+
+    /**
+     * Collects the distinct values of a column during construction.
+     */
+    private static class StringTable {
+        final Map<String,Integer> codes = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+
+        int intern(String string) {
+            Integer code = codes.get(string);
+            if (code == null) {
+                codes.put(string, code = strings.size());
+                strings.add(string);
+            }
+            return code;
+        }
+
+        /**
+         * Sorts the values, and stores them and the renumbered codes into the column.
+         */
+        void finish(Column column, int size) {
+            final String[] unsorted = strings.toArray(new String[0]);
+            Integer[] order = new Integer[unsorted.length];
+            for (int i = 0; i < order.length; i++)
+                order[i] = i;
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return StringUtils.dictionaryCompare(unsorted[a], unsorted[b]);
+                }
+            });
+            int[] newCodes = new int[order.length];
+            column.strings = new String[order.length];
+            for (int i = 0; i < order.length; i++) {
+                newCodes[order[i]] = i;
+                column.strings[i] = unsorted[order[i]];
+            }
+            column.codes = Arrays.copyOf(column.codes, size);
+            for (int i = 0; i < size; i++)
+                column.codes[i] = newCodes[column.codes[i]];
+        }
+    }
+
+    /**
+     * Builds the snapshot. Must be called with the read lock of the manager held.
+     */
+    public ResultMetadata(ResultFileManager manager) {
+        manager.checkReadLock();
+        ids = toArray(manager.getAllItems(true, true, true));
+        Arrays.sort(ids);
+        int n = ids.length;
+        types = new int[n];
+        fileRuns = new int[n];
+        values = new double[n];
+
+        Column modules = addColumn(ResultItemField.MODULE, false, n);
+        Column names = addColumn(ResultItemField.NAME, false, n);
+        StringTable moduleTable = new StringTable(), nameTable = new StringTable();
+
+        // file-run columns grow as file-runs are discovered
+        Column fileNames = addColumn(ResultItemField.FILE, true, 16);
+        Column directories = addColumn(DIRECTORY, true, 16);
+        Column runNames = addColumn(ResultItemField.RUN, true, 16);
+        Column[] runAttributes = new Column[RUN_ATTRIBUTES.length];
+        for (int j = 0; j < RUN_ATTRIBUTES.length; j++)
+            runAttributes[j] = addColumn(RUN_ATTRIBUTES[j], true, 16);
+        StringTable fileNameTable = new StringTable(), directoryTable = new StringTable(), runNameTable = new StringTable();
+        StringTable[] runAttributeTables = new StringTable[RUN_ATTRIBUTES.length];
+        for (int j = 0; j < RUN_ATTRIBUTES.length; j++)
+            runAttributeTables[j] = new StringTable();
+
+        Map<FileRun,Integer> fileRunIndices = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ResultItem item = manager.getItem(ids[i]);
+            types[i] = ResultFileManager.getTypeOf(ids[i]);
+            values[i] = item instanceof ScalarResult ? ((ScalarResult)item).getValue() : Double.NaN;
+            modules.codes[i] = moduleTable.intern(item.getModuleName());
+            names.codes[i] = nameTable.intern(item.getName());
+
+            FileRun fileRun = item.getFileRun();
+            Integer fileRunIndex = fileRunIndices.get(fileRun);
+            if (fileRunIndex == null) {
+                int k = fileRunIndices.size();
+                fileRunIndices.put(fileRun, fileRunIndex = k);
+                if (k == fileNames.codes.length) {
+                    for (Column column : columns.values())
+                        if (column.perFileRun)
+                            column.codes = Arrays.copyOf(column.codes, 2*k);
+                }
+                ResultFile file = fileRun.getFile();
+                Run run = fileRun.getRun();
+                fileNames.codes[k] = fileNameTable.intern(file.getFileName());
+                directories.codes[k] = directoryTable.intern(file.getDirectory());
+                runNames.codes[k] = runNameTable.intern(run.getRunName());
+                for (int j = 0; j < RUN_ATTRIBUTES.length; j++)
+                    runAttributes[j].codes[k] = runAttributeTables[j].intern(run.getAttribute(RUN_ATTRIBUTES[j]));
+            }
+            fileRuns[i] = fileRunIndex;
+        }
+
+        moduleTable.finish(modules, n);
+        nameTable.finish(names, n);
+        int numFileRuns = fileRunIndices.size();
+        fileNameTable.finish(fileNames, numFileRuns);
+        directoryTable.finish(directories, numFileRuns);
+        runNameTable.finish(runNames, numFileRuns);
+        for (int j = 0; j < RUN_ATTRIBUTES.length; j++)
+            runAttributeTables[j].finish(runAttributes[j], numFileRuns);
+    }
+
+    private Column addColumn(String field, boolean perFileRun, int size) {
+        Column column = new Column(perFileRun, size);
+        columns.put(field, column);
+        return column;
+    }
+
+    /**
+     * Returns the IDs in the given IDList as an array.
+     */
+    public static long[] toArray(IDList idList) {
+        byte[] bytes = new byte[8 * idList.size()];
+        idList.toByteArray(bytes);
+        long[] result = new long[idList.size()];
+        ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder()).asLongBuffer().get(result);
+        return result;
+    }
+
+    /**
+     * Replaces the contents of the IDList with the given IDs.
+     */
+    public static void fromArray(long[] ids, IDList idList) {
+        byte[] bytes = new byte[8 * ids.length];
+        ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder()).asLongBuffer().put(ids);
+        idList.fromByteArray(bytes);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the index of the item with the given ID in the snapshot,
+     * or -1 if the item is not in the snapshot.
+     */
+    public int indexOf(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 ? index : -1;
+    }
+
+    public long getID(int index) {
+        return ids[index];
+    }
+
+    public int getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Returns the value of a scalar, or NaN for other items.
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    public int getFileRunIndex(int index) {
+        return fileRuns[index];
+    }
+
+    /**
+     * Returns true if the given field (a ResultItemField or RunAttribute name,
+     * or DIRECTORY) is stored in the snapshot.
+     */
+    public boolean hasField(String field) {
+        return columns.containsKey(field);
+    }
+
+    /**
+     * Returns the code of the value of the given field of an item. Codes
+     * are ordered the same way as the values in dictionary order.
+     */
+    public int getCode(String field, int index) {
+        Column column = columns.get(field);
+        return column.codes[column.perFileRun ? fileRuns[index] : index];
+    }
+
+    /**
+     * Returns the value of the given field that has the given code.
+     */
+    public String getString(String field, int code) {
+        return columns.get(field).strings[code];
+    }
+
+    /**
+     * Returns the value of the given field of an item.
+     */
+    public String getFieldValue(String field, int index) {
+        return getString(field, getCode(field, index));
+    }
+
+    public String getModuleName(int index) {
+        return getFieldValue(ResultItemField.MODULE, index);
+    }
+
+    public String getName(int index) {
+        return getFieldValue(ResultItemField.NAME, index);
+    }
+
+    public String getFileName(int index) {
+        return getFieldValue(ResultItemField.FILE, index);
+    }
+
+    public String getDirectory(int index) {
+        return getFieldValue(DIRECTORY, index);
+    }
+
+    public String getRunName(int index) {
+        return getFieldValue(ResultItemField.RUN, index);
+    }
+
+    /**
+     * Returns the value of a run attribute of the item's run; attrName must
+     * be one of RUN_ATTRIBUTES. Missing attributes are returned as "".
+     */
+    public String getRunAttribute(int index, String attrName) {
+        return getFieldValue(attrName, index);
+    }
+
+    /**
+     * Sorts the IDList by the given field in dictionary order. Items with equal
+     * values keep their relative order. Returns false (and leaves the IDList
+     * unchanged) if the field is not stored or the IDList contains items that
+     * are not in the snapshot.
+     */
+    public boolean sort(IDList idList, String field, boolean ascending) {
+        Column column = columns.get(field);
+        if (column == null)
+            return false;
+        long[] listIds = toArray(idList);
+        // sort keys: the code in the upper, the position in the lower 32 bits
+        long[] keys = new long[listIds.length];
+        int maxCode = column.strings.length - 1;
+        for (int i = 0; i < listIds.length; i++) {
+            int index = indexOf(listIds[i]);
+            if (index == -1)
+                return false;
+            int code = column.codes[column.perFileRun ? fileRuns[index] : index];
+            keys[i] = ((long)(ascending ? code : maxCode - code) << 32) | i;
+        }
+        Arrays.sort(keys);
+        long[] sortedIds = new long[listIds.length];
+        for (int i = 0; i < keys.length; i++)
+            sortedIds[i] = listIds[(int)keys[i]];
+        fromArray(sortedIds, idList);
+        return true;
+    }
+}
@@ -13,6 +13,7 @@ import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.resource.ImageRegistry;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.omnetpp.scave.editors.ResultFileIndex;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -47,6 +48,7 @@ public class ScavePlugin extends AbstractUIPlugin {
      * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
      */
     public void stop(BundleContext context) throws Exception {
+        ResultFileIndex.disposeInstance();
         plugin = null;
         super.stop(context);
     }
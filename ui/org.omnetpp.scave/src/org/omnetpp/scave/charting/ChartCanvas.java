@@ -252,6 +252,17 @@ public abstract class ChartCanvas extends ZoomableCachingCanvas implements IChar
         doPaintCachableLayer(graphics, coordsMapping);
     }
 
+    @Override
+    protected boolean runDeferredRendering(Runnable renderer) {
+        try {
+            renderer.run();
+            return true;
+        }
+        finally {
+            coordsMapping = null; // paintNoncachableLayer() should not reuse it
+        }
+    }
+
     @Override
     protected void paintNoncachableLayer(Graphics graphics) {
         if (debug) Debug.println("paintNoncachableLayer()");
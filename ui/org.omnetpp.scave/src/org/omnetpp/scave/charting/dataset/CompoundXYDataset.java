@@ -11,7 +11,7 @@ import org.omnetpp.common.engine.BigDecimal;
 import org.omnetpp.scave.engine.Statistics;
 import org.omnetpp.scave.model2.StatUtils;
 
-public class CompoundXYDataset extends XYDatasetSupport implements IAveragedXYDataset {
+public class CompoundXYDataset extends XYDatasetSupport implements IAveragedXYDataset, IMinMaxXYDataset {
 
     private IXYDataset[] seriesToDatasetMap;
     private int[] seriesToOffsetMap;
@@ -58,10 +58,22 @@ public class CompoundXYDataset extends XYDatasetSupport implements IAveragedXYDa
         return seriesToDatasetMap[series].getX(series - seriesToOffsetMap[series], item);
     }
 
+    @Override
+    public void getXValues(int series, int start, int count, double[] dest, int destPos) {
+        seriesToDatasetMap[series].getXValues(series - seriesToOffsetMap[series], start, count, dest, destPos);
+    }
+
     public BigDecimal getPreciseX(int series, int item) {
         return seriesToDatasetMap[series].getPreciseX(series - seriesToOffsetMap[series], item);
     }
 
+    public MinMaxPyramid getMinMaxPyramid(int series) {
+        IXYDataset dataset = seriesToDatasetMap[series];
+        return dataset instanceof IMinMaxXYDataset ?
+                ((IMinMaxXYDataset)dataset).getMinMaxPyramid(series - seriesToOffsetMap[series]) :
+                null;
+    }
+
     public Statistics getXStatistics(int series, int item) {
         IXYDataset dataset = seriesToDatasetMap[series];
         return dataset instanceof IAveragedXYDataset ?
@@ -73,6 +85,11 @@ public class CompoundXYDataset extends XYDatasetSupport implements IAveragedXYDa
         return seriesToDatasetMap[series].getY(series - seriesToOffsetMap[series], item);
     }
 
+    @Override
+    public void getYValues(int series, int start, int count, double[] dest, int destPos) {
+        seriesToDatasetMap[series].getYValues(series - seriesToOffsetMap[series], start, count, dest, destPos);
+    }
+
     public BigDecimal getPreciseY(int series, int item) {
         return seriesToDatasetMap[series].getPreciseY(series - seriesToOffsetMap[series], item);
     }
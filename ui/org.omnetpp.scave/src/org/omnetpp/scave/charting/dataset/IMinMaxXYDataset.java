@@ -0,0 +1,21 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.charting.dataset;
+
+/**
+ * Represents an XY dataset that can provide a min/max pyramid for its series,
+ * so that plotters can skip over data points that fall into the same pixel.
+ */
+public interface IMinMaxXYDataset extends IXYDataset {
+
+    /**
+     * Returns the min/max pyramid of the given series, or null if the
+     * series is too small to be worth one.
+     */
+    public MinMaxPyramid getMinMaxPyramid(int series);
+}
@@ -83,6 +83,20 @@ public interface IXYDataset extends IDataset {
      */
     public double getX(int series, int item);
 
+    /**
+     * Copies the x-values of the items {@code [start, start+count)} of a series
+     * into {@code dest}, starting at {@code destPos}. Plotters should prefer
+     * this to calling getX() for each item, because implementations backed
+     * by native data can serve it without per-item overhead.
+     *
+     * @param series  the series index (zero-based).
+     * @param start  the index of the first item (zero-based).
+     * @param count  the number of items to copy.
+     * @param dest  the destination array.
+     * @param destPos  the starting position in the destination array.
+     */
+    public void getXValues(int series, int start, int count, double[] dest, int destPos);
+
     /**
      * Returns the x-value as a BigDecimal for an item within a series.
      *
@@ -113,6 +127,18 @@ public interface IXYDataset extends IDataset {
      */
     public double getY(int series, int item);
 
+    /**
+     * Copies the y-values of the items {@code [start, start+count)} of a series
+     * into {@code dest}, starting at {@code destPos}. See getXValues().
+     *
+     * @param series  the series index (zero-based).
+     * @param start  the index of the first item (zero-based).
+     * @param count  the number of items to copy.
+     * @param dest  the destination array.
+     * @param destPos  the starting position in the destination array.
+     */
+    public void getYValues(int series, int start, int count, double[] dest, int destPos);
+
     /**
      * Returns the y-value as a BigDecimal.
      *
@@ -0,0 +1,122 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.charting.dataset;
+
+/**
+ * Multi-resolution summary of the y values of a series. Level 0 divides
+ * the items into buckets of LEAF_SIZE consecutive items, and each further
+ * level merges pairs of buckets of the level below, until a single bucket
+ * remains. For each bucket, the minimum and maximum of the y values are
+ * stored; they are NaN if the bucket contains a NaN. (The first and last
+ * items of a bucket can be looked up from the dataset directly.)
+ */
+public class MinMaxPyramid {
+    public static final int LEAF_SIZE = 16;
+
+    private int itemCount;
+    private double[][] minY; // indexed by [level][bucket]
+    private double[][] maxY;
+
+    /**
+     * Builds the pyramid of the given series of the dataset.
+     */
+    public MinMaxPyramid(IXYDataset dataset, int series) {
+        itemCount = dataset.getItemCount(series);
+        double[] y = new double[itemCount];
+        dataset.getYValues(series, 0, itemCount, y, 0);
+
+        int levels = 1;
+        for (int count = bucketCount(itemCount, LEAF_SIZE); count > 1; count = (count + 1) / 2)
+            levels++;
+        minY = new double[levels][];
+        maxY = new double[levels][];
+
+        // level 0 from the items
+        int count = bucketCount(itemCount, LEAF_SIZE);
+        minY[0] = new double[count];
+        maxY[0] = new double[count];
+        for (int bucket = 0; bucket < count; bucket++) {
+            int start = bucket * LEAF_SIZE;
+            int end = Math.min(start + LEAF_SIZE, itemCount);
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                double value = y[i];
+                if (Double.isNaN(value)) {
+                    min = max = Double.NaN;
+                    break;
+                }
+                if (value < min)
+                    min = value;
+                if (value > max)
+                    max = value;
+            }
+            minY[0][bucket] = min;
+            maxY[0][bucket] = max;
+        }
+
+        // upper levels from the level below; note that Math.min/max() propagate NaNs
+        for (int level = 1; level < levels; level++) {
+            double[] lowerMin = minY[level-1], lowerMax = maxY[level-1];
+            count = (lowerMin.length + 1) / 2;
+            minY[level] = new double[count];
+            maxY[level] = new double[count];
+            for (int bucket = 0; bucket < count; bucket++) {
+                int left = 2 * bucket, right = Math.min(left + 1, lowerMin.length - 1);
+                minY[level][bucket] = Math.min(lowerMin[left], lowerMin[right]);
+                maxY[level][bucket] = Math.max(lowerMax[left], lowerMax[right]);
+            }
+        }
+    }
+
+    private static int bucketCount(int itemCount, int bucketSize) {
+        return (itemCount + bucketSize - 1) / bucketSize;
+    }
+
+    /**
+     * Returns the number of items in the summarized series.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Returns the number of levels; level 0 is the finest one.
+     */
+    public int getLevelCount() {
+        return minY.length;
+    }
+
+    /**
+     * Returns the number of items covered by a bucket on the given level.
+     * The last bucket of a level may cover fewer items.
+     */
+    public int getBucketSize(int level) {
+        return LEAF_SIZE << level;
+    }
+
+    /**
+     * Returns the number of buckets on the given level.
+     */
+    public int getBucketCount(int level) {
+        return minY[level].length;
+    }
+
+    /**
+     * Returns the minimum y value in the bucket, or NaN if the bucket contains NaN.
+     */
+    public double getMinY(int level, int bucket) {
+        return minY[level][bucket];
+    }
+
+    /**
+     * Returns the maximum y value in the bucket, or NaN if the bucket contains NaN.
+     */
+    public double getMaxY(int level, int bucket) {
+        return maxY[level][bucket];
+    }
+}
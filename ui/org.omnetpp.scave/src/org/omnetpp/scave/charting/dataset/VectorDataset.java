@@ -28,7 +28,9 @@ import org.omnetpp.scave.model2.ScaveModelUtil;
  * @author tomi
  */
 // TODO bounds should be read from the vector files
-public class VectorDataset extends XYDatasetSupport implements IStringValueXYDataset {
+public class VectorDataset extends XYDatasetSupport implements IStringValueXYDataset, IMinMaxXYDataset {
+
+    private static final int MIN_PYRAMID_ITEM_COUNT = 1024; // smaller series are plotted directly
 
     private static class SeriesData
     {
@@ -38,6 +40,9 @@ public class VectorDataset extends XYDatasetSupport implements IStringValueXYDat
         InterpolationMode interpolationMode;
         ResultItemValueFormatter formatter;
         XYArray xyarray;
+        double[] xvalues; // copy of the x/y values of xyarray, to avoid JNI calls per data point
+        double[] yvalues;
+        MinMaxPyramid pyramid; // built on demand
     }
 
     private String title;
@@ -94,6 +99,10 @@ public class VectorDataset extends XYDatasetSupport implements IStringValueXYDat
             ResultItem vector = manager.getItem(series.id);
             series.formatter = new ResultItemValueFormatter(vector);
             series.xyarray = seriesData[i];
+            if (series.xyarray != null) {
+                series.xvalues = series.xyarray.getXValues();
+                series.yvalues = series.xyarray.getYValues();
+            }
         }
     }
 
@@ -140,11 +149,23 @@ public class VectorDataset extends XYDatasetSupport implements IStringValueXYDat
     }
 
     public int getItemCount(int series) {
-        return data[series].xyarray != null ? data[series].xyarray.length() : 0;
+        return data[series].xvalues != null ? data[series].xvalues.length : 0;
     }
 
     public double getX(int series, int item) {
-        return data[series].xyarray.getX(item);
+        return data[series].xvalues[item];
+    }
+
+    @Override
+    public void getXValues(int series, int start, int count, double[] dest, int destPos) {
+        System.arraycopy(data[series].xvalues, start, dest, destPos, count);
+    }
+
+    public MinMaxPyramid getMinMaxPyramid(int series) {
+        SeriesData seriesData = data[series];
+        if (seriesData.pyramid == null && getItemCount(series) >= MIN_PYRAMID_ITEM_COUNT)
+            seriesData.pyramid = new MinMaxPyramid(this, series);
+        return seriesData.pyramid;
     }
 
     public BigDecimal getPreciseX(int series, int item) {
@@ -157,7 +178,12 @@ public class VectorDataset extends XYDatasetSupport implements IStringValueXYDat
     }
 
     public double getY(int series, int item) {
-        return data[series].xyarray.getY(item);
+        return data[series].yvalues[item];
+    }
+
+    @Override
+    public void getYValues(int series, int start, int count, double[] dest, int destPos) {
+        System.arraycopy(data[series].yvalues, start, dest, destPos, count);
     }
 
     public BigDecimal getPreciseY(int series, int item) {
@@ -15,11 +15,17 @@ import org.omnetpp.scave.model2.DatasetManager;
 
 public class VectorScatterPlotDataset extends XYDatasetSupport implements IXYDataset {
 
-    private XYArray[] vectors;  // each array contains X,Y values
+    private double[][] xvalues;  // X values of each series, copied out of the XYArrays
+    private double[][] yvalues;  // Y values of each series
     private String[] keys;
 
     public VectorScatterPlotDataset(IDList vectors, XYArray[] vectorsData, ResultFileManager manager) {
-        this.vectors = vectorsData;
+        this.xvalues = new double[vectorsData.length][];
+        this.yvalues = new double[vectorsData.length][];
+        for (int i = 0; i < vectorsData.length; i++) {
+            xvalues[i] = vectorsData[i].getXValues();
+            yvalues[i] = vectorsData[i].getYValues();
+        }
         this.keys = DatasetManager.getResultItemNames(vectors, null /*nameFormat*/, manager); // XXX nameFormat
     }
 
@@ -41,11 +47,16 @@ public class VectorScatterPlotDataset extends XYDatasetSupport implements IXYDat
     }
 
     public int getItemCount(int series) {
-        return vectors[series].length();
+        return xvalues[series].length;
     }
 
     public double getX(int series, int item) {
-        return vectors[series].getX(item);
+        return xvalues[series][item];
+    }
+
+    @Override
+    public void getXValues(int series, int start, int count, double[] dest, int destPos) {
+        System.arraycopy(xvalues[series], start, dest, destPos, count);
     }
 
     public BigDecimal getPreciseX(int series, int item) {
@@ -53,7 +64,12 @@ public class VectorScatterPlotDataset extends XYDatasetSupport implements IXYDat
     }
 
     public double getY(int series, int item) {
-        return vectors[series].getY(item);
+        return yvalues[series][item];
+    }
+
+    @Override
+    public void getYValues(int series, int start, int count, double[] dest, int destPos) {
+        System.arraycopy(yvalues[series], start, dest, destPos, count);
     }
 
     public BigDecimal getPreciseY(int series, int item) {
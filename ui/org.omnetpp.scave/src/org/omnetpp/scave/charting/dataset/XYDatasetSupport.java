@@ -22,6 +22,16 @@ abstract class XYDatasetSupport implements IXYDataset {
         return InterpolationMode.Linear;
     }
 
+    public void getXValues(int series, int start, int count, double[] dest, int destPos) {
+        for (int i = 0; i < count; i++)
+            dest[destPos + i] = getX(series, start + i);
+    }
+
+    public void getYValues(int series, int start, int count, double[] dest, int destPos) {
+        for (int i = 0; i < count; i++)
+            dest[destPos + i] = getY(series, start + i);
+    }
+
     public double getMinX() {
         if (!initialized)
             calculateBounds();
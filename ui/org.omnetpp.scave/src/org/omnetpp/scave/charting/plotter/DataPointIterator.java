@@ -0,0 +1,178 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.charting.plotter;
+
+import org.omnetpp.common.canvas.ICoordsMapping;
+import org.omnetpp.scave.charting.ILinePlot;
+import org.omnetpp.scave.charting.dataset.IMinMaxXYDataset;
+import org.omnetpp.scave.charting.dataset.IXYDataset;
+import org.omnetpp.scave.charting.dataset.MinMaxPyramid;
+
+/**
+ * Iterates over the data points of a series in an index range, for plotting.
+ * Data points are fetched from the dataset in chunks.
+ *
+ * If the dataset provides a min/max pyramid for the series, runs of data points
+ * that fall into the same pixel column are replaced by representative points,
+ * so the number of points returned grows with the plot width instead of the
+ * number of data points:
+ * <ul>
+ * <li>in LINES mode, by the first, minimum, maximum and last points of the run;
+ *     plotters that only extend a vertical line while the x pixel coordinate
+ *     does not change will draw exactly the same pixels as for the full data;
+ * <li>in SYMBOLS mode, by a single point if the whole run also falls into the
+ *     same y pixel.
+ * </ul>
+ * Runs containing NaNs are never replaced.
+ */
+class DataPointIterator {
+    public enum Mode {
+        LINES,
+        SYMBOLS
+    }
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private ILinePlot plot;
+    private IXYDataset dataset;
+    private int series;
+    private int last;
+    private ICoordsMapping mapping;
+    private Mode mode;
+    private MinMaxPyramid pyramid;
+
+    private int pos; // index of the next data item to process
+    private double[] xs = new double[CHUNK_SIZE];
+    private double[] ys = new double[CHUNK_SIZE];
+    private int count; // number of points in xs/ys
+    private int index; // index of the next point in xs/ys
+    private int numPoints; // number of points returned so far
+    private double x, y;
+
+    public DataPointIterator(ILinePlot plot, int series, int first, int last, ICoordsMapping mapping, Mode mode) {
+        this.plot = plot;
+        this.dataset = plot.getDataset();
+        this.series = series;
+        this.pos = first;
+        this.last = last;
+        this.mapping = mapping;
+        this.mode = mode;
+        this.pyramid = dataset instanceof IMinMaxXYDataset ? ((IMinMaxXYDataset)dataset).getMinMaxPyramid(series) : null;
+    }
+
+    /**
+     * Steps to the next data point; returns false if there are no more points.
+     */
+    public boolean next() {
+        if (index == count) {
+            fill();
+            if (count == 0)
+                return false;
+        }
+        x = xs[index];
+        y = ys[index];
+        index++;
+        numPoints++;
+        return true;
+    }
+
+    /**
+     * The x value of the current data point.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * The y value of the current data point.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Returns the number of data points returned so far; useful for
+     * checking time limits every few hundred points.
+     */
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    private void fill() {
+        index = count = 0;
+        if (pyramid == null) {
+            int n = Math.min(CHUNK_SIZE, last - pos + 1);
+            if (n > 0) {
+                dataset.getXValues(series, pos, n, xs, 0);
+                dataset.getYValues(series, pos, n, ys, 0);
+                pos += n;
+                count = n;
+            }
+        }
+        else {
+            while (pos <= last && count <= CHUNK_SIZE - 4) {
+                if (!addBucket()) {
+                    add(dataset.getX(series, pos), dataset.getY(series, pos));
+                    pos++;
+                }
+            }
+        }
+    }
+
+    private void add(double x, double y) {
+        xs[count] = x;
+        ys[count] = y;
+        count++;
+    }
+
+    /**
+     * Tries to replace the largest bucket starting at pos by representative points.
+     */
+    private boolean addBucket() {
+        if (pos % MinMaxPyramid.LEAF_SIZE != 0)
+            return false;
+        int leaf = pos / MinMaxPyramid.LEAF_SIZE;
+        int maxLevel = leaf == 0 ? pyramid.getLevelCount() - 1 : Math.min(pyramid.getLevelCount() - 1, Integer.numberOfTrailingZeros(leaf));
+        for (int level = maxLevel; level >= 0; level--) {
+            int size = pyramid.getBucketSize(level);
+            int end = pos + size - 1;
+            if (end > last)
+                continue;
+            int bucket = pos / size;
+            double minY = pyramid.getMinY(level, bucket);
+            if (Double.isNaN(minY))
+                continue;
+            double maxY = pyramid.getMaxY(level, bucket);
+
+            // the bucket must fall into one pixel column (and row, in SYMBOLS mode)
+            double firstX = dataset.getX(series, pos);
+            double lastX = dataset.getX(series, end);
+            if (mapping.toCanvasX(plot.transformX(firstX)) != mapping.toCanvasX(plot.transformX(lastX)))
+                continue;
+            double transformedMinY = plot.transformY(minY);
+            double transformedMaxY = plot.transformY(maxY);
+            if (Double.isNaN(transformedMinY) || Double.isNaN(transformedMaxY))
+                continue;
+
+            if (mode == Mode.SYMBOLS) {
+                if (mapping.toCanvasY(transformedMinY) != mapping.toCanvasY(transformedMaxY))
+                    continue;
+                add(firstX, minY);
+            }
+            else {
+                add(firstX, dataset.getY(series, pos));
+                add(firstX, minY);
+                add(firstX, maxY);
+                add(lastX, dataset.getY(series, end));
+            }
+            pos = end + 1;
+            return true;
+        }
+        return false;
+    }
+}
@@ -9,8 +9,6 @@ package org.omnetpp.scave.charting.plotter;
 
 import static org.omnetpp.common.canvas.ICoordsMapping.NAN_PIX;
 
-import java.util.HashSet;
-
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.swt.SWT;
 import org.omnetpp.common.canvas.ICoordsMapping;
@@ -31,21 +29,14 @@ public class LinesVectorPlotter extends VectorPlotter {
         if (n==0)
             return true;
 
-        // Note: for performance (this is most commonly used plotter), we don't use plotSymbols()
-        // from the base class, but draw lines and symbols in a single loop instead
-
         // dataset index range to iterate over
         int[] range = indexRange(plot, series, graphics, mapping);
         int first = range[0], last = range[1];
 
-        // chart y range in canvas coordinates
-        int[] yrange = canvasYRange(graphics, symbol);
-        int top = yrange[0], bottom = yrange[1];  // top < bottom
-
-
         // Performance optimization: avoid painting the same pixels over and over
         // when drawing vertical lines. This results in magnitudes faster
-        // execution for large datasets.
+        // execution for large datasets. Moreover, the iterator skips data points
+        // that would only extend vertical lines, if the dataset has a min/max pyramid.
         //
         long prevX = Long.MIN_VALUE;
         long prevY = NAN_PIX;
@@ -55,18 +46,15 @@ public class LinesVectorPlotter extends VectorPlotter {
         // turn off antialias for vertical lines
         int origAntialias = graphics.getAntialias();
 
-        // used for preventing painting the same symbol on the same pixels over and over.
-        HashSet<Long> yset = new HashSet<Long>();
-        long prevSymbolX = Long.MIN_VALUE;
-
         long startTime = System.currentTimeMillis();
 
-        for (int i = first; i <= last; i++) {
-            if ((i & 255)==0 && System.currentTimeMillis() - startTime > timeLimitMillis)
+        DataPointIterator points = new DataPointIterator(plot, series, first, last, mapping, DataPointIterator.Mode.LINES);
+        while (points.next()) {
+            if ((points.getNumPoints() & 255)==0 && System.currentTimeMillis() - startTime > timeLimitMillis)
                 return false; // timed out
 
-            long x = mapping.toCanvasX(plot.transformX(dataset.getX(series, i)));
-            long y = mapping.toCanvasY(plot.transformY(dataset.getY(series, i))); // note: this maps +-INF to +-MAXPIX, which works out just fine here
+            long x = mapping.toCanvasX(plot.transformX(points.getX()));
+            long y = mapping.toCanvasY(plot.transformY(points.getY())); // note: this maps +-INF to +-MAXPIX, which works out just fine here
 
             // for testing:
             // if (i%5==0) y = NANPIX;
@@ -97,25 +85,10 @@ public class LinesVectorPlotter extends VectorPlotter {
                 prevX = Long.MIN_VALUE; // invalidate minX/maxX
             }
             prevY = y;
-
-            // draw symbol (see VectorPlotter.plotSymbols() for explanation on yset-based optimization)
-            // note: top <= y <= bottom condition also filters out NaNs
-            if (symbol != null && top <= y && y <= bottom) {
-                if (prevSymbolX != x) {
-                    yset.clear();
-                    symbol.drawSymbol(graphics, x, y);
-                    yset.add(y);
-                }
-                else if (!yset.contains(y)) {
-                    symbol.drawSymbol(graphics, x, y);
-                    yset.add(y);
-                }
-                else {
-                    // already plotted
-                }
-            }
-            prevSymbolX = x;
         }
-        return true;
+
+        // draw symbols
+        int remainingTime = Math.max(0, timeLimitMillis - (int)(System.currentTimeMillis()-startTime));
+        return plotSymbols(plot, series, graphics, mapping, symbol, remainingTime);
     }
 }
@@ -45,9 +45,15 @@ public class SampleHoldVectorPlotter extends VectorPlotter {
         // (instead of calling drawSymbols()), but since "pin" mode doesn't make much
         // sense (doesn't show much) for huge amounts of data points, we don't bother.
         //
-        long prevX = mapping.toCanvasX(plot.transformX(dataset.getX(series, first)));
-        long prevY = mapping.toCanvasY(plot.transformY(dataset.getY(series, first)));
-        boolean prevIsNaN = Double.isNaN(plot.transformY(dataset.getY(series, first)));
+        // The iterator also skips data points that would only extend vertical lines,
+        // if the dataset has a min/max pyramid.
+        //
+        DataPointIterator points = new DataPointIterator(plot, series, first, last, mapping, DataPointIterator.Mode.LINES);
+        if (!points.next())
+            return true; // no data points in the visible range
+        long prevX = mapping.toCanvasX(plot.transformX(points.getX()));
+        long prevY = mapping.toCanvasY(plot.transformY(points.getY()));
+        boolean prevIsNaN = Double.isNaN(plot.transformY(points.getY()));
         long maxY = prevY;
         long minY = prevY;
 
@@ -63,18 +69,18 @@ public class SampleHoldVectorPlotter extends VectorPlotter {
 
         long startTime = System.currentTimeMillis();
 
-        for (int i = first+1; i <= last; i++) {
-            if ((i & 255)==0 && System.currentTimeMillis() - startTime > timeLimitMillis)
+        while (points.next()) {
+            if ((points.getNumPoints() & 255)==0 && System.currentTimeMillis() - startTime > timeLimitMillis)
                 return false; // timed out
 
-            double value = plot.transformY(dataset.getY(series, i));
+            double value = plot.transformY(points.getY());
 
             // for testing:
             //if (i%5==0) value = 0.0/0.0; //NaN
 
             boolean isNaN = Double.isNaN(value); // see isNaN handling later
 
-            long x = mapping.toCanvasX(plot.transformX(dataset.getX(series, i)));
+            long x = mapping.toCanvasX(plot.transformX(points.getX()));
             long y = mapping.toCanvasY(value); // note: this maps +-INF to +-MAXPIX, which works out just fine here
 
             // for testing:
@@ -62,7 +62,6 @@ public abstract class VectorPlotter implements IVectorPlotter {
             return true;
 
         // dataset index range to iterate over
-        IXYDataset dataset = plot.getDataset();
         int[] range = indexRange(plot, series, graphics, mapping);
         int first = range[0], last = range[1];
 
@@ -76,18 +75,22 @@ public abstract class VectorPlotter implements IVectorPlotter {
         // symbols painted at the last x pixel coordinate. This easily results in 10x-100x
         // performance improvement.
         //
+        // Further optimization: data points that fall into the same pixel are skipped
+        // altogether with the help of the min/max pyramid of the dataset (if it has one).
+        //
         long startTime = System.currentTimeMillis();
         HashSet<Long> yset = new HashSet<Long>();
         long prevCanvasX = Long.MIN_VALUE;
-        for (int i = first; i <= last; i++) {
-            if ((i & 255)==0 && System.currentTimeMillis() - startTime > timeLimitMillis)
+        DataPointIterator points = new DataPointIterator(plot, series, first, last, mapping, DataPointIterator.Mode.SYMBOLS);
+        while (points.next()) {
+            if ((points.getNumPoints() & 255)==0 && System.currentTimeMillis() - startTime > timeLimitMillis)
                 return false; // timed out
 
-            double y = plot.transformY(dataset.getY(series, i));
+            double y = plot.transformY(points.getY());
             if (y < lo || y > hi || Double.isNaN(y))  // even skip coord transform for off-screen values
                 continue;
 
-            double x = plot.transformX(dataset.getX(series, i));
+            double x = plot.transformX(points.getX());
             long canvasX = mapping.toCanvasX(x);
             long canvasY = mapping.toCanvasY(y);
 
@@ -0,0 +1,553 @@
+package org.omnetpp.scave.computed;
+
+import static org.omnetpp.scave.computed.ExpressionEvaluator.isAggregateFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.omnetpp.scave.computed.ExpressionEvaluator.Environment;
+import org.omnetpp.scave.computed.ExpressionEvaluator.Function;
+import org.omnetpp.scave.computed.ExpressionSyntax.Expr;
+import org.omnetpp.scave.computed.ExpressionSyntax.FunctionCall;
+import org.omnetpp.scave.computed.ExpressionSyntax.NumLiteral;
+import org.omnetpp.scave.computed.ExpressionSyntax.StatisticRef;
+import org.omnetpp.scave.computed.ExpressionSyntax.StringLiteral;
+import org.omnetpp.scave.computed.ExpressionSyntax.VariableRef;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.ScalarResult;
+import org.omnetpp.scave.engine.Statistics;
+
+/**
+ * Value expression compiled for evaluation over columns of scalar values.
+ * <p>
+ * The numeric subset of the expression language is compiled into a tree
+ * of nodes, each computing a whole column (double[]) with a tight loop.
+ * Statistic references without module pattern are joined by module name:
+ * the rows are the modules of the first referenced statistic (in its order)
+ * that have all referenced statistics, i.e. the values the tree-walking
+ * evaluator would produce with the implicit $m variable bound to the
+ * module name. Aggregate functions are evaluated once per input, before
+ * the rows.
+ * <p>
+ * Expressions outside that subset (patterns, string functions, vectors
+ * and histograms, aggregates or new statistics depending on $m, etc.)
+ * are not compiled; {@link #evaluate} returns null for them, and they must
+ * be evaluated with ExpressionEvaluator. Whether an expression can be
+ * compiled also depends on which names are variables in the environment,
+ * so the compiled form is kept for each set of variable names.
+ */
+class CompiledExpression {
+
+    /**
+     * The value of the expression: one value per row, and the module name
+     * of the row (the value of $m), or null if the expression contains no
+     * statistic reference that binds $m.
+     */
+    static class Result {
+        final double[] values;
+        final String[] modules;
+
+        Result(double[] values, String[] modules) {
+            this.values = values;
+            this.modules = modules;
+        }
+
+        int size() {
+            return values.length;
+        }
+    }
+
+    final Expr expr;
+    private final Map<Set<String>,Program> programs = new HashMap<Set<String>,Program>(); // by the names of environment variables
+
+    CompiledExpression(Expr expr) {
+        this.expr = expr;
+    }
+
+    /**
+     * Evaluates the expression on the specified input statistics and in the
+     * specified environment. Returns null if the expression cannot be evaluated
+     * by the compiled form, or the input contains something that the compiled
+     * form does not handle (non-scalars or duplicate scalars in a module).
+     */
+    Result evaluate(ResultFileManager manager, IDList input, Environment env) {
+        Program program = getProgram(env);
+        return program.root == null ? null : program.evaluate(manager, input, env);
+    }
+
+    private synchronized Program getProgram(Environment env) {
+        Program program = programs.get(env.getNames());
+        if (program == null) {
+            Set<String> variables = new HashSet<String>(env.getNames());
+            program = new Program();
+            if (!variables.contains("$m")) {
+                try {
+                    new Compiler(variables, program).compileProgram(expr);
+                }
+                catch (NotCompilableException e) {
+                    program.root = null;
+                }
+            }
+            programs.put(variables, program);
+        }
+        return program;
+    }
+
+    /*----------------------------------------------------------------------
+     *                             Evaluation
+     *----------------------------------------------------------------------*/
+
+    /**
+     * A compiled expression (or aggregate function argument): the names of the
+     * statistics that make up the rows, the aggregates to be computed before
+     * the rows, and the root of the node tree.
+     */
+    private static class Program {
+        List<String> statisticNames = new ArrayList<String>(); // columns, in the order of first reference
+        List<Aggregate> aggregates = new ArrayList<Aggregate>();
+        Node root;
+
+        Result evaluate(ResultFileManager manager, IDList input, Environment env) {
+            Frame frame = new Frame(env);
+
+            frame.aggregates = new double[aggregates.size()];
+            for (int i = 0; i < aggregates.size(); i++) {
+                Aggregate aggregate = aggregates.get(i);
+                Result arg = aggregate.arg.evaluate(manager, input, env);
+                if (arg == null)
+                    return null;
+                if (aggregate.function != Function.count && arg.size() == 0)
+                    return new Result(new double[0], null); // like the evaluator: no values
+                frame.aggregates[i] = aggregate.compute(arg.values);
+            }
+
+            String[] modules = null;
+            if (statisticNames.isEmpty()) {
+                frame.numRows = 1;
+                frame.columns = new double[0][];
+            }
+            else {
+                modules = frame.join(manager, input, statisticNames);
+                if (modules == null)
+                    return null;
+            }
+            return new Result(root.evaluate(frame), modules);
+        }
+    }
+
+    /**
+     * An aggregate function applied to the values of its argument.
+     */
+    private static class Aggregate {
+        Function function;
+        Program arg;
+
+        Aggregate(Function function, Program arg) {
+            this.function = function;
+            this.arg = arg;
+        }
+
+        double compute(double[] values) {
+            if (function == Function.count)
+                return values.length;
+            Statistics stat = new Statistics();
+            for (double value : values)
+                stat.collect(value);
+            switch (function) {
+            case sum: return stat.getSum();
+            case mean: return stat.getMean();
+            case min: return stat.getMin();
+            case max: return stat.getMax();
+            case stddev: return stat.getStddev();
+            case variance: return stat.getVariance();
+            default: return Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Input of the node tree: the value columns of the referenced statistics,
+     * the values of the aggregates, and the environment.
+     */
+    private static class Frame {
+        Environment env;
+        int numRows;
+        double[][] columns;
+        double[] aggregates;
+
+        Frame(Environment env) {
+            this.env = env;
+        }
+
+        /**
+         * Fills in the columns with the values of the given statistics in the modules
+         * that have all of them, and returns the module names of the rows.
+         * Returns null if the input contains non-scalars or duplicate scalars for
+         * the statistics.
+         */
+        String[] join(ResultFileManager manager, IDList input, List<String> names) {
+            IDList candidates = manager.filterIDList(input, (String)null, (String)null, names.get(0));
+            int n = candidates.size();
+            String[] modules = new String[n];
+            columns = new double[names.size()][n];
+            Map<String,Integer> rowOfModule = new HashMap<String,Integer>(2*n);
+            for (int row = 0; row < n; row++) {
+                long id = candidates.get(row);
+                if (ResultFileManager.getTypeOf(id) != ResultFileManager.SCALAR)
+                    return null;
+                ScalarResult scalar = manager.getScalar(id);
+                modules[row] = scalar.getModuleName();
+                columns[0][row] = scalar.getValue();
+                if (rowOfModule.put(modules[row], row) != null)
+                    return null;
+            }
+
+            // rows missing any of the other statistics are dropped
+            int[] numMatches = new int[n];
+            int[] lastMatch = new int[n]; // index of the last statistic found in the row
+            for (int k = 1; k < names.size(); k++) {
+                candidates = manager.filterIDList(input, (String)null, (String)null, names.get(k));
+                for (int i = 0; i < candidates.size(); i++) {
+                    long id = candidates.get(i);
+                    if (ResultFileManager.getTypeOf(id) != ResultFileManager.SCALAR)
+                        return null;
+                    ScalarResult scalar = manager.getScalar(id);
+                    Integer row = rowOfModule.get(scalar.getModuleName());
+                    if (row != null) {
+                        if (lastMatch[row] == k)
+                            return null;
+                        lastMatch[row] = k;
+                        numMatches[row]++;
+                        columns[k][row] = scalar.getValue();
+                    }
+                }
+            }
+
+            int numRows = 0;
+            for (int row = 0; row < n; row++) {
+                if (numMatches[row] == names.size()-1) {
+                    modules[numRows] = modules[row];
+                    for (double[] column : columns)
+                        column[numRows] = column[row];
+                    numRows++;
+                }
+            }
+            if (numRows < n) {
+                modules = Arrays.copyOf(modules, numRows);
+                for (int k = 0; k < columns.length; k++)
+                    columns[k] = Arrays.copyOf(columns[k], numRows);
+            }
+            this.numRows = numRows;
+            return modules;
+        }
+    }
+
+    /**
+     * Node of the compiled expression. Computes the values of the
+     * expression for all rows of the frame. The returned array must not
+     * be modified, because it might be a column of the frame.
+     */
+    private static abstract class Node {
+        abstract double[] evaluate(Frame frame);
+    }
+
+    private static class ConstantNode extends Node {
+        double value;
+
+        ConstantNode(double value) { this.value = value; }
+
+        double[] evaluate(Frame frame) {
+            double[] result = new double[frame.numRows];
+            Arrays.fill(result, value);
+            return result;
+        }
+    }
+
+    private static class VariableNode extends Node {
+        String name;
+
+        VariableNode(String name) { this.name = name; }
+
+        double[] evaluate(Frame frame) {
+            double[] result = new double[frame.numRows];
+            Arrays.fill(result, toNumber(frame.env.lookup(name)));
+            return result;
+        }
+    }
+
+    private static class ColumnNode extends Node {
+        int index;
+
+        ColumnNode(int index) { this.index = index; }
+
+        double[] evaluate(Frame frame) {
+            return frame.columns[index];
+        }
+    }
+
+    private static class AggregateNode extends Node {
+        int index;
+
+        AggregateNode(int index) { this.index = index; }
+
+        double[] evaluate(Frame frame) {
+            double[] result = new double[frame.numRows];
+            Arrays.fill(result, frame.aggregates[index]);
+            return result;
+        }
+    }
+
+    private static class ConditionalNode extends Node {
+        Node cond, trueCase, falseCase;
+
+        ConditionalNode(Node cond, Node trueCase, Node falseCase) { this.cond = cond; this.trueCase = trueCase; this.falseCase = falseCase; }
+
+        double[] evaluate(Frame frame) {
+            double[] c = cond.evaluate(frame), t = trueCase.evaluate(frame), f = falseCase.evaluate(frame);
+            double[] result = new double[frame.numRows];
+            for (int i = 0; i < result.length; i++)
+                result[i] = c[i] != 0.0 ? t[i] : f[i];
+            return result;
+        }
+    }
+
+    // operators, with the same semantics as in ExpressionEvaluator.applyFunction()
+    private static final String[] UNARY_OPERATORS = { "-", "~", "!" };
+    private static final String[] BINARY_OPERATORS = { "+", "-", "*", "/", "%", "^", "|", "&", "#", "<", ">",
+                                                       "==", "!=", "<=", ">=", "<<", ">>", "||", "&&" };
+
+    private static class UnaryOpNode extends Node {
+        char op;
+        Node arg;
+
+        UnaryOpNode(String op, Node arg) { this.op = op.charAt(0); this.arg = arg; }
+
+        double[] evaluate(Frame frame) {
+            double[] a = arg.evaluate(frame);
+            double[] result = new double[frame.numRows];
+            switch (op) {
+            case '-': for (int i = 0; i < result.length; i++) result[i] = -a[i]; break;
+            case '~': for (int i = 0; i < result.length; i++) result[i] = ~(int)a[i]; break;
+            case '!': for (int i = 0; i < result.length; i++) result[i] = a[i] != 0.0 ? 0.0 : 1.0; break;
+            }
+            return result;
+        }
+    }
+
+    private static class BinaryOpNode extends Node {
+        String op;
+        Node left, right;
+
+        BinaryOpNode(String op, Node left, Node right) { this.op = op; this.left = left; this.right = right; }
+
+        double[] evaluate(Frame frame) {
+            double[] a = left.evaluate(frame), b = right.evaluate(frame);
+            double[] r = new double[frame.numRows];
+            int n = r.length;
+            switch (op) {
+            case "+": for (int i = 0; i < n; i++) r[i] = a[i] + b[i]; break;
+            case "-": for (int i = 0; i < n; i++) r[i] = a[i] - b[i]; break;
+            case "*": for (int i = 0; i < n; i++) r[i] = a[i] * b[i]; break;
+            case "/": for (int i = 0; i < n; i++) r[i] = a[i] / b[i]; break;
+            case "%": for (int i = 0; i < n; i++) r[i] = a[i] % b[i]; break;
+            case "^": for (int i = 0; i < n; i++) r[i] = Math.pow(a[i], b[i]); break;
+            case "|": for (int i = 0; i < n; i++) r[i] = (int)a[i] | (int)b[i]; break;
+            case "&": for (int i = 0; i < n; i++) r[i] = (int)a[i] & (int)b[i]; break;
+            case "#": for (int i = 0; i < n; i++) r[i] = (int)a[i] ^ (int)b[i]; break;
+            case "<": for (int i = 0; i < n; i++) r[i] = a[i] < b[i] ? 1.0 : 0.0; break;
+            case ">": for (int i = 0; i < n; i++) r[i] = a[i] > b[i] ? 1.0 : 0.0; break;
+            case "==": for (int i = 0; i < n; i++) r[i] = a[i] == b[i] ? 1.0 : 0.0; break;
+            case "!=": for (int i = 0; i < n; i++) r[i] = a[i] != b[i] ? 1.0 : 0.0; break;
+            case "<=": for (int i = 0; i < n; i++) r[i] = a[i] <= b[i] ? 1.0 : 0.0; break;
+            case ">=": for (int i = 0; i < n; i++) r[i] = a[i] >= b[i] ? 1.0 : 0.0; break;
+            case "<<": for (int i = 0; i < n; i++) r[i] = (int)a[i] << (int)b[i]; break;
+            case ">>": for (int i = 0; i < n; i++) r[i] = (int)a[i] >> (int)b[i]; break;
+            case "||": for (int i = 0; i < n; i++) r[i] = a[i] != 0.0 || b[i] != 0.0 ? 1.0 : 0.0; break;
+            case "&&": for (int i = 0; i < n; i++) r[i] = a[i] != 0.0 && b[i] != 0.0 ? 1.0 : 0.0; break;
+            default: throw new IllegalStateException();
+            }
+            return r;
+        }
+    }
+
+    private static class FunctionNode extends Node {
+        Function fn;
+        Node[] args;
+
+        FunctionNode(Function fn, Node[] args) { this.fn = fn; this.args = args; }
+
+        static boolean isSupported(Function fn, int numArgs) {
+            switch (fn) {
+            case sin: case cos: case tan: case asin: case acos: case atan: case rad: case deg:
+            case exp: case log: case log10: case sinh: case cosh: case tanh: case sqrt: case cbrt:
+            case ceil: case floor: case round: case fabs: case signum:
+                return numArgs == 1;
+            case atan2: case hypot: case rem: case min_2: case max_2:
+                return numArgs == 2;
+            case locate:
+                return numArgs >= 2;
+            default:
+                return false;
+            }
+        }
+
+        double[] evaluate(Frame frame) {
+            double[] a = args[0].evaluate(frame);
+            double[] b = args.length > 1 ? args[1].evaluate(frame) : null;
+            double[] r = new double[frame.numRows];
+            int n = r.length;
+            switch (fn) {
+            case sin: for (int i = 0; i < n; i++) r[i] = Math.sin(a[i]); break;
+            case cos: for (int i = 0; i < n; i++) r[i] = Math.cos(a[i]); break;
+            case tan: for (int i = 0; i < n; i++) r[i] = Math.tan(a[i]); break;
+            case asin: for (int i = 0; i < n; i++) r[i] = Math.asin(a[i]); break;
+            case acos: for (int i = 0; i < n; i++) r[i] = Math.acos(a[i]); break;
+            case atan: for (int i = 0; i < n; i++) r[i] = Math.atan(a[i]); break;
+            case rad: for (int i = 0; i < n; i++) r[i] = Math.toRadians(a[i]); break;
+            case deg: for (int i = 0; i < n; i++) r[i] = Math.toDegrees(a[i]); break;
+            case exp: for (int i = 0; i < n; i++) r[i] = Math.exp(a[i]); break;
+            case log: for (int i = 0; i < n; i++) r[i] = Math.log(a[i]); break;
+            case log10: for (int i = 0; i < n; i++) r[i] = Math.log10(a[i]); break;
+            case sinh: for (int i = 0; i < n; i++) r[i] = Math.sinh(a[i]); break;
+            case cosh: for (int i = 0; i < n; i++) r[i] = Math.cosh(a[i]); break;
+            case tanh: for (int i = 0; i < n; i++) r[i] = Math.tanh(a[i]); break;
+            case sqrt: for (int i = 0; i < n; i++) r[i] = Math.sqrt(a[i]); break;
+            case cbrt: for (int i = 0; i < n; i++) r[i] = Math.cbrt(a[i]); break;
+            case ceil: for (int i = 0; i < n; i++) r[i] = Math.ceil(a[i]); break;
+            case floor: for (int i = 0; i < n; i++) r[i] = Math.floor(a[i]); break;
+            case round: for (int i = 0; i < n; i++) r[i] = Math.round(a[i]); break;
+            case fabs: for (int i = 0; i < n; i++) r[i] = Math.abs(a[i]); break;
+            case signum: for (int i = 0; i < n; i++) r[i] = Math.signum(a[i]); break;
+            case atan2: for (int i = 0; i < n; i++) r[i] = Math.atan2(a[i], b[i]); break;
+            case hypot: for (int i = 0; i < n; i++) r[i] = Math.hypot(a[i], b[i]); break;
+            case rem: for (int i = 0; i < n; i++) r[i] = Math.IEEEremainder(a[i], b[i]); break;
+            case min_2: for (int i = 0; i < n; i++) r[i] = Math.min(a[i], b[i]); break;
+            case max_2: for (int i = 0; i < n; i++) r[i] = Math.max(a[i], b[i]); break;
+            case locate:
+                double[][] limits = new double[args.length-1][];
+                limits[0] = b;
+                for (int k = 2; k < args.length; k++)
+                    limits[k-1] = args[k].evaluate(frame);
+                for (int i = 0; i < n; i++) {
+                    int index;
+                    for (index = 0; index < limits.length; ++index)
+                        if (a[i] < limits[index][i])
+                            break;
+                    r[i] = index;
+                }
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+            return r;
+        }
+    }
+
+    private static double toNumber(String str) {
+        try {
+            return Double.parseDouble(str);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /*----------------------------------------------------------------------
+     *                             Compilation
+     *----------------------------------------------------------------------*/
+
+    private static class NotCompilableException extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Compiles an expression into a Program. The nodes are visited in the order
+     * of evaluation, because that determines the meaning of statistic references
+     * (the first one binds $m, the following ones are matched with it).
+     */
+    private static class Compiler {
+        private final Set<String> variables;
+        private final Program program;
+        private boolean inConditionalBranch;
+
+        Compiler(Set<String> variables, Program program) {
+            this.variables = variables;
+            this.program = program;
+        }
+
+        void compileProgram(Expr expr) throws NotCompilableException {
+            program.root = compile(expr);
+        }
+
+        private Node compile(Expr expr) throws NotCompilableException {
+            if (expr instanceof NumLiteral)
+                return new ConstantNode(((NumLiteral)expr).value);
+            else if (expr instanceof StringLiteral)
+                return new ConstantNode(toNumber(((StringLiteral)expr).value));
+            else if (expr instanceof VariableRef) {
+                String name = ((VariableRef)expr).name;
+                return variables.contains(name) ? new VariableNode(name) : compileStatisticRef(name);
+            }
+            else if (expr instanceof StatisticRef && ((StatisticRef)expr).modulePattern == null)
+                return compileStatisticRef(((StatisticRef)expr).name);
+            else if (expr instanceof FunctionCall)
+                return compileFunctionCall((FunctionCall)expr);
+            else
+                throw new NotCompilableException();
+        }
+
+        private Node compileStatisticRef(String name) throws NotCompilableException {
+            int index = program.statisticNames.indexOf(name);
+            if (index == -1) {
+                // a new statistic in a conditional branch would make the rows depend on the condition
+                if (inConditionalBranch)
+                    throw new NotCompilableException();
+                index = program.statisticNames.size();
+                program.statisticNames.add(name);
+            }
+            return new ColumnNode(index);
+        }
+
+        private Node compileFunctionCall(FunctionCall call) throws NotCompilableException {
+            String name = call.name;
+            int numArgs = call.args.size();
+
+            if (isAggregateFunction(name) && numArgs == 1) {
+                // the evaluator computes the aggregate for each value of $m once it is bound
+                if (!program.statisticNames.isEmpty() || inConditionalBranch)
+                    throw new NotCompilableException();
+                Program arg = new Program();
+                new Compiler(variables, arg).compileProgram(call.args.get(0));
+                program.aggregates.add(new Aggregate(Function.getFunction(name, 1), arg));
+                return new AggregateNode(program.aggregates.size()-1);
+            }
+            else if ("?".equals(name) && numArgs == 3) {
+                Node cond = compile(call.args.get(0));
+                boolean saved = inConditionalBranch;
+                inConditionalBranch = true;
+                Node trueCase = compile(call.args.get(1));
+                Node falseCase = compile(call.args.get(2));
+                inConditionalBranch = saved;
+                return new ConditionalNode(cond, trueCase, falseCase);
+            }
+
+            Node[] args = new Node[numArgs];
+            for (int i = 0; i < numArgs; i++)
+                args[i] = compile(call.args.get(i));
+
+            if (numArgs == 1 && Arrays.asList(UNARY_OPERATORS).contains(name))
+                return new UnaryOpNode(name, args[0]);
+            else if (numArgs == 2 && Arrays.asList(BINARY_OPERATORS).contains(name))
+                return new BinaryOpNode(name, args[0], args[1]);
+            Function fn = name.length() > 2 ? Function.getFunction(name, numArgs) : null;
+            if (fn != null && FunctionNode.isSupported(fn, numArgs))
+                return new FunctionNode(fn, args);
+            throw new NotCompilableException();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import static org.omnetpp.scave.computed.ExpressionEvaluator.isFieldAccess;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -83,9 +84,20 @@ import org.omnetpp.scave.model2.StatUtils;
  */
 public class ComputedScalarEngine {
     private ResultFileManager resultFileManager;
+    private Map<String,CompiledExpression> compiledExpressions; // by expression text
 
     public ComputedScalarEngine(ResultFileManager manager) {
+        this(manager, new HashMap<String,CompiledExpression>());
+    }
+
+    /**
+     * Creates an engine that takes the compiled value expressions from the
+     * specified cache, and adds the ones it compiles. The map must be
+     * synchronized if the cache is shared between threads.
+     */
+    ComputedScalarEngine(ResultFileManager manager, Map<String,CompiledExpression> compiledExpressions) {
         this.resultFileManager = manager;
+        this.compiledExpressions = compiledExpressions;
     }
 
     /**
@@ -115,7 +127,7 @@ public class ComputedScalarEngine {
      */
     List<ComputedScalar> computeScalars(ComputeScalar op, IDList input) throws ParseException {
         ExpressionParser parser = new ExpressionParser();
-        Expr valueExpr = parser.parseExpr(op.getValueExpr());
+        CompiledExpression valueExpr = compile(op.getValueExpr());
         Expr groupByExpr = isEmpty(op.getGroupByExpr()) ? null : parser.parseExpr(op.getGroupByExpr());
         if (isEmpty(op.getScalarName()))
             throw new EvaluationException("scalar name is unspecified");
@@ -137,12 +149,24 @@ public class ComputedScalarEngine {
         return scalars.toList();
     }
 
+    /**
+     * Returns the compiled form of the value expression, from the cache if possible.
+     */
+    private CompiledExpression compile(String valueText) throws ParseException {
+        CompiledExpression compiled = compiledExpressions.get(valueText);
+        if (compiled == null) {
+            compiled = new CompiledExpression(new ExpressionParser().parseExpr(valueText));
+            compiledExpressions.put(valueText, compiled);
+        }
+        return compiled;
+    }
+
     /**
      * Computes the scalars in one run.
      * <p>
      * This method computes the input groups, and iterates the computation in each group.
      */
-    private List<ComputedScalar> computeScalars(Expr valueExpr, StringTemplate nameTmpl, StringTemplate moduleTmpl, Expr groupByExpr, IDList input)
+    private List<ComputedScalar> computeScalars(CompiledExpression valueExpr, StringTemplate nameTmpl, StringTemplate moduleTmpl, Expr groupByExpr, IDList input)
             throws ParseException
     {
         if (groupByExpr != null) {
@@ -163,24 +187,43 @@ public class ComputedScalarEngine {
      * <p>
      * Here all inputs is from the same run, and belongs to the same group.
      * {@code env} contains the variables defined in the grouping expression.
+     * <p>
+     * The value expression is evaluated in its compiled form if possible,
+     * otherwise by the (slower) ExpressionEvaluator.
      */
-    private List<ComputedScalar> computeScalars(Expr valueExpr, StringTemplate nameTmpl, StringTemplate moduleTmpl, IDList input, Environment env) {
+    private List<ComputedScalar> computeScalars(CompiledExpression valueExpr, StringTemplate nameTmpl, StringTemplate moduleTmpl, IDList input, Environment env) {
         ExpressionEvaluator evaluator = new ExpressionEvaluator(resultFileManager, input);
         List<ComputedScalar> result = new ArrayList<ComputedScalar>();
-        for (Value val : evaluator.evaluate(valueExpr, env)) {
-            ComputedScalar scalar = new ComputedScalar();
-            scalar.value = val.asNumber();
-            scalar.name = evaluator.evaluate(nameTmpl, val.env);
-            scalar.module = moduleTmpl == null ?
-                              val.env.lookup("$m") :
-                              evaluator.evaluate(moduleTmpl, val.env);
-            if (scalar.module == null)
-                throw new EvaluationException("module name is not specified");
-            result.add(scalar);
+        CompiledExpression.Result values = valueExpr.evaluate(resultFileManager, input, env);
+        if (values != null) {
+            for (int i = 0; i < values.size(); i++) {
+                Environment valueEnv = env;
+                if (values.modules != null) {
+                    valueEnv = env.clone();
+                    valueEnv.define("$m", values.modules[i]);
+                }
+                result.add(createScalar(values.values[i], nameTmpl, moduleTmpl, valueEnv, evaluator));
+            }
+        }
+        else {
+            for (Value val : evaluator.evaluate(valueExpr.expr, env))
+                result.add(createScalar(val.asNumber(), nameTmpl, moduleTmpl, val.env, evaluator));
         }
         return result;
     }
 
+    private ComputedScalar createScalar(double value, StringTemplate nameTmpl, StringTemplate moduleTmpl, Environment env, ExpressionEvaluator evaluator) {
+        ComputedScalar scalar = new ComputedScalar();
+        scalar.value = value;
+        scalar.name = evaluator.evaluate(nameTmpl, env);
+        scalar.module = moduleTmpl == null ?
+                          env.lookup("$m") :
+                          evaluator.evaluate(moduleTmpl, env);
+        if (scalar.module == null)
+            throw new EvaluationException("module name is not specified");
+        return scalar;
+    }
+
     /**
      * Sort the input statistics according to their runs.
      * @param input the input statistics to be grouped
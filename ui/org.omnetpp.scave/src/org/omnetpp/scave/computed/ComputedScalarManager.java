@@ -1,7 +1,9 @@
 package org.omnetpp.scave.computed;
 
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -42,11 +44,23 @@ import org.omnetpp.scave.model2.ScaveModelUtil;
  */
 public class ComputedScalarManager implements INotifyChangedListener, IResultFilesChangeListener {
 
+    private static final int MAX_COMPILED_EXPRESSIONS = 100;
 
     private ResultFileManagerEx resultFileManager;
     private IChangeNotifier changeNotifier;
     private IFile analysisFile; // for markers
 
+    // compiled value expressions by expression text; they do not depend on the data, so they are
+    // kept when computed scalars are invalidated (least recently used ones are dropped)
+    private final Map<String,CompiledExpression> compiledExpressions = Collections.synchronizedMap(
+            new LinkedHashMap<String,CompiledExpression>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String,CompiledExpression> eldest) {
+                    return size() > MAX_COMPILED_EXPRESSIONS;
+                }
+            });
+
     public ComputedScalarManager() {
     }
 
@@ -110,7 +124,7 @@ public class ComputedScalarManager implements INotifyChangedListener, IResultFil
     {
         ComputeScalarProblemMarkerSynchronizer markers = new ComputeScalarProblemMarkerSynchronizer(Markers.COMPUTESCALAR_PROBLEMMARKER_ID, op);
         try {
-            final List<ComputedScalar> scalars = new ComputedScalarEngine(resultFileManager).computeScalars(op, input);
+            final List<ComputedScalar> scalars = new ComputedScalarEngine(resultFileManager, compiledExpressions).computeScalars(op, input);
 
             IDList result = ResultFileManager.callWithWriteLock(resultFileManager, new Callable<IDList>() {
                 public IDList call() throws Exception {
@@ -15,6 +15,7 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -41,6 +42,9 @@ import org.omnetpp.scave.computed.ExpressionSyntax.StringTemplate;
 import org.omnetpp.scave.computed.ExpressionSyntax.VariableDefPattern;
 import org.omnetpp.scave.computed.ExpressionSyntax.VariableRef;
 import org.omnetpp.scave.computed.ExpressionSyntax.Visitor;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.StringMap;
 
 public class ExpressionTests {
 
@@ -52,6 +56,7 @@ public class ExpressionTests {
         testExprEval();
         testTemplateEval();
         benchmarkExpressionParser();
+        benchmarkComputedScalars();
     }
 
     static void testTokenizer() {
@@ -214,6 +219,72 @@ public class ExpressionTests {
         }
     }
 
+    static void benchmarkComputedScalars() {
+        System.out.println("------------- computed scalar evaluation ----------------");
+
+        // synthetic result set: 100k runs, each with pkSent and pkRecv scalars in 3 modules
+        final int numRuns = 100000;
+        String[] modules = { "Net.host[0]", "Net.host[1]", "Net.host[2]" };
+        ResultFileManager manager = new ResultFileManager();
+        Object computation = new Object();
+        StringMap runAttrs = new StringMap();
+        Random random = new Random(1);
+        List<IDList> inputs = new ArrayList<IDList>(numRuns);
+        for (int run = 0; run < numRuns; run++) {
+            IDList input = new IDList();
+            for (String module : modules) {
+                int sent = 1 + random.nextInt(1000);
+                input.add(manager.addComputedScalar("pkSent", module, "run-"+run, sent, runAttrs, computation));
+                input.add(manager.addComputedScalar("pkRecv", module, "run-"+run, sent - random.nextInt(sent), runAttrs, computation));
+            }
+            inputs.add(input);
+        }
+
+        benchmarkComputedScalars("pkRecv / pkSent", manager, inputs);
+        benchmarkComputedScalars("100 * (pkSent - pkRecv) / pkSent", manager, inputs);
+        benchmarkComputedScalars("pkRecv > 500 ? floor(log10(pkRecv)) : -1", manager, inputs);
+        benchmarkComputedScalars("sum(pkRecv) / sum(pkSent)", manager, inputs);
+    }
+
+    static void benchmarkComputedScalars(String expr, ResultFileManager manager, List<IDList> inputs) {
+        System.out.println(expr);
+        try {
+            Expr e = new ExpressionParser().parseExpr(expr);
+            Environment env = new Environment();
+
+            long start = System.currentTimeMillis();
+            List<Double> expected = new ArrayList<Double>();
+            for (IDList input : inputs)
+                for (Value value : new ExpressionEvaluator(manager, input).evaluate(e, env))
+                    expected.add(value.asNumber());
+            long interpretedMillis = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            CompiledExpression compiled = new CompiledExpression(e);
+            double[] values = new double[expected.size()];
+            int count = 0;
+            for (IDList input : inputs) {
+                CompiledExpression.Result result = compiled.evaluate(manager, input, env);
+                if (result == null)
+                    throw new RuntimeException("expression not compiled");
+                if (count + result.size() > values.length)
+                    throw new RuntimeException("too many values");
+                System.arraycopy(result.values, 0, values, count, result.size());
+                count += result.size();
+            }
+            long compiledMillis = System.currentTimeMillis() - start;
+
+            if (count != expected.size())
+                throw new RuntimeException("too few values");
+            for (int i = 0; i < count; i++)
+                if (Double.compare(values[i], expected.get(i)) != 0)
+                    throw new RuntimeException("wrong result");
+            System.out.format("  %d values, interpreted: %dms, compiled: %dms\n", count, interpretedMillis, compiledMillis);
+        } catch (Exception e) {
+            System.out.println("  ERROR: "+e.getMessage());
+        }
+    }
+
     static void testPatternParser() {
         System.out.println("------------- parsed patterns ----------------");
         testPatternParser("${subnet=*}");
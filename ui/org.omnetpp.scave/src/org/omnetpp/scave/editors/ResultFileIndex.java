@@ -0,0 +1,224 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.editors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.omnetpp.scave.ScavePlugin;
+
+/**
+ * Index of the result files (scalar and vector files) in the workspace, for
+ * resolving the wildcard patterns of analysis inputs without scanning the
+ * workspace. Files are stored by folder, in a sorted map, so a pattern only
+ * needs to look at the folders under its wildcard-free prefix.
+ *
+ * The workspace is scanned when the index is first used; after that the
+ * index is kept up to date by applying resource deltas, so its cost is
+ * proportional to the number of changed files. The index is shared by all
+ * editors, and lives until the plugin is stopped.
+ */
+public class ResultFileIndex implements IResourceChangeListener {
+    private static ResultFileIndex instance;
+
+    private TreeMap<String,Set<String>> filesByFolder = new TreeMap<String,Set<String>>(); // folder path -> file names
+
+    /**
+     * A file name pattern of an analysis input, compiled for matching workspace
+     * paths. '?' and '*' match any character except '/', except that a '*' at
+     * the end of the pattern matches the rest of the path.
+     */
+    public static class FilePattern {
+        private final String folder;        // longest wildcard-free folder prefix of the pattern
+        private final boolean exactFolder;  // whether matching files are directly in that folder
+        private final Pattern regex;
+
+        public FilePattern(String pattern) {
+            StringBuilder regex = new StringBuilder();
+            int literalStart = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char ch = pattern.charAt(i);
+                if (ch == '?' || ch == '*') {
+                    if (literalStart < i)
+                        regex.append(Pattern.quote(pattern.substring(literalStart, i)));
+                    regex.append(ch == '?' ? "[^/]" : i == pattern.length()-1 ? ".*" : "[^/]*");
+                    literalStart = i + 1;
+                }
+            }
+            if (literalStart < pattern.length())
+                regex.append(Pattern.quote(pattern.substring(literalStart)));
+            this.regex = Pattern.compile(regex.toString());
+
+            int firstWildcard = indexOfWildcard(pattern);
+            int lastSlash = pattern.lastIndexOf('/', firstWildcard == -1 ? pattern.length() : firstWildcard);
+            this.folder = lastSlash == -1 ? "" : pattern.substring(0, lastSlash);
+            this.exactFolder = firstWildcard == -1 ||
+                    (pattern.indexOf('/', firstWildcard) == -1 && !pattern.endsWith("*"));
+        }
+
+        private static int indexOfWildcard(String pattern) {
+            int q = pattern.indexOf('?'), s = pattern.indexOf('*');
+            return q == -1 ? s : s == -1 ? q : Math.min(q, s);
+        }
+
+        public boolean matches(String path) {
+            return regex.matcher(path).matches();
+        }
+    }
+
+    /**
+     * Returns the shared instance, creating it (and scanning the workspace) if needed.
+     */
+    public static synchronized ResultFileIndex getInstance() {
+        if (instance == null) {
+            instance = new ResultFileIndex();
+            ResourcesPlugin.getWorkspace().addResourceChangeListener(instance, IResourceChangeEvent.POST_CHANGE);
+            instance.addFiles(ResourcesPlugin.getWorkspace().getRoot());
+        }
+        return instance;
+    }
+
+    /**
+     * Stops tracking the workspace, and drops the shared instance.
+     */
+    public static synchronized void disposeInstance() {
+        if (instance != null) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(instance);
+            instance = null;
+        }
+    }
+
+    /**
+     * Returns the non-derived result files that match the given pattern.
+     */
+    public synchronized List<IFile> findFiles(FilePattern pattern) {
+        List<IFile> result = new ArrayList<IFile>();
+        Set<String> names = filesByFolder.get(pattern.folder);
+        if (names != null)
+            addMatchingFiles(pattern.folder, names, pattern, result);
+        if (!pattern.exactFolder) {
+            // subfolders: their paths are between "<folder>/" and "<folder>0" ('0' follows '/')
+            for (Map.Entry<String,Set<String>> entry : filesByFolder.subMap(pattern.folder + "/", pattern.folder + "0").entrySet())
+                addMatchingFiles(entry.getKey(), entry.getValue(), pattern, result);
+        }
+        return result;
+    }
+
+    private static void addMatchingFiles(String folder, Set<String> names, FilePattern pattern, List<IFile> result) {
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        for (String name : names) {
+            String path = folder + "/" + name;
+            if (pattern.matches(path)) {
+                IFile file = root.getFile(new Path(path));
+                if (!ResultFilesTracker.isDerived(file))
+                    result.add(file);
+            }
+        }
+    }
+
+    public void resourceChanged(IResourceChangeEvent event) {
+        IResourceDelta delta = event.getDelta();
+        if (delta == null)
+            return;
+        try {
+            synchronized (this) {
+                delta.accept(new IResourceDeltaVisitor() {
+                    public boolean visit(IResourceDelta delta) throws CoreException {
+                        IResource resource = delta.getResource();
+                        switch (delta.getKind()) {
+                        case IResourceDelta.ADDED:
+                            if (resource instanceof IFile && ResultFilesTracker.isResultFile((IFile)resource))
+                                addFile((IFile)resource);
+                            return true;
+                        case IResourceDelta.REMOVED:
+                            if (resource instanceof IFile)
+                                removeFile((IFile)resource);
+                            else
+                                removeFiles(resource);
+                            return false;
+                        case IResourceDelta.CHANGED:
+                            if (resource instanceof IProject && (delta.getFlags() & IResourceDelta.OPEN) != 0) {
+                                // opened or closed project: no deltas are reported for its contents
+                                removeFiles(resource);
+                                if (((IProject)resource).isOpen())
+                                    addFiles(resource);
+                                return false;
+                            }
+                            return true;
+                        }
+                        return true;
+                    }
+                });
+            }
+        }
+        catch (CoreException e) {
+            ScavePlugin.logError("Could not update the result file index", e);
+        }
+    }
+
+    private synchronized void addFiles(IResource container) {
+        try {
+            container.accept(new IResourceVisitor() {
+                public boolean visit(IResource resource) {
+                    if (resource instanceof IFile) {
+                        if (ResultFilesTracker.isResultFile((IFile)resource))
+                            addFile((IFile)resource);
+                        return false;
+                    }
+                    return true;
+                }
+            });
+        }
+        catch (CoreException e) {
+            ScavePlugin.logError("Could not index result files in " + container.getFullPath(), e);
+        }
+    }
+
+    private void addFile(IFile file) {
+        String folder = getFolderKey(file.getParent());
+        Set<String> names = filesByFolder.get(folder);
+        if (names == null)
+            filesByFolder.put(folder, names = new HashSet<String>());
+        names.add(file.getName());
+    }
+
+    private void removeFile(IFile file) {
+        String folder = getFolderKey(file.getParent());
+        Set<String> names = filesByFolder.get(folder);
+        if (names != null && names.remove(file.getName()) && names.isEmpty())
+            filesByFolder.remove(folder);
+    }
+
+    private void removeFiles(IResource container) {
+        String folder = getFolderKey((IContainer)container);
+        filesByFolder.remove(folder);
+        filesByFolder.subMap(folder + "/", folder + "0").clear();
+    }
+
+    private static String getFolderKey(IContainer container) {
+        return container.getType() == IResource.ROOT ? "" : container.getFullPath().toString();
+    }
+}
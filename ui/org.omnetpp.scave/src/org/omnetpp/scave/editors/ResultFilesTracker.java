@@ -20,7 +20,6 @@ import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
-import org.eclipse.core.resources.IResourceVisitor;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
@@ -32,6 +31,7 @@ import org.eclipse.emf.edit.provider.INotifyChangedListener;
 import org.omnetpp.common.Debug;
 import org.omnetpp.scave.ContentTypes;
 import org.omnetpp.scave.ScavePlugin;
+import org.omnetpp.scave.editors.ResultFileIndex.FilePattern;
 import org.omnetpp.scave.engine.ResultFile;
 import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engineext.IndexFile;
@@ -55,6 +55,7 @@ public class ResultFilesTracker implements INotifyChangedListener, IResourceChan
     private Inputs inputs; // backreference to the Inputs element we watch
     private IPath baseDir; // path of the directory which used to resolve relative paths as a base
     private ResultFileManagerUpdaterJob updaterJob;
+    private volatile List<FilePattern> inputPatterns; // compiled patterns of the inputs, or null if inputs changed
 
     public ResultFilesTracker(ResultFileManager manager, Inputs inputs, IPath baseDir) {
         this.manager = manager;
@@ -88,8 +89,10 @@ public class ResultFilesTracker implements INotifyChangedListener, IResourceChan
         case Notification.SET:
         //case Notification.UNSET:
             Object notifier = notification.getNotifier();
-            if (notifier instanceof Inputs || notifier instanceof InputFile)
+            if (notifier instanceof Inputs || notifier instanceof InputFile) {
+                inputPatterns = null;
                 synchronize(false);
+            }
         }
     }
 
@@ -175,10 +178,10 @@ public class ResultFilesTracker implements INotifyChangedListener, IResourceChan
         }
         // load files matching with patterns
         if (wildcards.size() > 0) {
-            List<IFile> allFiles = getResultFiles();
-            for (IFile file : allFiles)
-                for (InputFile wildcard : wildcards)
-                    if (matchFile(file, wildcard))
+            ResultFileIndex index = ResultFileIndex.getInstance();
+            for (InputFile wildcard : wildcards)
+                if (wildcard.getName() != null)
+                    for (IFile file : index.findFiles(compilePattern(wildcard)))
                         filesToBeLoaded.add(file.getFullPath().toString());
         }
 
@@ -207,31 +210,6 @@ public class ResultFilesTracker implements INotifyChangedListener, IResourceChan
         return fileSpec.indexOf('?') >= 0 || fileSpec.indexOf('*') >= 0;
     }
 
-    /**
-     * Returns the list of result files in the workspace.
-     */
-    private List<IFile> getResultFiles() {
-        final List<IFile> files = new ArrayList<IFile>();
-        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
-        try {
-            root.accept(new IResourceVisitor() {
-                public boolean visit(IResource resource) {
-                    if (resource instanceof IFile) {
-                        IFile file = (IFile)resource;
-                        if (isResultFile(file) && !isDerived(file)) {
-                            files.add((IFile)resource);
-                            return false;
-                        }
-                    }
-                    return true;
-                }
-            });
-        } catch (CoreException e) {
-            ScavePlugin.logError(e);
-        }
-        return files;
-    }
-
     /**
      * Loads the file specified by <code>resourcePath</code> into the ResultFileManager.
      */
@@ -320,75 +298,28 @@ public class ResultFilesTracker implements INotifyChangedListener, IResourceChan
      * Return true iff the <code>file</code> matches any of the input files.
      */
     private boolean inputsMatches(IFile file) {
-        for (InputFile inputfile : inputs.getInputs())
-            if (matchFile(file, inputfile))
+        if (inputPatterns == null) {
+            List<FilePattern> patterns = new ArrayList<FilePattern>();
+            for (InputFile inputfile : inputs.getInputs())
+                if (inputfile.getName() != null)
+                    patterns.add(compilePattern(inputfile));
+            inputPatterns = patterns;
+        }
+        String filePath = file.getFullPath().toString();
+        for (FilePattern pattern : inputPatterns)
+            if (pattern.matches(filePath))
                 return true;
         return false;
     }
 
     /**
-     * Returns true if the <code>workspaceFile</code> matches with the file specification
-     * <code>inputFile</code>.
+     * Compiles the file specification of <code>inputFile</code> into a pattern
+     * that matches workspace paths; relative paths are resolved against baseDir.
      */
-    private boolean matchFile(IFile workspaceFile, InputFile fileSpec) {
-        if (fileSpec.getName() == null)
-            return false;
+    private FilePattern compilePattern(InputFile fileSpec) {
         IPath filePatternPath = new Path(fileSpec.getName());
-        if (!filePatternPath.isAbsolute()) {
+        if (!filePatternPath.isAbsolute())
             filePatternPath = baseDir.append(filePatternPath);
-        }
-        String filePath = workspaceFile.getFullPath().toString();
-        String filePattern = filePatternPath.toString();
-        return matchPattern(filePath, filePattern);
-    }
-
-    /**
-     * Matches <code>str</code> against the given <code>pattern</code>.
-     * The pattern may contain '?' (any char) and '*' (any char sequence) wildcards.
-     */
-    private static boolean matchPattern(String str, String pattern) {
-        return matchPattern(str, 0, str.length(), pattern, 0, pattern.length());
-    }
-
-    /**
-     * Matches the given string segment with the given pattern segment.
-     */
-    private static boolean matchPattern(String str, int strStart, int strEnd, String pattern, int patternStart, int patternEnd) {
-        while (strStart < strEnd && patternStart < patternEnd) {
-            char strChar = str.charAt(strStart);
-            char patternChar = pattern.charAt(patternStart);
-
-            switch (patternChar) {
-            case '?':
-                if (strChar == '/')
-                    return false;
-                ++strStart;
-                ++patternStart;
-                break;
-            case '*':
-                if (patternStart + 1 == patternEnd) // last char is '*'
-                    return true;
-                if (pattern.charAt(patternStart + 1) == strChar) { // try to match '*' with empty string
-                    boolean matches = matchPattern(str, strStart, strEnd, pattern, patternStart + 1, patternEnd);
-                    if (matches)
-                        return true;
-                }
-                // match '*' with strChar
-                if (strChar == '/')
-                    return false;
-                ++strStart;
-                break;
-            default:
-                if (strChar == patternChar) {
-                    ++strStart;
-                    ++patternStart;
-                }
-                else
-                    return false;
-                break;
-            }
-        }
-
-        return strStart == strEnd && patternStart == patternEnd;
+        return new FilePattern(filePatternPath.toString());
     }
 }
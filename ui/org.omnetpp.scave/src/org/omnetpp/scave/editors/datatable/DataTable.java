@@ -58,6 +58,7 @@ import org.omnetpp.scave.engine.ScalarResult;
 import org.omnetpp.scave.engine.StatisticsResult;
 import org.omnetpp.scave.engine.VectorResult;
 import org.omnetpp.scave.engineext.ResultFileManagerEx;
+import org.omnetpp.scave.engineext.ResultMetadata;
 import org.omnetpp.scave.model.ResultType;
 
 /**
@@ -394,6 +395,12 @@ public class DataTable extends Table implements IDataControl {
             return;
 
         boolean ascending = direction == SWT.UP;
+        // sort by string fields in Java, using the metadata snapshot if already built
+        String field = COL_DIRECTORY.equals(column) ? ResultMetadata.DIRECTORY : column.fieldName;
+        ResultMetadata metadata = manager.getMetadataIfAvailable();
+        if (field != null && metadata != null && metadata.sort(idList, field, ascending))
+            return;
+
         if (COL_DIRECTORY.equals(column))
             idList.sortByDirectory(manager, ascending);
         else if (COL_FILE.equals(column))
@@ -501,6 +508,19 @@ public class DataTable extends Table implements IDataControl {
         try {
             // Note: code very similar to ResultItemPropertySource -- make them common?
             long id = idList.get(row);
+
+            // metadata snapshot (if already built): file, run, module and name fields, and scalar values
+            ResultMetadata metadata = manager.getMetadataIfAvailable();
+            int index = metadata == null ? -1 : metadata.indexOf(id);
+            if (index != -1) {
+                if (COL_DIRECTORY.equals(column))
+                    return metadata.getDirectory(index);
+                else if (column.fieldName != null && metadata.hasField(column.fieldName))
+                    return metadata.getFieldValue(column.fieldName, index);
+                else if (COL_VALUE.equals(column) && type == ResultType.SCALAR_LITERAL)
+                    return String.valueOf(metadata.getValue(index));
+            }
+
             ResultItem result = manager.getItem(id);
 
             if (COL_DIRECTORY.equals(column))
@@ -3,15 +3,12 @@ package org.omnetpp.scave.editors.datatable;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
-import org.apache.commons.collections.map.MultiValueMap;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.text.WordUtils;
 import org.eclipse.core.runtime.Assert;
@@ -36,6 +33,7 @@ import org.omnetpp.scave.engine.StringMap;
 import org.omnetpp.scave.engine.StringVector;
 import org.omnetpp.scave.engine.VectorResult;
 import org.omnetpp.scave.engineext.ResultFileManagerEx;
+import org.omnetpp.scave.engineext.ResultMetadata;
 
 /**
  * This class provides a customizable tree of various data from the result file manager.
@@ -124,7 +122,8 @@ public class ResultFileManagerTreeContentProvider {
         }
         Node[] nodes = ResultFileManager.callWithReadLock(manager, new Callable<Node[]>() {
             public Node[] call() throws Exception {
-                MultiValueMap nodeIdsMap = MultiValueMap.decorate(new LinkedHashMap<>()); // preserve insertion order of children
+                ResultMetadata metadata = manager.getMetadataIfAvailable(); // null if not built yet
+                NodeIdsMap nodeIdsMap = new NodeIdsMap(); // preserves insertion order of children
                 int currentLevelIndex;
                 if (firstNode == null)
                     currentLevelIndex = -1;
@@ -147,10 +146,9 @@ public class ResultFileManagerTreeContentProvider {
                 Class<? extends Node> nextLevelClass = nextLevelIndex < levels.length ? levels[nextLevelIndex] : null;
                 boolean shouldSort = true;
                 if (nextLevelClass != null) {
-                    int idCount = firstNode == null ? idList.size() : firstNode.ids.length;
-                    for (int i = 0; i < idCount; i++) {
-                        long id = firstNode == null ? idList.get(i) : firstNode.ids[i];
-                        MatchContext matchContext = new MatchContext(manager, id);
+                    long[] ids = firstNode == null ? ResultMetadata.toArray(idList) : firstNode.ids;
+                    for (long id : ids) {
+                        MatchContext matchContext = new MatchContext(manager, metadata, id);
                         if (matchesPath(path, id, matchContext)) {
                             if (nextLevelClass.equals(ExperimentNode.class))
                                 nodeIdsMap.put(new ExperimentNode(matchContext.getRunAttribute(RunAttribute.EXPERIMENT)), id);
@@ -163,17 +161,17 @@ public class ResultFileManagerTreeContentProvider {
                             else if (nextLevelClass.equals(ConfigNode.class))
                                 nodeIdsMap.put(new ConfigNode(matchContext.getRunAttribute(RunAttribute.CONFIGNAME)), id);
                             else if (nextLevelClass.equals(RunNumberNode.class))
-                                nodeIdsMap.put(new RunNumberNode(matchContext.getRun().getAttribute(RunAttribute.RUNNUMBER)), id);
+                                nodeIdsMap.put(new RunNumberNode(matchContext.getRunAttribute(RunAttribute.RUNNUMBER)), id);
                             else if (nextLevelClass.equals(ConfigRunNumberNode.class))
-                                nodeIdsMap.put(new ConfigRunNumberNode(matchContext.getRunAttribute(RunAttribute.CONFIGNAME), matchContext.getRun().getAttribute(RunAttribute.RUNNUMBER)), id);
+                                nodeIdsMap.put(new ConfigRunNumberNode(matchContext.getRunAttribute(RunAttribute.CONFIGNAME), matchContext.getRunAttribute(RunAttribute.RUNNUMBER)), id);
                             else if (nextLevelClass.equals(FileNameNode.class))
-                                nodeIdsMap.put(new FileNameNode(matchContext.getResultFile().getFileName()), id);
+                                nodeIdsMap.put(new FileNameNode(matchContext.getFileName()), id);
                             else if (nextLevelClass.equals(RunIdNode.class))
-                                nodeIdsMap.put(new RunIdNode(matchContext.getRun().getRunName()), id);
+                                nodeIdsMap.put(new RunIdNode(matchContext.getRunName()), id);
                             else if (nextLevelClass.equals(FileNameRunIdNode.class))
-                                nodeIdsMap.put(new FileNameRunIdNode(matchContext.getResultFile().getFileName(), matchContext.getRun().getRunName()), id);
+                                nodeIdsMap.put(new FileNameRunIdNode(matchContext.getFileName(), matchContext.getRunName()), id);
                             else if (nextLevelClass.equals(ModuleNameNode.class)) {
-                                String moduleName = matchContext.getResultItem().getModuleName();
+                                String moduleName = matchContext.getModuleName();
                                 String modulePrefix = getModulePrefix(path, null);
                                 if (moduleName.startsWith(modulePrefix)) {
                                     String remainingName = StringUtils.removeStart(StringUtils.removeStart(moduleName, modulePrefix), ".");
@@ -182,10 +180,10 @@ public class ResultFileManagerTreeContentProvider {
                                 }
                             }
                             else if (nextLevelClass.equals(ModulePathNode.class))
-                                nodeIdsMap.put(new ModulePathNode(matchContext.getResultItem().getModuleName()), id);
+                                nodeIdsMap.put(new ModulePathNode(matchContext.getModuleName()), id);
                             else if (nextLevelClass.equals(ResultItemNode.class)) {
                                 if (collector)
-                                    nodeIdsMap.put(new ResultItemNode(manager, -1, matchContext.getResultItem().getName()), id);
+                                    nodeIdsMap.put(new ResultItemNode(manager, -1, matchContext.getName()), id);
                                 else
                                     nodeIdsMap.put(new ResultItemNode(manager, id, null), id);
                             }
@@ -264,7 +262,7 @@ public class ResultFileManagerTreeContentProvider {
                         }
                     }
                 }
-                Node[] nodes = (Node[])nodeIdsMap.keySet().toArray(new Node[0]);
+                Node[] nodes = nodeIdsMap.keySet().toArray(new Node[0]);
                 if (shouldSort) {
                     Arrays.sort(nodes, new Comparator<Node>() {
                         public int compare(Node o1, Node o2) {
@@ -273,17 +271,16 @@ public class ResultFileManagerTreeContentProvider {
                     });
                 }
                 for (Node node : nodes) {
-                    Collection ids = nodeIdsMap.getCollection(node);
-                    node.ids = new long[ids.size()];
-                    Iterator it = ids.iterator();
-                    for (int i = 0; i < ids.size(); i++)
-                        node.ids[i] = (Long)it.next();
+                    node.ids = nodeIdsMap.get(node).toArray();
                     // add quick value if applicable
                     if (node.ids.length == 1 && !collector && StringUtils.isEmpty(node.value) &&
                         (!(node instanceof ModuleNameNode) || ((ModuleNameNode)node).leaf))
                     {
-                        ResultItem resultItem = manager.getItem(node.ids[0]);
-                        node.value = getResultItemShortDescription(resultItem);
+                        int index = metadata == null ? -1 : metadata.indexOf(node.ids[0]);
+                        if (index != -1 && metadata.getType(index) == ResultFileManager.SCALAR)
+                            node.value = String.valueOf(metadata.getValue(index));
+                        else
+                            node.value = getResultItemShortDescription(manager.getItem(node.ids[0]));
                     }
                 }
                 // update cache
@@ -361,23 +358,78 @@ public class ResultFileManagerTreeContentProvider {
         return resultItem.getClass().getSimpleName().replaceAll("Result", "").toLowerCase();
     }
 
+    /**
+     * The IDs that belong to the child nodes being built, in the insertion order of the nodes.
+     */
+    @SuppressWarnings("serial")
+    protected static class NodeIdsMap extends LinkedHashMap<Node,NodeIds> {
+        public void put(Node node, long id) {
+            NodeIds ids = get(node);
+            if (ids == null)
+                put(node, ids = new NodeIds());
+            ids.add(id);
+        }
+    }
+
+    protected static class NodeIds {
+        private long[] ids = new long[4];
+        private int size;
+
+        public void add(long id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, 2 * size);
+            ids[size++] = id;
+        }
+
+        public long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * Provides the properties of a result item for building and matching nodes.
+     * Properties are taken from the metadata snapshot of the manager where
+     * possible (if it is already built), to avoid native calls per item.
+     */
     protected static class MatchContext {
         private ResultFileManager manager;
+        private ResultMetadata metadata;
         private long id;
+        private int index; // in metadata, or -1 (also if there is no metadata)
         private ResultItem resultItem;
         private FileRun fileRun;
         private ResultFile resultFile;
         private Run run;
 
-        public MatchContext(ResultFileManager manager, long id) {
+        public MatchContext(ResultFileManager manager, ResultMetadata metadata, long id) {
             this.manager = manager;
+            this.metadata = metadata;
             this.id = id;
+            this.index = metadata == null ? -1 : metadata.indexOf(id);
         }
 
         public String getRunAttribute(String key) {
+            if (index != -1 && metadata.hasField(key))
+                return StringUtils.defaultString(metadata.getRunAttribute(index, key), "?");
             return StringUtils.defaultString(manager.getRunAttribute(id, key), "?");
         }
 
+        public String getModuleName() {
+            return index != -1 ? metadata.getModuleName(index) : getResultItem().getModuleName();
+        }
+
+        public String getName() {
+            return index != -1 ? metadata.getName(index) : getResultItem().getName();
+        }
+
+        public String getFileName() {
+            return index != -1 ? metadata.getFileName(index) : getResultFile().getFileName();
+        }
+
+        public String getRunName() {
+            return index != -1 ? metadata.getRunName(index) : getRun().getRunName();
+        }
+
         public ResultItem getResultItem() {
             if (resultItem == null)
                 resultItem = manager.getItem(id);
@@ -906,7 +958,7 @@ public class ResultFileManagerTreeContentProvider {
 
         @Override
         public boolean matches(List<Node> path, long id, MatchContext matchContext) {
-            return matchContext.getResultFile().getFileName().equals(fileName);
+            return matchContext.getFileName().equals(fileName);
         }
 
         @Override
@@ -954,7 +1006,7 @@ public class ResultFileManagerTreeContentProvider {
 
         @Override
         public boolean matches(List<Node> path, long id, MatchContext matchContext) {
-            return matchContext.getRun().getRunName().equals(runId);
+            return matchContext.getRunName().equals(runId);
         }
 
         @Override
@@ -1005,7 +1057,7 @@ public class ResultFileManagerTreeContentProvider {
 
         @Override
         public boolean matches(List<Node> path, long id, MatchContext matchContext) {
-            return matchContext.getResultFile().getFileName().equals(fileName) && matchContext.getRun().getRunName().equals(runId);
+            return matchContext.getFileName().equals(fileName) && matchContext.getRunName().equals(runId);
         }
 
         @Override
@@ -1060,7 +1112,7 @@ public class ResultFileManagerTreeContentProvider {
 
         @Override
         public boolean matches(List<Node> path, long id, MatchContext matchContext) {
-            return matchContext.getResultItem().getModuleName().equals(this.path);
+            return matchContext.getModuleName().equals(this.path);
         }
 
         @Override
@@ -1118,7 +1170,7 @@ public class ResultFileManagerTreeContentProvider {
         public boolean matches(List<Node> path, long id, MatchContext matchContext) {
             String modulePrefix = getModulePrefix(path, this);
             modulePrefix = StringUtils.isEmpty(modulePrefix) ? name : modulePrefix + "." + name;
-            return matchContext.getResultItem().getModuleName().startsWith(modulePrefix);
+            return matchContext.getModuleName().startsWith(modulePrefix);
         }
 
         @Override
@@ -1185,7 +1237,7 @@ public class ResultFileManagerTreeContentProvider {
         @Override
         public boolean matches(List<Node> path, long id, MatchContext matchContext) {
             if (name != null)
-                return matchContext.getResultItem().getName().equals(name);
+                return matchContext.getName().equals(name);
             else
                 return this.id == id;
         }
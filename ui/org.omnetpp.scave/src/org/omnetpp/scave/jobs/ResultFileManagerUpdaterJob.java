@@ -6,6 +6,9 @@ import static org.omnetpp.scave.common.ScaveMarkers.setMarker;
 import static org.omnetpp.scave.engineext.IndexFile.isIndexFileUpToDate;
 import static org.omnetpp.scave.engineext.IndexFile.isExistingVectorFile;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -28,9 +31,16 @@ import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engineext.IndexFile;
 import org.omnetpp.scave.engineext.ResultFileFormatException;
 
+/**
+ * Loads and unloads result files in the background, in the order they were
+ * requested. Requests are processed in batches: the missing vector file
+ * indices of the batch are generated in parallel first, then the files are
+ * loaded/unloaded under a single acquisition of the manager's write lock.
+ */
 public class ResultFileManagerUpdaterJob extends Job {
 
     private static final boolean debug = true;
+    private static final int MAX_BATCH_SIZE = 100; // files loaded/unloaded under one write lock; readers may get in between batches
 
     private enum Operation {
         Load,
@@ -70,31 +80,21 @@ public class ResultFileManagerUpdaterJob extends Job {
     @Override
     protected IStatus run(IProgressMonitor monitor) {
         try {
-            Task task;
-            while ((task = tasks.peek()) != null) {
+            monitor.beginTask(getName(), IProgressMonitor.UNKNOWN);
+            List<Task> batch;
+            while (!(batch = peekBatch()).isEmpty()) {
                 if (monitor.isCanceled())
                     return Status.CANCEL_STATUS;
-//              if (isInterrupted())
-//                  break;
-
-                task = tasks.poll();
-                IFile file = task.file;
-                ISchedulingRule rule = getSchedulingRuleFor(file);
-
                 try {
-                    Job.getJobManager().beginRule(rule, null);
-                    switch (task.operation) {
-                    case Load: doLoad(file); break;
-                    case Unload: doUnload(file); break;
-                    }
-
+                    if (!processBatch(batch, monitor))
+                        return Status.CANCEL_STATUS;
                 }
                 catch (Exception e) {
                     Activator.logError(e);
                 }
-                finally {
-                    Job.getJobManager().endRule(rule);
-                }
+                // tasks are only removed when done, so canceled ones get processed on the next schedule()
+                for (int i = 0; i < batch.size(); i++)
+                    tasks.poll();
             }
             return Status.OK_STATUS;
         }
@@ -103,6 +103,79 @@ public class ResultFileManagerUpdaterJob extends Job {
         }
     }
 
+    /**
+     * Returns the tasks at the head of the queue, without removing them.
+     * This job is the only consumer of the queue.
+     */
+    private List<Task> peekBatch() {
+        List<Task> batch = new ArrayList<Task>();
+        for (Iterator<Task> it = tasks.iterator(); it.hasNext() && batch.size() < MAX_BATCH_SIZE; )
+            batch.add(it.next());
+        return batch;
+    }
+
+    /**
+     * Performs the given tasks in order. Returns false if canceled before the
+     * files could be loaded.
+     */
+    private boolean processBatch(final List<Task> batch, final IProgressMonitor monitor) {
+        ISchedulingRule rule = null;
+        for (Task task : batch)
+            rule = MultiRule.combine(rule, getSchedulingRuleFor(task.file));
+
+        final Exception[] exceptions = new Exception[batch.size()];
+        try {
+            Job.getJobManager().beginRule(rule, null);
+
+            // generate missing indices in parallel, so that vector files can be loaded from
+            // their indices; loading them from the vector files would take too much time
+            List<IFile> vectorFiles = new ArrayList<IFile>();
+            for (Task task : batch)
+                if (task.operation == Operation.Load && isExistingVectorFile(task.file) && !isIndexFileUpToDate(task.file))
+                    vectorFiles.add(task.file);
+            if (!vectorFiles.isEmpty() && !VectorFileIndexerJob.indexFiles(vectorFiles, monitor))
+                return false;
+
+            ResultFileManager.callWithWriteLock(manager, new Callable<Object>() {
+                public Object call() throws Exception {
+                    for (int i = 0; i < batch.size(); i++) {
+                        Task task = batch.get(i);
+                        monitor.subTask((task.operation == Operation.Load ? "Loading " : "Unloading ") + task.file.getName());
+                        try {
+                            switch (task.operation) {
+                            case Load:
+                                if (debug) Debug.format("  loadFile: %s ", task.file);
+                                if (task.file.getLocation().toFile().exists())
+                                    loadInternal(task.file);
+                                break;
+                            case Unload:
+                                doUnload(task.file);
+                                break;
+                            }
+                        }
+                        catch (Exception e) {
+                            exceptions[i] = e;
+                        }
+                        monitor.worked(1);
+                    }
+                    return null;
+                }
+            });
+        }
+        finally {
+            Job.getJobManager().endRule(rule);
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = batch.get(i);
+            if (task.operation == Operation.Load && task.file.getLocation().toFile().exists())
+                updateMarkers(task.file, exceptions[i]);
+            else if (exceptions[i] != null)
+                Activator.logError(exceptions[i]);
+        }
+        return true;
+    }
+
     /**
      * Loads the specified <code>file</code> into the ResultFileManager.
      * If a vector file is loaded, it checks that the index file is up-to-date.
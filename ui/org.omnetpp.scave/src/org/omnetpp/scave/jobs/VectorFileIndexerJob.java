@@ -9,14 +9,21 @@ package org.omnetpp.scave.jobs;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.WorkspaceJob;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.MultiRule;
@@ -24,6 +31,7 @@ import org.omnetpp.scave.engineext.IndexFile;
 
 /**
  * This job generates index files for vector files in the workspace.
+ * Files are indexed in parallel, see indexFiles().
  *
  * @author tomi
  */
@@ -57,19 +65,8 @@ public class VectorFileIndexerJob extends WorkspaceJob {
         if (!filesToBeIndexed.isEmpty()) {
             try {
                 monitor.beginTask(getName(), filesToBeIndexed.size());
-
-                for (IFile file : filesToBeIndexed) {
-                    if (monitor.isCanceled())
-                        return Status.CANCEL_STATUS;
-
-                    monitor.subTask("Indexing "+file.getName());
-                    if (file.exists() && IndexFile.isExistingVectorFile(file) && !IndexFile.isIndexFileUpToDate(file)) {
-                        IProgressMonitor subMonitor = new SubProgressMonitor(monitor, 1);
-                        IndexFile.performIndexing(file, subMonitor);
-                        if (subMonitor.isCanceled())
-                            return Status.CANCEL_STATUS;
-                    }
-                }
+                if (!indexFiles(filesToBeIndexed, monitor))
+                    return Status.CANCEL_STATUS;
             }
             finally {
                 monitor.done();
@@ -77,4 +74,71 @@ public class VectorFileIndexerJob extends WorkspaceJob {
         }
         return Status.OK_STATUS;
     }
+
+    /**
+     * Generates the missing or out-of-date index files of the given vector files.
+     * Indexing is bound by the CPU and the disk, so files are indexed on a thread
+     * pool of at most as many threads as processors. The monitor (already begun
+     * by the caller) is advanced by one unit per file, as files are completed.
+     * The caller must own the scheduling rules of the files and their index files.
+     *
+     * @return false if indexing was canceled
+     */
+    public static boolean indexFiles(List<IFile> files, final IProgressMonitor monitor) {
+        List<IFile> outdatedFiles = new ArrayList<IFile>();
+        for (IFile file : files) {
+            if (file.exists() && IndexFile.isExistingVectorFile(file) && !IndexFile.isIndexFileUpToDate(file))
+                outdatedFiles.add(file);
+            else
+                monitor.worked(1);
+        }
+        if (outdatedFiles.isEmpty())
+            return !monitor.isCanceled();
+
+        int numThreads = Math.min(outdatedFiles.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Vector file indexer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // progress monitors are not thread-safe; workers only use it to check for cancellation
+        final IProgressMonitor workerMonitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                return monitor.isCanceled();
+            }
+        };
+
+        try {
+            CompletionService<IFile> completionService = new ExecutorCompletionService<IFile>(executor);
+            for (final IFile file : outdatedFiles) {
+                completionService.submit(new Callable<IFile>() {
+                    public IFile call() {
+                        if (!workerMonitor.isCanceled())
+                            IndexFile.performIndexing(file, workerMonitor);
+                        return file;
+                    }
+                });
+            }
+            for (int i = 0; i < outdatedFiles.size(); i++) {
+                IFile file = completionService.take().get();
+                monitor.subTask("Indexed " + file.getName() + " (" + (i+1) + " of " + outdatedFiles.size() + ")");
+                monitor.worked(1);
+            }
+            return !monitor.isCanceled();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause()); // performIndexing() reports errors as markers, this should not happen
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
 }
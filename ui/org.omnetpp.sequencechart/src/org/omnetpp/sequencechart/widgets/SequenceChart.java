@@ -13,6 +13,7 @@ import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -82,6 +83,7 @@ import org.omnetpp.common.ui.HtmlHoverInfo;
 import org.omnetpp.common.ui.IHoverInfoProvider;
 import org.omnetpp.common.util.GraphicsUtils;
 import org.omnetpp.common.util.PersistentResourcePropertyManager;
+import org.omnetpp.common.util.SimulationTime;
 import org.omnetpp.common.util.StringUtils;
 import org.omnetpp.common.util.TimeUtils;
 import org.omnetpp.common.util.VectorFileUtil;
@@ -1311,6 +1313,8 @@ public class SequenceChart
                     // restore attached vectors
                     if (sequenceChartState.axisStates != null) {
                         ResultFileManager resultFileManager = new ResultFileManager();
+                        ArrayList<AxisState> vectorAxisStates = new ArrayList<AxisState>();
+                        long[] ids = new long[sequenceChartState.axisStates.length];
 
                         for (int i = 0; i < sequenceChartState.axisStates.length; i++) {
                             AxisState axisState = sequenceChartState.axisStates[i];
@@ -1318,14 +1322,21 @@ public class SequenceChart
                             if (axisState.vectorFileName != null) {
                                 ResultFile resultFile = resultFileManager.loadFile(axisState.vectorFileName);
                                 FileRun fileRun = resultFileManager.getFileRun(resultFile, resultFileManager.getRunByName(axisState.vectorRunName));
-                                long id = resultFileManager.getItemByName(fileRun, axisState.vectorModuleFullPath, axisState.vectorName);
                                 // TODO: compare vector's run against log file's run
-                                ResultItem resultItem = resultFileManager.getItem(id);
-                                XYArray data = VectorFileUtil.getDataOfVector(resultFileManager, id, true);
-                                setAxisRenderer(eventLogInput.getModuleTreeRoot().findDescendantModule(axisState.moduleFullPath),
-                                    new AxisVectorBarRenderer(this, axisState.vectorFileName, axisState.vectorRunName, axisState.vectorModuleFullPath, axisState.vectorName, resultItem, data));
+                                ids[vectorAxisStates.size()] = resultFileManager.getItemByName(fileRun, axisState.vectorModuleFullPath, axisState.vectorName);
+                                vectorAxisStates.add(axisState);
                             }
                         }
+
+                        // read the data of all vectors together, so that each vector file is read once
+                        ids = Arrays.copyOf(ids, vectorAxisStates.size());
+                        XYArray[] data = VectorFileUtil.getDataOfVectors(resultFileManager, ids, true);
+                        for (int i = 0; i < ids.length; i++) {
+                            AxisState axisState = vectorAxisStates.get(i);
+                            ResultItem resultItem = resultFileManager.getItem(ids[i]);
+                            setAxisRenderer(eventLogInput.getModuleTreeRoot().findDescendantModule(axisState.moduleFullPath),
+                                new AxisVectorBarRenderer(this, axisState.vectorFileName, axisState.vectorRunName, axisState.vectorModuleFullPath, axisState.vectorName, resultItem, data[i]));
+                        }
                     }
 
                     // restore axis order
@@ -2336,6 +2347,46 @@ public class SequenceChart
         super.paint(graphics);
     }
 
+    @Override
+    protected boolean runDeferredRendering(final Runnable renderer) {
+        if (eventLogInput == null) {
+            renderer.run();
+            return true;
+        }
+        else if (!internalErrorHappenedDuringPaint && !eventLogInput.isCanceled() && !eventLogInput.isLongRunningOperationInProgress()) {
+            try {
+                eventLogInput.runWithProgressMonitor(new Runnable() {
+                    public void run() {
+                        try {
+                            revalidateAxisModules();
+                            renderer.run();
+                        }
+                        catch (RuntimeException e) {
+                            if (eventLogInput.isFileChangedException(e))
+                                eventLogInput.synchronize(e);
+                            else
+                                throw e;
+                        }
+                    }
+                });
+            }
+            catch (RuntimeException e) {
+                SequenceChartPlugin.logError("Internal error happened during painting", e);
+                internalError = e;
+                internalErrorHappenedDuringPaint = true;
+                redraw();
+            }
+            return true;
+        }
+        else if (eventLogInput.isLongRunningOperationInProgress() && !internalErrorHappenedDuringPaint && !eventLogInput.isCanceled())
+            return false; // retry when loading is done
+        else {
+            // not leaving these states by itself; render on the next paint
+            cancelDeferredRendering();
+            return true;
+        }
+    }
+
     @Override
     protected void paintCachableLayer(Graphics graphics) {
         if (eventLogInput != null) {
@@ -2798,13 +2849,14 @@ public class SequenceChart
 
         IEvent lastEvent = eventLog.getLastEvent();
         org.omnetpp.common.engine.BigDecimal endSimulationTime = lastEvent == null ? org.omnetpp.common.engine.BigDecimal.getZero() : lastEvent.getSimulationTime();
+        SimulationTime endSimulationTimeValue = SimulationTime.valueOf(endSimulationTime);
 
         for (BigDecimal tick : ticks) {
             // BigDecimal to double conversions loose precision both in Java and C++ but we must stick to the one in C++
-            // so that strange problems do not occur (think of comparing the tick's time to the last known simulation time)
-            org.omnetpp.common.engine.BigDecimal simulationTime = new org.omnetpp.common.engine.BigDecimal(tick.doubleValue());
-            if (endSimulationTime.less(simulationTime))
-                simulationTime = endSimulationTime;
+            // so that strange problems do not occur (think of comparing the tick's time to the last known simulation time);
+            // SimulationTime.valueOf(double) does the same conversion without going through JNI
+            SimulationTime simulationTimeValue = SimulationTime.valueOf(tick.doubleValue());
+            org.omnetpp.common.engine.BigDecimal simulationTime = endSimulationTimeValue.less(simulationTimeValue) ? endSimulationTime : simulationTimeValue.toBigDecimal();
             drawTick(graphics, viewportHeigth, TICK_LINE_COLOR, GUTTER_BACKGROUND_COLOR, tick, (int)getViewportCoordinateForSimulationTime(simulationTime), false);
         }
     }
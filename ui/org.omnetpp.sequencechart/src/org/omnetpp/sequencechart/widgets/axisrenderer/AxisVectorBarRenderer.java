@@ -14,6 +14,7 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
 import org.omnetpp.common.color.ColorFactory;
+import org.omnetpp.common.util.SimulationTime;
 import org.omnetpp.eventlog.engine.SequenceChartFacade;
 import org.omnetpp.scave.engine.EnumType;
 import org.omnetpp.scave.engine.ResultItem;
@@ -49,6 +50,8 @@ public class AxisVectorBarRenderer implements IAxisRenderer {
 
     private EnumType enumType;
 
+    private SimulationTime[] simulationTimes; // lazily converted copy of the precise x values of data
+
     public AxisVectorBarRenderer(SequenceChart sequenceChart, String vectorFileName, String vectorRunName, String vectorModuleFullPath, String vectorName, ResultItem resultItem, XYArray data) {
         this.sequenceChart = sequenceChart;
         this.vectorFileName = vectorFileName;
@@ -237,52 +240,45 @@ public class AxisVectorBarRenderer implements IAxisRenderer {
      */
     public int getIndex(org.omnetpp.common.engine.BigDecimal simulationTime, boolean before)
     {
-        int index = -1;
+        // binary search in the pure Java copy of the simulation times, this avoids two JNI calls per step
+        SimulationTime[] simulationTimes = getSimulationTimes();
+        SimulationTime value = SimulationTime.valueOf(simulationTime);
         int left = 0;
-        int right = getDataLength();
-
-        while (left <= right) {
-            int mid = (right + left) / 2;
+        int right = simulationTimes.length;
 
-            if (getSimulationTime(mid) == simulationTime) {
-                do {
-                    if (before)
-                        mid--;
-                    else
-                        mid++;
-                }
-                while (mid >= 0 && mid < getDataLength() && getSimulationTime(mid) == simulationTime);
+        // find the first index having greater (!before) or greater or equal (before) simulation time
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            int c = simulationTimes[mid].compareTo(value);
 
-                index = mid;
-                break;
-            }
-            else if (simulationTime.less(getSimulationTime(mid)))
-                right = mid - 1;
-            else
+            if (c < 0 || (!before && c == 0))
                 left = mid + 1;
+            else
+                right = mid;
         }
 
-        if (left > right)
-            if (before)
-                if (simulationTime.less(getSimulationTime(left)))
-                    index = left - 1;
-                else
-                    index = left;
-            else
-                if (simulationTime.greater(getSimulationTime(right)))
-                    index = right + 1;
-                else
-                    index = right;
+        int index = before ? left - 1 : left;
 
-        if (index < 0 || index >= getDataLength())
+        if (index < 0 || index >= simulationTimes.length)
             return -1;
         else {
-            Assert.isTrue((before && getSimulationTime(index).less(simulationTime)) ||
-                          (!before && getSimulationTime(index).greater(simulationTime)));
+            Assert.isTrue((before && simulationTimes[index].less(value)) ||
+                          (!before && simulationTimes[index].greater(value)));
             return index;
         }
     }
 
+    private SimulationTime[] getSimulationTimes()
+    {
+        if (simulationTimes == null) {
+            int length = getDataLength();
+            simulationTimes = new SimulationTime[length];
+            for (int i = 0; i < length; i++)
+                simulationTimes[i] = SimulationTime.valueOf(data.getPreciseX(i));
+        }
+        return simulationTimes;
+    }
+
     public int getDataLength()
     {
         return data.length();
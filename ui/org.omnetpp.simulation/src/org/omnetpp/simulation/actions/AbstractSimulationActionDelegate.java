@@ -117,6 +117,8 @@ public abstract class AbstractSimulationActionDelegate implements IEditorActionD
         SimulationController controller = getSimulationController();
         if (!controller.isNetworkPresent())
             return false;
+        if (!ensureNotBusy(controller))
+            return false;
         if (controller.isSimulationOK())
             return true;
         if (MessageDialog.openQuestion(getShell(), "Warning", "Cannot continue this simulation. Rebuild network?")) {
@@ -144,6 +146,18 @@ public abstract class AbstractSimulationActionDelegate implements IEditorActionD
 //            MessageDialog.openInformation(getShell(), "Simulation Busy", "The simulation is waiting for external synchronization -- press STOP to interrupt it.");
 //            return false;
 //        }
+        return ensureNotBusy(controller);
+    }
+
+    /**
+     * Utility function. Returns true on success, false if an operation such as
+     * setting up a network is still in progress.
+     */
+    protected boolean ensureNotBusy(SimulationController controller) {
+        if (controller.isBusy()) {
+            MessageDialog.openInformation(getShell(), "Simulation Busy", "Sorry, you cannot do this while the previous operation is in progress.");
+            return false;
+        }
         return true;
     }
 
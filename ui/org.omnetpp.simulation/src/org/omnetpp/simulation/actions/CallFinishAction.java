@@ -3,7 +3,6 @@ package org.omnetpp.simulation.actions;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.omnetpp.simulation.controller.Simulation.SimState;
-import org.omnetpp.simulation.controller.CommunicationException;
 import org.omnetpp.simulation.controller.SimulationController;
 import org.omnetpp.simulation.editors.SimulationEditorContributor;
 
@@ -47,9 +46,6 @@ public class CallFinishAction extends AbstractSimulationActionDelegate {
             controller.callFinish();
 
         }
-        catch (CommunicationException e) {
-            // nothing -- error dialog and logging is already taken care of in the lower layers
-        }
         finally {
             updateState();
         }
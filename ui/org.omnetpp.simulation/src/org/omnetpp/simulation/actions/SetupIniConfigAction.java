@@ -184,7 +184,7 @@ public class SetupIniConfigAction extends AbstractSimulationActionDelegate {
     @Override
     public void run(IAction action) {
         try {
-            SimulationController controller = getSimulationController();
+            final SimulationController controller = getSimulationController();
             if (!ensureNotRunning(controller))
                 return;
 
@@ -197,10 +197,13 @@ public class SetupIniConfigAction extends AbstractSimulationActionDelegate {
 
                 //XXX check something was selected
                 //XXX next stuff should be using a progress monitor...
-                controller.setupRun(configName, runNumber);
-
-                cObject network = controller.getSimulation().getRootObject(Simulation.ROOTOBJ_SYSTEMMODULE);
-                getSimulationCanvas().inspect(network);
+                controller.setupRun(configName, runNumber).thenRun(new Runnable() {
+                    @Override
+                    public void run() {
+                        cObject network = controller.getSimulation().getRootObject(Simulation.ROOTOBJ_SYSTEMMODULE);
+                        getSimulationCanvas().inspect(network);
+                    }
+                });
             }
         }
         catch (CommunicationException e) {
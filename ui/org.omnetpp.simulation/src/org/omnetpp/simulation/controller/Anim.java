@@ -1,6 +1,6 @@
 package org.omnetpp.simulation.controller;
 
-import org.omnetpp.common.engine.BigDecimal;
+import org.omnetpp.common.util.SimulationTime;
 import org.omnetpp.simulation.model.cGate;
 import org.omnetpp.simulation.model.cMessage;
 import org.omnetpp.simulation.model.cModule;
@@ -41,8 +41,8 @@ public class Anim {  //TODO temp class; make inner classes toplevel
     public static class MessageSendDirectEntry extends Entry {
         public cModule srcModule;
         public cGate destGate;
-        public BigDecimal propagationDelay;  // optional
-        public BigDecimal transmissionDelay; // optional
+        public SimulationTime propagationDelay;  // optional
+        public SimulationTime transmissionDelay; // optional
 
         @Override
         public String toString() {
@@ -52,8 +52,8 @@ public class Anim {  //TODO temp class; make inner classes toplevel
 
     public static class MessageSendHopEntry extends Entry {
         public cGate srcGate;
-        public BigDecimal propagationDelay;  // optional
-        public BigDecimal transmissionDelay; // optional
+        public SimulationTime propagationDelay;  // optional
+        public SimulationTime transmissionDelay; // optional
 
         @Override
         public String toString() {
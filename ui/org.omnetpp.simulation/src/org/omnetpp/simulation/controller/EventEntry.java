@@ -1,6 +1,6 @@
 package org.omnetpp.simulation.controller;
 
-import org.omnetpp.common.engine.BigDecimal;
+import org.omnetpp.common.util.SimulationTime;
 
 /**
  * TODO
@@ -9,7 +9,7 @@ import org.omnetpp.common.engine.BigDecimal;
 public class EventEntry {
     private static final Object[] EMPTY_ARRAY = new Object[0];
     public long eventNumber;
-    public BigDecimal simulationTime;
+    public SimulationTime simulationTime;
     public int moduleId;  // >=1 if this is a simulation event (and not loglines from the simulator)
     public String moduleNedType;  // fully qualified NED type name
     public String moduleFullPath; //XXX we assume that the module's fullPath doesn't change during its lifetime
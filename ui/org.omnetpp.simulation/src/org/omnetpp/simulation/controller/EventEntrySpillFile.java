@@ -0,0 +1,236 @@
+package org.omnetpp.simulation.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omnetpp.common.util.SimulationTime;
+
+
+/**
+ * Stores segments of event entries in a temporary file in a compact binary
+ * form, and reads them back via memory mapping. Each segment has its own
+ * string table, so module paths, type names, etc. are stored only once per
+ * segment.
+ *
+ * Only what is needed for displaying the log is preserved: log lines, method
+ * calls, and the fact that a message was sent. References to simulation
+ * objects (messages, gates) are lost, and message send hops are dropped.
+ */
+class EventEntrySpillFile {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // log item tags
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_METHODBEGIN = 2;
+    private static final byte TAG_METHODEND = 3;
+    private static final byte TAG_BEGINSEND = 4;
+    private static final byte TAG_ENDSEND = 5;
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private long fileSize;
+    private long[] segmentOffsets = new long[16];
+    private int[] segmentLengths = new int[16];
+    private int numSegments;
+
+    public EventEntrySpillFile() throws IOException {
+        file = File.createTempFile("omnetpp-log", ".dat");
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+    }
+
+    public int getNumSegments() {
+        return numSegments;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Appends the given entries to the file as a new segment, and returns the segment's index.
+     */
+    public int writeSegment(EventEntry[] entries, int count) throws IOException {
+        // collect strings
+        Map<String,Integer> stringIds = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            EventEntry entry = entries[i];
+            addString(entry.simulationTime == null ? null : entry.simulationTime.toString(), stringIds, strings);
+            addString(entry.moduleNedType, stringIds, strings);
+            addString(entry.moduleFullPath, stringIds, strings);
+            addString(entry.messageClassName, stringIds, strings);
+            addString(entry.messageName, stringIds, strings);
+            for (Object item : entry.logItems) {
+                if (item instanceof String)
+                    addString((String)item, stringIds, strings);
+                else if (item instanceof Anim.ComponentMethodBeginEntry)
+                    addString(((Anim.ComponentMethodBeginEntry)item).txt, stringIds, strings);
+            }
+        }
+
+        // write string table and entries
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64*1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] utf8 = string.getBytes(UTF8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            EventEntry entry = entries[i];
+            out.writeLong(entry.eventNumber);
+            out.writeInt(getStringId(entry.simulationTime == null ? null : entry.simulationTime.toString(), stringIds));
+            out.writeInt(entry.moduleId);
+            out.writeInt(getStringId(entry.moduleNedType, stringIds));
+            out.writeInt(getStringId(entry.moduleFullPath, stringIds));
+            out.writeInt(getStringId(entry.messageClassName, stringIds));
+            out.writeInt(getStringId(entry.messageName, stringIds));
+            int numItems = 0;
+            for (Object item : entry.logItems)
+                if (getTag(item) != 0)
+                    numItems++;
+            out.writeInt(numItems);
+            for (Object item : entry.logItems) {
+                byte tag = getTag(item);
+                if (tag == 0)
+                    continue;
+                out.writeByte(tag);
+                if (tag == TAG_STRING)
+                    out.writeInt(getStringId((String)item, stringIds));
+                else if (tag == TAG_METHODBEGIN) {
+                    Anim.ComponentMethodBeginEntry methodBegin = (Anim.ComponentMethodBeginEntry)item;
+                    out.writeInt(getStringId(methodBegin.txt, stringIds));
+                    out.writeInt(methodBegin.srcModuleId);
+                    out.writeInt(methodBegin.destModuleId);
+                }
+            }
+        }
+        out.flush();
+
+        // append to the file
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long offset = fileSize;
+        while (buffer.hasRemaining())
+            channel.write(buffer, offset + buffer.position());
+
+        if (numSegments == segmentOffsets.length) {
+            segmentOffsets = Arrays.copyOf(segmentOffsets, 2*numSegments);
+            segmentLengths = Arrays.copyOf(segmentLengths, 2*numSegments);
+        }
+        segmentOffsets[numSegments] = offset;
+        segmentLengths[numSegments] = bytes.size();
+        fileSize += bytes.size();
+        return numSegments++;
+    }
+
+    /**
+     * Reads back a segment written with writeSegment().
+     */
+    public EventEntry[] readSegment(int segment) throws IOException {
+        ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, segmentOffsets[segment], segmentLengths[segment]);
+
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] utf8 = new byte[in.getInt()];
+            in.get(utf8);
+            strings[i] = new String(utf8, UTF8);
+        }
+
+        EventEntry[] entries = new EventEntry[in.getInt()];
+        for (int i = 0; i < entries.length; i++) {
+            EventEntry entry = new EventEntry();
+            entry.eventNumber = in.getLong();
+            String simulationTime = getString(in.getInt(), strings);
+            entry.simulationTime = simulationTime == null ? null : SimulationTime.parse(simulationTime);
+            entry.moduleId = in.getInt();
+            entry.moduleNedType = getString(in.getInt(), strings);
+            entry.moduleFullPath = getString(in.getInt(), strings);
+            entry.messageClassName = getString(in.getInt(), strings);
+            entry.messageName = getString(in.getInt(), strings);
+            Object[] logItems = new Object[in.getInt()];
+            for (int j = 0; j < logItems.length; j++) {
+                byte tag = in.get();
+                switch (tag) {
+                    case TAG_STRING:
+                        logItems[j] = getString(in.getInt(), strings);
+                        break;
+                    case TAG_METHODBEGIN: {
+                        Anim.ComponentMethodBeginEntry methodBegin = new Anim.ComponentMethodBeginEntry();
+                        methodBegin.txt = getString(in.getInt(), strings);
+                        methodBegin.srcModuleId = in.getInt();
+                        methodBegin.destModuleId = in.getInt();
+                        logItems[j] = methodBegin;
+                        break;
+                    }
+                    case TAG_METHODEND: logItems[j] = new Anim.ComponentMethodEndEntry(); break;
+                    case TAG_BEGINSEND: logItems[j] = new Anim.BeginSendEntry(); break;
+                    case TAG_ENDSEND: logItems[j] = new Anim.EndSendEntry(); break;
+                    default: throw new IOException("corrupt log spill file: unknown tag " + tag);
+                }
+            }
+            entry.logItems = logItems;
+            entries[i] = entry;
+        }
+        return entries;
+    }
+
+    /**
+     * Closes and deletes the file.
+     */
+    public void dispose() {
+        try {
+            channel.close();
+            randomAccessFile.close();
+        }
+        catch (IOException e) {
+            // nothing to do, we are discarding the file anyway
+        }
+        file.delete();
+    }
+
+    private static byte getTag(Object item) {
+        if (item instanceof String)
+            return TAG_STRING;
+        else if (item instanceof Anim.ComponentMethodBeginEntry)
+            return TAG_METHODBEGIN;
+        else if (item instanceof Anim.ComponentMethodEndEntry)
+            return TAG_METHODEND;
+        else if (item instanceof Anim.BeginSendEntry)
+            return TAG_BEGINSEND;
+        else if (item instanceof Anim.EndSendEntry)
+            return TAG_ENDSEND;
+        else
+            return 0; // not preserved
+    }
+
+    private static void addString(String string, Map<String,Integer> stringIds, List<String> strings) {
+        if (string != null && !stringIds.containsKey(string)) {
+            stringIds.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private static int getStringId(String string, Map<String,Integer> stringIds) {
+        return string == null ? -1 : stringIds.get(string);
+    }
+
+    private static String getString(int id, String[] strings) {
+        return id == -1 ? null : strings[id];
+    }
+}
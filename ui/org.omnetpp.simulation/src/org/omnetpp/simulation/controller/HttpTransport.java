@@ -0,0 +1,188 @@
+package org.omnetpp.simulation.controller;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Carries HTTP requests to the simulation process over persistent
+ * (keep-alive) connections. Requests may be issued from several threads
+ * (typically the communication thread and the UI thread); each of them
+ * gets a pooled connection of its own. Nagle's algorithm is turned off because
+ * requests and replies are typically small and latency-bound. The stale
+ * connection check is also turned off, because it costs about a millisecond
+ * per request; requests on a connection closed by the server are retried
+ * by HttpClient instead.
+ */
+public class HttpTransport {
+    /**
+     * Consumes the body of an HTTP response.
+     */
+    public interface IContentReader<T> {
+        T read(Reader content) throws IOException;
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static final IContentReader<String> STRING_READER = new IContentReader<String>() {
+        @Override
+        public String read(Reader content) throws IOException {
+            StringBuilder buf = new StringBuilder();
+            char[] chars = new char[8192];
+            int n;
+            while ((n = content.read(chars)) != -1)
+                buf.append(chars, 0, n);
+            return buf.toString();
+        }
+    };
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private int timeoutMillis = 30 * 1000;
+    private Map<HttpRequestBase,Thread> ongoingRequests = new HashMap<HttpRequestBase,Thread>();  // so that we can abort them from another thread when needed
+
+    public HttpTransport() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(2);
+        connectionManager.setDefaultMaxPerRoute(2);  // one for the communication thread, one for the UI thread
+        connectionManager.setDefaultSocketConfig(SocketConfig.custom().setTcpNoDelay(true).build());
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Performs an HTTP GET, and returns the response body.
+     */
+    public String get(String url) throws IOException {
+        return get(url, STRING_READER);
+    }
+
+    /**
+     * Performs an HTTP GET, and lets the given reader consume the response body
+     * directly from the connection.
+     */
+    public <T> T get(String url, IContentReader<T> contentReader) throws IOException {
+        return execute(new HttpGet(url), contentReader);
+    }
+
+    /**
+     * Performs an HTTP POST with the given body, and returns the response body.
+     */
+    public String post(String url, String body, ContentType contentType) throws IOException {
+        return post(url, body, contentType, STRING_READER);
+    }
+
+    /**
+     * Performs an HTTP POST with the given body, and lets the given reader consume
+     * the response body directly from the connection.
+     */
+    public <T> T post(String url, String body, ContentType contentType, IContentReader<T> contentReader) throws IOException {
+        HttpPost request = new HttpPost(url);
+        request.setEntity(new StringEntity(body, contentType));
+        return execute(request, contentReader);
+    }
+
+    protected <T> T execute(HttpRequestBase request, IContentReader<T> contentReader) throws IOException {
+        request.setConfig(RequestConfig.custom().
+                setConnectTimeout(timeoutMillis).
+                setSocketTimeout(timeoutMillis).
+                setStaleConnectionCheckEnabled(false).
+                build());
+        synchronized (ongoingRequests) {
+            ongoingRequests.put(request, Thread.currentThread());
+        }
+        try {
+            CloseableHttpResponse response = httpClient.execute(request);
+            try {
+                checkStatus(response);
+                HttpEntity entity = response.getEntity();
+                if (entity == null)
+                    return contentReader.read(new StringReader(""));
+                ContentType contentType = ContentType.get(entity);
+                Charset charset = contentType != null && contentType.getCharset() != null ? contentType.getCharset() : UTF8;
+                T result = contentReader.read(new InputStreamReader(entity.getContent(), charset));
+                EntityUtils.consume(entity); // so that the connection can be reused
+                return result;
+            }
+            finally {
+                response.close();
+            }
+        }
+        finally {
+            synchronized (ongoingRequests) {
+                ongoingRequests.remove(request);
+            }
+        }
+    }
+
+    protected void checkStatus(HttpResponse response) throws HttpResponseException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode >= HttpStatus.SC_MULTIPLE_CHOICES)
+            throw new HttpResponseException(statusCode, response.getStatusLine().getReasonPhrase());
+    }
+
+    /**
+     * Returns true if there is an HTTP request in progress.
+     */
+    public boolean isRequestInProgress() {
+        synchronized (ongoingRequests) {
+            return !ongoingRequests.isEmpty();
+        }
+    }
+
+    /**
+     * Aborts the ongoing HTTP requests, if there are any, and interrupts the
+     * threads that issued them. May be called from any thread.
+     */
+    public void abort() {
+        synchronized (ongoingRequests) {
+            for (Map.Entry<HttpRequestBase,Thread> entry : ongoingRequests.entrySet()) {
+                if (entry.getValue() != Thread.currentThread())
+                    entry.getValue().interrupt();
+                entry.getKey().abort();  // does nothing if already aborted
+            }
+            ongoingRequests.clear();
+        }
+    }
+
+    /**
+     * Closes the persistent connection.
+     */
+    public void dispose() {
+        abort();
+        try {
+            httpClient.close();
+        }
+        catch (IOException e) {
+            // nothing to do, we are shutting down anyway
+        }
+    }
+}
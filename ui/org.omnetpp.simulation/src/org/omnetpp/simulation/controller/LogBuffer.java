@@ -1,7 +1,10 @@
 package org.omnetpp.simulation.controller;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.ListenerList;
@@ -10,13 +13,32 @@ import org.omnetpp.simulation.SimulationPlugin;
 
 
 /**
- * TODO
+ * Stores the module log of the simulation. Only the most recent entries are
+ * kept in memory; older ones are spilled to a temporary file in segments, and
+ * read back on demand. Entry indices are stable.
  *
  * @author Andras
  */
 //FIXME making it possible to change module name and parent after creation is a REALLY BAD IDEA -- makes our job much more difficult in the IDE!!!
 public class LogBuffer {
-    private List<EventEntry> eventEntries = new ArrayList<EventEntry>();
+    public static final int DEFAULT_MAX_ENTRIES_IN_MEMORY = 100000;
+    private static final int SEGMENT_SIZE = 4096;  // entries are stored, and spilled to disk, in segments of this size
+    private static final int NUM_CACHED_SEGMENTS = 4;  // spilled segments read back
+
+    private int maxEntriesInMemory = DEFAULT_MAX_ENTRIES_IN_MEMORY;
+    private int numEntries;
+    private int numSpilledSegments;  // segments [0, numSpilledSegments) are in the spill file
+    private List<EventEntry[]> segments = new ArrayList<EventEntry[]>();  // in-memory segments, the first one being segment #numSpilledSegments
+    private EventEntrySpillFile spillFile;
+    private boolean spillFailed;  // if spilling fails, we keep everything in memory
+    private Map<Integer, EventEntry[]> segmentCache = new LinkedHashMap<Integer, EventEntry[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, EventEntry[]> eldest) {
+            return size() > NUM_CACHED_SEGMENTS;
+        }
+    };
     private ListenerList changeListeners = new ListenerList();
 
     public interface ILogBufferChangedListener {  //XXX seems to be unused now -- ModuleOutputView uses SimulationStateListener
@@ -26,20 +48,98 @@ public class LogBuffer {
     public LogBuffer() {
     }
 
+    /**
+     * Older entries beyond the given number are spilled to a temporary file
+     * in segments, and read back on demand. Spilled entries lose references
+     * to simulation objects, see EventEntrySpillFile.
+     */
+    public LogBuffer(int maxEntriesInMemory) {
+        this.maxEntriesInMemory = maxEntriesInMemory;
+    }
+
+    public int getMaxEntriesInMemory() {
+        return maxEntriesInMemory;
+    }
+
+    public void setMaxEntriesInMemory(int maxEntriesInMemory) {
+        this.maxEntriesInMemory = maxEntriesInMemory;
+        spillSegments();
+    }
+
     public void addEventEntry(EventEntry e) {
-        eventEntries.add(e);
+        int offset = numEntries % SEGMENT_SIZE;
+        if (offset == 0)
+            segments.add(new EventEntry[SEGMENT_SIZE]);
+        segments.get(segments.size()-1)[offset] = e;
+        numEntries++;
+        if (offset == 0)
+            spillSegments();
     }
 
     public int getNumEntries() {
-        return eventEntries.size();
+        return numEntries;
+    }
+
+    public int getNumEntriesInMemory() {
+        return numEntries - numSpilledSegments * SEGMENT_SIZE;
     }
 
     public EventEntry getEventEntry(int index) {
-        return eventEntries.get(index);
+        if (index < 0 || index >= numEntries)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + numEntries);
+        int segment = index / SEGMENT_SIZE;
+        EventEntry[] entries = segment >= numSpilledSegments ? segments.get(segment - numSpilledSegments) : getSpilledSegment(segment);
+        return entries[index % SEGMENT_SIZE];
     }
 
     public EventEntry getLastEventEntry() {
-        return eventEntries.isEmpty() ? null : eventEntries.get(eventEntries.size()-1);
+        return numEntries == 0 ? null : getEventEntry(numEntries-1);  // always in memory
+    }
+
+    protected EventEntry[] getSpilledSegment(int segment) {
+        EventEntry[] entries = segmentCache.get(segment);
+        if (entries == null) {
+            if (spillFile == null)
+                throw new IllegalStateException("Log buffer already disposed");
+            try {
+                entries = spillFile.readSegment(segment);
+            }
+            catch (IOException e) {
+                throw new RuntimeException("Cannot read back log entries from temporary file", e);
+            }
+            segmentCache.put(segment, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the oldest full segments to the spill file while there are more
+     * than maxEntriesInMemory entries in memory. The last segment is never spilled.
+     */
+    protected void spillSegments() {
+        while (!spillFailed && segments.size() > 1 && getNumEntriesInMemory() - SEGMENT_SIZE >= maxEntriesInMemory) {
+            try {
+                if (spillFile == null)
+                    spillFile = new EventEntrySpillFile();
+                spillFile.writeSegment(segments.get(0), SEGMENT_SIZE);
+                segments.remove(0);
+                numSpilledSegments++;
+            }
+            catch (IOException e) {
+                SimulationPlugin.logError("Cannot write log entries to temporary file, keeping them in memory", e);
+                spillFailed = true;
+            }
+        }
+    }
+
+    /**
+     * Deletes the spill file.
+     */
+    public void dispose() {
+        if (spillFile != null)
+            spillFile.dispose();
+        spillFile = null;
+        segmentCache.clear();
     }
 
     // to be called manually after a batch of addEventEntry() calls
@@ -0,0 +1,165 @@
+package org.omnetpp.simulation.controller;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash map with primitive long keys and weakly referenced values. Entries
+ * whose values have been garbage collected are removed by purge(), at a cost
+ * proportional to the number of such entries (they are found via a reference
+ * queue, not by scanning the map). Uses open addressing with linear probing.
+ * Not synchronized.
+ */
+public class LongWeakValueMap<V> {
+    private static class Ref<V> extends WeakReference<V> {
+        final long key;
+
+        Ref(long key, V value, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    private long[] keys;
+    private Ref<V>[] refs;  // null means empty slot
+    private int size;
+    private int mask;
+    private ReferenceQueue<V> queue = new ReferenceQueue<V>();
+
+    public LongWeakValueMap() {
+        allocate(64);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        refs = new Ref[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        int h = (int)(key ^ (key >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int indexOf(long key) {
+        for (int i = slot(key); refs[i] != null; i = (i+1) & mask)
+            if (keys[i] == key)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the number of entries, including those whose values have been
+     * garbage collected but not yet purged.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value for the key, or null if there is none or it has been garbage collected.
+     */
+    public V get(long key) {
+        int i = indexOf(key);
+        return i == -1 ? null : refs[i].get();
+    }
+
+    public void put(long key, V value) {
+        int i = indexOf(key);
+        if (i != -1) {
+            refs[i] = new Ref<V>(key, value, queue);  // the old Ref is ignored when it gets enqueued
+            return;
+        }
+        if (2*(size+1) > keys.length)
+            rehash(2*keys.length);
+        for (i = slot(key); refs[i] != null; i = (i+1) & mask)
+            ;
+        keys[i] = key;
+        refs[i] = new Ref<V>(key, value, queue);
+        size++;
+    }
+
+    public void remove(long key) {
+        int i = indexOf(key);
+        if (i != -1)
+            removeAt(i);
+    }
+
+    /**
+     * Removes the entries whose values have been garbage collected since the
+     * last call, and returns their keys.
+     */
+    @SuppressWarnings("unchecked")
+    public long[] purge() {
+        long[] purgedKeys = new long[16];
+        int n = 0;
+        Reference<? extends V> r;
+        while ((r = queue.poll()) != null) {
+            Ref<V> ref = (Ref<V>) r;
+            int i = indexOf(ref.key);
+            if (i != -1 && refs[i] == ref) {  // not replaced or removed meanwhile
+                removeAt(i);
+                if (n == purgedKeys.length)
+                    purgedKeys = Arrays.copyOf(purgedKeys, 2*n);
+                purgedKeys[n++] = ref.key;
+            }
+        }
+        return Arrays.copyOf(purgedKeys, n);
+    }
+
+    /**
+     * Returns the values that have not been garbage collected.
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<V>(size);
+        for (Ref<V> ref : refs) {
+            V value = ref == null ? null : ref.get();
+            if (value != null)
+                result.add(value);
+        }
+        return result;
+    }
+
+    public void clear() {
+        Arrays.fill(refs, null);
+        size = 0;
+        while (queue.poll() != null)
+            ;
+    }
+
+    private void removeAt(int i) {
+        // backward-shift deletion: move subsequent entries of the probe sequence into the hole
+        refs[i] = null;
+        size--;
+        for (int j = (i+1) & mask; refs[j] != null; j = (j+1) & mask) {
+            int k = slot(keys[j]);
+            boolean stays = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+            if (!stays) {
+                keys[i] = keys[j];
+                refs[i] = refs[j];
+                refs[j] = null;
+                i = j;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Ref<V>[] oldRefs = refs;
+        allocate(capacity);
+        for (int i = 0; i < oldRefs.length; i++) {
+            if (oldRefs[i] != null) {
+                int j = slot(oldKeys[i]);
+                while (refs[j] != null)
+                    j = (j+1) & mask;
+                keys[j] = oldKeys[i];
+                refs[j] = oldRefs[i];
+            }
+        }
+    }
+}
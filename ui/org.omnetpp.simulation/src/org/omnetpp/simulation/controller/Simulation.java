@@ -1,8 +1,8 @@
 package org.omnetpp.simulation.controller;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
-import java.lang.ref.WeakReference;
 import java.net.SocketException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
@@ -18,14 +18,16 @@ import java.util.logging.Level;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.impl.Jdk14Logger;
-import org.apache.http.HttpException;
-import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
 import org.eclipse.core.runtime.Assert;
-import org.eclipse.swt.widgets.Display;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.engine.BigDecimal;
-import org.omnetpp.common.json.JSONReader;
+import org.omnetpp.common.json.JSONParseException;
+import org.omnetpp.common.json.JSONPullParser;
+import org.omnetpp.common.json.JSONPullParser.Token;
+import org.omnetpp.common.util.SimulationTime;
 import org.omnetpp.common.util.StringUtils;
+import org.omnetpp.simulation.controller.HttpTransport.IContentReader;
 import org.omnetpp.simulation.model.cGate;
 import org.omnetpp.simulation.model.cMessage;
 import org.omnetpp.simulation.model.cModule;
@@ -66,6 +68,9 @@ public class Simulation {
     public static final int CATEGORY_CHANSGATES = 0x40;
     public static final int CATEGORY_OTHERS = 0x80;
 
+    // how often objects not accessed lately are unloaded when using object subscriptions
+    public static final int UNLOAD_SWEEP_INTERVAL_MILLIS = 3000;
+
     /**
      * The state in the simulation process as reported by it; see Cmdenv for state transitions
      */
@@ -121,14 +126,74 @@ public class Simulation {
 //        String message;
 //    }
 
-    private static final int MONGOOSE_MAX_REQUEST_URI_SIZE = 256*1024-1000; // see MAX_REQUEST_SIZE in mongoose.h
+    /**
+     * The decoded response of the "/sim/status" request. It can be obtained in
+     * any thread with fetchStatus(), but must be applied with processStatus()
+     * in the UI thread.
+     */
+    public static class StatusData {
+        Map<Object, Object> fields = new HashMap<Object, Object>(); // everything except the log
+        List<EventEntry> eventEntries = new ArrayList<EventEntry>();
+
+        public SimState getSimState() {
+            return SimState.valueOf(((String) fields.get("state")).toUpperCase());
+        }
+
+        public StoppingReason getStoppingReason() {
+            return StoppingReason.valueOf(StringUtils.defaultString((String) fields.get("stoppingReason"), "none").toUpperCase());
+        }
+
+        public long getLastEventNumber() {
+            return defaultLongIfNull((Number) fields.get("lastEventNumber"), -1);
+        }
+
+        public long getNextEventNumber() {
+            return defaultLongIfNull((Number) fields.get("nextEventNumber"), 0);
+        }
+
+        public boolean hasUserInputRequest() {
+            return fields.containsKey("userInput");
+        }
+    }
+
+    /**
+     * Fields of one entry of the log in the status response; reused for all entries.
+     */
+    private static class LogEntryFields {
+        String type;
+        long eventNumber;
+        String simulationTime;
+        int moduleId;
+        String moduleFullPath;
+        String moduleNedType;
+        String messageName;
+        String messageClassName;
+        String txt;
+        int srcModuleId;
+        int destModuleId;
+        String methodText;
+        String msg;
+        String srcGate;
+        String srcModule;
+        String destGate;
+        String propagationDelay;
+        String transmissionDelay;
+
+        void clear() {
+            type = simulationTime = moduleFullPath = moduleNedType = messageName = messageClassName = null;
+            txt = methodText = msg = srcGate = srcModule = destGate = propagationDelay = transmissionDelay = null;
+            eventNumber = 0;
+            moduleId = srcModuleId = destModuleId = 0;
+        }
+    }
+
+    private static final int MONGOOSE_MAX_REQUEST_URI_SIZE = 256*1024-1000; // see MAX_REQUEST_SIZE in mongoose.h; longer requests are sent as POST
 
     private enum ContentToLoadEnum { OBJECT, FIELDS };
 
     private String urlBase;
-    private int timeoutMillis = 30 * 1000;
-    private Request currentHttpRequest;  // ongoing HTTP request, so that we can abort it from another thread when needed
-    private boolean isOnline;
+    private HttpTransport transport = new HttpTransport();
+    private volatile boolean isOnline;
     private ISimulationCallback simulationCallback;
 
     // simulation status (as returned by the GET "/sim/status" request)
@@ -151,12 +216,17 @@ public class Simulation {
     private long nextEventMessageIdGuess; //TODO display on UI
     private long simulationChangeCounter; // cObject::changeCounter from the simulation process
     private String eventlogFile;
+    private boolean supportsBatchRequests; // whether the process understands "/sim/batch"
+    private boolean supportsObjectSubscriptions; // whether the process understands "/sim/getObjectChanges" and "/sim/unsubscribe"
 
     // object cache
     private Map<String, cObject> rootObjects = new HashMap<String, cObject>(); // keys: "simulation", "network", etc.
-    private Map<Long, WeakReference<cObject>> cachedObjects = new HashMap<Long, WeakReference<cObject>>();
+    private LongWeakValueMap<cObject> cachedObjects = new LongWeakValueMap<cObject>();
     private long lastCacheRefreshSerial;  // simulationChangeCounter on last refreshObjectCache() call
     private int cacheRefreshSeq;
+    private List<Long> pendingUnsubscribes = new ArrayList<Long>();  // IDs to unsubscribe from on the next refresh
+    private long lastUnloadSweepTime;
+    private int lastUnloadSweepSeq;  // cacheRefreshSeq at the last unload sweep
 
     // module logs
     private LogBuffer logBuffer = new LogBuffer();
@@ -186,11 +256,11 @@ public class Simulation {
     }
 
     public int getTimeoutMillis() {
-        return timeoutMillis;
+        return transport.getTimeoutMillis();
     }
 
     public void setTimeoutMillis(int timeoutMillis) {
-        this.timeoutMillis = timeoutMillis;
+        transport.setTimeoutMillis(timeoutMillis);
     }
 
     public boolean isOnline() {
@@ -296,11 +366,273 @@ public class Simulation {
         return logBuffer;
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
+    /**
+     * Whether the simulation process accepts combined requests, see refreshStatusAndObjectCache().
+     */
+    public boolean supportsBatchRequests() {
+        return supportsBatchRequests;
+    }
+
+    /**
+     * Whether the simulation process keeps track of the objects the IDE has loaded,
+     * and can report their changes since a given serial, see refreshObjectCache().
+     */
+    public boolean supportsObjectSubscriptions() {
+        return supportsObjectSubscriptions;
+    }
+
     public StatusResponse refreshStatus() throws CommunicationException {
-        Object responseJSON = getPageContentAsJSON(urlBase + "sim/status");
+        return processStatus(fetchStatus());
+    }
+
+    /**
+     * Retrieves and decodes the simulation status, without applying it. Unlike
+     * most other methods, this one may be called from a background thread.
+     */
+    public StatusData fetchStatus() throws CommunicationException {
+        return getPageContent(urlBase + "sim/status", statusReader);
+    }
+
+    /**
+     * Refreshes the status and the object cache with a single combined "/sim/batch"
+     * request if the simulation process supports it, and with separate requests
+     * otherwise. Note that objects are picked for reloading or unloading before
+     * the new status arrives.
+     *
+     * The body of the batch request contains the URIs of the individual requests
+     * (relative to the server root) one per line, and the response is a JSON array
+     * of the individual responses in the same order.
+     */
+    public StatusResponse refreshStatusAndObjectCache() throws CommunicationException {
+        if (!supportsBatchRequests) {
+            StatusResponse response = refreshStatus();
+            refreshObjectCache();
+            return response;
+        }
+
+        List<cObject> objectsToReload = new ArrayList<cObject>();
+        List<cObject> objectsToReloadFields = new ArrayList<cObject>();
+        String unsubscribeUri = null;
+        if (supportsObjectSubscriptions)
+            unsubscribeUri = collectObjectsToUnsubscribe();
+        else
+            collectObjectsToRefresh(objectsToReload, objectsToReloadFields);
+
+        StringBuilder body = new StringBuilder("sim/status\n");
+        if (unsubscribeUri != null)
+            body.append(unsubscribeUri).append('\n');
+        if (supportsObjectSubscriptions)
+            body.append(getObjectChangesUri()).append('\n');
+        if (!objectsToReload.isEmpty())
+            body.append(getObjectInfoUri(objectsToReload, ContentToLoadEnum.OBJECT, true)).append('\n');
+        if (!objectsToReloadFields.isEmpty())
+            body.append(getObjectInfoUri(objectsToReloadFields, ContentToLoadEnum.FIELDS, true)).append('\n');
+        List<Object> responses = postPageContent(urlBase + "sim/batch", body.toString(), ContentType.TEXT_PLAIN, new IContentReader<List<Object>>() {
+            @Override
+            public List<Object> read(Reader content) throws IOException {
+                // the status is decoded on the fly, the rest is read as JSON trees
+                List<Object> result = new ArrayList<Object>();
+                JSONPullParser parser = new JSONPullParser(content);
+                expectToken(parser, Token.BEGIN_ARRAY);
+                expectToken(parser, Token.BEGIN_OBJECT);
+                result.add(readStatus(parser));
+                while (parser.next() != Token.END_ARRAY)
+                    result.add(parser.readValue());
+                return result;
+            }
+        });
+
+        int i = 0;
+        StatusResponse response = processStatus((StatusData) responses.get(i++));
+        if (unsubscribeUri != null)
+            i++;
+        if (supportsObjectSubscriptions)
+            processObjectChanges(responses.get(i++));
+        if (!objectsToReload.isEmpty())
+            processObjectInfo(objectsToReload, ContentToLoadEnum.OBJECT, responses.get(i++));
+        if (!objectsToReloadFields.isEmpty())
+            processObjectInfo(objectsToReloadFields, ContentToLoadEnum.FIELDS, responses.get(i++));
+        objectCacheRefreshed();
+        return response;
+    }
+
+    private IContentReader<StatusData> statusReader = new IContentReader<StatusData>() {
+        @Override
+        public StatusData read(Reader content) throws IOException {
+            JSONPullParser parser = new JSONPullParser(content);
+            expectToken(parser, Token.BEGIN_OBJECT);
+            return readStatus(parser);
+        }
+    };
+
+    private static void expectToken(JSONPullParser parser, Token token) throws IOException {
+        if (parser.next() != token)
+            throw new JSONParseException("JSON parse error: " + token + " expected, got " + parser.getToken());
+    }
+
+    /**
+     * Reads the status object from the parser, positioned at its BEGIN_OBJECT token.
+     * The log is decoded into EventEntry objects on the fly; other fields are read
+     * as JSON trees.
+     */
+    protected StatusData readStatus(JSONPullParser parser) throws IOException {
+        StatusData status = new StatusData();
+        while (parser.next() == Token.FIELD_NAME) {
+            if (parser.textEquals("log")) {
+                expectToken(parser, Token.BEGIN_ARRAY);
+                readLog(parser, status.eventEntries);
+            }
+            else {
+                String key = parser.getText();
+                parser.next();
+                status.fields.put(key, parser.readValue());
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Decodes the entries of the "log" array into EventEntry objects. Entries
+     * before the first event ("E") entry go into an EventEntry of their own.
+     */
+    protected void readLog(JSONPullParser parser, List<EventEntry> eventEntries) throws IOException {
+        LogEntryFields entry = new LogEntryFields();
+        EventEntry lastEventEntry = null;
+        List<Object> logItems = new ArrayList<Object>();
+        while (parser.next() == Token.BEGIN_OBJECT) {
+            readLogEntry(parser, entry);
+            String type = entry.type;
+            if (type == null) {
+                throw new RuntimeException("missing log entry type");
+            }
+            else if (type.equals("E")) {
+                if (!logItems.isEmpty()) {
+                    if (lastEventEntry == null)
+                        eventEntries.add(lastEventEntry = new EventEntry());
+                    lastEventEntry.logItems = logItems.toArray(new Object[]{});
+                    logItems.clear();
+                }
+
+                lastEventEntry = new EventEntry();
+                lastEventEntry.eventNumber = entry.eventNumber;
+                lastEventEntry.simulationTime = SimulationTime.parse(entry.simulationTime);
+                lastEventEntry.moduleId = entry.moduleId;
+                lastEventEntry.moduleFullPath = entry.moduleFullPath;
+                lastEventEntry.moduleNedType = entry.moduleNedType;
+                lastEventEntry.messageName = entry.messageName;
+                lastEventEntry.messageClassName = entry.messageClassName;
+                eventEntries.add(lastEventEntry);
+            }
+            else if (type.equals("L")) {
+                String chunk = entry.txt;
+                if (chunk.charAt(chunk.length()-1) == '\n')
+                    chunk = chunk.substring(0, chunk.length()-1);  // remove trailing LF
+                if (chunk.indexOf('\n') == -1) {
+                    // add single line (typical case)
+                    logItems.add(chunk);
+                }
+                else {
+                    // split multi-line string to lines (rare case)
+                    for (String line : chunk.split("\n", -1))
+                        logItems.add(line);
+                }
+            }
+            else if (type.equals("MB")) {
+                Anim.ComponentMethodBeginEntry item = new Anim.ComponentMethodBeginEntry();
+                item.srcModuleId = entry.srcModuleId;
+                item.destModuleId = entry.destModuleId;
+                item.txt = entry.methodText;
+                logItems.add(item);
+            }
+            else if (type.equals("ME")) {
+                Anim.ComponentMethodEndEntry item = new Anim.ComponentMethodEndEntry();
+                logItems.add(item);
+            }
+            else if (type.equals("BS")) {  //TODO no need for the simulation to send these entries (BS..ES) in Fast mode! (and of course not in Express mode)
+                Anim.BeginSendEntry item = new Anim.BeginSendEntry();
+                item.msg = (cMessage) getObjectByJSONRef(entry.msg);
+                logItems.add(item);
+            }
+            else if (type.equals("SH")) {
+                Anim.MessageSendHopEntry item = new Anim.MessageSendHopEntry();
+                item.srcGate = (cGate) getObjectByJSONRef(entry.srcGate);
+                item.propagationDelay = defaultSimulationTimeIfNull(entry.propagationDelay, null);
+                item.transmissionDelay = defaultSimulationTimeIfNull(entry.transmissionDelay, null);
+                logItems.add(item);
+            }
+            else if (type.equals("SD")) {
+                Anim.MessageSendDirectEntry item = new Anim.MessageSendDirectEntry();
+                item.srcModule = (cModule) getObjectByJSONRef(entry.srcModule);
+                item.destGate = (cGate) getObjectByJSONRef(entry.destGate);
+                item.propagationDelay = defaultSimulationTimeIfNull(entry.propagationDelay, null);
+                item.transmissionDelay = defaultSimulationTimeIfNull(entry.transmissionDelay, null);
+                logItems.add(item);
+            }
+            else if (type.equals("ES")) {
+                Anim.EndSendEntry item = new Anim.EndSendEntry();
+                logItems.add(item);
+            }
+            else {
+                throw new RuntimeException("unknown log entry type '" + type + "'");
+            }
+        }
+        if (parser.getToken() != Token.END_ARRAY)
+            throw new JSONParseException("JSON parse error: log entry expected, got " + parser.getToken());
+        if (!logItems.isEmpty()) {
+            if (lastEventEntry == null)
+                eventEntries.add(lastEventEntry = new EventEntry());
+            lastEventEntry.logItems = logItems.toArray(new Object[]{});
+            logItems.clear();
+        }
+    }
+
+    private static void readLogEntry(JSONPullParser parser, LogEntryFields entry) throws IOException {
+        entry.clear();
+        while (parser.next() == Token.FIELD_NAME) {
+            if (parser.textEquals("@")) entry.type = nextString(parser);
+            else if (parser.textEquals("txt")) entry.txt = nextString(parser);
+            else if (parser.textEquals("#")) entry.eventNumber = nextLong(parser);
+            else if (parser.textEquals("t")) entry.simulationTime = nextString(parser);
+            else if (parser.textEquals("moduleId")) entry.moduleId = (int) nextLong(parser);
+            else if (parser.textEquals("moduleFullPath")) entry.moduleFullPath = nextString(parser);
+            else if (parser.textEquals("moduleNedType")) entry.moduleNedType = nextString(parser);
+            else if (parser.textEquals("messageName")) entry.messageName = nextString(parser);
+            else if (parser.textEquals("messageClassName")) entry.messageClassName = nextString(parser);
+            else if (parser.textEquals("sm")) entry.srcModuleId = (int) nextLong(parser);
+            else if (parser.textEquals("tm")) entry.destModuleId = (int) nextLong(parser);
+            else if (parser.textEquals("m")) entry.methodText = nextString(parser);
+            else if (parser.textEquals("msg")) entry.msg = nextString(parser);
+            else if (parser.textEquals("srcGate")) entry.srcGate = nextString(parser);
+            else if (parser.textEquals("srcModule")) entry.srcModule = nextString(parser);
+            else if (parser.textEquals("destGate")) entry.destGate = nextString(parser);
+            else if (parser.textEquals("propagationDelay")) entry.propagationDelay = nextString(parser);
+            else if (parser.textEquals("transmissionDelay")) entry.transmissionDelay = nextString(parser);
+            else {
+                parser.next();
+                parser.skipValue();
+            }
+        }
+    }
+
+    private static String nextString(JSONPullParser parser) throws IOException {
+        parser.next();
+        return parser.getText();
+    }
+
+    private static long nextLong(JSONPullParser parser) throws IOException {
+        parser.next();
+        return parser.getToken() == Token.NUMBER ? parser.getLong() : 0;
+    }
+
+    /**
+     * Applies a status obtained with fetchStatus(), and returns the user interaction
+     * request in it (or null). Must be called in the UI thread, in the order the
+     * statuses were fetched.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public StatusResponse processStatus(StatusData status) throws CommunicationException {
         // store basic simulation state
-        Map responseMap = (Map) responseJSON;
+        Map responseMap = status.fields;
         long oldProcessId = processId;
         processId = ((Number) responseMap.get("processid")).longValue();
         if (oldProcessId != 0 && processId != oldProcessId) {
@@ -313,14 +645,16 @@ public class Simulation {
         configName = (String) responseMap.get("config");
         runNumber = (int) defaultLongIfNull((Number) responseMap.get("run"), -1);
         networkName = (String) responseMap.get("network");
-        simState = SimState.valueOf(((String) responseMap.get("state")).toUpperCase());
-        stoppingReason = StoppingReason.valueOf(StringUtils.defaultString((String) responseMap.get("stoppingReason"), "none").toUpperCase());
+        simState = status.getSimState();
+        stoppingReason = status.getStoppingReason();
         simulationChangeCounter = ((Number) responseMap.get("changeCounter")).longValue();
         eventlogFile = (String) responseMap.get("eventlogfile");
+        supportsBatchRequests = Boolean.TRUE.equals(responseMap.get("batchRequests"));
+        supportsObjectSubscriptions = Boolean.TRUE.equals(responseMap.get("objectSubscriptions"));
 
-        lastEventNumber = defaultLongIfNull((Number) responseMap.get("lastEventNumber"), -1);
+        lastEventNumber = status.getLastEventNumber();
         lastEventSimulationTime = BigDecimal.parse(StringUtils.defaultIfEmpty((String) responseMap.get("lastEventSimtime"), "0"));
-        nextEventNumber = defaultLongIfNull((Number) responseMap.get("nextEventNumber"), 0);
+        nextEventNumber = status.getNextEventNumber();
         nextEventSimulationTimeGuess = BigDecimal.parse(StringUtils.defaultIfEmpty((String) responseMap.get("nextEventSimtimeGuess"), "0"));
         nextEventModuleIdGuess = defaultIntegerIfNull((Number) responseMap.get("nextEventModuleIdGuess"), 0);
         nextEventMessageIdGuess = defaultLongIfNull((Number) responseMap.get("nextEventMessageIdGuess"), 0);
@@ -371,94 +705,12 @@ public class Simulation {
             if (debugHttp) Debug.println("  got request for user interaction: " + request.getClass().getSimpleName());
         }
 
-        // load the log
-        List logEntries = (List) responseMap.get("log");
-        if (logEntries == null) logEntries = new ArrayList(0);
-        EventEntry lastEventEntry = null;
-        List<Object> logItems = new ArrayList<Object>();
-        for (Object e : logEntries) {
-            Map logEntry = (Map)e;
-            String type = (String)logEntry.get("@");
-            if (type.equals("E")) {
-                if (!logItems.isEmpty()) {
-                    if (lastEventEntry == null)
-                        logBuffer.addEventEntry(lastEventEntry = new EventEntry());
-                    lastEventEntry.logItems = logItems.toArray(new Object[]{});
-                    logItems.clear();
-                }
-
-                lastEventEntry = new EventEntry();
-                lastEventEntry.eventNumber = ((Number)logEntry.get("#")).longValue();
-                lastEventEntry.simulationTime = BigDecimal.parse((String)logEntry.get("t"));
-                lastEventEntry.moduleId = ((Number)logEntry.get("moduleId")).intValue();
-                lastEventEntry.moduleFullPath = (String) logEntry.get("moduleFullPath");
-                lastEventEntry.moduleNedType = (String) logEntry.get("moduleNedType");
-                lastEventEntry.messageName = (String)logEntry.get("messageName");
-                lastEventEntry.messageClassName = (String)logEntry.get("messageClassName");
-                logBuffer.addEventEntry(lastEventEntry);
-            }
-            else if (type.equals("L")) {
-                String chunk = (String)logEntry.get("txt");
-                if (chunk.charAt(chunk.length()-1) == '\n')
-                    chunk = chunk.substring(0, chunk.length()-1);  // remove trailing LF
-                if (chunk.indexOf('\n') == -1) {
-                    // add single line (typical case)
-                    logItems.add(chunk);
-                }
-                else {
-                    // split multi-line string to lines (rare case)
-                    for (String line : chunk.split("\n", -1))
-                        logItems.add(line);
-                }
-            }
-            else if (type.equals("MB")) {
-                Anim.ComponentMethodBeginEntry item = new Anim.ComponentMethodBeginEntry();
-                item.srcModuleId = ((Number)logEntry.get("sm")).intValue();
-                item.destModuleId = ((Number)logEntry.get("tm")).intValue();
-                item.txt = (String) (String)logEntry.get("m");
-                logItems.add(item);
-            }
-            else if (type.equals("ME")) {
-                Anim.ComponentMethodEndEntry item = new Anim.ComponentMethodEndEntry();
-                logItems.add(item);
-            }
-            else if (type.equals("BS")) {  //TODO no need for the simulation to send these entries (BS..ES) in Fast mode! (and of course not in Express mode)
-                Anim.BeginSendEntry item = new Anim.BeginSendEntry();
-                item.msg = (cMessage) getObjectByJSONRef((String)logEntry.get("msg"));
-                logItems.add(item);
-            }
-            else if (type.equals("SH")) {
-                Anim.MessageSendHopEntry item = new Anim.MessageSendHopEntry();
-                item.srcGate = (cGate) getObjectByJSONRef((String)logEntry.get("srcGate"));
-                item.propagationDelay = defaultBigDecimalIfNull((String)logEntry.get("propagationDelay"), null);
-                item.transmissionDelay = defaultBigDecimalIfNull((String)logEntry.get("transmissionDelay"), null);
-                logItems.add(item);
-            }
-            else if (type.equals("SD")) {
-                Anim.MessageSendDirectEntry item = new Anim.MessageSendDirectEntry();
-                item.srcModule = (cModule) getObjectByJSONRef((String)logEntry.get("srcModule"));
-                item.destGate = (cGate) getObjectByJSONRef((String)logEntry.get("destGate"));
-                item.propagationDelay = defaultBigDecimalIfNull((String)logEntry.get("propagationDelay"), null);
-                item.transmissionDelay = defaultBigDecimalIfNull((String)logEntry.get("transmissionDelay"), null);
-                logItems.add(item);
-            }
-            else if (type.equals("ES")) {
-                Anim.EndSendEntry item = new Anim.EndSendEntry();
-                logItems.add(item);
-            }
-            else {
-                throw new RuntimeException("unknown log entry type '" + type + "'");
-            }
-        }
-        if (!logItems.isEmpty()) {
-            if (lastEventEntry == null)
-                logBuffer.addEventEntry(lastEventEntry = new EventEntry());
-            lastEventEntry.logItems = logItems.toArray(new Object[]{});
-            logItems.clear();
-        }
+        // store the log
+        for (EventEntry eventEntry : status.eventEntries)
+            logBuffer.addEventEntry(eventEntry);
 
         // if we added something to the log, tell everyone interested about it
-        if (lastEventEntry != null)
+        if (!status.eventEntries.isEmpty())
             logBuffer.fireChangeNotification();
 
         return request;
@@ -473,44 +725,173 @@ public class Simulation {
         // - refresh contents of already-filled objects
         // - refresh the detail fields of loaded objects too (where filled in)
         //
-        if (debugCache)
-            Debug.println("\n======= Refreshing object cache, seq=" + cacheRefreshSeq + " ========");
-        List<Long> garbage = new ArrayList<Long>();
+        // If the simulation process supports subscriptions, it remembers which objects
+        // we have loaded, and we only need to ask for the ones that changed since the
+        // last refresh; the cost is then proportional to the changes, not to the
+        // number of objects in the cache.
+        //
+        if (supportsObjectSubscriptions) {
+            String unsubscribeUri = collectObjectsToUnsubscribe();
+            if (unsubscribeUri != null)
+                getPageContent(urlBase + unsubscribeUri);
+            processObjectChanges(getPageContentAsJSON(urlBase + getObjectChangesUri()));
+            objectCacheRefreshed();
+            return;
+        }
+
         List<cObject> objectsToReload = new ArrayList<cObject>();
         List<cObject> objectsToReloadFields = new ArrayList<cObject>();
+        collectObjectsToRefresh(objectsToReload, objectsToReloadFields);
+        doLoadObjects(objectsToReload, ContentToLoadEnum.OBJECT, true);
+        doLoadObjects(objectsToReloadFields, ContentToLoadEnum.FIELDS, true);
+        objectCacheRefreshed();
+    }
+
+    /**
+     * Purges garbage from the object cache, unloads objects not accessed lately,
+     * and collects the objects whose contents or fields need to be refreshed.
+     */
+    protected void collectObjectsToRefresh(List<cObject> objectsToReload, List<cObject> objectsToReloadFields) {
+        if (debugCache)
+            Debug.println("\n======= Refreshing object cache, seq=" + cacheRefreshSeq + " ========");
+        long[] garbage;
+        List<cObject> objects;
+        synchronized (cachedObjects) { // log entries in statuses fetched in the background may add objects
+            garbage = cachedObjects.purge();
+            objects = cachedObjects.values();
+        }
+
         int numFilled = 0, numUnloads = 0;
-        for (Long id : cachedObjects.keySet()) {
-            cObject obj = cachedObjects.get(id).get();
-            if (obj == null) {
-                garbage.add(id);
+        for (cObject obj : objects) {
+            Assert.isTrue(!obj.isDisposed(), "deleted objects should not be in the cache");
+            if (obj.isFilledIn()) {
+                numFilled++;
+                if (obj.getLastAccessSeq() != getCacheRefreshSeq()) { // not accessed since last object cache refresh
+                    if (debugCache)
+                        Debug.println("unloading: " + obj.toString());
+                    obj.unload();
+                    numUnloads++;
+                }
+                objectsToReload.add(obj);
             }
-            else {
-                Assert.isTrue(!obj.isDisposed(), "deleted objects should not be in the cache");
-                if (obj.isFilledIn()) {
-                    numFilled++;
-                    if (obj.getLastAccessSeq() != getCacheRefreshSeq()) { // not accessed since last object cache refresh
-                        if (debugCache)
-                            Debug.println("unloading: " + obj.toString());
-                        obj.unload();
-                        numUnloads++;
-                    }
-                    objectsToReload.add(obj);
+
+            if (obj.isFieldsFilledIn()) {
+                objectsToReloadFields.add(obj);
+            }
+        }
+
+        if (debugCache)
+            Debug.println("Object cache: size " + cachedObjects.size() + " (" + (numFilled-numUnloads) + " filled); " +
+                    "refresh purged " + garbage.length + ", unloaded " + numUnloads + ", reloading " + objectsToReload.size() + ", fields-reloading " + objectsToReloadFields.size());
+    }
+
+    /**
+     * Subscription counterpart of collectObjectsToRefresh(): purges garbage from
+     * the object cache, and every UNLOAD_SWEEP_INTERVAL_MILLIS unloads the objects
+     * not accessed since the previous sweep. Returns the URI of the request that
+     * cancels the subscriptions of purged and unloaded objects, or null if there
+     * are none. Objects that have never been filled in have no subscriptions, but
+     * there is no way to tell that about garbage collected ones.
+     */
+    protected String collectObjectsToUnsubscribe() {
+        if (debugCache)
+            Debug.println("\n======= Refreshing object cache (subscriptions), seq=" + cacheRefreshSeq + " ========");
+        long[] garbage;
+        synchronized (cachedObjects) { // log entries in statuses fetched in the background may add objects
+            garbage = cachedObjects.purge();
+        }
+        for (long id : garbage)
+            pendingUnsubscribes.add(id);
+
+        long now = System.currentTimeMillis();
+        if (now - lastUnloadSweepTime >= UNLOAD_SWEEP_INTERVAL_MILLIS) {
+            List<cObject> objects;
+            synchronized (cachedObjects) {
+                objects = cachedObjects.values();
+            }
+            int numUnloads = 0;
+            for (cObject obj : objects) {
+                if ((obj.isFilledIn() || obj.isFieldsFilledIn()) && obj.getLastAccessSeq() < lastUnloadSweepSeq) {
+                    if (debugCache)
+                        Debug.println("unloading: " + obj.toString());
+                    obj.unload();
+                    pendingUnsubscribes.add(obj.getObjectId());
+                    numUnloads++;
                 }
+            }
+            if (debugCache)
+                Debug.println("Object cache: size " + cachedObjects.size() + "; unloaded " + numUnloads);
+            lastUnloadSweepTime = now;
+            lastUnloadSweepSeq = cacheRefreshSeq;
+        }
 
-                if (obj.isFieldsFilledIn()) {
-                    objectsToReloadFields.add(obj);
+        if (pendingUnsubscribes.isEmpty())
+            return null;
+        String uri = "sim/unsubscribe?ids=" + StringUtils.join(pendingUnsubscribes, ",");
+        pendingUnsubscribes.clear();
+        return uri;
+    }
+
+    protected String getObjectChangesUri() {
+        return "sim/getObjectChanges?since=" + lastCacheRefreshSerial;
+    }
+
+    /**
+     * Applies the response of a "/sim/getObjectChanges" request. It has the form
+     * {"objects": {id: objectInfo,...}, "fields": {id: fieldsInfo,...}, "deleted": [id,...]},
+     * and only contains subscribed objects that changed since the given serial.
+     */
+    @SuppressWarnings("rawtypes")
+    protected void processObjectChanges(Object json) {
+        Map changes = (Map) json;
+        Map objectInfos = (Map) changes.get("objects");
+        Map fieldsInfos = (Map) changes.get("fields");
+        List deletedIds = (List) changes.get("deleted");
+        int numChanged = 0;
+        if (objectInfos != null) {
+            for (Object e : objectInfos.entrySet()) {
+                Map.Entry entry = (Map.Entry) e;
+                cObject obj = getCachedObject(Long.parseLong((String) entry.getKey()));
+                if (obj != null && obj.isFilledIn()) {  // it might have been unloaded meanwhile
+                    obj.fillFromJSON((Map) entry.getValue());
+                    numChanged++;
                 }
             }
         }
-        cachedObjects.keySet().removeAll(garbage);
-        doLoadObjects(objectsToReload, ContentToLoadEnum.OBJECT, true);
-        doLoadObjects(objectsToReloadFields, ContentToLoadEnum.FIELDS, true);
+        if (fieldsInfos != null) {
+            for (Object e : fieldsInfos.entrySet()) {
+                Map.Entry entry = (Map.Entry) e;
+                cObject obj = getCachedObject(Long.parseLong((String) entry.getKey()));
+                if (obj != null && obj.isFieldsFilledIn())
+                    obj.fillFieldsFromJSON((Map) entry.getValue());
+            }
+        }
+        if (deletedIds != null) {
+            for (Object id : deletedIds) {
+                long objectId = ((Number) id).longValue();
+                cObject obj;
+                synchronized (cachedObjects) {
+                    obj = cachedObjects.get(objectId);
+                    cachedObjects.remove(objectId);
+                }
+                if (obj != null)
+                    obj.markAsDisposed();
+            }
+        }
+        if (debugCache)
+            Debug.println("Object changes: " + numChanged + " objects, " + (fieldsInfos == null ? 0 : fieldsInfos.size()) + " fields, " +
+                    (deletedIds == null ? 0 : deletedIds.size()) + " deleted");
+    }
+
+    private cObject getCachedObject(long id) {
+        synchronized (cachedObjects) {
+            return cachedObjects.get(id);
+        }
+    }
+
+    protected void objectCacheRefreshed() {
         cacheRefreshSeq++;
         lastCacheRefreshSerial = simulationChangeCounter;
-
-        if (debugCache)
-            Debug.println("Object cache after refresh: size " + cachedObjects.size() + " (" + (numFilled-numUnloads) + " filled); " +
-                    "refresh purged " + garbage.size() + ", unloaded " + numUnloads + ", reloaded " + objectsToReload.size() + ", fields-reloaded " + objectsToReloadFields.size());
     }
 
     /**
@@ -593,26 +974,34 @@ public class Simulation {
         doLoadObjects(missing, ContentToLoadEnum.FIELDS, false);
     }
 
-    @SuppressWarnings("rawtypes")
     protected void doLoadObjects(Collection<? extends cObject> objects, ContentToLoadEnum what, boolean isRefresh) throws CommunicationException {
         if (objects.isEmpty())
             return;
+        Object json = getPageContentAsJSON(urlBase + getObjectInfoUri(objects, what, isRefresh));
+        processObjectInfo(objects, what, json);
+    }
+
+    protected String getObjectInfoUri(Collection<? extends cObject> objects, ContentToLoadEnum what, boolean isRefresh) {
         StringBuilder buf = new StringBuilder();
         for (cObject obj: objects)
             buf.append(obj.getObjectId()).append(',');
         String idsArg = buf.substring(0, buf.length()-1);  // trim trailing comma
-        Object json = getPageContentAsJSON(urlBase + "/sim/getObjectInfo" +
+        return "sim/getObjectInfo" +
                 "?what=" + (what==ContentToLoadEnum.OBJECT ? "ic" : "d") +
                 "&ids=" + idsArg +
-                (isRefresh ? "&since=" + lastCacheRefreshSerial : "")
-                );
+                (isRefresh ? "&since=" + lastCacheRefreshSerial : "") +
+                (supportsObjectSubscriptions && !isRefresh ? "&subscribe=1" : "");  // report changes in getObjectChanges
+    }
 
+    @SuppressWarnings("rawtypes")
+    protected void processObjectInfo(Collection<? extends cObject> objects, ContentToLoadEnum what, Object json) {
         // process response; objects not in the response no longer exist, purge them from the cache
-        List<Long> garbage = new ArrayList<Long>();
         for (cObject obj: objects) {
             Map jsonObjectInfo = json==null ? null : (Map) ((Map) json).get(String.valueOf(obj.getObjectId()));
             if (jsonObjectInfo == null) {
-                garbage.add(obj.getObjectId()); // calling remove() here would cause ConcurrentModificationException
+                synchronized (cachedObjects) {
+                    cachedObjects.remove(obj.getObjectId());
+                }
                 obj.markAsDisposed();
             }
             else if (!jsonObjectInfo.isEmpty()) { // empty response means "no change since last refresh", i.e. nothing to do
@@ -622,7 +1011,6 @@ public class Simulation {
                     obj.fillFieldsFromJSON(jsonObjectInfo);
             }
         }
-        cachedObjects.keySet().removeAll(garbage);
     }
 
     public cObject getObjectByJSONRef(String idAndType) {
@@ -632,16 +1020,17 @@ public class Simulation {
         if (colonPos == -1)
             throw new RuntimeException("argument should be in the form \"<id>:<classname>\": " + idAndType);
         long id = Long.valueOf(idAndType.substring(0, colonPos));
-        WeakReference<cObject> ref = cachedObjects.get(id);
-        cObject obj = ref == null ? null : ref.get();
-        if (obj != null) {
-            return obj;
-        }
-        else {
-            String className = idAndType.substring(colonPos+1);
-            obj = createBlankObject(id, className);
-            cachedObjects.put(id, new WeakReference<cObject>(obj));
-            return obj;
+        synchronized (cachedObjects) { // may be called from the thread that fetches the status
+            cObject obj = cachedObjects.get(id);
+            if (obj != null) {
+                return obj;
+            }
+            else {
+                String className = idAndType.substring(colonPos+1);
+                obj = createBlankObject(id, className);
+                cachedObjects.put(id, obj);
+                return obj;
+            }
         }
     }
 
@@ -764,34 +1153,49 @@ public class Simulation {
     }
 
     protected Object getPageContentAsJSON(String url) throws CommunicationException {
-        //long startTime = System.currentTimeMillis();
-        String response = getPageContent(url);
-        if (response == null)
-            return new HttpException("Received empty document in response to GET " + url);
-        //if (debug) Debug.println("  - HTTP GET took " + (System.currentTimeMillis() - startTime) + "ms");
-
-        // parse
-        //startTime = System.currentTimeMillis();
-        Object jsonTree = new JSONReader().read(response);
-        //if (debug) Debug.println("  got: " + jsonTree.toString());
-        //if (debug) Debug.println("  - JSON parsing took " + (System.currentTimeMillis() - startTime) + "ms");
-        return jsonTree;
+        // note: returns null for an empty document
+        return getPageContent(url, JSON_READER);
     }
 
+    private static final IContentReader<Object> JSON_READER = new IContentReader<Object>() {
+        @Override
+        public Object read(Reader content) throws IOException {
+            return JSONPullParser.read(content);
+        }
+    };
+
     protected String getPageContent(String url) throws CommunicationException {
+        return getPageContent(url, HttpTransport.STRING_READER);
+    }
+
+    /**
+     * Performs an HTTP GET, or a POST with the query string in the body if the
+     * URL would exceed the request size limit of the server. The response body
+     * is consumed by the given reader directly from the connection.
+     */
+    protected <T> T getPageContent(String url, IContentReader<T> contentReader) throws CommunicationException {
+        int queryPos = url.indexOf('?');
+        if (url.length() > MONGOOSE_MAX_REQUEST_URI_SIZE && queryPos != -1)
+            return postPageContent(url.substring(0, queryPos), url.substring(queryPos+1), ContentType.APPLICATION_FORM_URLENCODED, contentReader);
+        return doGetPageContent(url, null, null, contentReader);
+    }
+
+    protected <T> T postPageContent(String url, String body, ContentType contentType, IContentReader<T> contentReader) throws CommunicationException {
+        return doGetPageContent(url, body, contentType, contentReader);
+    }
+
+    private <T> T doGetPageContent(String url, String body, ContentType contentType, IContentReader<T> contentReader) throws CommunicationException {
         if (debugHttp)
-            Debug.println("GET " + url);
+            Debug.println((body == null ? "GET " : "POST ") + url);
         if (!isOnline())
             throw new CommunicationException("Simulation Front-end is currently off-line");
         if (url.length() > MONGOOSE_MAX_REQUEST_URI_SIZE)
-            throw new RuntimeException("Request URL length " + url.length() + "exceeds Mongoose limit " + MONGOOSE_MAX_REQUEST_URI_SIZE);
+            throw new RuntimeException("Request URL length " + url.length() + " exceeds Mongoose limit " + MONGOOSE_MAX_REQUEST_URI_SIZE);
 
         try {
             long startTime = System.currentTimeMillis();
-            String response = doHttpGet(url);
+            T response = body == null ? transport.get(url, contentReader) : transport.post(url, body, contentType, contentReader);
             if (debugHttp) Debug.println("  took " + (System.currentTimeMillis() - startTime) + "ms");
-            if (response.length() > 1024)
-                if (debugHttp) Debug.println("  response: ~" + ((response.length()+511)/1024) + "KiB");
             return response;
         }
         catch (SocketException e) {
@@ -813,45 +1217,31 @@ public class Simulation {
     }
 
     public void ping() throws IOException {
-        doHttpGet(urlBase + "sim/ping");
-    }
-
-    /**
-     * A low-level HTTP GET method. Returns the response body.
-     * @throws IOException
-     */
-    protected String doHttpGet(String url) throws IOException {
-        try {
-            currentHttpRequest = Request.Get(url);
-            return currentHttpRequest.
-                   connectTimeout(timeoutMillis).
-                   socketTimeout(timeoutMillis).
-                   execute().
-                   returnContent().asString();
-        }
-        finally {
-            currentHttpRequest = null;
-        }
+        transport.get(urlBase + "sim/ping");
     }
 
     public void abortOngoingHttpRequest() {
         // for more info see e.g. http://devtcg.blogspot.hu/2008/07/interruptible-io-example-using.html
-        if (currentHttpRequest != null) {
-            Display.getDefault().getThread().interrupt(); // set interrupted flag
-            currentHttpRequest.abort();  // does nothing if already aborted
-            currentHttpRequest = null;
-        }
+        transport.abort(); // also sets the interrupted flag of the requesting threads
+    }
+
+    /**
+     * Closes the connection to the simulation process, and releases the log.
+     */
+    public void dispose() {
+        transport.dispose();
+        logBuffer.dispose();
     }
 
-    private BigDecimal defaultBigDecimalIfNull(String txt, BigDecimal defaultValue) {
-        return txt == null ? defaultValue : BigDecimal.parse(txt);
+    private static SimulationTime defaultSimulationTimeIfNull(String txt, SimulationTime defaultValue) {
+        return txt == null ? defaultValue : SimulationTime.parse(txt);
     }
 
-    private int defaultIntegerIfNull(Number i, int defaultValue) {
+    private static int defaultIntegerIfNull(Number i, int defaultValue) {
         return i == null ? defaultValue : i.intValue();
     }
 
-    private long defaultLongIfNull(Number l, long defaultValue) {
+    private static long defaultLongIfNull(Number l, long defaultValue) {
         return l == null ? defaultValue : l.longValue();
     }
 
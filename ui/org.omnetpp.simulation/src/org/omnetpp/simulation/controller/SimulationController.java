@@ -3,6 +3,17 @@ package org.omnetpp.simulation.controller;
 import java.io.IOException;
 import java.net.SocketException;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.ListenerList;
@@ -22,6 +33,7 @@ import org.omnetpp.simulation.controller.Simulation.GetsRequest;
 import org.omnetpp.simulation.controller.Simulation.MsgDialogRequest;
 import org.omnetpp.simulation.controller.Simulation.RunMode;
 import org.omnetpp.simulation.controller.Simulation.SimState;
+import org.omnetpp.simulation.controller.Simulation.StatusData;
 import org.omnetpp.simulation.controller.Simulation.StatusResponse;
 import org.omnetpp.simulation.controller.Simulation.StoppingReason;
 import org.omnetpp.simulation.controller.SimulationChangeEvent.Reason;
@@ -54,7 +66,17 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         DISCONNECTED, // no simulation process, e.g. it has terminated
     }
 
-    private ConnState connState;  // connection state
+    /**
+     * Work done in the communication thread.
+     */
+    protected interface IBackgroundTask {
+        void run() throws CommunicationException;
+    }
+
+    private static final int UI_REFRESH_INTERVAL_MILLIS = 100; // in Fast mode, run chunks are chained in the background for this long
+    private static final int MAX_RUN_POLL_INTERVAL_MILLIS = 20; // while a run chunk is in progress; don't let the simulation sit idle for long
+
+    private AtomicReference<ConnState> connState = new AtomicReference<ConnState>(ConnState.INIT);  // connection state
     private ISimulationProcess simulationProcess; // we want to be notified when the simulation process exits, is suspended or resumed
     private boolean cancelJobOnDispose;  // whether to kill the simulation launcher job when the controller is disposed
     private boolean connectDone = false;  // whether we have at least once successfully talked to the process via socket
@@ -65,12 +87,21 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
     private LiveAnimationController liveAnimationController;  //TODO should probably be done via listeners, and not by storing LiveAnimationController reference here!
 
     private boolean lastEventAnimationDone = false;
-    private RunMode currentRunMode = RunMode.NONE;
+    private volatile RunMode currentRunMode = RunMode.NONE;
     private BigDecimal runUntilSimTime;
     private long runUntilEventNumber;
     private cModule runUntilModule;
     private cMessage runUntilMessage;
-    private boolean stopRequested;
+    private volatile boolean stopRequested;
+    private CompletableFuture<Void> runFuture;  // completes when the current run or step ends
+    private boolean runChunkInProgress;  // whether the communication thread is running the simulation
+
+    // asynchronous operation
+    private ExecutorService communicationExecutor;  // performs the requests of long-running operations, so that the UI thread is not held up
+    private Queue<StatusData> pendingStatuses = new ConcurrentLinkedQueue<StatusData>();  // fetched in the background, to be applied in the UI thread
+    private AtomicBoolean statusUpdateScheduled = new AtomicBoolean();
+    private StatusResponse pendingUserInputRequest;
+    private int numAsyncOperations;  // setupRun(), callFinish(), etc. in progress
 
     private ISimulationUICallback simulationUICallback;
     private ListenerList simulationChangeListeners = new ListenerList();
@@ -80,12 +111,20 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         Assert.isNotNull(simulationProcess);
         this.simulationProcess = simulationProcess;
         this.cancelJobOnDispose = cancelJobOnDispose;
-        this.connState = ConnState.INIT;
 
         this.simulation = new Simulation(hostName, portNumber);
         simulation.setSimulationCallback(this);
         simulation.setOnline(false);
 
+        communicationExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Simulation communication");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
         // get notified about process suspend/resume/termination
         simulationProcess.addListener(this);
     }
@@ -95,27 +134,40 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
     }
 
     public ConnState getConnectionState() {
-        return connState;
+        return connState.get();
     }
 
     protected void setConnectionState(ConnState state) {
-        if (connState != state) {
-            final ConnState oldState = connState;
-            connState = state;
+        ConnState oldState = connState.getAndSet(state);
+        if (oldState != state)
+            connectionStateChanged(oldState);
+    }
+
+    /**
+     * Changes the connection state only if it is the expected one, atomically.
+     * Returns whether the state was changed.
+     */
+    protected boolean compareAndSetConnectionState(ConnState expectedState, ConnState state) {
+        if (!connState.compareAndSet(expectedState, state))
+            return false;
+        if (expectedState != state)
+            connectionStateChanged(expectedState);
+        return true;
+    }
 
-            boolean online = (connState == ConnState.ONLINE);
-            if (online != simulation.isOnline())
-                simulation.setOnline(online);
+    private void connectionStateChanged(final ConnState oldState) {
+        boolean online = (connState.get() == ConnState.ONLINE);
+        if (online != simulation.isOnline())
+            simulation.setOnline(online);
 
-            // state changes often come in a background thread, but listeners are typically UI related
-            DisplayUtils.runNowOrAsyncInUIThread(new Runnable() {
-                @Override
-                public void run() {
-                    if (!isDisposed())
-                        fireSimulationStateChanged(new SimulationChangeEvent(Reason.CONNSTATE_CHANGE, oldState, connState));
-                }
-            });
-        }
+        // state changes often come in a background thread, but listeners are typically UI related
+        DisplayUtils.runNowOrAsyncInUIThread(new Runnable() {
+            @Override
+            public void run() {
+                if (!isDisposed())
+                    fireSimulationStateChanged(new SimulationChangeEvent(Reason.CONNSTATE_CHANGE, oldState, connState.get()));
+            }
+        });
     }
 
     /**
@@ -179,6 +231,15 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         return getUIState() == SimState.RUNNING;
     }
 
+    /**
+     * Returns true while an asynchronous operation such as setting up a network
+     * or calling finish is in progress. Other operations should not be started
+     * meanwhile.
+     */
+    public boolean isBusy() {
+        return numAsyncOperations > 0;
+    }
+
     public Simulation.RunMode getCurrentRunMode() {
         return currentRunMode;
     }
@@ -274,12 +335,24 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         }
     }
 
-    public void setupRun(String configName, int runNumber) throws CommunicationException {
+    /**
+     * Sets up the given run. The network is set up asynchronously; the returned
+     * future is completed in the UI thread when done.
+     */
+    public CompletableFuture<Void> setupRun(final String configName, final int runNumber) {
         if (StringUtils.isNotEmpty(simulation.getNetworkName()))
             fireSimulationStateChanged(Reason.BEFORE_NETWORK_DELETION);
-        simulation.sendSetupRunCommand(configName, runNumber);
-        refreshUntil(SimState.READY); //TODO in background thread, plus callback in the end?
-        fireSimulationStateChanged(Reason.NETWORK_SET_UP);
+        return sendCommandAsync(new IBackgroundTask() {
+            @Override
+            public void run() throws CommunicationException {
+                simulation.sendSetupRunCommand(configName, runNumber);
+            }
+        }, SimState.READY).thenRun(new Runnable() {
+            @Override
+            public void run() {
+                fireSimulationStateChanged(Reason.NETWORK_SET_UP);
+            }
+        });
     }
 
     public void setupNetwork(String networkName) throws CommunicationException {
@@ -298,35 +371,59 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         fireSimulationStateChanged(Reason.NETWORK_SET_UP);
     }
 
-    public void step() throws CommunicationException {
+    public CompletableFuture<Void> step() throws CommunicationException {
         Assert.isTrue(simulation.getSimState() == SimState.READY);
         if (currentRunMode == RunMode.NONE) {
 //            animationPlaybackController.jumpToEnd();
 
+            stopRequested = false;
+            runFuture = new CompletableFuture<Void>();
+            CompletableFuture<Void> future = runFuture;
             setRunMode(RunMode.STEP);
-            simulation.sendStepCommand();
             lastEventAnimationDone = false;
-            refreshUntil(SimState.READY);
-            fireSimulationStateChanged(Reason.EVENTS_PROCESSED);
+            runChunkInProgress = true;
+            CompletableFuture<Void> stepFuture = new CompletableFuture<Void>();
+            executeAsync(sendAndWait(new IBackgroundTask() {
+                @Override
+                public void run() throws CommunicationException {
+                    simulation.sendStepCommand();
+                }
+            }, SimState.READY), SimState.READY, stepFuture);
+            stepFuture.whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void result, Throwable e) {
+                    runChunkInProgress = false;
+                    if (e != null) {
+                        runFailed(e);
+                    }
+                    else if (stopRequested) {
+                        resetRunState();
+                    }
+                    else {
+                        fireSimulationStateChanged(Reason.EVENTS_PROCESSED);
 
-            // animate it
-            doNowOrAfterAnimation(true, resetRunState);
+                        // animate it
+                        doNowOrAfterAnimation(true, resetRunState);
+                    }
+                }
+            });
+            return future;
         }
         else {
-            stop(); // if Step is hit while simulation is running, just stop it so that user can single-step further
+            return stop(); // if Step is hit while simulation is running, just stop it so that user can single-step further
         }
     }
 
-    public void run(RunMode mode) throws CommunicationException {
-        runUntil(mode, null, 0, null, null);
+    public CompletableFuture<Void> run(RunMode mode) throws CommunicationException {
+        return runUntil(mode, null, 0, null, null);
     }
 
-    public void runLocal(RunMode mode, cModule module) throws CommunicationException {
-        runUntil(mode, null, 0, module, null);
+    public CompletableFuture<Void> runLocal(RunMode mode, cModule module) throws CommunicationException {
+        return runUntil(mode, null, 0, module, null);
     }
 
-    public void runUntilMessage(RunMode mode, cMessage message) throws CommunicationException {
-        runUntil(mode, null, 0, null, message);
+    public CompletableFuture<Void> runUntilMessage(RunMode mode, cMessage message) throws CommunicationException {
+        return runUntil(mode, null, 0, null, message);
     }
 
     public void switchToRunMode(RunMode mode) {
@@ -337,9 +434,27 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         }
     }
 
-    public void runUntil(RunMode mode, BigDecimal simTime, long eventNumber, cModule module, cMessage message) throws CommunicationException {
-        if (currentRunMode != RunMode.NONE)
-            stop();  //XXX maybe doStop(), to spare the extra notifyListeners() call and its consequences
+    /**
+     * Starts running the simulation. The simulation is run in chunks by the
+     * communication thread; the returned future is completed in the UI thread
+     * when the run ends, i.e. the until limit is reached, the simulation stops
+     * or is stopped.
+     */
+    public CompletableFuture<Void> runUntil(final RunMode mode, final BigDecimal simTime, final long eventNumber, final cModule module, final cMessage message) throws CommunicationException {
+        if (currentRunMode != RunMode.NONE) {
+            // stop the current run first
+            return stop().thenCompose(new Function<Void, CompletionStage<Void>>() {
+                @Override
+                public CompletionStage<Void> apply(Void result) {
+                    return startRun(mode, simTime, eventNumber, module, message);
+                }
+            });
+        }
+        return startRun(mode, simTime, eventNumber, module, message);
+    }
+
+    protected CompletableFuture<Void> startRun(RunMode mode, BigDecimal simTime, long eventNumber, cModule module, cMessage message) {
+        Assert.isTrue(simulation.getSimState() == SimState.READY);
 
         runUntilSimTime = simTime;
         runUntilEventNumber = eventNumber;
@@ -348,16 +463,12 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
 
 //        animationPlaybackController.jumpToEnd();
 
-        if (currentRunMode == RunMode.NONE) {
-            Assert.isTrue(simulation.getSimState() == SimState.READY);
-            stopRequested = false;
-            setRunMode(mode);
-            doRun();
-        }
-        else {
-            // asyncExec() already scheduled, just change the runMode for it
-            setRunMode(mode);
-        }
+        stopRequested = false;
+        runFuture = new CompletableFuture<Void>();
+        CompletableFuture<Void> future = runFuture;
+        setRunMode(mode);
+        doRun();
+        return future;
     }
 
     private Runnable resetRunState = new Runnable() {
@@ -373,81 +484,138 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
             Display.getCurrent().asyncExec(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        if (!isDisposed())
-                            doRun();
-                    }
-                    catch (CommunicationException e) {
-                        // nothing -- error dialog and logging is already taken care of in the lower layers
-                    }
-                    catch (Exception e) {
-                        MessageDialog.openError(Display.getCurrent().getActiveShell(), "Error", "Error: " + e.toString());
-                        SimulationPlugin.logError(e);
-                    }
+                    if (!isDisposed())
+                        doRun();
                 }
             });
         }
     };
 
-    protected void doRun() throws CommunicationException {
+    protected void doRun() {
         // should we run at all? (stopRequested is set while we are in asyncExec)
         if (stopRequested || (simulation.getSimState() != SimState.READY && simulation.getSimState() != SimState.RUNNING)) {
             resetRunState();
             return;
         }
 
-        boolean success = false; // for detecting exceptions
-        try {
-            // determine how much we'll run in this chunk
-            long eventDelta = 0;
-            long realTimeMillis = 0;
-            switch (currentRunMode) {
-                case NORMAL: eventDelta = 1; break;
-                case FAST: eventDelta = 10; break;
-                case EXPRESS: realTimeMillis = 1000; break;
-                default: Assert.isTrue(false);
+        if (currentRunMode == RunMode.NORMAL)
+            lastEventAnimationDone = false;
+
+        // run the next chunk(s) in the communication thread
+        runChunkInProgress = true;
+        CompletableFuture<Void> chunkFuture = new CompletableFuture<Void>();
+        executeAsync(createRunTask(currentRunMode, simulation.getLastEventNumber()), SimState.READY, chunkFuture);
+        chunkFuture.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable e) {
+                runChunkInProgress = false;
+                if (e != null)
+                    runFailed(e);
+                else
+                    runChunkDone();
+            }
+        });
+    }
+
+    /**
+     * Returns a task that runs the simulation in the communication thread. In Fast
+     * and Express mode, chunks are chained without waiting for the UI thread until
+     * UI_REFRESH_INTERVAL_MILLIS elapses, so the simulation is kept busy while the
+     * UI catches up with the statuses.
+     */
+    protected IBackgroundTask createRunTask(final RunMode mode, final long lastEventNumber) {
+        // the UI thread may change these while the task is running
+        final BigDecimal untilSimTime = runUntilSimTime;
+        final long untilEventNumber = runUntilEventNumber;
+        final cModule untilModule = runUntilModule;
+        final cMessage untilMessage = runUntilMessage;
+
+        return new IBackgroundTask() {
+            @Override
+            public void run() throws CommunicationException {
+                long startTime = System.currentTimeMillis();
+                long chunkStartEventNumber = lastEventNumber;
+                while (true) {
+                    // determine how much we'll run in this chunk
+                    long eventDelta = 0;
+                    long realTimeMillis = 0;
+                    switch (mode) {
+                        case NORMAL: eventDelta = 1; break;
+                        case FAST: eventDelta = 10; break;
+                        case EXPRESS: realTimeMillis = 1000; break;
+                        default: Assert.isTrue(false);
+                    }
+
+                    long untilEvent = (untilEventNumber == 0 && eventDelta == 0) ? 0 :
+                        untilEventNumber == 0 ? chunkStartEventNumber+eventDelta :
+                            eventDelta == 0 ? untilEventNumber :
+                                Math.min(untilEventNumber, chunkStartEventNumber+eventDelta);
+
+                    // tell process to run, and wait for it to complete
+                    simulation.sendRunUntilCommand(mode, realTimeMillis, untilSimTime, untilEvent, untilModule, untilMessage);
+                    StatusData status = pollStatusUntil(SimState.READY, true);
+
+                    // go on with the next chunk, unless it's time to let the UI thread take over
+                    boolean chain = (mode == RunMode.FAST || mode == RunMode.EXPRESS) && mode == currentRunMode && !stopRequested &&
+                            !status.hasUserInputRequest() && status.getSimState() == SimState.READY &&
+                            shouldContinue(status.getStoppingReason(), status.getNextEventNumber(), untilEventNumber) &&
+                            System.currentTimeMillis() - startTime < UI_REFRESH_INTERVAL_MILLIS;
+                    if (!chain)
+                        break;
+                    chunkStartEventNumber = status.getLastEventNumber();
+                }
             }
+        };
+    }
 
-            long untilEvent = (runUntilEventNumber == 0 && eventDelta == 0) ? 0 :
-                runUntilEventNumber == 0 ? simulation.getLastEventNumber()+eventDelta :
-                    eventDelta == 0 ? runUntilEventNumber :
-                        Math.min(runUntilEventNumber, simulation.getLastEventNumber()+eventDelta);
+    protected static boolean shouldContinue(StoppingReason stoppingReason, long nextEventNumber, long untilEventNumber) {
+        return stoppingReason == StoppingReason.REALTIMECHUNK ||
+                (stoppingReason == StoppingReason.UNTILEVENT && (untilEventNumber==0 || nextEventNumber < untilEventNumber));
+    }
 
-            // tell process to run...
-            simulation.sendRunUntilCommand(currentRunMode, realTimeMillis, runUntilSimTime, untilEvent, runUntilModule, runUntilMessage);
-            if (currentRunMode == RunMode.NORMAL)
-                lastEventAnimationDone = false;
+    protected void runChunkDone() {
+        fireSimulationStateChanged(Reason.EVENTS_PROCESSED);
 
-            // ...and wait for it to complete
-            refreshUntil(SimState.READY);  //XXX note: error dialog will *precede* animation of last event -- weird!
-            fireSimulationStateChanged(Reason.EVENTS_PROCESSED);
+        if (stopRequested) {
+            resetRunState();
+            return;
+        }
 
-            boolean animate = (currentRunMode == RunMode.NORMAL);
+        boolean animate = (currentRunMode == RunMode.NORMAL);
 
-            if (simulation.getSimState() != SimState.READY) {
-                // likely an error condition -- animate last part if needed, and then we're done
+        if (simulation.getSimState() != SimState.READY) {
+            // likely an error condition -- animate last part if needed, and then we're done
+            doNowOrAfterAnimation(animate, resetRunState);
+        }
+        else {
+            // run chunk finished without error
+            if (!shouldContinue(simulation.getStoppingReason(), simulation.getNextEventNumber(), runUntilEventNumber)) {
+                // until limit reached or simulation terminated -- animate last part if needed, and then we're done
                 doNowOrAfterAnimation(animate, resetRunState);
             }
             else {
-                // run chunk finished without error
-                boolean shouldContinue = simulation.getStoppingReason() == StoppingReason.REALTIMECHUNK ||
-                        (simulation.getStoppingReason() == StoppingReason.UNTILEVENT && (runUntilEventNumber==0 || simulation.getNextEventNumber() < runUntilEventNumber));
-                if (!shouldContinue) {
-                    // until limit reached or simulation terminated -- animate last part if needed, and then we're done
-                    doNowOrAfterAnimation(animate, resetRunState);
-                }
-                else {
-                    // animate, or asyncExec next run chunk
-                    doNowOrAfterAnimation(animate, asyncExec_doRun);
-                }
+                // animate, or asyncExec next run chunk
+                doNowOrAfterAnimation(animate, asyncExec_doRun);
             }
-            success = true;
         }
-        finally {
-            // if there was an exception, we have to reset our state, tell the process to stop the simulation, etc.
-            if (!success)
-                stop();
+    }
+
+    protected void runFailed(Throwable e) {
+        // reset our state, tell the process to stop the simulation, etc.
+        stopRequested = true;
+        if (isOnline() && simulation.getSimState() == SimState.RUNNING) {
+            try {
+                simulation.sendStopCommand();
+            }
+            catch (CommunicationException e2) {
+                // nothing -- error dialog and logging is already taken care of in the lower layers
+            }
         }
+        CompletableFuture<Void> future = runFuture;
+        runFuture = null;
+        resetRunState();
+        if (future != null)
+            future.completeExceptionally(e);
     }
 
     protected void doNowOrAfterAnimation(boolean animate, Runnable runnable) {
@@ -460,26 +628,44 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         }
     }
 
-    public void stop() throws CommunicationException {
-        // make sure doRun()'s asyncExec() code won't do anything (unfortunately Display does not offer a ways to cancel asyncExec code)
+    /**
+     * Stops the simulation. The returned future is completed in the UI thread when
+     * the simulation process has stopped.
+     */
+    public CompletableFuture<Void> stop() throws CommunicationException {
+        // make sure doRun()'s asyncExec() code and the communication thread won't start another chunk
         stopRequested = true;
 
         // cancel animation
         if (liveAnimationController.isAnimating())
             liveAnimationController.cancelAnimation();
 
+        if (runChunkInProgress) {
+            // interrupt the chunk (Express mode chunks are long); the run ends when the
+            // communication thread notices that the simulation has stopped
+            if (currentRunMode == RunMode.EXPRESS || simulation.getSimState() == SimState.RUNNING)
+                simulation.sendStopCommand();
+            return runFuture;
+        }
+
         // stop the underlying simulation
+        CompletableFuture<Void> future;
         if (simulation.getSimState() == SimState.RUNNING) {
-            try {
-                simulation.sendStopCommand();
-            } finally {
-                refreshUntil(SimState.READY);
-            }
+            future = sendCommandAsync(new IBackgroundTask() {
+                @Override
+                public void run() throws CommunicationException {
+                    simulation.sendStopCommand();
+                }
+            }, SimState.READY);
+        }
+        else {
+            future = CompletableFuture.completedFuture(null);
         }
 
         // update the UI
         if (currentRunMode != RunMode.NONE)
             resetRunState();
+        return future;
     }
 
     protected void resetRunState() {
@@ -489,6 +675,12 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         runUntilMessage = null;
         runUntilModule = null;
         setRunMode(RunMode.NONE);
+
+        if (runFuture != null) {
+            CompletableFuture<Void> future = runFuture;
+            runFuture = null;
+            future.complete(null);
+        }
     }
 
     protected void setRunMode(RunMode runMode) {
@@ -499,43 +691,237 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         }
     }
 
-    public void callFinish() throws CommunicationException {
+    /**
+     * Invokes finish() in the simulation. The returned future is completed in
+     * the UI thread when done.
+     */
+    public CompletableFuture<Void> callFinish() {
         // strictly speaking, we shouldn't allow callFinish() after SIM_ERROR but it comes handy in practice...
         SimState state = simulation.getSimState();
         Assert.isTrue(state == SimState.READY || state == SimState.TERMINATED || state == SimState.ERROR);
-        simulation.sendCallFinishCommand();
-        refreshUntil(SimState.FINISHCALLED); //TODO in background thread, plus callback in the end?
+        return sendCommandAsync(new IBackgroundTask() {
+            @Override
+            public void run() throws CommunicationException {
+                simulation.sendCallFinishCommand();
+            }
+        }, SimState.FINISHCALLED);
     }
 
     public void refreshStatus() throws CommunicationException {
+        if (isBusy() || runChunkInProgress) {
+            // the communication thread is already polling the status; requesting it here
+            // as well would mix up the order of the log entries
+            applyPendingStatuses();
+            return;
+        }
         refreshUntil(null);
     }
 
+    /**
+     * Sends the command and waits until the simulation process reaches the expected
+     * state (see refreshUntil()) in the communication thread. The returned future
+     * is completed in the UI thread, exceptionally if there was an error.
+     */
+    protected CompletableFuture<Void> sendCommandAsync(IBackgroundTask command, SimState expectedState) {
+        numAsyncOperations++;
+        CompletableFuture<Void> future = new CompletableFuture<Void>();
+        executeAsync(sendAndWait(command, expectedState), expectedState, future);
+        return future.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable e) {
+                numAsyncOperations--;
+            }
+        });
+    }
+
+    protected IBackgroundTask sendAndWait(final IBackgroundTask command, final SimState expectedState) {
+        return new IBackgroundTask() {
+            @Override
+            public void run() throws CommunicationException {
+                if (command != null)
+                    command.run();
+                pollStatusUntil(expectedState, false);
+            }
+        };
+    }
+
+    /**
+     * Performs the task in the communication thread, then refreshes the object cache,
+     * carries out the user interaction requested by the simulation if any, and
+     * completes the future in the UI thread.
+     */
+    protected void executeAsync(final IBackgroundTask task, final SimState expectedState, final CompletableFuture<Void> future) {
+        Assert.isTrue(simulationUICallback != null); // callbacks must be set
+        communicationExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                    asyncExecInUIThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            finishAsync(expectedState, future);
+                        }
+                    });
+                }
+                catch (final Exception e) {
+                    asyncExecInUIThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            failAsync(e, future);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    protected void finishAsync(SimState expectedState, CompletableFuture<Void> future) {
+        try {
+            applyPendingStatuses();
+
+            // UI update; also allows the UI to be updated before we pop up a parameter prompt or error dialog
+            simulation.refreshObjectCache();
+            fireSimulationStateChanged(Reason.OBJECTCACHE_REFRESH);
+
+            StatusResponse request = pendingUserInputRequest;
+            pendingUserInputRequest = null;
+            if (request != null) {
+                // carry out action requested by the simulation, then go on waiting
+                askUser(request);
+                executeAsync(sendAndWait(null, expectedState), expectedState, future);
+            }
+            else {
+                future.complete(null);
+            }
+        }
+        catch (Exception e) {
+            failAsync(e, future);
+        }
+    }
+
+    protected void failAsync(Exception e, CompletableFuture<Void> future) {
+        try {
+            applyPendingStatuses();
+        }
+        finally {
+            if (!(e instanceof CommunicationException)) { // for CommunicationException, error dialog and logging is already taken care of in the lower layers
+                MessageDialog.openError(Display.getCurrent().getActiveShell(), "Error", "Error: " + e.toString());
+                SimulationPlugin.logError(e);
+            }
+            future.completeExceptionally(e);
+        }
+    }
+
+    protected void asyncExecInUIThread(final Runnable runnable) {
+        Display.getDefault().asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                if (!isDisposed())
+                    runnable.run();
+            }
+        });
+    }
+
+    /**
+     * The background counterpart of refreshUntil(): repeatedly fetches the status in
+     * the calling thread until the expected state, a quasi terminal state, or a user
+     * interaction request. The statuses are applied in the UI thread. Returns the
+     * last status. For run chunks, polling starts with short intervals.
+     */
+    protected StatusData pollStatusUntil(SimState expectedState, boolean isRunChunk) throws CommunicationException {
+        int retries = 0;
+        while (true) {
+            StatusData status = simulation.fetchStatus();
+            postStatus(status);
+
+            SimState state = status.getSimState();
+            if (status.hasUserInputRequest() || !simulation.isOnline() || expectedState == null || state == expectedState || state == SimState.FINISHCALLED || state == SimState.TERMINATED || state == SimState.ERROR)
+                return status;
+
+            if (retries > 1) {
+                try {
+                    Thread.sleep(isRunChunk ? Math.min(1 << Math.min(retries-2, 10), MAX_RUN_POLL_INTERVAL_MILLIS) : retries <= 5 ? 100 : 500);
+                }
+                catch (InterruptedException e) {
+                    return status; // aborted
+                }
+            }
+
+            retries++;
+        }
+    }
+
+    /**
+     * Schedules a status fetched in the background to be applied in the UI thread.
+     * Statuses that pile up meanwhile are applied together, with a single notification.
+     */
+    protected void postStatus(StatusData status) {
+        pendingStatuses.add(status);
+        if (statusUpdateScheduled.compareAndSet(false, true)) {
+            asyncExecInUIThread(new Runnable() {
+                @Override
+                public void run() {
+                    applyPendingStatuses();
+                }
+            });
+        }
+    }
+
+    protected void applyPendingStatuses() {
+        statusUpdateScheduled.set(false);
+        if (pendingStatuses.isEmpty())
+            return;
+
+        SimState oldState = simulation.getSimState();
+        try {
+            StatusData status;
+            while ((status = pendingStatuses.poll()) != null) {
+                StatusResponse request = simulation.processStatus(status);
+                if (request != null)
+                    pendingUserInputRequest = request;
+            }
+        }
+        catch (CommunicationException e) {
+            pendingStatuses.clear();
+            SimulationPlugin.logError("Cannot process simulation status", e);
+        }
+
+        if (oldState != simulation.getSimState())
+            fireSimulationStateChanged(new SimulationChangeEvent(Reason.SIMSTATE_CHANGE, oldState, simulation.getSimState()));
+        fireSimulationStateChanged(Reason.STATUS_REFRESH);
+    }
+
     /**
      * Repeatedly issue refreshStatus() until the state reported by simulation process becomes
      * the expected state, or a quasi terminal state (TERMINATED, ERROR or DISCONNECTED).
      * The caller should check which one occurred.
+     *
+     * Note that this method blocks the UI thread; long-running operations use the
+     * communication thread instead, see sendCommandAsync().
      */
     public void refreshUntil(SimState expectedState) throws CommunicationException {
-        //TODO this method is called after sending commands for potentially long-running operations
-        // in the simulation process, e.g. setting up a network, calling finish, or processing and event.
-        // Then HTTP (or this loop) will keep up the UI thread and make the IDE nonresponsive.
-        // So, this whole thing should be probably done in a background thread, and report completion
-        // via a callback...
-        //TODO or, at least bring up a cancellable progress dialog after a few seconds
+        //TODO bring up a cancellable progress dialog after a few seconds
 
         Assert.isTrue(simulationUICallback != null); // callbacks must be set
         long startTime = System.currentTimeMillis();
         int retries = 0;
+        boolean objectCacheUpToDate = false;
         do {
             boolean again;
             do {
                 //TODO implement PAUSE/RESUME commands in Cmdenv!! this method calls getObjectINfo even while
                 // simulation is running!!!! or while network is being set up! this could be solved with PAUSE/RESUME
 
-                // refresh status
+                // refresh status; on the first poll, also refresh the object cache in the same round trip
+                // if the process supports it, because the command has very likely completed by then
                 SimState oldState = simulation.getSimState();
-                StatusResponse response = simulation.refreshStatus();
+                StatusResponse response;
+                objectCacheUpToDate = retries == 0 && simulation.supportsBatchRequests();
+                if (objectCacheUpToDate)
+                    response = simulation.refreshStatusAndObjectCache();
+                else
+                    response = simulation.refreshStatus();
                 if (oldState != simulation.getSimState())
                     fireSimulationStateChanged(new SimulationChangeEvent(Reason.SIMSTATE_CHANGE, oldState, simulation.getSimState()));
                 fireSimulationStateChanged(Reason.STATUS_REFRESH);
@@ -544,41 +930,13 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
 
                 if (response != null) {
                     // allow the UI to be updated before we pop up an parameter prompt or error dialog
-                    simulation.refreshObjectCache();
+                    if (!objectCacheUpToDate)
+                        simulation.refreshObjectCache();
                     fireSimulationStateChanged(Reason.OBJECTCACHE_REFRESH);
 
                     // carry out action requested by the simulation
-                    if (response instanceof AskParameterRequest) {
-                        // parameter value prompt
-                        AskParameterRequest info = (AskParameterRequest)response;
-                        String value = simulationUICallback.askParameter(info.paramName, info.ownerFullPath, info.paramType, info.prompt, info.defaultValue, info.unit, info.choices);
-                        simulation.sendReply(value);
-                        again = true;
-                    }
-                    else if (response instanceof GetsRequest) {
-                        // parameter value prompt
-                        GetsRequest info = (GetsRequest)response;
-                        String value = simulationUICallback.gets(info.prompt, info.defaultValue);
-                        simulation.sendReply(value);
-                        again = true;
-                    }
-                    else if (response instanceof AskYesNoRequest) {
-                        // parameter value prompt
-                        AskYesNoRequest info = (AskYesNoRequest)response;
-                        boolean value = simulationUICallback.askYesNo(info.message);
-                        simulation.sendReply(value ? "y" : "n");
-                        again = true;
-                    }
-                    else if (response instanceof MsgDialogRequest) {
-                        // parameter value prompt
-                        MsgDialogRequest info = (MsgDialogRequest)response;
-                        simulationUICallback.messageDialog(info.message);
-                        simulation.sendReply("");
-                        again = true;
-                    }
-                    else {
-                        Assert.isTrue(false, "unknown StatusResponse");
-                    }
+                    askUser(response);
+                    again = true;
                     retries = 0;
                 }
             } while (again);
@@ -595,18 +953,54 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         } while (true);
 
         // UI update
-        simulation.refreshObjectCache(); // note: if state is still "running" (shouldn't be), the simulation may have progressed since the last simulation.refreshStatus() call, so results might be inconsistent
+        if (!objectCacheUpToDate)
+            simulation.refreshObjectCache(); // note: if state is still "running" (shouldn't be), the simulation may have progressed since the last simulation.refreshStatus() call, so results might be inconsistent
         fireSimulationStateChanged(Reason.OBJECTCACHE_REFRESH);
 
         Debug.println("SimulationController.refreshUntil(): " + (System.currentTimeMillis() - startTime) + "ms\n");
     }
 
+    /**
+     * Carries out the user interaction requested by the simulation, and sends the reply.
+     */
+    protected void askUser(StatusResponse response) throws CommunicationException {
+        if (response instanceof AskParameterRequest) {
+            // parameter value prompt
+            AskParameterRequest info = (AskParameterRequest)response;
+            String value = simulationUICallback.askParameter(info.paramName, info.ownerFullPath, info.paramType, info.prompt, info.defaultValue, info.unit, info.choices);
+            simulation.sendReply(value);
+        }
+        else if (response instanceof GetsRequest) {
+            // parameter value prompt
+            GetsRequest info = (GetsRequest)response;
+            String value = simulationUICallback.gets(info.prompt, info.defaultValue);
+            simulation.sendReply(value);
+        }
+        else if (response instanceof AskYesNoRequest) {
+            // parameter value prompt
+            AskYesNoRequest info = (AskYesNoRequest)response;
+            boolean value = simulationUICallback.askYesNo(info.message);
+            simulation.sendReply(value ? "y" : "n");
+        }
+        else if (response instanceof MsgDialogRequest) {
+            // parameter value prompt
+            MsgDialogRequest info = (MsgDialogRequest)response;
+            simulationUICallback.messageDialog(info.message);
+            simulation.sendReply("");
+        }
+        else {
+            Assert.isTrue(false, "unknown StatusResponse");
+        }
+    }
+
     /**
      * Put the simulation front-end into the "transient communication failure" mode.
+     * Does nothing if it is not online, e.g. because another thread has already
+     * put it offline.
      */
     public void goOffline() {
-        Assert.isTrue(connState == ConnState.ONLINE);
-        setConnectionState(ConnState.OFFLINE);
+        if (!compareAndSetConnectionState(ConnState.ONLINE, ConnState.OFFLINE))
+            return;
 
 //            //FIXME dialog -- move this into the UI part (editor)
 //            Display.getDefault().asyncExec(new Runnable() {
@@ -635,7 +1029,7 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
     }
 
     public void goOnline() {
-        Assert.isTrue(connState == ConnState.OFFLINE || connState == ConnState.RESUMABLE);
+        Assert.isTrue(connState.get() == ConnState.OFFLINE || connState.get() == ConnState.RESUMABLE);
         if (!connectDone) {
             connect(); // if we've never had a successful ping, we may need to wait until process starts up and opens socket
         }
@@ -656,7 +1050,7 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
     public void transientCommunicationFailure(Exception e) {
         // go to failure mode until user hits Refresh
         SimulationPlugin.logError("Transient communication error, going offline", e);
-        goOffline();
+        goOffline();  // the UI thread and the communication thread may both fail
     }
 
     @Override
@@ -724,6 +1118,8 @@ public class SimulationController implements ISimulationCallback, ISimulationPro
         if (cancelJobOnDispose && simulationProcess.canCancel())
             simulationProcess.cancel();
         simulationProcess.removeListener(this);
+        communicationExecutor.shutdownNow();
+        simulation.dispose();
         simulationChangeListeners = null;
         isDisposed = true;
         //TODO cancel timers, etc.
@@ -559,6 +559,7 @@ public class GraphicalModuleInspectorPart extends AbstractInspectorPart {
 
     protected void refreshVisuals() throws CommunicationException {
         cModule parentModule = (cModule) object;
+        compoundModuleFigure.setNedTypeName(parentModule.getNedTypeName());
         compoundModuleFigure.setDisplayString(getDisplayStringFrom(parentModule), scale, iconScale, null);
 
         // refresh submodules
@@ -26,9 +26,10 @@ public class ModuleOutputContentProvider implements ITextViewerContentProvider {
     private IEventEntryLinesProvider linesProvider;
     private ListenerList textChangeListeners = new ListenerList();
 
-    // cached data
+    // cached data; maintained incrementally as entries are added to the log buffer
     private int lineCount = -1;
     private int entryStartLineNumbers[] = null; // indexed by the entry's index in logBuffer
+    private int numIndexedEntries;
 
     public ModuleOutputContentProvider(LogBuffer logBuffer, IEventEntryLinesProvider labelProvider) {
         this.logBuffer = logBuffer;
@@ -64,13 +65,15 @@ public class ModuleOutputContentProvider implements ITextViewerContentProvider {
     }
 
     public void refresh() {
-        invalidateIndex();
+        if (isIndexValid())
+            updateIndex();
         fireTextChangeNotification();
     }
 
     protected void invalidateIndex() {
         lineCount = -1;
         entryStartLineNumbers = null;
+        numIndexedEntries = 0;
     }
 
     protected boolean isIndexValid() {
@@ -111,28 +114,40 @@ public class ModuleOutputContentProvider implements ITextViewerContentProvider {
     protected int getIndexOfEntryAt(int lineIndex) {
         if (!isIndexValid())
             rebuildIndex();
-        int entryIndex = Arrays.binarySearch(entryStartLineNumbers, lineIndex);
-        if (entryIndex < 0) entryIndex = -entryIndex-2;
 
         // entryStartLineNumber[] contains one slot for ALL event entries, even those that
-        // don't match the filter; so we have to find the LAST slot with the same line number,
-        // and that will be the matching entry
-        int baseLineNumber = entryStartLineNumbers[entryIndex];
-        while (entryIndex+1 < entryStartLineNumbers.length && entryStartLineNumbers[entryIndex+1] == baseLineNumber)
-            entryIndex++;
-        return entryIndex;
+        // don't match the filter; so we have to find the LAST slot with a line number not
+        // greater than lineIndex, and that will be the matching entry
+        int low = 0, high = numIndexedEntries - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (entryStartLineNumbers[mid] <= lineIndex)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
     }
 
     protected void rebuildIndex() {
-        //long startTime = System.currentTimeMillis();
+        invalidateIndex();
+        entryStartLineNumbers = new int[Math.max(logBuffer.getNumEntries(), 16)];
+        lineCount = 1;  // note: +1 is for empty last line (content cannot be zero lines!)
+        updateIndex();
+    }
 
-        // recompute line numbers. note: entryStartLineNumber[] contains one slot
+    /**
+     * Extends the index with the entries added to the log buffer since the last call.
+     */
+    protected void updateIndex() {
+        // compute line numbers. note: entryStartLineNumber[] contains one slot
         // for ALL event entries, even those that don't match the filter!
         int n = logBuffer.getNumEntries();
-        entryStartLineNumbers = new int[n];
+        if (n > entryStartLineNumbers.length)
+            entryStartLineNumbers = Arrays.copyOf(entryStartLineNumbers, Math.max(n, 2*entryStartLineNumbers.length));
 
-        int currentLineNumber = 0;
-        for (int i = 0; i < n; i++) {
+        int currentLineNumber = lineCount - 1;
+        for (int i = numIndexedEntries; i < n; i++) {
             entryStartLineNumbers[i] = currentLineNumber;
 
             EventEntry entry = logBuffer.getEventEntry(i);
@@ -140,9 +155,8 @@ public class ModuleOutputContentProvider implements ITextViewerContentProvider {
                 currentLineNumber += linesProvider.getNumLines(entry);
         }
 
-        lineCount = currentLineNumber + 1;  // note: +1 is for empty last line (content cannot be zero lines!)
-
-        //System.out.println("rebuildIndex() for " + n + " log entries: " + (System.currentTimeMillis()-startTime) + "ms"); --> ~10..20ms for 1 million events
+        numIndexedEntries = n;
+        lineCount = currentLineNumber + 1;
     }
 
     @Override
@@ -0,0 +1,163 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.omnetpp.common.displaymodel.PointF;
+import org.omnetpp.figures.layout.BarnesHutSpringEmbedderLayoutAlgorithm;
+import org.omnetpp.figures.layout.ILayoutAlgorithm;
+import org.omnetpp.figures.layout.NativeBasicSpringEmbedderLayoutAlgorithm;
+import org.omnetpp.layout.engine.BasicGraphLayouterEnvironment;
+
+/**
+ * Compares the Barnes-Hut spring embedder with the native one on synthetic
+ * graphs of increasing size: running time, and two simple quality measures
+ * (mean relative edge length error, number of overlapping node pairs).
+ */
+public class SpringEmbedderBenchmark extends TestCase {
+    private static final int NODE_SIZE = 40;
+    private static final int[] SIZES = {100, 400, 1000, 2000};
+
+    private static class Graph {
+        String name;
+        int numNodes;
+        List<int[]> edges = new ArrayList<int[]>();
+
+        Graph(String name, int numNodes) {
+            this.name = name;
+            this.numNodes = numNodes;
+        }
+
+        void addEdge(int from, int to) {
+            edges.add(new int[] {from, to});
+        }
+    }
+
+    private static Graph createGrid(int numNodes) {
+        int width = (int)Math.ceil(Math.sqrt(numNodes));
+        Graph graph = new Graph("grid", numNodes);
+        for (int i = 0; i < numNodes; i++) {
+            if (i % width != width - 1 && i + 1 < numNodes)
+                graph.addEdge(i, i + 1);
+            if (i + width < numNodes)
+                graph.addEdge(i, i + width);
+        }
+        return graph;
+    }
+
+    /**
+     * Each node is connected to 1 or 2 random earlier ones (like a random topology).
+     */
+    private static Graph createRandom(int numNodes) {
+        Random random = new Random(1);
+        Graph graph = new Graph("random", numNodes);
+        for (int i = 1; i < numNodes; i++)
+            for (int j = random.nextInt(2); j >= 0; j--)
+                graph.addEdge(random.nextInt(i), i);
+        return graph;
+    }
+
+    /**
+     * Stars of 20 hosts connected to a switch, switches connected in a ring,
+     * plus unconnected nodes (like a datacenter network with some standalone modules).
+     */
+    private static Graph createClusters(int numNodes) {
+        Graph graph = new Graph("clusters", numNodes);
+        int numUnconnected = numNodes / 20;
+        int clusterSize = 21;
+        int numClusters = (numNodes - numUnconnected) / clusterSize;
+        for (int c = 0; c < numClusters; c++) {
+            int sw = c * clusterSize;
+            for (int h = 1; h < clusterSize; h++)
+                graph.addEdge(sw, sw + h);
+            if (numClusters > 1)
+                graph.addEdge(sw, ((c + 1) % numClusters) * clusterSize);
+        }
+        return graph;
+    }
+
+    private static PointF[] layout(ILayoutAlgorithm algorithm, Graph graph) {
+        algorithm.setSeed(1);
+        algorithm.setSize(0, 0, 0);
+        for (int i = 0; i < graph.numNodes; i++)
+            algorithm.addMovableNode(i, NODE_SIZE, NODE_SIZE);
+        for (int[] edge : graph.edges)
+            algorithm.addEdge(edge[0], edge[1], 0);
+        algorithm.execute();
+        PointF[] positions = new PointF[graph.numNodes];
+        for (int i = 0; i < graph.numNodes; i++)
+            positions[i] = algorithm.getNodePosition(i);
+        return positions;
+    }
+
+    private static double distance(PointF p1, PointF p2) {
+        return Math.hypot(p1.x - p2.x, p1.y - p2.y);
+    }
+
+    private static String evaluate(String name, Graph graph, PointF[] positions, long millis) {
+        double edgeLengthError = 0;
+        double averageEdgeLength = 0;
+        for (int[] edge : graph.edges)
+            averageEdgeLength += distance(positions[edge[0]], positions[edge[1]]) / graph.edges.size();
+        for (int[] edge : graph.edges)
+            edgeLengthError += Math.abs(distance(positions[edge[0]], positions[edge[1]]) - averageEdgeLength) / averageEdgeLength / graph.edges.size();
+
+        int numOverlaps = 0;
+        for (int i = 0; i < positions.length; i++) {
+            assertFalse(Float.isNaN(positions[i].x) || Float.isNaN(positions[i].y));
+            for (int j = i + 1; j < positions.length; j++)
+                if (Math.abs(positions[i].x - positions[j].x) < NODE_SIZE && Math.abs(positions[i].y - positions[j].y) < NODE_SIZE)
+                    numOverlaps++;
+        }
+        return String.format("  %-10s %6dms  edge length error: %5.1f%%  overlaps: %d", name, millis, 100 * edgeLengthError, numOverlaps);
+    }
+
+    private static String run(String name, ILayoutAlgorithm algorithm, Graph graph) {
+        long startTime = System.currentTimeMillis();
+        PointF[] positions = layout(algorithm, graph);
+        return evaluate(name, graph, positions, System.currentTimeMillis() - startTime);
+    }
+
+    private static void compare(Graph graph) {
+        System.out.println(graph.name + ", " + graph.numNodes + " nodes, " + graph.edges.size() + " edges:");
+
+        BasicGraphLayouterEnvironment environment = new BasicGraphLayouterEnvironment();
+        environment.setTimeout(15);
+        System.out.println(run("native", new NativeBasicSpringEmbedderLayoutAlgorithm(environment), graph));
+
+        for (double theta : new double[] {0.5, 0.8, 1.2}) {
+            BarnesHutSpringEmbedderLayoutAlgorithm algorithm = new BarnesHutSpringEmbedderLayoutAlgorithm();
+            algorithm.setTheta(theta);
+            System.out.println(run("bh " + theta, algorithm, graph));
+        }
+    }
+
+    @Test
+    public void testGrid() {
+        for (int size : SIZES)
+            compare(createGrid(size));
+    }
+
+    @Test
+    public void testRandom() {
+        for (int size : SIZES)
+            compare(createRandom(size));
+    }
+
+    @Test
+    public void testClusters() {
+        for (int size : SIZES)
+            compare(createClusters(size));
+    }
+}
@@ -0,0 +1,148 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.animation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.omnetpp.animation.controller.AnimationPrimitiveIndex;
+import org.omnetpp.animation.primitives.AbstractAnimationPrimitive;
+import org.omnetpp.animation.primitives.IAnimationPrimitive;
+
+/**
+ * Checks the active set maintained by AnimationPrimitiveIndex against the
+ * definition, and measures replaying a long eventlog-like sequence of
+ * animation primitives forward, backward and with random seeks.
+ */
+public class AnimationPrimitiveIndexBenchmark extends TestCase {
+    private static final int NUM_EVENTS = 100000;
+    private static final double STEP = 0.1; // animation time per timer tick
+
+    private static class TestAnimationPrimitive extends AbstractAnimationPrimitive {
+        private boolean active;
+
+        public TestAnimationPrimitive(double beginAnimationTime, double endAnimationTime) {
+            super(null);
+            setOriginRelativeBeginAnimationTime(beginAnimationTime);
+            setOriginRelativeEndAnimationTime(endAnimationTime);
+        }
+
+        @Override
+        public void activate() {
+            assertFalse(active);
+            active = true;
+        }
+
+        @Override
+        public void deactivate() {
+            assertTrue(active);
+            active = false;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    /**
+     * Creates primitives similar to those of an eventlog: a few short message
+     * sends per event, and an occasional long-lived one (display string change,
+     * module creation).
+     */
+    private static List<IAnimationPrimitive> createAnimationPrimitives(int numEvents) {
+        Random random = new Random(1);
+        List<IAnimationPrimitive> animationPrimitives = new ArrayList<IAnimationPrimitive>();
+        for (int i = 0; i < numEvents; i++) {
+            for (int j = random.nextInt(3); j >= 0; j--)
+                animationPrimitives.add(new TestAnimationPrimitive(i, i + 0.5 + random.nextInt(3)));
+            if (random.nextInt(20) == 0)
+                animationPrimitives.add(new TestAnimationPrimitive(i, random.nextInt(10) == 0 ? Double.POSITIVE_INFINITY : i + random.nextInt(1000)));
+        }
+        return animationPrimitives;
+    }
+
+    private static void assertActivePrimitives(List<IAnimationPrimitive> animationPrimitives, Set<IAnimationPrimitive> activePrimitives, double animationTime) {
+        int numActive = 0;
+        for (IAnimationPrimitive animationPrimitive : animationPrimitives) {
+            boolean expected = animationPrimitive.getBeginAnimationPosition().getOriginRelativeAnimationTime() <= animationTime &&
+                animationTime < animationPrimitive.getEndAnimationPosition().getOriginRelativeAnimationTime();
+            assertEquals(expected, ((TestAnimationPrimitive)animationPrimitive).isActive());
+            assertEquals(expected, activePrimitives.contains(animationPrimitive));
+            if (expected)
+                numActive++;
+        }
+        assertEquals(numActive, activePrimitives.size());
+    }
+
+    @Test
+    public void testActivePrimitives() {
+        List<IAnimationPrimitive> animationPrimitives = createAnimationPrimitives(2000);
+        AnimationPrimitiveIndex index = new AnimationPrimitiveIndex(animationPrimitives);
+        Set<IAnimationPrimitive> activePrimitives = new LinkedHashSet<IAnimationPrimitive>();
+        Random random = new Random(2);
+        double animationTime = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 1000; i++) {
+            double newAnimationTime = random.nextInt(4) == 0 ? random.nextInt(2100) - 50 : Math.max(0, animationTime) + (random.nextInt(7) - 3) * 0.5;
+            index.updateActivePrimitives(activePrimitives, animationTime, newAnimationTime);
+            animationTime = newAnimationTime;
+            assertActivePrimitives(animationPrimitives, activePrimitives, animationTime);
+            assertEquals(activePrimitives.size(), index.getActivePrimitives(animationTime).size());
+        }
+    }
+
+    @Test
+    public void testReplay() {
+        List<IAnimationPrimitive> animationPrimitives = createAnimationPrimitives(NUM_EVENTS);
+        long startTime = System.nanoTime();
+        AnimationPrimitiveIndex index = new AnimationPrimitiveIndex(animationPrimitives);
+        long buildNanos = System.nanoTime() - startTime;
+        Set<IAnimationPrimitive> activePrimitives = new LinkedHashSet<IAnimationPrimitive>();
+        int numSteps = (int)(NUM_EVENTS / STEP);
+
+        startTime = System.nanoTime();
+        double animationTime = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i <= numSteps; i++) {
+            index.updateActivePrimitives(activePrimitives, animationTime, i * STEP);
+            animationTime = i * STEP;
+        }
+        long forwardNanos = System.nanoTime() - startTime;
+        assertActivePrimitives(animationPrimitives, activePrimitives, animationTime);
+
+        startTime = System.nanoTime();
+        for (int i = numSteps; i >= 0; i--) {
+            index.updateActivePrimitives(activePrimitives, animationTime, i * STEP);
+            animationTime = i * STEP;
+        }
+        long backwardNanos = System.nanoTime() - startTime;
+        assertActivePrimitives(animationPrimitives, activePrimitives, animationTime);
+
+        Random random = new Random(3);
+        int numSeeks = 1000;
+        startTime = System.nanoTime();
+        for (int i = 0; i < numSeeks; i++) {
+            double newAnimationTime = random.nextDouble() * NUM_EVENTS;
+            index.updateActivePrimitives(activePrimitives, animationTime, newAnimationTime);
+            animationTime = newAnimationTime;
+        }
+        long seekNanos = System.nanoTime() - startTime;
+        assertActivePrimitives(animationPrimitives, activePrimitives, animationTime);
+
+        System.out.println("Animation primitive index, " + animationPrimitives.size() + " primitives: " +
+                "build: " + buildNanos / 1000000 + "ms, " +
+                "forward: " + forwardNanos / numSteps + "ns/step, " +
+                "backward: " + backwardNanos / numSteps + "ns/step, " +
+                "random seek: " + seekNanos / numSeeks / 1000 + "us/seek");
+    }
+}
@@ -0,0 +1,120 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.common;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.omnetpp.common.json.JSONParseException;
+import org.omnetpp.common.json.JSONPullParser;
+import org.omnetpp.common.json.JSONPullParser.Token;
+import org.omnetpp.common.json.JSONReader;
+
+/**
+ * Tests JSONPullParser against JSONReader, also on a large simulation
+ * status response.
+ */
+public class JSONPullParserTest extends TestCase {
+
+    private static final String[] DOCUMENTS = {
+        "{}",
+        "[]",
+        "[1, -2, 3.5, -0.25e-3, 12345678901234567890, 1.2345678901234567890, true, false, null]",
+        "{\"a\": \"x\\\"y\\\\z\\/\\n\\t\\u0041\\u00e9\", \"b\": [{}, [], [[1]]], \"c\": {\"d\": {\"e\": null}}}",
+        " { \"log\" : [ {\"@\": \"E\", \"#\": 42, \"t\": \"1.5\"}, {\"@\": \"L\", \"txt\": \"hello\\n\"} ] } ",
+    };
+
+    @Test
+    public void testSameTreeAsJSONReader() throws Exception {
+        for (String doc : DOCUMENTS)
+            assertEquals(doc, new JSONReader().read(doc), JSONPullParser.read(new StringReader(doc)));
+    }
+
+    @Test
+    public void testTokens() throws Exception {
+        JSONPullParser parser = new JSONPullParser("{\"a\": [1, \"b\"], \"c\": true}");
+        assertEquals(Token.BEGIN_OBJECT, parser.next());
+        assertEquals(Token.FIELD_NAME, parser.next());
+        assertTrue(parser.textEquals("a"));
+        assertEquals(Token.BEGIN_ARRAY, parser.next());
+        assertEquals(Token.NUMBER, parser.next());
+        assertEquals(1, parser.getLong());
+        assertEquals(Token.STRING, parser.next());
+        assertEquals("b", parser.getText());
+        assertEquals(Token.END_ARRAY, parser.next());
+        assertEquals(Token.FIELD_NAME, parser.next());
+        assertEquals(Token.TRUE, parser.next());
+        assertEquals(Token.END_OBJECT, parser.next());
+        assertEquals(Token.END_DOCUMENT, parser.next());
+    }
+
+    @Test
+    public void testSkipValue() throws Exception {
+        JSONPullParser parser = new JSONPullParser("{\"a\": {\"b\": [1, {\"c\": 2}]}, \"d\": 3}");
+        parser.next();
+        parser.next();
+        parser.next();
+        parser.skipValue();
+        assertEquals(Token.FIELD_NAME, parser.next());
+        assertEquals("d", parser.getText());
+        assertEquals(Token.NUMBER, parser.next());
+        assertEquals(3, parser.getInt());
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        String[] malformed = { "[1, 2", "{\"a\": 1]", "[tru]", "[\"abc", "[-]" };
+        for (String doc : malformed) {
+            try {
+                JSONPullParser.read(new StringReader(doc));
+                fail("no exception for: " + doc);
+            }
+            catch (JSONParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLargeDocument() throws Exception {
+        final int numEvents = 10000;
+        String doc = createStatusResponse(numEvents);
+        assertEquals(new JSONReader().read(doc), JSONPullParser.read(new StringReader(doc)));
+        // numbers: processid, changeCounter, and the event number and module id of each event
+        assertEquals(1234 + 5678 + numEvents * (numEvents - 1) / 2 + 12 * numEvents, pullTokens(doc));
+    }
+
+    private static int pullTokens(String doc) throws Exception {
+        JSONPullParser parser = new JSONPullParser(new StringReader(doc));
+        int n = 0;
+        Token token;
+        while ((token = parser.next()) != Token.END_DOCUMENT)
+            if (token == Token.NUMBER)
+                n += parser.getLong();
+        return n;
+    }
+
+    private static String createStatusResponse(int numEvents) {
+        StringBuilder buf = new StringBuilder();
+        buf.append("{\"processid\": 1234, \"hostname\": \"localhost\", \"state\": \"ready\", \"changeCounter\": 5678, \"log\": [\n");
+        for (int i = 0; i < numEvents; i++) {
+            if (i > 0)
+                buf.append(",\n");
+            buf.append("{\"@\": \"E\", \"#\": ").append(i).append(", \"t\": \"").append(i * 0.001).append("\", \"moduleId\": 12, ");
+            buf.append("\"moduleFullPath\": \"Net.host[3].app\", \"moduleNedType\": \"inet.App\", \"messageName\": \"data-").append(i).append("\", \"messageClassName\": \"Packet\"},\n");
+            buf.append("{\"@\": \"L\", \"txt\": \"Sending packet \\\"data-").append(i).append("\\\" to Net.host[4]\\n\"},\n");
+            buf.append("{\"@\": \"BS\", \"msg\": \"").append(1000 + i).append(":cPacket\"},\n");
+            buf.append("{\"@\": \"SH\", \"srcGate\": \"88:cGate\", \"propagationDelay\": \"0.000001\", \"transmissionDelay\": \"0.0001\"},\n");
+            buf.append("{\"@\": \"ES\"}");
+        }
+        buf.append("]}");
+        return buf.toString();
+    }
+}
@@ -0,0 +1,123 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.common;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.omnetpp.common.util.SimulationTime;
+
+/**
+ * Tests SimulationTime parsing, formatting, arithmetic and comparison,
+ * using java.math.BigDecimal as reference.
+ */
+public class SimulationTimeTest extends TestCase {
+
+    @Test
+    public void testParseAndFormat() {
+        String[][] cases = {
+            {"0", "0"}, {"0.0", "0"}, {"-0", "0"}, {"1", "1"}, {"100", "100"}, {"1.50", "1.5"},
+            {"-1.5", "-1.5"}, {".25", "0.25"}, {"0.001", "0.001"}, {"+3", "3"}, {"  7.0", "7"},
+            {"0.000000000000000001", "0.000000000000000001"}, {"0.0000000000000000001", "0"},
+            {"123456789.123456789", "123456789.123456789"},
+            {"nan", "NaN"}, {"Inf", "+Inf"}, {"-infinity", "-Inf"}, {"1.#INF", "+Inf"},
+        };
+        for (String[] c : cases)
+            assertEquals(c[0], c[1], SimulationTime.parse(c[0]).toString());
+
+        String[] invalidCases = {"", "-", "x", "1x", "1.2.3", "1e3", "99999999999999999999"};
+        for (String s : invalidCases) {
+            try {
+                SimulationTime.parse(s);
+                fail(s);
+            }
+            catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testAgainstJavaBigDecimal() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            SimulationTime t1 = SimulationTime.valueOf(random.nextInt(2000000) - 1000000, -random.nextInt(10));
+            SimulationTime t2 = SimulationTime.valueOf(random.nextLong() % 1000000000000L, -random.nextInt(19));
+            BigDecimal b1 = t1.toJavaBigDecimal();
+            BigDecimal b2 = t2.toJavaBigDecimal();
+            assertEquals(t1, SimulationTime.parse(t1.toString()));
+            assertEquals(0, b1.compareTo(new BigDecimal(t1.toString())));
+            assertEquals(Integer.signum(b1.compareTo(b2)), t1.compareTo(t2));
+            assertEquals(Integer.signum(b2.compareTo(b1)), t2.compareTo(t1));
+            BigDecimal sum = b1.add(b2);
+            BigDecimal difference = b1.subtract(b2);
+            // results that fit into the mantissa must be exact
+            if (isRepresentable(sum))
+                assertEquals(0, sum.compareTo(t1.add(t2).toJavaBigDecimal()));
+            if (isRepresentable(difference))
+                assertEquals(0, difference.compareTo(t1.subtract(t2).toJavaBigDecimal()));
+        }
+    }
+
+    private static boolean isRepresentable(BigDecimal value) {
+        value = value.stripTrailingZeros();
+        return value.scale() <= 18 && value.precision() <= 18;
+    }
+
+    @Test
+    public void testSpecialValues() {
+        SimulationTime one = SimulationTime.valueOf(1, 0);
+        assertTrue(SimulationTime.NEGATIVE_INFINITY.less(one));
+        assertTrue(one.less(SimulationTime.POSITIVE_INFINITY));
+        assertFalse(SimulationTime.NaN.less(one));
+        assertFalse(one.less(SimulationTime.NaN));
+        assertEquals(0, SimulationTime.POSITIVE_INFINITY.compareTo(SimulationTime.POSITIVE_INFINITY));
+        assertTrue(Double.isNaN(SimulationTime.NaN.doubleValue()));
+        assertEquals(SimulationTime.POSITIVE_INFINITY, SimulationTime.valueOf(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testLimits() {
+        SimulationTime min = SimulationTime.valueOf(-Long.MAX_VALUE, 0);
+        assertEquals("-9223372036854775807", min.toString());
+        assertEquals(min, SimulationTime.parse(min.toString()));
+        try {
+            SimulationTime.valueOf(Long.MIN_VALUE, 0);
+            fail();
+        }
+        catch (ArithmeticException e) {
+            // expected: Long.MIN_VALUE is not a valid mantissa
+        }
+        try {
+            SimulationTime.valueOf(-Long.MAX_VALUE / 5, 1);
+            fail();
+        }
+        catch (ArithmeticException e) {
+            // expected: overflow
+        }
+        assertEquals("-0.92233720368547758", SimulationTime.valueOf(Long.MIN_VALUE, -19).toString());
+        // exact arithmetic would yield Long.MIN_VALUE, falls back to double
+        assertEquals(-9.223372036854775808e18, min.subtract(SimulationTime.valueOf(1, 0)).doubleValue(), 1e4);
+    }
+
+    @Test
+    public void testDouble() {
+        assertEquals(SimulationTime.ZERO, SimulationTime.valueOf(0.0));
+        assertEquals("1.5", SimulationTime.valueOf(1.5).toString());
+        assertEquals("-1024", SimulationTime.valueOf(-1024.0).toString());
+        assertEquals(0.1, SimulationTime.valueOf(0.1).doubleValue(), 1e-17);
+        Random random = new Random(2);
+        for (int i = 0; i < 10000; i++) {
+            double d = random.nextDouble() * Math.pow(10, random.nextInt(10));
+            assertEquals(d, SimulationTime.valueOf(d).doubleValue(), d * 1e-15 + 1e-18); // 18 decimal places
+        }
+    }
+}
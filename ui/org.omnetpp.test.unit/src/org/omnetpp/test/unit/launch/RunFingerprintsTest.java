@@ -0,0 +1,83 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.launch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.omnetpp.launch.RunFingerprints;
+
+/**
+ * Tests reading the run fingerprints recorded in scalar files.
+ */
+public class RunFingerprintsTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("runfingerprints", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : dir.listFiles())
+            file.delete();
+        dir.delete();
+    }
+
+    private void writeFile(String name, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, name)), "UTF-8");
+        try {
+            writer.write(content);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    private static String header(String configName, int runNumber, String fingerprints) {
+        return "version 3\n" +
+                "run " + configName + "-" + runNumber + "-20240101-10:00:00-1234\n" +
+                "attr configname " + configName + "\n" +
+                "attr iterationvars \"$x=" + runNumber + "\"\n" +
+                "attr runnumber " + runNumber + "\n" +
+                "itervar x " + runNumber + "\n" +
+                (fingerprints == null ? "" : "param " + RunFingerprints.FINGERPRINT_PARAM_KEY + " " + fingerprints + "\n") +
+                "param **.host[*].app.sendInterval 1s\n" +
+                "\n" +
+                "scalar Net.host[0].app packetsSent 42\n";
+    }
+
+    @Test
+    public void testReadRecordedFingerprints() throws IOException {
+        // a process executed runs 0 and 1, recording both fingerprints in both files
+        writeFile("Sweep-x=0-#0.sca", header("Sweep", 0, "0:0123456789abcdef,1:fedcba9876543210"));
+        writeFile("Sweep-x=1-#0.sca", header("Sweep", 1, "0:0123456789abcdef,1:fedcba9876543210"));
+        writeFile("Sweep-x=2-#0.sca", header("Sweep", 2, null)); // not launched from the IDE
+        writeFile("Other-x=3-#0.sca", header("Other", 3, "3:0000000000000000"));
+        writeFile("Sweep-x=3-#0.vec", header("Sweep", 3, "3:1111111111111111")); // only scalar files count
+        writeFile("broken.sca", "SQLite format 3\0");
+
+        Map<Integer,String> fingerprints = RunFingerprints.readRecordedFingerprints(dir, "Sweep");
+        assertEquals(2, fingerprints.size());
+        assertEquals("0123456789abcdef", fingerprints.get(0));
+        assertEquals("fedcba9876543210", fingerprints.get(1));
+
+        assertEquals("0000000000000000", RunFingerprints.readRecordedFingerprints(dir, "Other").get(3));
+        assertTrue(RunFingerprints.readRecordedFingerprints(new File(dir, "nonexistent"), "Sweep").isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.launch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.omnetpp.launch.RunScheduler;
+
+/**
+ * Tests RunScheduler. The execution of a parameter study is simulated (no
+ * processes are started): run durations are deterministic but heavy-tailed
+ * (a few runs take much longer than the rest, like replications that happen
+ * to reach an expensive state), and there is a fixed startup cost per process.
+ */
+public class RunSchedulerTest extends TestCase {
+    private static final int NUM_RUNS = 32;
+    private static final int NUM_PROCESSES = 4;
+    private static final int BATCH_SIZE = 4;
+    private static final long STARTUP_MILLIS = 5000;
+
+    private interface BatchSource {
+        List<Integer> nextBatch();
+        void batchFinished(List<Integer> batch, long millis, Map<Integer,Long> runMillis);
+    }
+
+    private static List<Integer> getRunNumbers() {
+        List<Integer> runNumbers = new ArrayList<Integer>();
+        for (int i = 0; i < NUM_RUNS; i++)
+            runNumbers.add(i);
+        return runNumbers;
+    }
+
+    /**
+     * Returns the duration of the given run in millis.
+     */
+    private static long getRunDuration(int runNumber) {
+        // Pareto distribution with minimum 5s and shape 1.5, capped at 100s
+        double u = new Random(runNumber * 7919L + 1).nextDouble();
+        return 1000 * (long)Math.min(100, Math.ceil(5 * Math.pow(1 - u, -1 / 1.5)));
+    }
+
+    /**
+     * Simulates executing the batches with NUM_PROCESSES concurrent processes,
+     * and returns the makespan in millis. Whenever a process finishes, the next
+     * batch is handed to a new process. Every run must be executed exactly once.
+     */
+    private static long execute(BatchSource source) {
+        long[] startTimes = new long[NUM_PROCESSES];
+        long[] finishTimes = new long[NUM_PROCESSES];
+        List<List<Integer>> batches = new ArrayList<List<Integer>>();
+        Set<Integer> executedRuns = new HashSet<Integer>();
+        for (int i = 0; i < NUM_PROCESSES; i++)
+            batches.add(null);
+
+        long now = 0;
+        while (true) {
+            // start processes on the idle slots
+            for (int i = 0; i < NUM_PROCESSES; i++) {
+                if (batches.get(i) == null) {
+                    List<Integer> batch = source.nextBatch();
+                    if (batch == null)
+                        break;
+                    assertTrue(batch.size() >= 1 && batch.size() <= BATCH_SIZE);
+                    long millis = STARTUP_MILLIS;
+                    for (int runNumber : batch) {
+                        assertTrue("run executed twice: " + runNumber, executedRuns.add(runNumber));
+                        millis += getRunDuration(runNumber);
+                    }
+                    batches.set(i, batch);
+                    startTimes[i] = now;
+                    finishTimes[i] = now + millis;
+                }
+            }
+
+            // advance to the earliest finishing process
+            int first = -1;
+            for (int i = 0; i < NUM_PROCESSES; i++)
+                if (batches.get(i) != null && (first == -1 || finishTimes[i] < finishTimes[first]))
+                    first = i;
+            if (first == -1)
+                break;
+            now = finishTimes[first];
+            List<Integer> batch = batches.set(first, null);
+            Map<Integer,Long> runMillis = new HashMap<Integer,Long>();
+            for (int runNumber : batch)
+                runMillis.put(runNumber, getRunDuration(runNumber));
+            source.batchFinished(batch, now - startTimes[first], runMillis);
+        }
+        assertEquals(NUM_RUNS, executedRuns.size());
+        return now;
+    }
+
+    private static BatchSource createFixedBatches() {
+        final List<List<Integer>> batches = new ArrayList<List<Integer>>();
+        List<Integer> runNumbers = getRunNumbers();
+        for (int i = 0; i < runNumbers.size(); i += BATCH_SIZE)
+            batches.add(new ArrayList<Integer>(runNumbers.subList(i, Math.min(i + BATCH_SIZE, runNumbers.size()))));
+        return new BatchSource() {
+            public List<Integer> nextBatch() {
+                return batches.isEmpty() ? null : batches.remove(0);
+            }
+
+            public void batchFinished(List<Integer> batch, long millis, Map<Integer,Long> runMillis) {
+            }
+        };
+    }
+
+    private static BatchSource createScheduler(Map<Integer,Long> runDurations) {
+        final RunScheduler scheduler = new RunScheduler(getRunNumbers(), BATCH_SIZE, NUM_PROCESSES, runDurations);
+        return new BatchSource() {
+            public List<Integer> nextBatch() {
+                return scheduler.nextBatch();
+            }
+
+            public void batchFinished(List<Integer> batch, long millis, Map<Integer,Long> runMillis) {
+                scheduler.batchFinished(batch, millis, runMillis);
+            }
+        };
+    }
+
+    @Test
+    public void testLongestFirst() {
+        Map<Integer,Long> runDurations = new HashMap<Integer,Long>();
+        runDurations.put(1, 100L);
+        runDurations.put(3, 900L);
+        RunScheduler scheduler = new RunScheduler(Arrays.asList(0, 1, 2, 3), 10, 1, runDurations);
+        // unknown runs are assumed to take the average (500ms); batches are limited to half of the remaining time
+        assertEquals(Arrays.asList(3), scheduler.nextBatch());
+        assertEquals(Arrays.asList(0), scheduler.nextBatch());
+        assertEquals(Arrays.asList(2), scheduler.nextBatch());
+        assertEquals(Arrays.asList(1), scheduler.nextBatch());
+        assertNull(scheduler.nextBatch());
+    }
+
+    @Test
+    public void testAdaptiveBatchSize() {
+        RunScheduler scheduler = new RunScheduler(getRunNumbers(), 100, 1, new HashMap<Integer,Long>());
+        List<Integer> batch = scheduler.nextBatch();
+        assertEquals(1, batch.size());
+        // 1s startup, 2.5s run: batches should take 10s
+        scheduler.batchFinished(batch, 3500, Collections.singletonMap(batch.get(0), 2500L));
+        assertEquals(4, scheduler.nextBatch().size());
+    }
+
+    @Test
+    public void testMakespan() {
+        long totalMillis = 0, longestMillis = 0;
+        for (int runNumber : getRunNumbers()) {
+            totalMillis += getRunDuration(runNumber);
+            longestMillis = Math.max(longestMillis, getRunDuration(runNumber));
+        }
+        long lowerBound = Math.max(totalMillis / NUM_PROCESSES, longestMillis) + STARTUP_MILLIS;
+
+        long fixedMakespan = execute(createFixedBatches());
+        Map<Integer,Long> runDurations = new HashMap<Integer,Long>();
+        long firstMakespan = execute(createScheduler(runDurations));
+        assertEquals(NUM_RUNS, runDurations.size());
+        long scheduledMakespan = execute(createScheduler(runDurations));
+
+        // with the run durations known, the scheduler should finish earlier than with fixed batches
+        assertTrue(firstMakespan >= lowerBound && scheduledMakespan >= lowerBound);
+        assertTrue("scheduler: " + scheduledMakespan + "ms, fixed batches: " + fixedMakespan + "ms", scheduledMakespan < fixedMakespan);
+    }
+}
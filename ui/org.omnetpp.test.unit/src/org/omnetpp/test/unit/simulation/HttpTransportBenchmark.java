@@ -0,0 +1,100 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.simulation;
+
+import junit.framework.TestCase;
+
+import org.apache.http.entity.ContentType;
+import org.junit.Test;
+import org.omnetpp.simulation.controller.HttpTransport;
+
+/**
+ * Measures the per-chunk cost of refreshing the status and the object cache
+ * of the simulation front-end against a loopback stand-in server, with
+ * separate requests and with a single combined request.
+ */
+public class HttpTransportBenchmark extends TestCase {
+    private static final int NUM_CHUNKS = 1000;
+    private static final String OBJECT_INFO_URI = "sim/getObjectInfo?what=ic&ids=1,2,3&since=0";
+    private static final String FIELDS_INFO_URI = "sim/getObjectInfo?what=d&ids=1,2,3&since=0";
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+        LoopbackSimulationServer server = new LoopbackSimulationServer();
+        server.start();
+        HttpTransport transport = new HttpTransport();
+        try {
+            for (int i = 0; i < 100; i++)
+                transport.get(server.getUrlBase() + "sim/status");
+            assertEquals(100, server.getNumRequests());
+            assertEquals(1, server.getNumConnections());
+        }
+        finally {
+            transport.dispose();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        LoopbackSimulationServer server = new LoopbackSimulationServer();
+        server.start();
+        HttpTransport transport = new HttpTransport();
+        try {
+            String response = transport.post(server.getUrlBase() + "sim/batch", "sim/status\n" + OBJECT_INFO_URI + "\n", ContentType.TEXT_PLAIN);
+            assertTrue(response.startsWith("[{\"processid\""));
+            assertTrue(response.endsWith(",\n{}]"));
+            assertEquals(1, server.getNumRequests());
+        }
+        finally {
+            transport.dispose();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        LoopbackSimulationServer server = new LoopbackSimulationServer();
+        server.start();
+        HttpTransport transport = new HttpTransport();
+        try {
+            String urlBase = server.getUrlBase();
+            runChunks(transport, urlBase, false, 100); // warm-up
+            runChunks(transport, urlBase, true, 100);
+
+            long startTime = System.nanoTime();
+            runChunks(transport, urlBase, false, NUM_CHUNKS);
+            long separateNanos = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            runChunks(transport, urlBase, true, NUM_CHUNKS);
+            long batchNanos = System.nanoTime() - startTime;
+
+            System.out.println("Status and object cache refresh, " + NUM_CHUNKS + " chunks: " +
+                    "separate requests: " + separateNanos / NUM_CHUNKS / 1000 + "us/chunk, " +
+                    "batch request: " + batchNanos / NUM_CHUNKS / 1000 + "us/chunk");
+        }
+        finally {
+            transport.dispose();
+            server.stop();
+        }
+    }
+
+    private static void runChunks(HttpTransport transport, String urlBase, boolean batch, int numChunks) throws Exception {
+        for (int i = 0; i < numChunks; i++) {
+            if (batch) {
+                transport.post(urlBase + "sim/batch", "sim/status\n" + OBJECT_INFO_URI + "\n" + FIELDS_INFO_URI + "\n", ContentType.TEXT_PLAIN);
+            }
+            else {
+                transport.get(urlBase + "sim/status");
+                transport.get(urlBase + OBJECT_INFO_URI);
+                transport.get(urlBase + FIELDS_INFO_URI);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.simulation;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.omnetpp.common.util.SimulationTime;
+import org.omnetpp.simulation.controller.Anim;
+import org.omnetpp.simulation.controller.EventEntry;
+import org.omnetpp.simulation.controller.LogBuffer;
+
+/**
+ * Tests that LogBuffer keeps memory usage bounded by spilling old entries
+ * to disk, and that spilled entries can be read back.
+ */
+public class LogBufferTest extends TestCase {
+
+    @Test
+    public void testSpilling() throws Exception {
+        LogBuffer logBuffer = new LogBuffer(10000);
+        try {
+            final int n = 100000;
+            for (int i = 0; i < n; i++)
+                logBuffer.addEventEntry(createEntry(i));
+
+            assertEquals(n, logBuffer.getNumEntries());
+            assertTrue(logBuffer.getNumEntriesInMemory() < 20000);
+            assertTrue(logBuffer.getNumEntriesInMemory() >= 10000);
+            assertSame(Anim.BeginSendEntry.class, logBuffer.getLastEventEntry().logItems[1].getClass());
+
+            // spilled entries, in random order
+            for (int i : new int[] {0, 99999, 4095, 4096, 50000, 1, 12345})
+                assertEntry(i, logBuffer.getEventEntry(i));
+
+            // all entries, sequentially
+            for (int i = 0; i < n; i++)
+                assertEntry(i, logBuffer.getEventEntry(i));
+        }
+        finally {
+            logBuffer.dispose();
+        }
+    }
+
+    @Test
+    public void testSetMaxEntriesInMemory() throws Exception {
+        final int n = 50000;
+        LogBuffer logBuffer = new LogBuffer();
+        try {
+            for (int i = 0; i < n; i++)
+                logBuffer.addEventEntry(createEntry(i));
+            assertEquals(n, logBuffer.getNumEntriesInMemory()); // below the default limit
+
+            // lowering the limit spills the old entries right away
+            logBuffer.setMaxEntriesInMemory(10000);
+            assertEquals(n, logBuffer.getNumEntries());
+            assertTrue(logBuffer.getNumEntriesInMemory() < 20000);
+            assertTrue(logBuffer.getNumEntriesInMemory() >= 10000);
+            for (int i = 0; i < n; i++)
+                assertEntry(i, logBuffer.getEventEntry(i));
+        }
+        finally {
+            logBuffer.dispose();
+        }
+
+        // entries in memory remain available, spilled ones are gone with the file
+        assertEntry(n - 1, logBuffer.getLastEventEntry());
+        try {
+            logBuffer.getEventEntry(0);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static EventEntry createEntry(int i) {
+        EventEntry entry = new EventEntry();
+        entry.eventNumber = i;
+        entry.simulationTime = i % 1000 == 0 ? null : SimulationTime.valueOf(1500L * i + 7, -9);
+        entry.moduleId = 2 + i % 10;
+        entry.moduleFullPath = "Net.host[" + (i % 10) + "].app";
+        entry.moduleNedType = "inet.App";
+        entry.messageName = "data-" + i;
+        entry.messageClassName = "Packet";
+        entry.logItems = new Object[] { "Sending packet data-" + i + "\n", new Anim.BeginSendEntry() };
+        return entry;
+    }
+
+    private static void assertEntry(int i, EventEntry entry) {
+        EventEntry expected = createEntry(i);
+        assertEquals(expected.eventNumber, entry.eventNumber);
+        assertEquals(expected.simulationTime, entry.simulationTime);
+        assertEquals(expected.moduleId, entry.moduleId);
+        assertEquals(expected.moduleFullPath, entry.moduleFullPath);
+        assertEquals(expected.moduleNedType, entry.moduleNedType);
+        assertEquals(expected.messageName, entry.messageName);
+        assertEquals(expected.messageClassName, entry.messageClassName);
+        assertEquals(2, entry.logItems.length);
+        assertEquals(expected.logItems[0], entry.logItems[0]);
+        assertTrue(entry.logItems[1] instanceof Anim.BeginSendEntry);
+    }
+}
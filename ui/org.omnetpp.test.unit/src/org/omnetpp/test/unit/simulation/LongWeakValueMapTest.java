@@ -0,0 +1,70 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.omnetpp.simulation.controller.LongWeakValueMap;
+
+/**
+ * Tests LongWeakValueMap against HashMap, and checks that garbage collected
+ * values get purged.
+ */
+public class LongWeakValueMapTest extends TestCase {
+
+    @Test
+    public void testAgainstHashMap() {
+        LongWeakValueMap<String> map = new LongWeakValueMap<String>();
+        Map<Long,String> expected = new HashMap<Long,String>(); // also keeps the values alive
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(5000) * 1000003L;
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            }
+            else {
+                String value = "v" + i;
+                map.put(key, value);
+                expected.put(key, value);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 5000 * 1000003L; key += 1000003L)
+            assertSame(expected.get(key), map.get(key));
+        assertEquals(expected.size(), map.values().size());
+    }
+
+    @Test
+    public void testPurge() throws Exception {
+        LongWeakValueMap<Object> map = new LongWeakValueMap<Object>();
+        Object[] kept = new Object[100];
+        for (int i = 0; i < 1000; i++) {
+            Object value = new Object();
+            if (i % 10 == 0)
+                kept[i/10] = value;
+            map.put(i, value);
+        }
+
+        int numPurged = 0;
+        for (int i = 0; i < 50 && map.size() > kept.length; i++) {
+            System.gc();
+            Thread.sleep(10);
+            numPurged += map.purge().length;
+        }
+        assertEquals(900, numPurged);
+        assertEquals(kept.length, map.size());
+        for (int i = 0; i < kept.length; i++)
+            assertSame(kept[i], map.get(i*10));
+    }
+}
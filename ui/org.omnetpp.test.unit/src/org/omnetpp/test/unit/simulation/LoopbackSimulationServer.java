@@ -0,0 +1,191 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in for the HTTP server of Cmdenv, for benchmarking the transport of
+ * the simulation front-end without a real simulation. Listens on the loopback
+ * interface, supports keep-alive connections, and replies to "sim/status",
+ * "sim/getObjectInfo" and "sim/batch" with canned responses. An artificial
+ * per-request processing delay can be configured.
+ */
+public class LoopbackSimulationServer {
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private volatile boolean stopped;
+    private volatile int delayMillis;
+    private volatile boolean supportsBatch = true;
+    private String objectInfoResponse = "{}";
+    private AtomicInteger numConnections = new AtomicInteger();
+    private AtomicInteger numRequests = new AtomicInteger();
+
+    public LoopbackSimulationServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getUrlBase() {
+        return "http://127.0.0.1:" + getPort() + "/";
+    }
+
+    /**
+     * Simulated processing time for each request (a batch request counts as one).
+     */
+    public void setDelayMillis(int delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public void setSupportsBatch(boolean supportsBatch) {
+        this.supportsBatch = supportsBatch;
+    }
+
+    /**
+     * Sets the canned response to "sim/getObjectInfo" requests.
+     */
+    public void setObjectInfoResponse(String objectInfoResponse) {
+        this.objectInfoResponse = objectInfoResponse;
+    }
+
+    public int getNumConnections() {
+        return numConnections.get();
+    }
+
+    public int getNumRequests() {
+        return numRequests.get();
+    }
+
+    public void start() {
+        acceptThread = new Thread("LoopbackSimulationServer") {
+            @Override
+            public void run() {
+                while (!stopped) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        numConnections.incrementAndGet();
+                        Thread thread = new Thread("LoopbackSimulationServer connection") {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        };
+                        thread.setDaemon(true);
+                        thread.start();
+                    }
+                    catch (IOException e) {
+                        if (!stopped)
+                            e.printStackTrace();
+                    }
+                }
+            }
+        };
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public void stop() throws IOException {
+        stopped = true;
+        serverSocket.close();
+    }
+
+    protected void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            while (!stopped) {
+                // read request line and headers
+                String requestLine = readLine(in);
+                if (requestLine == null)
+                    break;
+                int contentLength = 0;
+                String line;
+                while ((line = readLine(in)) != null && line.length() > 0)
+                    if (line.toLowerCase().startsWith("content-length:"))
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                byte[] body = new byte[contentLength];
+                for (int pos = 0; pos < contentLength; ) {
+                    int n = in.read(body, pos, contentLength - pos);
+                    if (n == -1)
+                        throw new IOException("unexpected end of request body");
+                    pos += n;
+                }
+
+                numRequests.incrementAndGet();
+                if (delayMillis > 0)
+                    Thread.sleep(delayMillis);
+
+                String[] parts = requestLine.split(" ");
+                String content = getResponse(parts[1].substring(1), new String(body, "US-ASCII"));
+                byte[] contentBytes = content.getBytes("UTF-8");
+                String header = "HTTP/1.1 200 OK\r\n" +
+                        "Content-Type: application/json\r\n" +
+                        "Content-Length: " + contentBytes.length + "\r\n" +
+                        "\r\n";
+                out.write(header.getBytes("US-ASCII"));
+                out.write(contentBytes);
+                out.flush();
+            }
+        }
+        catch (Exception e) {
+            if (!stopped)
+                e.printStackTrace();
+        }
+        finally {
+            try { socket.close(); } catch (IOException e) { }
+        }
+    }
+
+    protected String getResponse(String uri, String body) {
+        String path = uri.indexOf('?') == -1 ? uri : uri.substring(0, uri.indexOf('?'));
+        if (path.equals("sim/status"))
+            return "{\"processid\": 1, \"hostname\": \"localhost\", \"argv\": [], \"wd\": \"\", \"state\": \"ready\", " +
+                    "\"changeCounter\": " + numRequests.get() + ", \"rootObjects\": {}, \"batchRequests\": " + supportsBatch + "}";
+        else if (path.equals("sim/getObjectInfo"))
+            return objectInfoResponse;
+        else if (path.equals("sim/ping"))
+            return "";
+        else if (path.equals("sim/batch") && supportsBatch) {
+            StringBuilder result = new StringBuilder("[");
+            for (String request : body.split("\n")) {
+                if (request.length() == 0)
+                    continue;
+                if (result.length() > 1)
+                    result.append(",\n");
+                result.append(getResponse(request, ""));
+            }
+            return result.append("]").toString();
+        }
+        else
+            return "{}";
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n')
+            if (c != '\r')
+                buf.write(c);
+        if (c == -1 && buf.size() == 0)
+            return null;
+        return buf.toString("US-ASCII");
+    }
+}